@@ -0,0 +1,65 @@
+package com.lucamoretti.adventure_together.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/*
+ Configurazione degli eventi di dominio (TripStateChanged, BookingConfirmed).
+ Gli eventi sono pubblicati con il sistema di eventi di Spring e consegnati dopo il commit
+ (@TransactionalEventListener); i listener annotati @Async vengono eseguiti su un executor dedicato e limitato:
+ al massimo maxSize thread e queueCapacity eventi in attesa. A coda piena l'evento viene gestito dal thread
+ che lo pubblica (CallerRunsPolicy): nessun evento viene perso e chi pubblica rallenta invece di riempire la memoria.
+ Le eccezioni dei listener non arrivano a chi ha pubblicato l'evento (la transazione è già conclusa): vengono registrate nel log.
+ */
+
+@Slf4j
+@Configuration
+@EnableAsync
+public class DomainEventConfig implements AsyncConfigurer {
+
+    // Thread sempre attivi dell'executor degli eventi
+    @Value("${app.events.executor.core-size:2}")
+    private int coreSize;
+
+    // Thread massimi, usati solo quando la coda è piena
+    @Value("${app.events.executor.max-size:4}")
+    private int maxSize;
+
+    // Eventi in attesa di un thread libero
+    @Value("${app.events.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Bean(name = "domainEventExecutor")
+    public ThreadPoolTaskExecutor domainEventExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, coreSize));
+        executor.setMaxPoolSize(Math.max(Math.max(1, coreSize), maxSize));
+        executor.setQueueCapacity(Math.max(0, queueCapacity));
+        executor.setThreadNamePrefix("domain-event-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // allo spegnimento gli eventi già accodati vengono completati (es. email di conferma prenotazione)
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return domainEventExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) ->
+                log.error("Listener {} fallito per l'evento {}", method.getName(), params.length > 0 ? params[0] : null, ex);
+    }
+}
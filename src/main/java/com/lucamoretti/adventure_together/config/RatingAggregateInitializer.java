@@ -0,0 +1,33 @@
+package com.lucamoretti.adventure_together.config;
+
+import com.lucamoretti.adventure_together.service.review.ReviewService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/*
+    Classe che allinea all'avvio dell'applicazione gli aggregati delle valutazioni degli itinerari (ItineraryRating)
+    Backfill una tantum: con un'unica INSERT ... SELECT raggruppata vengono creati solo gli aggregati degli itinerari
+    che non ne hanno ancora uno, così che le recensioni lasciate prima dell'introduzione degli aggregati risultino conteggiate.
+    Le righe esistenti non vengono mai cancellate né riscritte: un riavvio non perde le recensioni salvate in contemporanea
+    dagli altri nodi e non lascia mai gli itinerari senza valutazione
+ */
+
+@Slf4j
+@Order(4)
+@Component
+@RequiredArgsConstructor
+public class RatingAggregateInitializer implements CommandLineRunner {
+
+    private final ReviewService reviewService;
+
+    @Override
+    public void run(String... args) {
+        int created = reviewService.backfillRatingAggregates();
+        if (created > 0) {
+            log.info("Aggregati delle valutazioni creati per {} itinerari", created);
+        }
+    }
+}
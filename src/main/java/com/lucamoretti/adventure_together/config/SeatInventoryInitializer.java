@@ -0,0 +1,41 @@
+package com.lucamoretti.adventure_together.config;
+
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/*
+    Classe che all'avvio dell'applicazione valorizza il contatore dei posti prenotati (seatsBooked)
+    dei Trip creati prima dell'introduzione del contatore (backfill una tantum)
+    L'UPDATE tocca solo i Trip con contatore a 0 e partecipanti salvati: i contatori già inizializzati,
+    incrementati in modo atomico dalle prenotazioni, non vengono ricalcolati, così che un riavvio mentre un altro nodo
+    registra prenotazioni non possa riscrivere un conteggio superato
+    Dopo il primo avvio non trova più righe da aggiornare; può essere disattivato con app.trips.seats-backfill.enabled = false
+ */
+
+@Slf4j
+@Order(3)
+@Component
+@RequiredArgsConstructor
+public class SeatInventoryInitializer implements CommandLineRunner {
+
+    private final TripRepository tripRepository;
+
+    @Value("${app.trips.seats-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        if (!enabled) return;
+        int updated = tripRepository.backfillSeatsBooked();
+        if (updated > 0) {
+            log.info("Contatore posti prenotati inizializzato per {} Trip", updated);
+        }
+    }
+}
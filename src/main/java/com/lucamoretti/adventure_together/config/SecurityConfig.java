@@ -81,6 +81,8 @@ public class SecurityConfig {
                         // 1. REGOLA PIÙ SPECIFICA: Accesso solo per ADMIN
                         // Richiede il ruolo ROLE_ADMIN
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        // Metriche e stato dell'applicazione (Actuator)
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         // 2. REGOLA MEDIA: Accesso per ADMIN o PLANNER
                         // Richiede il ruolo ROLE_ADMIN oppure ROLE_PLANNER
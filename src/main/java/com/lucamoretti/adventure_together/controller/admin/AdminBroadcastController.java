@@ -0,0 +1,78 @@
+package com.lucamoretti.adventure_together.controller.admin;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRequestDTO;
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import com.lucamoretti.adventure_together.service.mail.BroadcastService;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+/*
+  Controller per gli annunci via email inviati da un Admin a tutti i traveler o ai partecipanti di un itinerario.
+  L'invio avviene in background (BroadcastService): la pagina mostra la form e l'avanzamento dell'ultimo invio.
+ */
+
+@Controller
+@RequestMapping("/admin/broadcast")
+@RequiredArgsConstructor
+public class AdminBroadcastController {
+
+    private final BroadcastService broadcastService;
+    private final TripItineraryTitleIndex titleIndex;
+
+    // Mostra la form e l'avanzamento dell'invio in corso o dell'ultimo concluso
+    @GetMapping
+    public String showBroadcast(Model model) {
+        if (!model.containsAttribute("broadcastRequestDTO")) {
+            model.addAttribute("broadcastRequestDTO", new BroadcastRequestDTO());
+        }
+        populateModel(model);
+        return "admin/broadcast";
+    }
+
+    // Avvia l'invio di un annuncio
+    @PostMapping
+    public String startBroadcast(
+            @Valid @ModelAttribute("broadcastRequestDTO") BroadcastRequestDTO broadcastRequestDTO,
+            BindingResult bindingResult,
+            Model model,
+            RedirectAttributes redirectAttributes) {
+
+        // Validazione dei campi
+        if (bindingResult.hasErrors()) {
+            populateModel(model);
+            return "admin/broadcast";
+        }
+
+        try {
+            broadcastService.start(broadcastRequestDTO);
+            redirectAttributes.addFlashAttribute("successMessage", "Invio dell'annuncio avviato.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            redirectAttributes.addFlashAttribute("broadcastRequestDTO", broadcastRequestDTO);
+        }
+        return "redirect:/admin/broadcast";
+    }
+
+    // Interrompe l'invio in corso (i messaggi già accodati vengono comunque spediti)
+    @PostMapping("/cancel")
+    public String cancelBroadcast(RedirectAttributes redirectAttributes) {
+        if (broadcastService.cancel()) {
+            redirectAttributes.addFlashAttribute("successMessage", "Invio dell'annuncio interrotto.");
+        } else {
+            redirectAttributes.addFlashAttribute("errorMessage", "Nessun annuncio in fase di invio.");
+        }
+        return "redirect:/admin/broadcast";
+    }
+
+    private void populateModel(Model model) {
+        model.addAttribute("audiences", BroadcastAudience.values());
+        model.addAttribute("itineraries", titleIndex.getTitles());
+        model.addAttribute("progress", broadcastService.getProgress().orElse(null));
+    }
+}
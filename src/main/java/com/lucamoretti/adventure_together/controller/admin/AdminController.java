@@ -4,6 +4,7 @@ import com.lucamoretti.adventure_together.dto.user.AdminDTO;
 import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import com.lucamoretti.adventure_together.util.passwordGenerator.PasswordGeneratorService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -119,15 +120,21 @@ public class AdminController {
 
     //Elenco dei planner esistenti (per gestione o attivazione)
     @GetMapping("/planner-list")
-    public String listPlanners(Model model) {
-        model.addAttribute("planners", UserService.getAllPlanners());
+    public String listPlanners(@RequestParam(value = "cursor", required = false) String cursor, Model model) {
+        KeysetPage<PlannerDTO> page = UserService.getAllPlanners(cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("planners", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
         return "/admin/planner-list";
     }
 
     //Elenco dei admin esistenti (per gestione o attivazione)
     @GetMapping("/admin-list")
-    public String listAdmins(Model model) {
-        model.addAttribute("admins", UserService.getAllAdmins());
+    public String listAdmins(@RequestParam(value = "cursor", required = false) String cursor, Model model) {
+        KeysetPage<AdminDTO> page = UserService.getAllAdmins(cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("admins", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
         return "/admin/admin-list";
     }
 
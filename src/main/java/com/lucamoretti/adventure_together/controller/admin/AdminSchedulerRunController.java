@@ -0,0 +1,38 @@
+package com.lucamoretti.adventure_together.controller.admin;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+/*
+  Controller per lo storico delle esecuzioni dei job pianificati (aggiornamento stati, promemoria partenze e recensioni).
+  La pagina mostra le statistiche per job del periodo (durata media e massima, andamento recente, tempo per elemento)
+  e le ultime esecuzioni, eventualmente di un solo job.
+ */
+
+@Controller
+@RequestMapping("/admin/scheduler-runs")
+@RequiredArgsConstructor
+public class AdminSchedulerRunController {
+
+    private static final int RECENT_RUNS = 50;
+
+    private final SchedulerRunRecorder runRecorder;
+
+    @GetMapping
+    public String showRuns(@RequestParam(required = false) String job, Model model) {
+        List<SchedulerJobStatsDTO> stats = runRecorder.getJobStats();
+        model.addAttribute("stats", stats);
+        model.addAttribute("jobs", stats.stream().map(SchedulerJobStatsDTO::getJobName).toList());
+        model.addAttribute("selectedJob", job);
+        model.addAttribute("runs", runRecorder.getRecentRuns(job, RECENT_RUNS));
+        return "admin/scheduler-runs";
+    }
+}
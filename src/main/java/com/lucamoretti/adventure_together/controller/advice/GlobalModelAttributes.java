@@ -1,7 +1,7 @@
 package com.lucamoretti.adventure_together.controller.advice;
 
-import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
-import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ModelAttribute;
 
@@ -11,20 +11,20 @@ import java.util.List;
  Controller advice per popolare il modello con attributi globali.
  In questo caso, aggiunge una lista di itinerari di viaggio a tutti i modelli delle viste per consetire
  alla barra di ricerca di accedere agli itinerari disponibili.
+ La lista (solo id e titolo) è letta dall'indice in memoria dei titoli, senza accessi al database ad ogni richiesta.
  */
 
 @ControllerAdvice
 public class GlobalModelAttributes {
 
-    private final TripItineraryService tripItineraryService;
+    private final TripItineraryTitleIndex titleIndex;
 
-    public GlobalModelAttributes(TripItineraryService service) {
-        this.tripItineraryService = service;
+    public GlobalModelAttributes(TripItineraryTitleIndex titleIndex) {
+        this.titleIndex = titleIndex;
     }
 
     @ModelAttribute("itineraries")
-    public List<TripItineraryDTO> populateItineraries() {
-        return tripItineraryService.getAll();
+    public List<TripItineraryTitleDTO> populateItineraries() {
+        return titleIndex.getTitles();
     }
 }
-
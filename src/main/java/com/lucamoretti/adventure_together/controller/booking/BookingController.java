@@ -7,6 +7,7 @@ import com.lucamoretti.adventure_together.dto.payment.PaymentIntentDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
 import com.lucamoretti.adventure_together.service.booking.BookingPreparationService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
 import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.trip.TripService;
@@ -41,6 +42,7 @@ public class BookingController {
     private final DepartureAirportService departureAirportService;
     private final TripItineraryService tripItineraryService;
     private final UserService userService;
+    private final SeatHoldService seatHoldService;
 
 
     @Value("${STRIPE_PUBLIC_KEY}")
@@ -52,6 +54,8 @@ public class BookingController {
                                   Model model) {
         // ottieni i dettagli del trip
         TripDTO trip = tripService.getById(tripId);
+        // posti disponibili al netto di quelli trattenuti dai checkout in corso
+        trip.setHeldSeats(seatHoldService.getHeldSeats(tripId));
         model.addAttribute("trip", trip);
         // ottieni l'ID del traveler autenticato
         Long travelerId = userService.getCurrentUserId();
@@ -5,11 +5,13 @@ import com.lucamoretti.adventure_together.dto.details.CountryDTO;
 import com.lucamoretti.adventure_together.dto.details.GeoAreaDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
 import com.lucamoretti.adventure_together.model.details.Country;
 import com.lucamoretti.adventure_together.model.details.GeoArea;
 import com.lucamoretti.adventure_together.service.details.CategoryService;
 import com.lucamoretti.adventure_together.service.details.CountryService;
 import com.lucamoretti.adventure_together.service.details.GeoAreaService;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
@@ -35,6 +37,7 @@ public class HomeController {
 
     private final TripService tripService;
     private final TripItineraryService tripItineraryService;
+    private final TripItinerarySearchIndex searchIndex;
 
     // semplice redirect alla home page
     @GetMapping("/")
@@ -47,9 +50,7 @@ public class HomeController {
     @GetMapping("/home")
     public String home(Model model) {
 
-        // Lista di tutti gli itinerari per la barra di ricerca basata sul titolo dell'itinerario
-        List<TripItineraryDTO> itineraries = tripItineraryService.getAll();
-        model.addAttribute("itineraries", itineraries);
+        // La lista degli itinerari per la barra di ricerca è fornita da GlobalModelAttributes (indice dei titoli)
 
         // seconda parte  con i viaggi in evidenza
         List<TripDTO> trips = tripService.getUpcomingBookableTrips();
@@ -61,6 +62,7 @@ public class HomeController {
     }
 
     // ricerca itinerario per titolo e redirect alla pagina di dettaglio (per la barra di ricerca globale)
+    // se il titolo non corrisponde esattamente, si usa il risultato più rilevante del motore di ricerca (prefisso / errori di battitura)
     @GetMapping("/search")
     public String search(@RequestParam String title, RedirectAttributes redirectAttributes) {
 
@@ -73,6 +75,10 @@ public class HomeController {
             TripItineraryDTO iti = tripItineraryService.getByTitle(title);
             return "redirect:/trips/trip-itinerary/" + iti.getId();
         } catch (ResourceNotFoundException e){
+            List<TripItineraryTitleDTO> best = searchIndex.suggest(title, 1);
+            if (!best.isEmpty()) {
+                return "redirect:/trips/trip-itinerary/" + best.get(0).getId();
+            }
             redirectAttributes.addFlashAttribute("errorMessage", "Itinerario cercato non presente");
             return "redirect:/home";
         }
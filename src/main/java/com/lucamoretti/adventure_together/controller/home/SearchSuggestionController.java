@@ -0,0 +1,29 @@
+package com.lucamoretti.adventure_together.controller.home;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/*
+    Controller REST per i suggerimenti della barra di ricerca (autocompletamento).
+    Ritorna in JSON gli itinerari (id, titolo) che corrispondono al testo digitato,
+    calcolati dal motore di ricerca in memoria senza accessi al database.
+ */
+
+@RestController
+@RequiredArgsConstructor
+public class SearchSuggestionController {
+
+    private static final int MAX_LIMIT = 20;
+
+    private final TripItinerarySearchIndex searchIndex;
+
+    @GetMapping("/search/suggest")
+    public List<TripItineraryTitleDTO> suggest(@RequestParam("q") String query,
+                                               @RequestParam(defaultValue = "8") int limit) {
+        return searchIndex.suggest(query, Math.min(Math.max(limit, 0), MAX_LIMIT));
+    }
+}
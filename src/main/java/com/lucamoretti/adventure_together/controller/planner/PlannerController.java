@@ -11,11 +11,13 @@ import com.lucamoretti.adventure_together.service.details.CountryService;
 import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import com.lucamoretti.adventure_together.service.review.ReviewService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -45,6 +47,7 @@ public class PlannerController {
     private final CategoryService categoryService;
     private final DepartureAirportService departureAirportService;
     private final ReviewService reviewService;
+    private final TripItineraryTitleIndex titleIndex;
 
     // Mostra la dashboard per Planner
     @GetMapping("/dashboard")
@@ -116,8 +119,8 @@ public class PlannerController {
         dto.setPlannerId(userId);
         model.addAttribute("tripDTO", dto);
         model.addAttribute("hideSearchBar", true);
-        List<TripItineraryDTO> tripItineraries = tripItineraryService.getAll();
-        model.addAttribute("tripItineraries", tripItineraries);
+        // per la select bastano id e titolo: vengono letti dall'indice in memoria dei titoli
+        model.addAttribute("tripItineraries", titleIndex.getTitles());
         return "planner/create-trip";
     }
 
@@ -145,11 +148,15 @@ public class PlannerController {
 
     // Mostra la lista degli TripItinerary creati dal planner
     @GetMapping("/trip-itinerary-created-list")
-    public String showTripItineraryCreatedList(Model model) {
+    public String showTripItineraryCreatedList(@RequestParam(value = "cursor", required = false) String cursor, Model model) {
         // Ottieni l'ID del planner autenticato (da implementare)
         Long plannerId = userService.getCurrentUserId();
-        // Recupera gli itinerari creati dal planner
-        model.addAttribute("tripItineraries", tripItineraryService.getByPlannerId(plannerId));
+        // Recupera una pagina degli itinerari creati dal planner
+        KeysetPage<TripItineraryDTO> page = tripItineraryService.getByPlannerId(plannerId, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("tripItineraries", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
+        model.addAttribute("pageUrl", "/planner/trip-itinerary-created-list");
         model.addAttribute("pageTitle", "I miei itinerari");
         return "planner/all-trip-itineraries";
     }
@@ -157,13 +164,17 @@ public class PlannerController {
     // Mostra la lista degli Trip creati dal planner
     @GetMapping("/trip-created-list")
     public String showTripCreatedList(@RequestParam(value = "startDate", required = false) LocalDate startDate,
-                                      @RequestParam(value = "endDate", required = false) LocalDate endDate, Model model) {
+                                      @RequestParam(value = "endDate", required = false) LocalDate endDate,
+                                      @RequestParam(value = "cursor", required = false) String cursor, Model model) {
         // Ottieni l'ID del planner autenticato (da implementare)
         Long plannerId = userService.getCurrentUserId();
-        // Recupera gli itinerari creati dal planner
+        model.addAttribute("pageUrl", "/planner/trip-created-list");
+        // Recupera una pagina dei trip creati dal planner
         try{
-            List<TripDTO> trips = tripService.getTripsByPlannerBetweenDates(plannerId, startDate, endDate);
-            model.addAttribute("trips", trips);
+            KeysetPage<TripDTO> page = tripService.getTripsByPlannerBetweenDates(plannerId, startDate, endDate, cursor, KeysetPage.DEFAULT_SIZE);
+            model.addAttribute("trips", page.getItems());
+            model.addAttribute("page", page);
+            model.addAttribute("cursor", cursor);
             model.addAttribute("pageTitle", "I miei trip");
             model.addAttribute("startDate", startDate);
             model.addAttribute("endDate", endDate);
@@ -213,9 +224,12 @@ public class PlannerController {
 
     //lista di tutti i TripItinerary esistenti
     @GetMapping("/all-trip-itineraries")
-    public String showAllTripItineraries(Model model) {
-        List<TripItineraryDTO> tripItineraries = tripItineraryService.getAll();
-        model.addAttribute("tripItineraries", tripItineraries);
+    public String showAllTripItineraries(@RequestParam(value = "cursor", required = false) String cursor, Model model) {
+        KeysetPage<TripItineraryDTO> page = tripItineraryService.getAll(cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("tripItineraries", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
+        model.addAttribute("pageUrl", "/planner/all-trip-itineraries");
         model.addAttribute("pageTitle", "Tutti gli itinerari");
         return "planner/all-trip-itineraries";
     }
@@ -224,10 +238,14 @@ public class PlannerController {
     @GetMapping("/all-trips")
     public String showAllTrips(@RequestParam(value = "startDate", required = false) LocalDate startDate,
                                @RequestParam(value = "endDate", required = false) LocalDate endDate,
+                               @RequestParam(value = "cursor", required = false) String cursor,
                                Model model) {
+        model.addAttribute("pageUrl", "/planner/all-trips");
         try{
-        List<TripDTO> trips = tripService.getTripsBetweenDates(startDate, endDate);
-        model.addAttribute("trips", trips);
+        KeysetPage<TripDTO> page = tripService.getTripsBetweenDates(startDate, endDate, cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("trips", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
         model.addAttribute("pageTitle", "Tutti i trip");
         model.addAttribute("startDate", startDate);
         model.addAttribute("endDate", endDate);
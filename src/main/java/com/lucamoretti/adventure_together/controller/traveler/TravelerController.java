@@ -20,6 +20,7 @@ import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import com.lucamoretti.adventure_together.util.exception.UnauthorizedActionException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -55,16 +56,35 @@ public class TravelerController {
 
     // Mostra la dashboard per Traveler
     @GetMapping("/dashboard")
-    public String showTravelerDashboard() {
+    public String showTravelerDashboard(@AuthenticationPrincipal User user, Model model) {
+        // preferenza del riepilogo giornaliero delle notifiche
+        model.addAttribute("notificationDigest", userService.getTravelerById(user.getId())
+                .map(TravelerDTO::isNotificationDigest)
+                .orElse(false));
         return "traveler/dashboard";
     }
 
+    // Attiva o disattiva il riepilogo giornaliero delle notifiche email
+    @PostMapping("/notifications/digest")
+    public String updateNotificationDigest(@AuthenticationPrincipal User user,
+                                           @RequestParam("enabled") boolean enabled,
+                                           RedirectAttributes redirectAttributes) {
+        userService.setNotificationDigest(user.getId(), enabled);
+        redirectAttributes.addFlashAttribute("successMessage", enabled
+                ? "Riceverai le notifiche in un unico riepilogo giornaliero."
+                : "Riceverai ogni notifica con una email separata.");
+        return "redirect:/traveler/dashboard";
+    }
+
     // Visualizza la lista delle prenotazioni del traveler
     @GetMapping("/bookings-list")
     public String viewBookings(@AuthenticationPrincipal User user,
+                               @RequestParam(value = "cursor", required = false) String cursor,
                                Model model) {
-        List<BookingDTO> bookings = bookingService.getBookingsByTravelerId(user.getId());
-        model.addAttribute("bookings", bookings);
+        KeysetPage<BookingDTO> page = bookingService.getBookingsByTravelerId(user.getId(), cursor, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("bookings", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
         return "traveler/bookings-list";
     }
 
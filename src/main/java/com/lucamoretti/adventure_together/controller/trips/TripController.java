@@ -2,20 +2,19 @@ package com.lucamoretti.adventure_together.controller.trips;
 
 import com.lucamoretti.adventure_together.dto.details.CategoryDTO;
 import com.lucamoretti.adventure_together.dto.details.CountryDTO;
-import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
 import com.lucamoretti.adventure_together.dto.details.GeoAreaDTO;
-import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
-import com.lucamoretti.adventure_together.dto.trip.TripDTO;
+import com.lucamoretti.adventure_together.dto.trip.CatalogFilterDTO;
+import com.lucamoretti.adventure_together.dto.trip.CatalogResultDTO;
+import com.lucamoretti.adventure_together.dto.trip.ItineraryPageViewDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
-import com.lucamoretti.adventure_together.dto.trip.TripItineraryDayDTO;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
 import com.lucamoretti.adventure_together.service.details.CategoryService;
 import com.lucamoretti.adventure_together.service.details.CountryService;
-import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import com.lucamoretti.adventure_together.service.details.GeoAreaService;
-import com.lucamoretti.adventure_together.service.review.ReviewService;
-import com.lucamoretti.adventure_together.service.trip.TripItineraryDayService;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
-import com.lucamoretti.adventure_together.service.trip.TripService;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -34,14 +33,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TripController {
 
-    private final TripService tripService;
     private final TripItineraryService tripItineraryService;
     private final CountryService countryService;
     private final GeoAreaService geoAreaService;
     private final CategoryService categoryService;
-    private final DepartureAirportService departureAirportService;
-    private final TripItineraryDayService tripItineraryDayService;
-    private final ReviewService reviewService;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
+    private final SeatHoldService seatHoldService;
 
     // dashboard principale con filtri di ricerca
     @GetMapping("/dashboard")
@@ -52,17 +50,31 @@ public class TripController {
         model.addAttribute("countries", countryService.getAllCountries());
         return "trips/dashboard";
     }
+    // ricerca a faccette del catalogo (JSON): categorie, nazioni, aree geografiche, aeroporti,
+    // fascia di prezzo, durata e mese di partenza combinati in AND, con i conteggi aggiornati di ogni faccetta
+    // es. /trips/catalog/search?categoryIds=1&categoryIds=3&priceRange=1000-2000&departureMonth=2026-11
+    @GetMapping("/catalog/search")
+    @ResponseBody
+    public CatalogResultDTO catalogSearch(@ModelAttribute CatalogFilterDTO filter) {
+        return catalogIndex.search(filter);
+    }
+
     //pagina con Itinerari filtrati per categoria/e
     @GetMapping("/categories")
     public String itinerariesByCategories(
             @RequestParam(required = false) List<Long> categoryIds,
+            @RequestParam(required = false) String cursor,
             Model model) {
 
+        KeysetPage<TripItineraryDTO> page;
         if (categoryIds == null || categoryIds.isEmpty()) {
-            model.addAttribute("tripItineraries", tripItineraryService.getAll());
+            page = tripItineraryService.getAll(cursor, KeysetPage.DEFAULT_SIZE);
         } else {
-            model.addAttribute("tripItineraries", tripItineraryService.getAllByCategoryIds(categoryIds));
+            page = tripItineraryService.getAllByCategoryIds(categoryIds, cursor, KeysetPage.DEFAULT_SIZE);
         }
+        model.addAttribute("tripItineraries", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("cursor", cursor);
 
         model.addAttribute("selectedCategories", categoryIds);
 
@@ -109,33 +121,20 @@ public class TripController {
     @GetMapping("/trip-itinerary/{id}")
     public String dashboardTripItinerary(@PathVariable Long id, Model model) {
 
-        //dettagli itinerario per titolo pagina
-        TripItineraryDTO tripItinerary = tripItineraryService.getById(id);
-        model.addAttribute("tripItinerary", tripItinerary);
-
-        //Lista di tutte le Countries associate all'itinerario selezionato
-        List<CountryDTO> countries = countryService.getCountryBySetOfId(tripItinerary.getCountryIds());
-        model.addAttribute("countries", countries);
-
-        //Lista di tutti i DepartureAirport associati all'itinerario selezionato
-        List<DepartureAirportDTO> departureAirports = departureAirportService.getDepartureAirportsBySetOfIds(tripItinerary.getDepartureAirportIds());
-        model.addAttribute("departureAirports", departureAirports);
-
-        //Lista di tutti i TripItineraryDay associati all'itinerario selezionato
-        List<TripItineraryDayDTO> itineraryDays = tripItineraryDayService.getDaysByItinerary(id);
-        model.addAttribute("itineraryDays", itineraryDays);
-
-        //Lista di tutti i Trip associati all'itinerario selezionato (futuri e disponibili per la prenotazione)
-        List<TripDTO> trips = tripService.getBookableTripsByItinerary(id);
-        model.addAttribute("trips", trips);
-
-        //Lista di tutte le reviews associate ai Trip (associati all'itinerario selezionato)
-        List<ReviewDTO> reviews = reviewService.getAllReviewsByTripItineraryId(id);
-        model.addAttribute("reviews", reviews);
-
-        //media valutazione complessiva reviews
-        Float averageRating = reviewService.getAverageScoreForTripItinerary(id);
-        model.addAttribute("averageRating", averageRating);
+        // read model della pagina (itinerario, nazioni, aeroporti, giorni, viaggi prenotabili, recensioni e media)
+        // servito dalla cache per itinerario e assemblato con poche query solo quando la voce non è presente
+        ItineraryPageViewDTO view = pageViewService.getPageView(id);
+        model.addAttribute("tripItinerary", view.getTripItinerary());
+        model.addAttribute("countries", view.getCountries());
+        model.addAttribute("departureAirports", view.getDepartureAirports());
+        model.addAttribute("itineraryDays", view.getItineraryDays());
+        // posti trattenuti letti a ogni richiesta (non in cache): copie dei TripDTO del read model condiviso
+        model.addAttribute("trips", view.getTrips().stream()
+                .map(trip -> trip.toBuilder().heldSeats(seatHoldService.getHeldSeats(trip.getId())).build())
+                .toList());
+        model.addAttribute("reviews", view.getReviews());
+        model.addAttribute("averageRating", view.getAverageRating());
+        model.addAttribute("rating", view.getRating());
 
         return "trips/trip-itinerary";
 
@@ -0,0 +1,50 @@
+package com.lucamoretti.adventure_together.dto.batch;
+
+import com.lucamoretti.adventure_together.model.batch.BatchCheckpoint;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/*
+ DTO con l'esito di un'esecuzione di un job a blocchi (BatchJobRunner).
+ resumed indica che l'esecuzione è ripartita dal checkpoint di una precedente interrotta;
+ skipped che non è stata eseguita (già completata per la data o già in corso).
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchRunDTO {
+
+    private String jobName;
+    private LocalDate runDate;
+    private BatchRunStatus status;
+    private long lastId;
+    private long processed;
+    private int chunks;
+    private int attempts;
+    private boolean resumed;
+    private boolean skipped;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String lastError;
+
+    public static BatchRunDTO fromEntity(BatchCheckpoint checkpoint) {
+        return BatchRunDTO.builder()
+                .jobName(checkpoint.getJobName())
+                .runDate(checkpoint.getRunDate())
+                .status(checkpoint.getStatus())
+                .lastId(checkpoint.getLastId())
+                .processed(checkpoint.getProcessed())
+                .chunks(checkpoint.getChunks())
+                .attempts(checkpoint.getAttempts())
+                .startedAt(checkpoint.getStartedAt())
+                .finishedAt(checkpoint.getFinishedAt())
+                .lastError(checkpoint.getLastError())
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.lucamoretti.adventure_together.dto.batch;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+ DTO con le statistiche di un job pianificato sulle esecuzioni concluse di un periodo (es. ultimi 30 giorni),
+ lette dallo storico con una query raggruppata (SchedulerRunRepository.findJobStats).
+ La durata media delle esecuzioni recenti (es. ultimi 7 giorni) confrontata con quella del periodo
+ e il tempo per elemento esaminato mostrano se il job rallenta al crescere dei dati.
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class SchedulerJobStatsDTO {
+
+    private String jobName;
+    private long runs;
+    private LocalDateTime lastStartedAt;
+
+    private double averageDurationMillis;
+    private long maxDurationMillis;
+    private Double recentAverageDurationMillis; // null se non ci sono esecuzioni recenti
+
+    private double averageItemsScanned;
+    private long transitionsApplied;
+    private long mailsQueued;
+    private long errors;
+    private long failedRuns;
+
+    // Costruttore usato dalla projection JPQL (i valori aggregati possono essere null)
+    public SchedulerJobStatsDTO(String jobName, Long runs, LocalDateTime lastStartedAt,
+                                Double averageDurationMillis, Long maxDurationMillis, Double recentAverageDurationMillis,
+                                Double averageItemsScanned, Long transitionsApplied, Long mailsQueued, Long errors,
+                                Long failedRuns) {
+        this.jobName = jobName;
+        this.runs = runs;
+        this.lastStartedAt = lastStartedAt;
+        this.averageDurationMillis = averageDurationMillis == null ? 0 : averageDurationMillis;
+        this.maxDurationMillis = maxDurationMillis == null ? 0 : maxDurationMillis;
+        this.recentAverageDurationMillis = recentAverageDurationMillis;
+        this.averageItemsScanned = averageItemsScanned == null ? 0 : averageItemsScanned;
+        this.transitionsApplied = transitionsApplied == null ? 0 : transitionsApplied;
+        this.mailsQueued = mailsQueued == null ? 0 : mailsQueued;
+        this.errors = errors == null ? 0 : errors;
+        this.failedRuns = failedRuns == null ? 0 : failedRuns;
+    }
+
+    // Tempo medio per elemento esaminato; null se il job non ha esaminato elementi
+    public Double getMillisPerItem() {
+        return averageItemsScanned > 0 ? averageDurationMillis / averageItemsScanned : null;
+    }
+
+    // Variazione percentuale della durata media recente rispetto a quella del periodo (positiva = più lento)
+    public Double getRecentDurationChangePercent() {
+        if (recentAverageDurationMillis == null || averageDurationMillis <= 0) {
+            return null;
+        }
+        return (recentAverageDurationMillis - averageDurationMillis) * 100 / averageDurationMillis;
+    }
+}
@@ -0,0 +1,51 @@
+package com.lucamoretti.adventure_together.dto.batch;
+
+import com.lucamoretti.adventure_together.model.batch.SchedulerRun;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/*
+ DTO di un'esecuzione di un job pianificato nello storico (SchedulerRun), mostrato nella pagina admin delle esecuzioni.
+*/
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchedulerRunDTO {
+
+    private Long id;
+    private String jobName;
+    private LocalDate runDate;
+    private String nodeId;
+    private SchedulerRunStatus status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMillis; // null se l'esecuzione è in corso
+    private long itemsScanned;
+    private long transitionsApplied;
+    private long mailsQueued;
+    private long errors;
+    private String lastError;
+
+    public static SchedulerRunDTO fromEntity(SchedulerRun run) {
+        return SchedulerRunDTO.builder()
+                .id(run.getId())
+                .jobName(run.getJobName())
+                .runDate(run.getRunDate())
+                .nodeId(run.getNodeId())
+                .status(run.getStatus())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .durationMillis(run.getDurationMillis())
+                .itemsScanned(run.getItemsScanned())
+                .transitionsApplied(run.getTransitionsApplied())
+                .mailsQueued(run.getMailsQueued())
+                .errors(run.getErrors())
+                .lastError(run.getLastError())
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import com.lucamoretti.adventure_together.model.mail.BroadcastStatus;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+ DTO con l'avanzamento di un annuncio inviato da un admin, mostrato nella pagina di invio.
+ total è il numero di destinatari stimato all'avvio (count), queued quelli già accodati;
+ l'invio SMTP dei messaggi accodati prosegue dalla coda email_outbox nei limiti delle quote.
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BroadcastProgressDTO {
+
+    private long id;
+    private BroadcastAudience audience;
+    private Long itineraryId;
+    private String subject;
+    private BroadcastStatus status;
+    private long total;
+    private long queued;
+    private int chunks;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt; // null finché l'invio è in corso
+    private String error;
+
+    public boolean isRunning() {
+        return status == BroadcastStatus.RUNNING;
+    }
+
+    // Percentuale dei destinatari accodati (i destinatari possono cambiare durante l'invio: massimo 100)
+    public int getPercent() {
+        if (total <= 0) {
+            return isRunning() ? 0 : 100;
+        }
+        return (int) Math.min(100, queued * 100 / total);
+    }
+}
@@ -0,0 +1,18 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import lombok.*;
+
+/*
+ DTO minimale di un destinatario di un annuncio: id (chiave del cursore keyset), email e nome.
+ Costruito direttamente dalla projection JPQL, senza caricare le entità Traveler nel contesto di persistenza.
+*/
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastRecipientDTO {
+
+    private Long id;
+    private String email;
+    private String firstName;
+}
@@ -0,0 +1,34 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+/*
+ DTO della form di invio di un annuncio da parte di un admin.
+ L'itinerario è obbligatorio solo per i destinatari ITINERARY_PARTICIPANTS (verificato da BroadcastService).
+ Il messaggio è testo semplice: nel template viene inserito con escape e con gli a capo preservati.
+*/
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BroadcastRequestDTO {
+
+    @NotNull(message = "Seleziona i destinatari")
+    @Builder.Default
+    private BroadcastAudience audience = BroadcastAudience.ALL_TRAVELERS;
+
+    private Long itineraryId;
+
+    @NotBlank(message = "L'oggetto è obbligatorio")
+    @Size(max = 150, message = "L'oggetto può contenere al massimo 150 caratteri")
+    private String subject;
+
+    @NotBlank(message = "Il messaggio è obbligatorio")
+    @Size(max = 5000, message = "Il messaggio può contenere al massimo 5000 caratteri")
+    private String message;
+}
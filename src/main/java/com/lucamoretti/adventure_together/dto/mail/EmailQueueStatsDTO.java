@@ -0,0 +1,35 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+ DTO con lo stato della coda email in uscita per una priorità.
+ Profondità della coda (messaggi PENDING e data del più vecchio) letta dal database con una query raggruppata;
+ tempi di attesa (dall'accodamento all'invio) dei messaggi inviati dall'avvio dell'applicazione, forniti dal dispatcher.
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailQueueStatsDTO {
+
+    private EmailPriority priority;
+    private long pending;
+    private LocalDateTime oldestPendingAt; // null se non ci sono messaggi in coda
+
+    private long sent;
+    private long averageWaitMillis;
+    private long maxWaitMillis;
+
+    // Costruttore usato dalla projection JPQL della profondità della coda (EmailOutboxRepository.countPendingByPriority)
+    public EmailQueueStatsDTO(EmailPriority priority, Long pending, LocalDateTime oldestPendingAt) {
+        this.priority = priority;
+        this.pending = pending;
+        this.oldestPendingAt = oldestPendingAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import lombok.*;
+
+import java.util.Map;
+
+/*
+ DTO con i tempi di rendering di un template email dall'avvio dell'applicazione.
+ Fornito da MailTemplateEngine: numero di rendering, tempo medio e massimo, percentili stimati
+ e istogramma dei tempi (conteggio per intervallo, es. "<=250us").
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MailTemplateStatsDTO {
+
+    private String templateName;
+    private long renders;
+    private long averageMicros;
+    private long maxMicros;
+    private long p50Micros;
+    private long p95Micros;
+    private long p99Micros;
+    private Map<String, Long> histogram;
+}
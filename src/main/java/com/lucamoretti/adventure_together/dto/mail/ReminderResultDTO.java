@@ -0,0 +1,20 @@
+package com.lucamoretti.adventure_together.dto.mail;
+
+import lombok.*;
+
+/*
+ DTO con l'esito dell'invio dei promemoria per un blocco di viaggi:
+ viaggi elaborati, email accodate e viaggi per cui l'invio è fallito (conteggiati nello storico dei job pianificati).
+*/
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReminderResultDTO {
+
+    private int trips;
+    private int queued;
+    private int failed;
+}
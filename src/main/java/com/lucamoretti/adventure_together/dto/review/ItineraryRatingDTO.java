@@ -0,0 +1,45 @@
+package com.lucamoretti.adventure_together.dto.review;
+
+import com.lucamoretti.adventure_together.model.review.ItineraryRating;
+import lombok.*;
+
+import java.util.List;
+
+/*
+ DTO con la valutazione aggregata di un itinerario: numero di recensioni, media e distribuzione delle stelle.
+ starCounts contiene il numero di recensioni per punteggio: indice 0 → 1 stella, ..., indice 4 → 5 stelle.
+*/
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class ItineraryRatingDTO {
+
+    private final long reviewCount;
+    private final Float average; // null se l'itinerario non ha recensioni
+    private final List<Long> starCounts;
+
+    public static ItineraryRatingDTO fromEntity(ItineraryRating entity) {
+        return ItineraryRatingDTO.builder()
+                .reviewCount(entity.getReviewCount())
+                .average(entity.getAverage())
+                .starCounts(List.of(entity.getStars1(), entity.getStars2(), entity.getStars3(),
+                        entity.getStars4(), entity.getStars5()))
+                .build();
+    }
+
+    // Valutazione di un itinerario senza recensioni
+    public static ItineraryRatingDTO empty() {
+        return new ItineraryRatingDTO(0, null, List.of(0L, 0L, 0L, 0L, 0L));
+    }
+
+    // Numero di recensioni con il punteggio indicato (1..5)
+    public long getCount(int stars) {
+        return starCounts.get(stars - 1);
+    }
+
+    // Percentuale (0..100) di recensioni con il punteggio indicato, usata per le barre della distribuzione
+    public int getPercentage(int stars) {
+        return reviewCount == 0 ? 0 : Math.round(100f * getCount(stars) / reviewCount);
+    }
+}
@@ -40,6 +40,14 @@ public class ReviewDTO {
     // Campi aggiuntivi utili per la UI
     private String tripTitle;
 
+    // Costruttore usato dalla projection JPQL delle recensioni ancora da lasciare
+    // (ReviewRepository.findPendingByTravelerId): testo e punteggio restano vuoti
+    public ReviewDTO(Long tripId, String tripTitle, Long travelerId) {
+        this.tripId = tripId;
+        this.tripTitle = tripTitle;
+        this.travelerId = travelerId;
+    }
+
     // Conversione Entity → DTO
     public static ReviewDTO fromEntity(Review entity) {
         return ReviewDTO.builder()
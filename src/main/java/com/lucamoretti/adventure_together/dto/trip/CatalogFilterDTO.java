@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+import java.util.List;
+
+/*
+ DTO con i filtri selezionati nella ricerca a faccette del catalogo viaggi
+ Tutti i filtri sono combinati in AND; anche più valori della stessa faccetta multipla
+ (categorie, nazioni, aree geografiche, aeroporti) devono essere tutti presenti nell'itinerario.
+ Prezzo, durata e mese di partenza accettano un solo valore (chiave della fascia, es. "1000-2000", o mese "2026-11")
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogFilterDTO {
+
+    private List<Long> categoryIds;
+    private List<Long> countryIds;
+    private List<Long> geoAreaIds;
+    private List<Long> departureAirportIds;
+
+    private String priceRange;
+    private String durationRange;
+    private String departureMonth;
+}
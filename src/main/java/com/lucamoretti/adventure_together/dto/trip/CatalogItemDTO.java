@@ -0,0 +1,26 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/*
+ DTO per un itinerario risultante dalla ricerca a faccette del catalogo viaggi
+ Riporta il numero di viaggi prenotabili che soddisfano i filtri, il prezzo minimo e la prima partenza fra questi
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogItemDTO {
+
+    private Long itineraryId;
+    private String title;
+    private String picturePath;
+    private int durationInDays;
+
+    private int matchingTrips;
+    private double minPrice;
+    private LocalDate nextDeparture;
+}
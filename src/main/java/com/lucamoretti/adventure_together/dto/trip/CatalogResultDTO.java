@@ -0,0 +1,22 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ DTO con il risultato della ricerca a faccette del catalogo viaggi
+ Contiene gli itinerari corrispondenti, il numero totale di viaggi e, per ogni faccetta, i valori con i conteggi aggiornati
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogResultDTO {
+
+    private List<CatalogItemDTO> items;
+    private int matchingTrips;
+    private Map<String, List<FacetValueDTO>> facets;
+}
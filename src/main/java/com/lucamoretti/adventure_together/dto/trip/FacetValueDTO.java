@@ -0,0 +1,21 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+/*
+ DTO per un valore di una faccetta del catalogo viaggi
+ value è il valore da inviare come filtro (id o chiave della fascia), count il numero di viaggi
+ che risulterebbero selezionando anche questo valore
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetValueDTO {
+
+    private String value;
+    private String label;
+    private int count;
+    private boolean selected;
+}
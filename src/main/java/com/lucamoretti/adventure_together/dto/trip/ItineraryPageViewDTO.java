@@ -0,0 +1,36 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import com.lucamoretti.adventure_together.dto.details.CountryDTO;
+import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
+import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
+import lombok.*;
+
+import java.util.List;
+
+/*
+ Read model della pagina di dettaglio di un itinerario (/trips/trip-itinerary/{id})
+ Raccoglie in un unico oggetto tutto ciò che la pagina mostra: itinerario, nazioni, aeroporti di partenza,
+ giorni, viaggi prenotabili, recensioni e valutazione aggregata (media e distribuzione delle stelle)
+ Viene assemblato una sola volta e tenuto in cache finché un viaggio, una prenotazione o una recensione
+ dell'itinerario non cambiano: le liste sono immutabili perché la stessa istanza è condivisa tra le richieste
+ */
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class ItineraryPageViewDTO {
+
+    private final TripItineraryDTO tripItinerary;
+    private final List<CountryDTO> countries;
+    private final List<DepartureAirportDTO> departureAirports;
+    private final List<TripItineraryDayDTO> itineraryDays;
+    private final List<TripDTO> trips;
+    private final List<ReviewDTO> reviews;
+    private final ItineraryRatingDTO rating;
+
+    // Media delle recensioni, null se l'itinerario non ha recensioni
+    public Float getAverageRating() {
+        return rating.getAverage();
+    }
+}
@@ -22,7 +22,7 @@ import java.util.Optional;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class TripDTO {
 
     private Long id;
@@ -53,6 +53,8 @@ public class TripDTO {
     private String tripItineraryPicturePath;
     private int maxParticipants;
     private int currentParticipantsCount;
+    // Posti trattenuti dai checkout in corso sul nodo (SeatHoldService), valorizzati dai controller a ogni richiesta
+    private int heldSeats;
 
 
     @AssertTrue(message = "La data di fine prenotazioni deve essere prima della data di partenza")
@@ -67,6 +69,24 @@ public class TripDTO {
     }
 
 
+    // Costruttore usato dalle projection JPQL dei repository (select new ... TripDTO(...))
+    // Valorizza solo le colonne mostrate nelle liste, senza materializzare l'entità Trip e le sue associazioni
+    // Lo stato arriva come classe (type(s) nella query) e viene convertito nel nome semplice come in fromEntity
+    public TripDTO(Long id, LocalDate dateStartBookings, LocalDate dateEndBookings, LocalDate dateDeparture,
+                   LocalDate dateReturn, double tripIndividualCost, Class<?> stateClass, String templateMailPath,
+                   Long tripItineraryId, Long plannerId, String tripItineraryTitle, String tripItineraryPicturePath,
+                   int maxParticipants, int currentParticipantsCount) {
+        this(id, dateStartBookings, dateEndBookings, dateDeparture, dateReturn, tripIndividualCost,
+                stateClass != null ? stateClass.getSimpleName() : null, templateMailPath,
+                tripItineraryId, plannerId, tripItineraryTitle, tripItineraryPicturePath,
+                maxParticipants, currentParticipantsCount, 0);
+    }
+
+    // Posti mostrati come disponibili: capienza meno posti prenotati e posti trattenuti
+    public int getAvailableSeats() {
+        return Math.max(0, maxParticipants - currentParticipantsCount - heldSeats);
+    }
+
     public static TripDTO fromEntity(Trip entity) {
         return TripDTO.builder()
                 .id(entity.getId())
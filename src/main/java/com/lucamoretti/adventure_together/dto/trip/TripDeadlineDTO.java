@@ -0,0 +1,19 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/*
+ DTO minimale della scadenza di un viaggio: id (chiave del cursore keyset) e data di fine prenotazioni.
+ Costruito direttamente dalla projection JPQL al caricamento delle scadenze all'avvio, senza caricare le entità Trip.
+*/
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripDeadlineDTO {
+
+    private Long tripId;
+    private LocalDate dateEndBookings;
+}
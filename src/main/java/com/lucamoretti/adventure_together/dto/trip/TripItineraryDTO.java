@@ -62,6 +62,21 @@ public class TripItineraryDTO {
     // Ha senso mappare tutto il dto dato che contiene più campi e ha senso esporli come DTO completo non solo l'ID
     private List<TripItineraryDayDTO> days;
 
+    // Costruttore usato dalle projection JPQL dei repository (select new ... TripItineraryDTO(...))
+    // Valorizza solo i campi scalari mostrati nelle liste: giorni, nazioni, categorie e aeroporti non vengono caricati
+    // e restano null (per il dettaglio completo usare fromEntity)
+    public TripItineraryDTO(Long id, String title, String description, String picturePath, int durationInDays,
+                            int minParticipants, int maxParticipants, Long plannerId) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.picturePath = picturePath;
+        this.durationInDays = durationInDays;
+        this.minParticipants = minParticipants;
+        this.maxParticipants = maxParticipants;
+        this.plannerId = plannerId;
+    }
+
     public static TripItineraryDTO fromEntity(TripItinerary entity) {
         return TripItineraryDTO.builder()
                 .id(entity.getId())
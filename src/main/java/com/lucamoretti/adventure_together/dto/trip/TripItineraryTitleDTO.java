@@ -0,0 +1,18 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import lombok.*;
+
+/*
+ DTO minimale di TripItinerary con solo id e titolo
+ Usato per popolare la barra di ricerca (datalist nella navbar) senza caricare l'itinerario completo
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TripItineraryTitleDTO {
+
+    private Long id;
+    private String title;
+}
@@ -0,0 +1,21 @@
+package com.lucamoretti.adventure_together.dto.trip;
+
+import com.lucamoretti.adventure_together.model.trip.state.TripStateTransition;
+import lombok.*;
+
+import java.util.List;
+
+/*
+ DTO con l'esito di una transizione di stato applicata in blocco (TripStateTransitionService):
+ gli id dei viaggi passati allo stato di arrivo, a cui è stata inviata la notifica del cambio di stato.
+*/
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TripStateTransitionDTO {
+
+    private TripStateTransition transition;
+    private List<Long> tripIds;
+}
@@ -22,6 +22,8 @@ public class TravelerDTO extends UserDTO {
     private LocalDate dateOfBirth;
     @Pattern(regexp = "^\\+?[0-9. ()-]{7,25}$", message = "Numero di telefono non valido") // Esempi di formati validi: +1234567890, (123) 456-7890 123-4567
     private String telephone;
+    // riepilogo giornaliero delle notifiche scelto dal traveler (modificabile solo dalla dashboard)
+    private boolean notificationDigest;
 
     // Costruttore con builder personalizzato per TravelerDTO
     // UserDTO ha già un builder, quindi qui ne definiamo uno specifico per TravelerDTO
@@ -37,7 +39,7 @@ public class TravelerDTO extends UserDTO {
 
     // Converte un'entità Traveler in un DTO TravelerDTO
     public static TravelerDTO fromEntity(Traveler traveler) {
-        return TravelerDTO.travelerBuilder()
+        TravelerDTO dto = TravelerDTO.travelerBuilder()
                 .id(traveler.getId())
                 .email(traveler.getEmail())
                 .firstName(traveler.getFirstName())
@@ -47,6 +49,8 @@ public class TravelerDTO extends UserDTO {
                 .dateOfBirth(traveler.getDateOfBirth())
                 .telephone(traveler.getTelephone())
                 .build();
+        dto.setNotificationDigest(traveler.isNotificationDigest());
+        return dto;
     }
     // Converte questo DTO TravelerDTO in un'entità Traveler
     // E' necessario per creare o aggiornare un Traveler nel database
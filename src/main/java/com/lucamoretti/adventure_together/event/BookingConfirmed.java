@@ -0,0 +1,10 @@
+package com.lucamoretti.adventure_together.event;
+
+/*
+ Evento di dominio: una prenotazione è stata pagata e salvata (BookingFinalizeService).
+ Il costo totale è quello calcolato con i decorator dell'assicurazione al momento della finalizzazione.
+ I listener lo ricevono solo dopo il commit: se la finalizzazione fallisce non parte nessuna conferma.
+ */
+
+public record BookingConfirmed(Long bookingId, double totalCost) {
+}
@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.event;
+
+/*
+ Evento di dominio: il Trip è passato a un nuovo stato (pattern State).
+ Viene registrato dal Trip durante la transizione (Trip.notifyAllListeners) e pubblicato da Spring Data
+ al salvataggio del Trip (tripRepository.save); i listener lo ricevono solo dopo il commit della transazione.
+ Contiene solo identificativi e valori semplici: i listener ricaricano le entità nella propria transazione.
+ */
+
+public record TripStateChanged(Long tripId, String state, String templateMailPath) {
+}
@@ -0,0 +1,56 @@
+package com.lucamoretti.adventure_together.event.listener;
+
+import com.lucamoretti.adventure_together.event.BookingConfirmed;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+
+/*
+ Listener delle prenotazioni confermate: invia al traveler l'email di conferma (mail/booking-confirmation).
+ Viene eseguito solo dopo il commit della finalizzazione, quindi la conferma parte solo per prenotazioni
+ effettivamente salvate, e fuori dalla transazione del webhook di Stripe.
+ La prenotazione viene ricaricata in una nuova transazione (viaggio, traveler e aeroporto sono letti dal template).
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookingConfirmationListener {
+
+    private final BookingRepository bookingRepository;
+    private final EmailService emailService;
+
+    @Value("${app.base-url}")
+    private String baseUrl;
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void onBookingConfirmed(BookingConfirmed event) {
+        Booking booking = bookingRepository.findById(event.bookingId()).orElse(null);
+        if (booking == null) {
+            log.warn("Prenotazione {} non trovata: email di conferma non inviata", event.bookingId());
+            return;
+        }
+        emailService.sendHtmlMessage(
+                booking.getTraveler().getEmail(),
+                "Prenotazione confermata",
+                "mail/booking-confirmation",
+                Map.of("totalCost", event.totalCost(), "booking", booking, "trip", booking.getTrip(),
+                        "traveler", booking.getTraveler(), "airport", booking.getDepartureAirport(),
+                        "homepage", baseUrl + "/home"),
+                EmailPriority.HIGH
+        );
+    }
+}
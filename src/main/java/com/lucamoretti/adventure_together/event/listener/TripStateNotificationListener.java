@@ -0,0 +1,76 @@
+package com.lucamoretti.adventure_together.event.listener;
+
+import com.lucamoretti.adventure_together.event.TripStateChanged;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ Listener dei cambi di stato del viaggio: notifica in blocco tutte le prenotazioni del Trip
+ con il template email del nuovo stato (es. mail/confirmed-open).
+ Viene eseguito dopo il commit della transazione che ha cambiato lo stato, sull'executor degli eventi di dominio:
+ la transazione dello scheduler (o dell'admin) non resta aperta durante il rendering e l'accodamento delle email.
+ Il viaggio e le prenotazioni vengono ricaricati in una nuova transazione; il template è renderizzato una sola volta
+ e per ogni prenotazione vengono inseriti solo i dati del traveler.
+ Gli stati del viaggio non si ripetono: il registro SentMail evita che la stessa notifica
+ venga accodata due volte a un traveler se l'evento viene consegnato di nuovo.
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TripStateNotificationListener {
+
+    private final TripRepository tripRepository;
+    private final BookingRepository bookingRepository;
+    private final EmailService emailService;
+
+    @Value("${app.base-url}")
+    private String baseUrl;
+
+    @Async("domainEventExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void onTripStateChanged(TripStateChanged event) {
+        // stato senza notifica (es. ToBeConfirmed)
+        if (event.templateMailPath() == null || event.templateMailPath().isBlank()) {
+            return;
+        }
+        Trip trip = tripRepository.findById(event.tripId()).orElse(null);
+        if (trip == null) {
+            log.warn("Viaggio {} non trovato: notifica del passaggio a {} non inviata", event.tripId(), event.state());
+            return;
+        }
+        List<Booking> bookings = bookingRepository.findWithTravelerByTripId(trip.getId());
+        if (bookings.isEmpty()) {
+            return;
+        }
+        List<MailRecipient> recipients = bookings.stream()
+                .map(b -> new MailRecipient(b.getTraveler().getEmail(), Map.of("traveler", b.getTraveler())))
+                .toList();
+        int queued = emailService.sendBulkHtmlMessageOnce(
+                "Aggiornamento sul tuo viaggio " + trip.getTripItinerary().getTitle(),
+                event.templateMailPath(),
+                Map.of("trip", trip, "homepage", baseUrl + "/home"),
+                trip.getId(),
+                recipients,
+                EmailPriority.NORMAL
+        );
+        log.debug("Viaggio {} passato a {}: {} notifiche accodate", trip.getId(), event.state(), queued);
+    }
+}
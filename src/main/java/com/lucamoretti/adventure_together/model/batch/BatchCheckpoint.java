@@ -0,0 +1,76 @@
+package com.lucamoretti.adventure_together.model.batch;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta il checkpoint di un'esecuzione di un job a blocchi (BatchJob), una riga per job e data.
+    lastId è l'ultimo id elaborato senza buchi: tutti i blocchi fino a lastId sono stati confermati (commit),
+    quelli successivi possono essere stati elaborati solo in parte. Dopo un arresto o un errore l'esecuzione
+    riparte da lastId; i job sono idempotenti, quindi rielaborare un blocco già confermato non ha effetti.
+*/
+
+@Entity
+@Table(name = "batch_checkpoints", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_batch_checkpoints_job_run_date", columnNames = {"job_name", "run_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 64)
+    private String jobName;
+
+    // parametro dell'esecuzione (es. data di partenza dei viaggi da ricordare)
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private BatchRunStatus status;
+
+    // ultimo id confermato senza buchi (0 = nessuno)
+    @Column(nullable = false)
+    private long lastId;
+
+    // elementi e blocchi confermati, comprese le esecuzioni precedenti interrotte
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private int chunks;
+
+    // numero di esecuzioni (più di una se il job è stato ripreso)
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    public static BatchCheckpoint start(String jobName, LocalDate runDate) {
+        LocalDateTime now = LocalDateTime.now();
+        return BatchCheckpoint.builder()
+                .jobName(jobName)
+                .runDate(runDate)
+                .status(BatchRunStatus.RUNNING)
+                .startedAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
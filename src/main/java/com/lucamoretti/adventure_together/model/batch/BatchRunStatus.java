@@ -0,0 +1,10 @@
+package com.lucamoretti.adventure_together.model.batch;
+
+// Stato di un'esecuzione di un job a blocchi (BatchCheckpoint)
+// RUNNING: in corso, oppure interrotta da un arresto dell'applicazione (viene ripresa dal checkpoint)
+// COMPLETED: tutti i blocchi elaborati; una nuova esecuzione per la stessa data non rielabora nulla
+// FAILED: un blocco è fallito; una nuova esecuzione riparte dal checkpoint
+
+public enum BatchRunStatus {
+    RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,78 @@
+package com.lucamoretti.adventure_together.model.batch;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta un'esecuzione di un job pianificato (storico delle esecuzioni), una riga per esecuzione e nodo.
+    La riga viene inserita all'avvio (RUNNING) e aggiornata alla fine con stato, durata e contatori:
+    elementi esaminati, transizioni di stato applicate, email accodate ed errori.
+    Serve a confrontare le esecuzioni nel tempo (es. durata che cresce con i dati), non al ripristino dei job
+    (per il quale c'è il checkpoint, BatchCheckpoint).
+*/
+
+@Entity
+@Table(name = "scheduler_runs", indexes = {
+        @Index(name = "idx_scheduler_runs_job_started", columnList = "job_name, started_at"),
+        @Index(name = "idx_scheduler_runs_started", columnList = "started_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchedulerRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_name", nullable = false, length = 64)
+    private String jobName;
+
+    // parametro dell'esecuzione (es. data di partenza dei viaggi da ricordare)
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    // nodo che ha eseguito il job (SchedulerLeaseService.getNodeId)
+    @Column(nullable = false, length = 100)
+    private String nodeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private SchedulerRunStatus status;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    // durata dell'esecuzione (tempo reale), valorizzata alla fine
+    private Long durationMillis;
+
+    @Column(nullable = false)
+    private long itemsScanned;
+
+    @Column(nullable = false)
+    private long transitionsApplied;
+
+    @Column(nullable = false)
+    private long mailsQueued;
+
+    @Column(nullable = false)
+    private long errors;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    public static SchedulerRun start(String jobName, LocalDate runDate, String nodeId) {
+        return SchedulerRun.builder()
+                .jobName(jobName)
+                .runDate(runDate)
+                .nodeId(nodeId)
+                .status(SchedulerRunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.model.batch;
+
+// Stato di un'esecuzione di un job pianificato nello storico (SchedulerRun)
+// RUNNING: in corso, oppure interrotta da un arresto del nodo
+// COMPLETED: eseguita fino in fondo (eventuali errori su singoli elementi sono contati in errors)
+// FAILED: interrotta da un errore (o una partizione del job a blocchi è fallita)
+// SKIPPED: non eseguita su questo nodo (lease detenuto da un altro nodo, o esecuzione già completata)
+
+public enum SchedulerRunStatus {
+    RUNNING, COMPLETED, FAILED, SKIPPED
+}
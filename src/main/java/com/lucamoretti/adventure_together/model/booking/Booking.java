@@ -5,12 +5,8 @@ import com.lucamoretti.adventure_together.model.participant.Participant;
 import com.lucamoretti.adventure_together.model.details.DepartureAirport;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.user.Traveler;
-import com.lucamoretti.adventure_together.service.mail.EmailService;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.cfg.Environment;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -26,9 +22,12 @@ import java.util.*;
  */
 
 @Data @NoArgsConstructor @AllArgsConstructor
-@Entity @Table(name = "bookings")
+@Entity @Table(name = "bookings", indexes = {
+        // indice per la paginazione keyset delle prenotazioni di un traveler ordinate per (bookingDate, id)
+        @Index(name = "idx_bookings_traveler_date_id", columnList = "traveler_id, booking_date, id")
+})
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-public class Booking implements IBooking, BookingListener {
+public class Booking implements IBooking {
 
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     @EqualsAndHashCode.Include
@@ -54,20 +53,6 @@ public class Booking implements IBooking, BookingListener {
     @JoinColumn(name = "traveler_id", nullable = false)
     private Traveler traveler;
 
-    // Transient perché non persistiamo il service nel DB
-    @Transient
-    private static EmailService emailService;
-
-    // Transient perché non persistiamo la proprietà nel DB
-    @Transient
-    @Value("${app.base-url}")
-    private String baseUrl;
-
-    // Metodo statico per iniettare l'EmailService
-    public static void setEmailService(EmailService service) {
-        emailService = service;
-    }
-
     //Associazione ManyToOne con DepartureAirport
     // Una prenotazione specifica un solo aeroporto di partenza, ma un aeroporto può essere usato in molte prenotazioni
     // Il proprietario della relazione è Booking che contiene la foreign key
@@ -118,27 +103,5 @@ public class Booking implements IBooking, BookingListener {
     public double getTotalCost() {
         return getTripCost() + getInsuranceCost();
     }
-    // Implementazione del metodo update dell'interfaccia BookingListener
-
-
-    /*
-     * Metodo invocato automaticamente quando il Trip cambia stato.
-     * Invia una notifica email al traveler usando il template associato al nuovo stato del viaggio.
-     */
-
-    @Override
-    public void update(String mailTemplatePath, String urlHomePage) {
-        if (emailService == null) {
-            System.err.println("[WARN] EmailService non configurato per Booking.update()");
-            return;
-        }
-        emailService.sendHtmlMessage(
-                traveler.getEmail(),
-                "Aggiornamento sul tuo viaggio " + trip.getTripItinerary().getTitle(),
-                mailTemplatePath,
-                Map.of("traveler", traveler, "trip", trip, "homepage", urlHomePage)
-        );
-    }
 
 }
-
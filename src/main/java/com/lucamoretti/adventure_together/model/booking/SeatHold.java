@@ -0,0 +1,46 @@
+package com.lucamoretti.adventure_together.model.booking;
+
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta una trattenuta temporanea di posti su un Trip durante il checkout Stripe.
+    Viene creata quando si genera il PaymentIntent e rimossa alla conferma o al fallimento del pagamento,
+    oppure automaticamente alla scadenza (TTL configurabile).
+    Il registro delle trattenute è mantenuto in memoria da SeatHoldService; questa tabella ne è la copia persistente
+    che permette di ricostruirlo dopo un riavvio dell'applicazione.
+*/
+
+@Entity
+@Table(name = "seat_holds")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SeatHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // chiave univoca della trattenuta, passata nei metadata del PaymentIntent
+    @Column(nullable = false, unique = true, length = 36)
+    private String holdKey;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "trip_id", nullable = false)
+    private Trip trip;
+
+    // numero di posti trattenuti (partecipanti della prenotazione in corso)
+    @Column(nullable = false)
+    private int seats;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public boolean isExpired() {
+        return LocalDateTime.now().isAfter(expiresAt);
+    }
+}
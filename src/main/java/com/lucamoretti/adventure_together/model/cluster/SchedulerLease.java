@@ -0,0 +1,37 @@
+package com.lucamoretti.adventure_together.model.cluster;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta il lease di un job pianificato, una riga per nome di job.
+    Un nodo esegue il job solo se ne detiene il lease: lo acquisisce con una UPDATE condizionale
+    (riuscita solo se il lease precedente è scaduto), lo rinnova finché il job è in esecuzione e lo rilascia alla fine.
+    Se il nodo si arresta durante il job il lease scade dopo la sua durata e un altro nodo può acquisirlo.
+    owner e acquiredAt indicano l'ultimo nodo che ha eseguito il job.
+*/
+
+@Entity
+@Table(name = "scheduler_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchedulerLease {
+
+    // nome del job (per i job partizionati include la partizione, es. trip-states#2/4)
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    // nodo che detiene (o ha detenuto per ultimo) il lease
+    @Column(length = 128)
+    private String owner;
+
+    // il lease è valido fino a questo istante; scaduto, può essere acquisito da qualunque nodo
+    @Column(nullable = false)
+    private LocalDateTime leaseUntil;
+
+    private LocalDateTime acquiredAt;
+}
@@ -0,0 +1,9 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+// Destinatari di un annuncio inviato da un admin (BroadcastService)
+// ALL_TRAVELERS: tutti i traveler con account attivo
+// ITINERARY_PARTICIPANTS: i traveler attivi con almeno una prenotazione su un viaggio dell'itinerario indicato
+
+public enum BroadcastAudience {
+    ALL_TRAVELERS, ITINERARY_PARTICIPANTS
+}
@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+// Stato di un annuncio inviato da un admin (BroadcastService)
+// RUNNING: i destinatari vengono letti e accodati a blocchi
+// COMPLETED: tutti i destinatari sono stati accodati (l'invio SMTP prosegue dalla coda email_outbox)
+// CANCELLED: interrotto dall'admin; i blocchi già accodati vengono comunque inviati
+// FAILED: interrotto da un errore
+
+public enum BroadcastStatus {
+    RUNNING, COMPLETED, CANCELLED, FAILED
+}
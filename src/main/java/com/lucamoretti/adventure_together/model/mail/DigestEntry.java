@@ -0,0 +1,59 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta una notifica in attesa del riepilogo (digest) di un traveler.
+    Le email non urgenti destinate a un traveler che ha scelto il riepilogo vengono salvate qui, già renderizzate,
+    al posto della coda email_outbox; NotificationDigestService le raccoglie per destinatario a fine finestra
+    e accoda un solo messaggio che le contiene tutte, poi le elimina.
+*/
+
+@Entity
+@Table(name = "email_digest_entries", indexes = {
+        // notifiche di un destinatario in ordine di arrivo
+        @Index(name = "idx_email_digest_recipient_id", columnList = "recipient, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DigestEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    private String templateName;
+
+    @Lob
+    @Column(nullable = false)
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private EmailPriority priority;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Notifica da mettere nel riepilogo al posto del messaggio della coda
+    public static DigestEntry of(EmailOutbox message) {
+        return DigestEntry.builder()
+                .recipient(message.getRecipient())
+                .subject(message.getSubject())
+                .templateName(message.getTemplateName())
+                .htmlBody(message.getHtmlBody())
+                .priority(message.getPriority())
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+}
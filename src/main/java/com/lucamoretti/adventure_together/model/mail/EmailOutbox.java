@@ -0,0 +1,122 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta un messaggio della coda email in uscita (transactional outbox).
+    Viene salvato da EmailService nella stessa transazione dell'operazione che genera l'email,
+    con il contenuto HTML già renderizzato: se la transazione fallisce il messaggio non esiste,
+    se va a buon fine il dispatcher lo invia dopo il commit senza tenere occupata la richiesta HTTP.
+    In caso di errore SMTP il messaggio viene ritentato con backoff esponenziale fino a maxAttempts,
+    dopodiché resta in stato DEAD con l'ultimo errore.
+    La priorità decide l'ordine di invio quando il dispatcher è limitato dalle quote del server SMTP.
+*/
+
+@Entity
+@Table(name = "email_outbox", indexes = {
+        // messaggi da inviare di una priorità, in ordine di scadenza
+        @Index(name = "idx_email_outbox_status_priority_next", columnList = "status, priority, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox {
+
+    // attesa massima fra due tentativi
+    public static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    // template Thymeleaf da cui è stato generato il contenuto (per diagnostica)
+    private String templateName;
+
+    @Lob
+    @Column(nullable = false)
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailOutboxStatus status;
+
+    // default per le righe accodate prima dell'introduzione delle priorità
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'NORMAL'")
+    @Column(nullable = false, length = 8)
+    private EmailPriority priority;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // istante in cui un worker ha preso in carico il messaggio (stato SENDING)
+    private LocalDateTime claimedAt;
+
+    private LocalDateTime sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Nuovo messaggio da inviare subito con priorità NORMAL
+    public static EmailOutbox pending(String recipient, String subject, String templateName, String htmlBody) {
+        return pending(recipient, subject, templateName, htmlBody, EmailPriority.NORMAL);
+    }
+
+    // Nuovo messaggio da inviare subito con la priorità indicata
+    public static EmailOutbox pending(String recipient, String subject, String templateName, String htmlBody,
+                                      EmailPriority priority) {
+        LocalDateTime now = LocalDateTime.now();
+        return EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .templateName(templateName)
+                .htmlBody(htmlBody)
+                .status(EmailOutboxStatus.PENDING)
+                .priority(priority)
+                .attempts(0)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+
+    public void markSent(LocalDateTime now) {
+        status = EmailOutboxStatus.SENT;
+        sentAt = now;
+        lastError = null;
+    }
+
+    // Registra un tentativo fallito: il messaggio torna PENDING con backoff esponenziale
+    // (baseBackoff, 2 * baseBackoff, 4 * baseBackoff, ... fino a MAX_BACKOFF) oppure passa a DEAD se i tentativi sono esauriti
+    public void markFailed(String error, LocalDateTime now, int maxAttempts, Duration baseBackoff) {
+        attempts++;
+        lastError = error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+        claimedAt = null;
+        if (attempts >= maxAttempts) {
+            status = EmailOutboxStatus.DEAD;
+            return;
+        }
+        Duration backoff = baseBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        status = EmailOutboxStatus.PENDING;
+        nextAttemptAt = now.plus(backoff);
+    }
+}
@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+// Stati di un messaggio della coda email in uscita (EmailOutbox)
+// PENDING: in attesa di invio (anche dopo un tentativo fallito, alla data nextAttemptAt)
+// SENDING: preso in carico da un worker del dispatcher
+// SENT: consegnato al server SMTP
+// DEAD: tentativi esauriti, non viene più ritentato (dead letter)
+
+public enum EmailOutboxStatus {
+    PENDING, SENDING, SENT, DEAD
+}
@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+// Priorità di un messaggio della coda email in uscita (EmailOutbox)
+// Quando gli invii sono limitati dalle quote del server SMTP i messaggi partono in ordine di priorità (ordine di dichiarazione)
+// HIGH: email transazionali attese dall'utente (reset password, conferma prenotazione); possono usare la quota giornaliera riservata
+// NORMAL: comunicazioni non urgenti (benvenuto, cambi di stato del viaggio)
+// LOW: promemoria pianificati inviati in blocco (partenza imminente, richiesta recensione)
+
+public enum EmailPriority {
+    HIGH, NORMAL, LOW
+}
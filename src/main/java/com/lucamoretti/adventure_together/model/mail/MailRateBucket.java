@@ -0,0 +1,32 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/*  Entity che rappresenta lo stato condiviso di una quota di invio SMTP (token bucket), una riga per quota (minute, day).
+    Tutti i nodi consumano i gettoni della stessa riga, letta con un lock di scrittura (SELECT ... FOR UPDATE):
+    la quota del server SMTP è rispettata dal cluster nel suo insieme e non moltiplicata per il numero di nodi.
+    I gettoni valgono all'istante refilledAtNanos; la ricarica fino all'istante corrente viene calcolata a ogni lettura.
+*/
+
+@Entity
+@Table(name = "mail_rate_buckets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MailRateBucket {
+
+    // nome della quota (minute, day)
+    @Id
+    @Column(length = 16)
+    private String name;
+
+    // gettoni disponibili all'istante refilledAtNanos (frazionari: la ricarica è continua)
+    @Column(nullable = false)
+    private double tokens;
+
+    // istante dell'ultimo aggiornamento, in nanosecondi dall'epoch (orologi dei nodi sincronizzati con NTP)
+    @Column(nullable = false)
+    private long refilledAtNanos;
+}
@@ -0,0 +1,51 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*  Entity che rappresenta una riga del registro delle email inviate (sent-mail ledger).
+    Registra che un template legato a un viaggio è già stato accodato per un destinatario:
+    la chiave (recipient, template_name, trip_id) è univoca, quindi promemoria e notifiche di cambio stato
+    vengono accodati al massimo una volta anche se lo scheduler viene rieseguito o ripreso dopo un errore.
+    Viene salvata nella stessa transazione del messaggio in EmailOutbox: o esistono entrambi o nessuno dei due.
+*/
+
+@Entity
+@Table(name = "sent_mail_ledger", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_sent_mail_ledger_template_trip_recipient",
+                columnNames = {"template_name", "trip_id", "recipient"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SentMail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "template_name", nullable = false)
+    private String templateName;
+
+    @Column(name = "trip_id", nullable = false)
+    private Long tripId;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    // istante di accodamento del messaggio in EmailOutbox
+    @Column(nullable = false)
+    private LocalDateTime sentAt;
+
+    public static SentMail of(String templateName, Long tripId, String recipient) {
+        return SentMail.builder()
+                .templateName(templateName)
+                .tripId(tripId)
+                .recipient(recipient)
+                .sentAt(LocalDateTime.now())
+                .build();
+    }
+}
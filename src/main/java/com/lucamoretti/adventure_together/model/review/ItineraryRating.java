@@ -0,0 +1,64 @@
+package com.lucamoretti.adventure_together.model.review;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/*
+ Aggregato delle valutazioni di un itinerario.
+ Una riga per itinerario con numero di recensioni, somma dei punteggi e istogramma dei voti da 1 a 5:
+ la media e la distribuzione delle stelle si leggono senza caricare le singole recensioni.
+ La riga viene aggiornata nella stessa transazione di ReviewServiceImpl.createReview
+ e ricostruita all'avvio a partire dalle recensioni salvate (RatingAggregateInitializer).
+ La chiave primaria coincide con l'id dell'itinerario.
+*/
+
+@Data @NoArgsConstructor @AllArgsConstructor
+@Entity
+@Table(name = "itinerary_ratings")
+public class ItineraryRating {
+
+    @Id
+    @Column(name = "trip_itinerary_id")
+    private Long tripItineraryId;
+
+    @Column(nullable = false)
+    private long reviewCount;
+
+    @Column(nullable = false)
+    private long scoreSum;
+
+    // Istogramma: numero di recensioni per ciascun punteggio
+    @Column(nullable = false)
+    private long stars1;
+    @Column(nullable = false)
+    private long stars2;
+    @Column(nullable = false)
+    private long stars3;
+    @Column(nullable = false)
+    private long stars4;
+    @Column(nullable = false)
+    private long stars5;
+
+    public ItineraryRating(Long tripItineraryId) {
+        this.tripItineraryId = tripItineraryId;
+    }
+
+    // Aggiunge un punteggio all'aggregato (usato quando la riga dell'itinerario non esiste ancora)
+    public void addScore(int score) {
+        switch (score) {
+            case 1 -> stars1++;
+            case 2 -> stars2++;
+            case 3 -> stars3++;
+            case 4 -> stars4++;
+            case 5 -> stars5++;
+            default -> throw new IllegalArgumentException("Punteggio non valido: " + score);
+        }
+        reviewCount++;
+        scoreSum += score;
+    }
+
+    // Media dei punteggi, null se non ci sono recensioni
+    public Float getAverage() {
+        return reviewCount == 0 ? null : (float) scoreSum / reviewCount;
+    }
+}
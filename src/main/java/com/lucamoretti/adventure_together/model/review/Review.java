@@ -17,7 +17,9 @@ import lombok.*;
 @Table(
         name = "reviews",
         uniqueConstraints = {
-                @UniqueConstraint(columnNames = {"trip_id", "traveler_id"})  // Un viaggiatore può lasciare una sola recensione per ogni viaggio
+                // Un viaggiatore può lasciare una sola recensione per ogni viaggio
+                // L'indice composito (trip_id, traveler_id) del vincolo serve anche l'anti-join delle recensioni da lasciare
+                @UniqueConstraint(columnNames = {"trip_id", "traveler_id"})
         }
 )
 public class Review {
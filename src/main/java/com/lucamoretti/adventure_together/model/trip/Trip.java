@@ -1,5 +1,6 @@
 package com.lucamoretti.adventure_together.model.trip;
 
+import com.lucamoretti.adventure_together.event.TripStateChanged;
 import com.lucamoretti.adventure_together.model.booking.Booking;
 import com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed;
 import com.lucamoretti.adventure_together.model.trip.state.TripState;
@@ -7,10 +8,14 @@ import com.lucamoretti.adventure_together.model.user.Planner;
 import com.lucamoretti.adventure_together.model.user.User;
 import jakarta.persistence.*;
 import lombok.*;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AfterDomainEventPublication;
+import org.springframework.data.domain.DomainEvents;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /* Rappresenta un viaggio organizzato all'interno della piattaforma Adventure Together
@@ -27,7 +32,11 @@ import java.util.Set;
 */
 
 @Data @NoArgsConstructor @AllArgsConstructor
-@Entity @Table(name = "trips")
+@Entity @Table(name = "trips", indexes = {
+        // indici per la paginazione keyset delle liste ordinate per (dateDeparture, id)
+        @Index(name = "idx_trips_departure_id", columnList = "date_departure, id"),
+        @Index(name = "idx_trips_planner_departure_id", columnList = "planner_id, date_departure, id")
+})
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Trip {
 
@@ -79,10 +88,18 @@ public class Trip {
     // non è il template per mandare la mail di conferma prenotazione ma per notificare i cambi di stato del Trip
     private String templateMailPath;
 
-    // Transient perché non persistiamo la proprietà nel DB
+    // Numero di posti già prenotati (somma dei partecipanti di tutte le Booking confermate)
+    // Contatore mantenuto per evitare di caricare tutte le Booking e i relativi partecipanti ad ogni controllo di capienza
+    // Non è aggiornabile tramite dirty checking: viene incrementato in modo atomico con una UPDATE condizionale
+    // (TripRepository.incrementSeatsBooked) così che prenotazioni concorrenti non si sovrascrivano a vicenda
+    @Column(name = "seats_booked", nullable = false, updatable = false)
+    private int seatsBooked = 0;
+
+    // Eventi di dominio registrati dalle transizioni di stato e non ancora pubblicati
+    // Spring Data li pubblica al salvataggio del Trip (tripRepository.save) e poi li svuota
     @Transient
-    @Value("${app.base-url}")
-    private String baseUrl;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) @ToString.Exclude
+    private final transient List<TripStateChanged> domainEvents = new ArrayList<>();
 
     //Relazione con Booking
     // Un Trip può avere molteplici Booking associati
@@ -90,12 +107,22 @@ public class Trip {
     @OneToMany(mappedBy = "trip", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Booking> bookings = new LinkedHashSet<>();
 
-    // Notifica tutti i listener (Booking) associati a questo Trip
-    // Viene chiamato ad ogni cambio di stato per notificare le prenotazioni
+    // Notifica i listener del cambio di stato (es. TripStateNotificationListener, che avvisa le prenotazioni)
+    // Viene chiamato ad ogni cambio di stato: registra l'evento TripStateChanged, pubblicato al salvataggio del Trip
+    // e consegnato ai listener solo dopo il commit, fuori dalla transazione che ha cambiato lo stato
     public void notifyAllListeners(String mailTemplatePath) {
-        for (Booking booking : bookings) {
-            booking.update(mailTemplatePath, baseUrl+"/home");
-        }
+        String stateName = state != null ? state.getClass().getSimpleName() : null;
+        domainEvents.add(new TripStateChanged(id, stateName, mailTemplatePath));
+    }
+
+    @DomainEvents
+    public Collection<TripStateChanged> domainEvents() {
+        return List.copyOf(domainEvents);
+    }
+
+    @AfterDomainEventPublication
+    public void clearDomainEvents() {
+        domainEvents.clear();
     }
 
     // Metodo per settare inizialmente lo stato del Trip
@@ -120,19 +147,9 @@ public class Trip {
 
 
     // Ritorna il numero totale dei partecipanti attualmente prenotati per il viaggio
-    // Somma i partecipanti di tutte le Booking associate al Trip
+    // Legge il contatore seatsBooked, costo O(1) indipendentemente dal numero di Booking
     public int getCurrentParticipantsCount() {
-        if (bookings == null || bookings.isEmpty()) return 0;
-        int total = 0;
-        for (Booking booking : bookings) {
-            if (booking == null) continue;
-            try {
-                total += booking.getNumParticipants();
-            } catch (Exception ignored) {
-                // ignoro booking malformate
-            }
-        }
-        return total;
+        return seatsBooked;
     }
     // Verifica se ci sono posti disponibili per un numero richiesto di partecipanti (usato in fase di prenotazione)
     public boolean hasAvailableSpots(int requestedParticipants) {
@@ -142,13 +159,25 @@ public class Trip {
     }
 
     // Metodi per gestire la relazione bidirezionale con Booking
+    // Mantengono allineato in memoria anche il contatore dei posti prenotati
     public void addBooking(Booking b) {
         bookings.add(b);
         b.setTrip(this);
+        seatsBooked += participantsOf(b);
     }
     public void removeBooking(Booking b) {
         bookings.remove(b);
         b.setTrip(null);
+        seatsBooked = Math.max(0, seatsBooked - participantsOf(b));
+    }
+
+    // Numero di partecipanti di una Booking, ignorando booking malformate
+    private static int participantsOf(Booking b) {
+        try {
+            return b.getNumParticipants();
+        } catch (Exception ignored) {
+            return 0;
+        }
     }
 
 }
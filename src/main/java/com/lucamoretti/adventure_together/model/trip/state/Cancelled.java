@@ -12,7 +12,7 @@ import lombok.NoArgsConstructor;
 @Entity @DiscriminatorValue("CANCELLED")
 public class Cancelled extends TripState {
 
-    public Cancelled() { this.templateMailPath = "/mail/cancelled"; }
+    public Cancelled() { this.templateMailPath = "mail/cancelled"; }
 
     @Override
     public void handle(Trip trip) {
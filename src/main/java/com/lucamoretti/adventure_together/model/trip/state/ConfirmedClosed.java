@@ -12,7 +12,7 @@ import lombok.NoArgsConstructor;
 @Entity @DiscriminatorValue("CONFIRMED_CLOSED")
 public class ConfirmedClosed extends TripState {
 
-    public ConfirmedClosed() { this.templateMailPath = "/mail/confirmed-closed"; }
+    public ConfirmedClosed() { this.templateMailPath = "mail/confirmed-closed"; }
 
     @Override
     public void handle(Trip trip) {
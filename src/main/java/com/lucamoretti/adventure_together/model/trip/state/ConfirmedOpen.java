@@ -15,7 +15,7 @@ import java.time.LocalDate;
 public class ConfirmedOpen extends TripState {
 
     public ConfirmedOpen() {
-        this.templateMailPath = "/mail/confirmed-open";
+        this.templateMailPath = "mail/confirmed-open";
     }
 
     @Override
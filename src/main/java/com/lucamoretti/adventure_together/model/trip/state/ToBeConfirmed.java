@@ -11,6 +11,7 @@ import static java.util.function.Predicate.isEqual;
 // Stato del viaggio To Be Confirmed
 // Se raggiunto il numero minimo di partecipanti, passa a ConfirmedOpen
 // Se raggiunta la capacità massima, passa a ConfirmedClosed
+// Se scaduta la data di chiusura iscrizioni con il numero minimo raggiunto (prenotazioni dell'ultimo giorno), passa a ConfirmedClosed
 // Se scaduta la data di chiusura iscrizioni, passa a ExpiredClosed (service schedulato)
 // Se cancellato, passa a Cancelled (facoltà solo dell'admin)
 
@@ -30,8 +31,9 @@ public class ToBeConfirmed extends TripState {
         LocalDate today = LocalDate.now();
 
         //logica per passare a ConfirmedOpen
+        // stesse regole dei predicati di TripStateTransition (aggiornamento notturno in blocco)
         if (participants >= trip.getTripItinerary().getMinParticipants() && participants < trip.getTripItinerary().getMaxParticipants() &&
-                (today.isBefore(trip.getDateEndBookings())) || today.isEqual(trip.getDateEndBookings())) {
+                !today.isAfter(trip.getDateEndBookings())) {
 
             TripState confirmed = new ConfirmedOpen();
             trip.setState(confirmed);
@@ -42,8 +44,8 @@ public class ToBeConfirmed extends TripState {
         }
 
         //logica per passare a ConfirmedClosed
-        if (participants == trip.getTripItinerary().getMaxParticipants() &&
-                (today.isBefore(trip.getDateEndBookings())) || today.isEqual(trip.getDateEndBookings())) {
+        if (participants >= trip.getTripItinerary().getMaxParticipants() &&
+                !today.isAfter(trip.getDateEndBookings())) {
             TripState closed = new ConfirmedClosed();
             trip.setState(closed);
             trip.setTemplateMailPath(closed.getTemplateMailPath());
@@ -52,6 +54,18 @@ public class ToBeConfirmed extends TripState {
             return;
         }
 
+        //logica per passare a ConfirmedClosed a iscrizioni chiuse: il minimo è stato raggiunto
+        // con le prenotazioni dell'ultimo giorno, dopo l'aggiornamento notturno di quel giorno
+        if (today.isAfter(trip.getDateEndBookings()) &&
+                participants >= trip.getTripItinerary().getMinParticipants()) {
+            TripState closed = new ConfirmedClosed();
+            trip.setState(closed);
+            trip.setTemplateMailPath(closed.getTemplateMailPath());
+            // notifica i partecipanti che il viaggio è confermato e le iscrizioni sono chiuse
+            trip.notifyAllListeners(closed.getTemplateMailPath());
+            return;
+        }
+
         //logica per passare a ExpiredClosed
         if (today.isAfter(trip.getDateEndBookings()) &&
                 participants < trip.getTripItinerary().getMinParticipants()) {
@@ -0,0 +1,87 @@
+package com.lucamoretti.adventure_together.model.trip.state;
+
+import jakarta.persistence.DiscriminatorValue;
+
+/*
+ Transizioni automatiche degli stati del viaggio espresse come predicati SQL su date e contatori,
+ per l'aggiornamento notturno in blocco (TripStateTransitionService) senza caricare i Trip.
+ Sono le stesse regole di handle() di ToBeConfirmed e ConfirmedOpen; i predicati usano l'alias t per la tabella trips,
+ il parametro :today e il contatore seats_booked, confrontato con i limiti dell'itinerario tramite sottoquery
+ (una lettura con lock non blocca le righe di trip_itineraries).
+ Le transizioni sono eseguite nell'ordine di dichiarazione: CONFIRMED_OPEN_TO_CLOSED per prima, così un viaggio
+ appena confermato non viene chiuso nella stessa esecuzione; le transizioni da ToBeConfirmed sono disgiunte.
+ */
+
+public enum TripStateTransition {
+
+    // capienza raggiunta o iscrizioni chiuse
+    CONFIRMED_OPEN_TO_CLOSED(ConfirmedOpen.class, ConfirmedClosed.class,
+            "(t.date_end_bookings < :today or t.seats_booked >= " + TripStateTransition.MAX_PARTICIPANTS + ")"),
+
+    // iscrizioni chiuse senza il numero minimo di partecipanti
+    TO_BE_CONFIRMED_TO_EXPIRED(ToBeConfirmed.class, ExpiredClosed.class,
+            "t.date_end_bookings < :today and t.seats_booked < " + TripStateTransition.MIN_PARTICIPANTS),
+
+    // iscrizioni chiuse con il numero minimo raggiunto dalle prenotazioni dell'ultimo giorno
+    TO_BE_CONFIRMED_ENDED_TO_CLOSED(ToBeConfirmed.class, ConfirmedClosed.class,
+            "t.date_end_bookings < :today and t.seats_booked >= " + TripStateTransition.MIN_PARTICIPANTS),
+
+    // capienza raggiunta con le iscrizioni ancora aperte
+    TO_BE_CONFIRMED_TO_CLOSED(ToBeConfirmed.class, ConfirmedClosed.class,
+            "t.date_end_bookings >= :today and t.seats_booked >= " + TripStateTransition.MAX_PARTICIPANTS),
+
+    // numero minimo raggiunto con le iscrizioni ancora aperte
+    TO_BE_CONFIRMED_TO_OPEN(ToBeConfirmed.class, ConfirmedOpen.class,
+            "t.date_end_bookings >= :today and t.seats_booked >= " + TripStateTransition.MIN_PARTICIPANTS
+                    + " and t.seats_booked < " + TripStateTransition.MAX_PARTICIPANTS);
+
+    private static final String MIN_PARTICIPANTS =
+            "(select i.min_participants from trip_itineraries i where i.id = t.trip_itinerary_id)";
+    private static final String MAX_PARTICIPANTS =
+            "(select i.max_participants from trip_itineraries i where i.id = t.trip_itinerary_id)";
+
+    private final Class<? extends TripState> from;
+    private final Class<? extends TripState> to;
+    private final String predicate;
+
+    TripStateTransition(Class<? extends TripState> from, Class<? extends TripState> to, String predicate) {
+        this.from = from;
+        this.to = to;
+        this.predicate = predicate;
+    }
+
+    public Class<? extends TripState> getFrom() {
+        return from;
+    }
+
+    public Class<? extends TripState> getTo() {
+        return to;
+    }
+
+    // Predicato sulla riga di trips (alias t), oltre allo stato di partenza
+    public String getPredicate() {
+        return predicate;
+    }
+
+    // Valori della colonna state_type di trip_states
+    public String getFromType() {
+        return discriminator(from);
+    }
+
+    public String getToType() {
+        return discriminator(to);
+    }
+
+    // Template email dello stato di arrivo, notificato ai partecipanti
+    public String getTemplateMailPath() {
+        try {
+            return to.getDeclaredConstructor().newInstance().getTemplateMailPath();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Stato non istanziabile: " + to.getSimpleName(), e);
+        }
+    }
+
+    private static String discriminator(Class<? extends TripState> state) {
+        return state.getAnnotation(DiscriminatorValue.class).value();
+    }
+}
@@ -2,6 +2,7 @@ package com.lucamoretti.adventure_together.model.user;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDate;
 
 // Sottoclasse Traveler che estende User
@@ -22,6 +23,11 @@ public class Traveler extends User {
     @Column(length = 32)
     private String telephone;
 
+    // riepilogo giornaliero delle notifiche (opt-in): le email non urgenti vengono raccolte e inviate in un unico messaggio
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean notificationDigest;
+
     public Traveler(String email, String password, String firstName, String lastName, boolean active,
                     LocalDate dateOfBirth, String telephone) {
         super(null, email, password, firstName, lastName, active, null);
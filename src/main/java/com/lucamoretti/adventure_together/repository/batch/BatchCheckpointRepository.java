@@ -0,0 +1,23 @@
+package com.lucamoretti.adventure_together.repository.batch;
+
+import com.lucamoretti.adventure_together.model.batch.BatchCheckpoint;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Repository per i checkpoint dei job a blocchi (BatchCheckpoint)
+
+@Repository
+public interface BatchCheckpointRepository extends JpaRepository<BatchCheckpoint, Long> {
+
+    Optional<BatchCheckpoint> findByJobNameAndRunDate(String jobName, LocalDate runDate);
+
+    // Esecuzioni non concluse aggiornate di recente, da riprendere all'avvio dell'applicazione
+    List<BatchCheckpoint> findByStatusInAndUpdatedAtAfterOrderByUpdatedAtAsc(Collection<BatchRunStatus> statuses, LocalDateTime after);
+}
@@ -0,0 +1,50 @@
+package com.lucamoretti.adventure_together.repository.batch;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRun;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Repository per lo storico delle esecuzioni dei job pianificati (SchedulerRun)
+
+@Repository
+public interface SchedulerRunRepository extends JpaRepository<SchedulerRun, Long> {
+
+    // Ultime esecuzioni, dalla più recente (indice su started_at)
+    List<SchedulerRun> findAllByOrderByStartedAtDesc(Limit limit);
+
+    // Ultime esecuzioni di un job (indice su job_name, started_at)
+    List<SchedulerRun> findByJobNameOrderByStartedAtDesc(String jobName, Limit limit);
+
+    // Statistiche per job delle esecuzioni concluse dopo "since", in una sola query raggruppata;
+    // la durata media delle esecuzioni dopo "recent" permette di confrontare l'andamento recente con il periodo
+    @Query("""
+            select new com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO(
+                r.jobName, count(r), max(r.startedAt),
+                avg(r.durationMillis), max(r.durationMillis),
+                avg(case when r.startedAt >= :recent then r.durationMillis end),
+                avg(r.itemsScanned), sum(r.transitionsApplied), sum(r.mailsQueued), sum(r.errors),
+                sum(case when r.status = com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus.FAILED then 1 else 0 end))
+            from SchedulerRun r
+            where r.startedAt >= :since and r.status in :statuses
+            group by r.jobName
+            order by r.jobName
+            """)
+    List<SchedulerJobStatsDTO> findJobStats(@Param("since") LocalDateTime since,
+                                            @Param("recent") LocalDateTime recent,
+                                            @Param("statuses") Collection<SchedulerRunStatus> statuses);
+
+    // Elimina le esecuzioni più vecchie del periodo di conservazione
+    @Modifying
+    @Query("delete from SchedulerRun r where r.startedAt < :before")
+    int deleteStartedBefore(@Param("before") LocalDateTime before);
+}
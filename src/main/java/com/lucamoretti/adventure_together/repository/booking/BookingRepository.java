@@ -1,9 +1,11 @@
 package com.lucamoretti.adventure_together.repository.booking;
 
 import com.lucamoretti.adventure_together.model.booking.Booking;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.util.List;
 
 /*
@@ -19,5 +21,26 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     List<Booking> findByTrip_Id(Long tripId);
 
+    // Prenotazioni di un viaggio con il traveler già caricato (una sola SELECT), in ordine di inserimento
+    // Usata dalle notifiche dei cambi di stato del viaggio, che leggono email e nome di ogni traveler
+    @Query("SELECT b FROM Booking b JOIN FETCH b.traveler WHERE b.trip.id = :tripId ORDER BY b.id")
+    List<Booking> findWithTravelerByTripId(Long tripId);
+
+    // ------ PAGINAZIONE KEYSET ------
+    // Prenotazioni di un traveler dalla più recente, con ordinamento stabile per (bookingDate, id) decrescenti
+
+    // Prima pagina
+    List<Booking> findByTraveler_IdOrderByBookingDateDescIdDesc(Long travelerId, Limit limit);
+
+    // Pagine successive: prenotazioni precedenti alla chiave (beforeDate, beforeId) dell'ultima prenotazione mostrata
+    @Query("""
+           SELECT b FROM Booking b
+           WHERE b.traveler.id = :travelerId
+           AND b.bookingDate <= :beforeDate
+           AND (b.bookingDate < :beforeDate OR b.id < :beforeId)
+           ORDER BY b.bookingDate DESC, b.id DESC
+           """)
+    List<Booking> findPageByTravelerIdBefore(Long travelerId, LocalDate beforeDate, Long beforeId, Limit limit);
+
 }
 
@@ -0,0 +1,29 @@
+package com.lucamoretti.adventure_together.repository.booking;
+
+import com.lucamoretti.adventure_together.model.booking.SeatHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Repository per la gestione delle trattenute temporanee di posti (SeatHold).
+// Fornisce metodi per ricaricare le trattenute ancora valide all'avvio e per eliminare quelle rilasciate o scadute.
+
+@Repository
+public interface SeatHoldRepository extends JpaRepository<SeatHold, Long> {
+
+    // Trattenute ancora valide, usate per ricostruire il registro in memoria dopo un riavvio
+    @Query("select h from SeatHold h where h.expiresAt > :now")
+    List<SeatHold> findActive(LocalDateTime now);
+
+    @Modifying
+    @Query("delete from SeatHold h where h.holdKey = :holdKey")
+    int deleteByHoldKey(String holdKey);
+
+    @Modifying
+    @Query("delete from SeatHold h where h.expiresAt <= :now")
+    int deleteExpired(LocalDateTime now);
+}
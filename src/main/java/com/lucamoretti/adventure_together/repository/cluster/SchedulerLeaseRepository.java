@@ -0,0 +1,51 @@
+package com.lucamoretti.adventure_together.repository.cluster;
+
+import com.lucamoretti.adventure_together.model.cluster.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/*
+ Repository per i lease dei job pianificati (SchedulerLease).
+ Acquisizione, rinnovo e rilascio sono UPDATE condizionali: il database serializza le UPDATE concorrenti sulla stessa riga,
+ quindi al più un nodo ottiene 1 riga aggiornata e detiene il lease.
+*/
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    // Crea la riga di un job, già scaduta; INSERT esplicita (non merge) così da non sovrascrivere mai un lease esistente
+    @Modifying
+    @Query(value = "insert into scheduler_leases (name, lease_until) values (:name, :leaseUntil)", nativeQuery = true)
+    int create(String name, LocalDateTime leaseUntil);
+
+    // Acquisisce il lease se è scaduto
+    @Modifying
+    @Query("""
+           update SchedulerLease l
+           set l.owner = :owner, l.leaseUntil = :until, l.acquiredAt = :now
+           where l.name = :name and l.leaseUntil < :now
+           """)
+    int acquire(String name, String owner, LocalDateTime now, LocalDateTime until);
+
+    // Prolunga il lease se è ancora del nodo indicato e non è scaduto
+    @Modifying
+    @Query("""
+           update SchedulerLease l
+           set l.leaseUntil = :until
+           where l.name = :name and l.owner = :owner and l.leaseUntil >= :now
+           """)
+    int renew(String name, String owner, LocalDateTime now, LocalDateTime until);
+
+    // Rilascia il lease facendolo scadere subito
+    @Modifying
+    @Query("""
+           update SchedulerLease l
+           set l.leaseUntil = :now
+           where l.name = :name and l.owner = :owner
+           """)
+    int release(String name, String owner, LocalDateTime now);
+}
@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.repository.mail;
+
+import com.lucamoretti.adventure_together.model.mail.DigestEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+// Repository per le notifiche in attesa del riepilogo (DigestEntry).
+// Il riepilogo procede a blocchi di destinatari in ordine alfabetico (keyset sul destinatario):
+// ogni blocco è una query per i destinatari e una per le loro notifiche.
+
+@Repository
+public interface DigestEntryRepository extends JpaRepository<DigestEntry, Long> {
+
+    // Destinatari con notifiche in attesa successivi a "after", in ordine
+    @Query("""
+           select distinct d.recipient from DigestEntry d
+           where d.recipient > :after
+           order by d.recipient asc
+           """)
+    List<String> findRecipientsAfter(String after, Limit limit);
+
+    List<DigestEntry> findByRecipientInOrderByRecipientAscIdAsc(Collection<String> recipients);
+}
@@ -0,0 +1,68 @@
+package com.lucamoretti.adventure_together.repository.mail;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Repository per la coda email in uscita (EmailOutbox).
+// Le UPDATE di presa in carico sono atomiche: un messaggio viene inviato da un solo worker
+// anche se più drenaggi della coda sono in corso contemporaneamente.
+// Le query di modifica sono transazionali perché il dispatcher le usa fuori da transazioni applicative.
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Id dei messaggi di una priorità da inviare (PENDING con tentativo già scaduto), dal più vecchio
+    @Query("""
+           select e.id from EmailOutbox e
+           where e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.PENDING
+             and e.priority = :priority
+             and e.nextAttemptAt <= :now
+           order by e.nextAttemptAt asc, e.id asc
+           """)
+    List<Long> findDueIds(LocalDateTime now, EmailPriority priority, Limit limit);
+
+    // Profondità della coda per priorità: messaggi PENDING (anche in backoff) e data di accodamento del più vecchio
+    @Query("""
+           select new com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO(e.priority, count(e), min(e.createdAt))
+           from EmailOutbox e
+           where e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.PENDING
+           group by e.priority
+           """)
+    List<EmailQueueStatsDTO> countPendingByPriority();
+
+    // Prende in carico un messaggio PENDING; ritorna 0 se un altro worker lo ha già preso
+    @Transactional
+    @Modifying
+    @Query("""
+           update EmailOutbox e
+           set e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.SENDING, e.claimedAt = :now
+           where e.id = :id
+             and e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.PENDING
+           """)
+    int claim(Long id, LocalDateTime now);
+
+    // Rimette in coda i messaggi rimasti in SENDING oltre il timeout (es. applicazione arrestata durante l'invio)
+    @Transactional
+    @Modifying
+    @Query("""
+           update EmailOutbox e
+           set e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.PENDING, e.claimedAt = null
+           where e.status = com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus.SENDING
+             and e.claimedAt < :claimedBefore
+           """)
+    int requeueStuck(LocalDateTime claimedBefore);
+
+    // Messaggi in uno stato (es. PENDING per la contropressione degli annunci, vedi BroadcastService)
+    long countByStatus(EmailOutboxStatus status);
+}
@@ -0,0 +1,32 @@
+package com.lucamoretti.adventure_together.repository.mail;
+
+import com.lucamoretti.adventure_together.model.mail.MailRateBucket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+// Repository per le quote di invio SMTP condivise fra i nodi (MailRateBucket).
+// Il consumo dei gettoni legge la riga con un lock di scrittura: i nodi che inviano nello stesso momento
+// vengono serializzati sulla riga della quota e non possono concedere due volte gli stessi gettoni.
+
+@Repository
+public interface MailRateBucketRepository extends JpaRepository<MailRateBucket, String> {
+
+    // Legge la quota bloccandola fino al termine della transazione (SELECT ... FOR UPDATE)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from MailRateBucket b where b.name = :name")
+    Optional<MailRateBucket> findByIdForUpdate(String name);
+
+    // Crea la riga della quota (piena) al primo utilizzo; INSERT IGNORE: se un altro nodo l'ha appena creata non ha effetto
+    @Modifying
+    @Query(value = """
+           insert ignore into mail_rate_buckets (name, tokens, refilled_at_nanos)
+           values (:name, :tokens, :refilledAtNanos)
+           """, nativeQuery = true)
+    int createIfMissing(String name, double tokens, long refilledAtNanos);
+}
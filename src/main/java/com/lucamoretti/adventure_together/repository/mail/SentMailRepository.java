@@ -0,0 +1,26 @@
+package com.lucamoretti.adventure_together.repository.mail;
+
+import com.lucamoretti.adventure_together.model.mail.SentMail;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+// Repository per il registro delle email inviate (SentMail).
+// La verifica dei destinatari già serviti è una sola query per template e viaggio,
+// servita dal vincolo univoco (template_name, trip_id, recipient), e non una query per destinatario.
+
+@Repository
+public interface SentMailRepository extends JpaRepository<SentMail, Long> {
+
+    // Fra i destinatari indicati, quelli che hanno già ricevuto il template per il viaggio
+    @Query("""
+           select s.recipient from SentMail s
+           where s.templateName = :templateName
+             and s.tripId = :tripId
+             and s.recipient in :recipients
+           """)
+    List<String> findRecipients(String templateName, Long tripId, Collection<String> recipients);
+}
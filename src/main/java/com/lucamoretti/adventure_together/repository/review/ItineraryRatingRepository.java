@@ -0,0 +1,76 @@
+package com.lucamoretti.adventure_together.repository.review;
+
+import com.lucamoretti.adventure_together.model.review.ItineraryRating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/*
+ Interfaccia repository per l'entità ItineraryRating (aggregato delle valutazioni per itinerario).
+ L'aggiornamento avviene con una UPDATE atomica, così due recensioni concorrenti sullo stesso itinerario
+ non si sovrascrivono a vicenda. Le righe mancanti vengono create con INSERT IGNORE: se due nodi creano
+ la stessa riga in contemporanea il secondo inserimento viene ignorato invece di violare la chiave primaria.
+*/
+
+@Repository
+public interface ItineraryRatingRepository extends JpaRepository<ItineraryRating, Long> {
+
+    // Aggiunge un punteggio all'aggregato dell'itinerario
+    // Ritorna il numero di righe aggiornate: 0 se l'aggregato dell'itinerario non esiste ancora
+    @Modifying
+    @Query("""
+           update ItineraryRating r set
+               r.reviewCount = r.reviewCount + 1,
+               r.scoreSum = r.scoreSum + :score,
+               r.stars1 = r.stars1 + (case when :score = 1 then 1 else 0 end),
+               r.stars2 = r.stars2 + (case when :score = 2 then 1 else 0 end),
+               r.stars3 = r.stars3 + (case when :score = 3 then 1 else 0 end),
+               r.stars4 = r.stars4 + (case when :score = 4 then 1 else 0 end),
+               r.stars5 = r.stars5 + (case when :score = 5 then 1 else 0 end)
+           where r.tripItineraryId = :tripItineraryId
+           """)
+    int addScore(Long tripItineraryId, int score);
+
+    // Crea la riga dell'aggregato se non esiste ancora (prima recensione dell'itinerario vista da questo nodo)
+    // calcolandola dalle recensioni già salvate dell'itinerario, compresa quella appena salvata: una riga vuota
+    // escluderebbe per sempre le recensioni arrivate prima del backfill all'avvio o scritte da un nodo non aggiornato
+    // INSERT IGNORE: se la riga è già stata creata da una transazione concorrente l'inserimento non ha effetto (ritorna 0)
+    @Modifying
+    @Query(value = """
+           insert ignore into itinerary_ratings
+               (trip_itinerary_id, review_count, score_sum, stars1, stars2, stars3, stars4, stars5)
+           select :tripItineraryId,
+               count(*),
+               coalesce(sum(r.score), 0),
+               coalesce(sum(case when r.score = 1 then 1 else 0 end), 0),
+               coalesce(sum(case when r.score = 2 then 1 else 0 end), 0),
+               coalesce(sum(case when r.score = 3 then 1 else 0 end), 0),
+               coalesce(sum(case when r.score = 4 then 1 else 0 end), 0),
+               coalesce(sum(case when r.score = 5 then 1 else 0 end), 0)
+           from reviews r join trips t on t.id = r.trip_id
+           where t.trip_itinerary_id = :tripItineraryId
+           """, nativeQuery = true)
+    int createFromReviews(Long tripItineraryId);
+
+    // Crea gli aggregati mancanti a partire dalle recensioni salvate (una riga per itinerario recensito)
+    // Le righe già presenti non vengono toccate: restano aggiornate dalle UPDATE atomiche di addScore
+    // Usata dal backfill all'avvio; ritorna il numero di righe create
+    @Modifying
+    @Query(value = """
+           insert ignore into itinerary_ratings
+               (trip_itinerary_id, review_count, score_sum, stars1, stars2, stars3, stars4, stars5)
+           select t.trip_itinerary_id,
+               count(*),
+               sum(r.score),
+               sum(case when r.score = 1 then 1 else 0 end),
+               sum(case when r.score = 2 then 1 else 0 end),
+               sum(case when r.score = 3 then 1 else 0 end),
+               sum(case when r.score = 4 then 1 else 0 end),
+               sum(case when r.score = 5 then 1 else 0 end)
+           from reviews r join trips t on t.id = r.trip_id
+           where not exists (select 1 from itinerary_ratings ir where ir.trip_itinerary_id = t.trip_itinerary_id)
+           group by t.trip_itinerary_id
+           """, nativeQuery = true)
+    int backfillMissing();
+}
@@ -1,11 +1,14 @@
 package com.lucamoretti.adventure_together.repository.review;
 
+import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
 import com.lucamoretti.adventure_together.model.review.Review;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /*
  Interfaccia repository per l'entità Review.
@@ -22,10 +25,42 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     List<Review> findByTrip_Id(Long tripId);
 
+    // Id dei traveler che hanno già recensito un viaggio (una query per viaggio, usata dai promemoria)
+    @Query("SELECT r.traveler.id FROM Review r WHERE r.trip.id = :tripId")
+    Set<Long> findTravelerIdsByTripId(Long tripId);
+
     // Trova tutte le recensioni associate a un itinerario di viaggio specifico facendo la join con Trip e TripItinerary
     @Query("SELECT r FROM Review r JOIN r.trip t WHERE t.tripItinerary.id = :tripItineraryId")
     List<Review> findAllByTripItinerary_Id(Long tripItineraryId);
 
+    // Come findAllByTripItinerary_Id, con Trip e TripItinerary in fetch join (usati da ReviewDTO.fromEntity)
+    // Usata dal read model della pagina di dettaglio dell'itinerario
+    @Query("""
+           SELECT r FROM Review r
+           JOIN FETCH r.trip t
+           JOIN FETCH t.tripItinerary i
+           WHERE i.id = :tripItineraryId
+           ORDER BY r.id ASC
+           """)
+    List<Review> findAllWithTripByTripItineraryId(Long tripItineraryId);
+
+    // Recensioni ancora da lasciare da un traveler: viaggi conclusi prima di oggi che ha prenotato e non ha recensito
+    // Un'unica query con anti-join (not exists) servita dagli indici bookings(traveler_id, ...) e reviews(trip_id, traveler_id)
+    @Query("""
+           select distinct new com.lucamoretti.adventure_together.dto.review.ReviewDTO(t.id, i.title, b.traveler.id)
+           from Booking b
+           join b.trip t
+           join t.tripItinerary i
+           where b.traveler.id = :travelerId
+             and t.dateReturn < :today
+             and not exists (
+                 select r.id from Review r
+                 where r.trip.id = t.id and r.traveler.id = :travelerId
+             )
+           order by t.id
+           """)
+    List<ReviewDTO> findPendingByTravelerId(Long travelerId, LocalDate today);
+
     // Trova una recensione in base all'id del viaggio e all'id del viaggiatore
     @Query
             ("SELECT r FROM Review r JOIN r.trip t JOIN r.traveler u WHERE r.trip.id = :tripId AND r.traveler.id = :travelerId")
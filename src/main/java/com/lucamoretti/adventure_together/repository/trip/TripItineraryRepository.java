@@ -1,6 +1,9 @@
 package com.lucamoretti.adventure_together.repository.trip;
 
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
 import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -16,6 +19,17 @@ import java.util.Optional;
 @Repository
 public interface TripItineraryRepository extends JpaRepository<TripItinerary, Long> {
 
+    // Projection JPQL comune alle query di lista: costruisce direttamente i TripItineraryDTO con una sola SELECT
+    // senza caricare giorni, nazioni, categorie e aeroporti dell'itinerario
+    // I filtri sulle collezioni usano exists al posto di join + distinct (la descrizione è un campo TEXT)
+    String ITINERARY_DTO_PROJECTION = """
+           select new com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO(
+                         i.id, i.title, i.description, i.picturePath, i.durationInDays,
+                         i.minParticipants, i.maxParticipants, i.planner.id
+                     )
+           from TripItinerary i
+           """;
+
     // Trova un itinerario di viaggio in base al titolo. NB: il titolo è unico.
     Optional<TripItinerary> findByTitle(String title);
 
@@ -56,6 +70,89 @@ public interface TripItineraryRepository extends JpaRepository<TripItinerary, Lo
     // Trova tutti gli itinerari di viaggio creati da uno specifico planner dato l'id del planner.
     List<TripItinerary> findByPlannerId(Long plannerId);
 
+    // ------ PROJECTION PER LE LISTE (TripItineraryDTO) ------
 
-}
+    // Itinerari che includono una specifica nazione
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where exists (select c.id from i.countries c where c.id = :countryId)
+           """)
+    List<TripItineraryDTO> findDtoByCountry(Long countryId);
+
+    // Itinerari che includono una nazione di una specifica area geografica
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where exists (select c.id from i.countries c where c.geoArea.id = :geoAreaId)
+           """)
+    List<TripItineraryDTO> findDtoByGeoArea(Long geoAreaId);
+
+    // Itinerari che appartengono a una specifica categoria
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where exists (select cat.id from i.categories cat where cat.id = :categoryId)
+           """)
+    List<TripItineraryDTO> findDtoByCategory(Long categoryId);
+
+    // ------ PAGINAZIONE KEYSET (TripItineraryDTO) ------
+    // Ordinamento stabile per id: ogni pagina parte dall'id dell'ultimo itinerario della precedente (0 per la prima)
+
+    // Pagina di tutti gli itinerari
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where i.id > :afterId
+           order by i.id asc
+           """)
+    List<TripItineraryDTO> findDtoPage(Long afterId, Limit limit);
+
+    // Pagina degli itinerari creati da uno specifico planner
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where i.planner.id = :plannerId
+           and i.id > :afterId
+           order by i.id asc
+           """)
+    List<TripItineraryDTO> findDtoPageByPlannerId(Long plannerId, Long afterId, Limit limit);
+
+    // Pagina degli itinerari che appartengono ad almeno una delle categorie indicate
+    @Query(ITINERARY_DTO_PROJECTION + """
+           where exists (select cat.id from i.categories cat where cat.id in :categoryIds)
+           and i.id > :afterId
+           order by i.id asc
+           """)
+    List<TripItineraryDTO> findDtoPageByCategories(List<Long> categoryIds, Long afterId, Limit limit);
+
+    // Coppie (id, titolo) di tutti gli itinerari ordinate per titolo, usate dall'indice dei titoli della barra di ricerca
+    @Query("""
+           select new com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO(i.id, i.title)
+           from TripItinerary i
+           order by i.title asc
+           """)
+    List<TripItineraryTitleDTO> findAllTitles();
+
+    // Tutti gli itinerari con nazioni e categorie già caricate, usati per costruire l'indice di ricerca in memoria
+    @Query("""
+           select distinct i from TripItinerary i
+           left join fetch i.countries
+           left join fetch i.categories
+           """)
+    List<TripItinerary> findAllForSearchIndex();
 
+    // Tutti gli itinerari con nazioni (e aree geografiche), categorie e aeroporti già caricati,
+    // usati per costruire l'indice a faccette del catalogo
+    @Query("""
+           select distinct i from TripItinerary i
+           left join fetch i.countries c
+           left join fetch c.geoArea
+           left join fetch i.categories
+           left join fetch i.departureAirports
+           """)
+    List<TripItinerary> findAllForCatalogIndex();
+
+    // Come findAllForCatalogIndex, per un singolo itinerario
+    // Usata anche per la pagina di dettaglio dell'itinerario, che mostra nazioni e aeroporti di partenza
+    @Query("""
+           select distinct i from TripItinerary i
+           left join fetch i.countries c
+           left join fetch c.geoArea
+           left join fetch i.categories
+           left join fetch i.departureAirports
+           where i.id = :id
+           """)
+    Optional<TripItinerary> findWithDetailsById(Long id);
+
+}
@@ -1,9 +1,13 @@
 package com.lucamoretti.adventure_together.repository.trip;
 
+import com.lucamoretti.adventure_together.dto.trip.TripDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripDeadlineDTO;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,6 +22,20 @@ import java.util.Optional;
 
 @Repository
 public interface TripRepository extends JpaRepository<Trip, Long> {
+
+    // Projection JPQL comune alle query di lista: costruisce direttamente i TripDTO con una sola SELECT
+    // (join con itinerario e stato), senza caricare Trip, Booking, Participant e Planner
+    String TRIP_DTO_PROJECTION = """
+           select new com.lucamoretti.adventure_together.dto.trip.TripDTO(
+                         t.id, t.dateStartBookings, t.dateEndBookings, t.dateDeparture, t.dateReturn,
+                         t.tripIndividualCost, type(s), t.templateMailPath, i.id, t.planner.id,
+                         i.title, i.picturePath, i.maxParticipants, t.seatsBooked
+                     )
+           from Trip t
+           join t.tripItinerary i
+           left join t.state s
+           """;
+
     // Trova tutti i viaggi associati a uno specifico itinerario di viaggio dato l'id dell'itinerario.
     List<Trip> findByTripItinerary_Id(Long itineraryId);
 
@@ -31,11 +49,47 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
     @Query(" select t from Trip t where t.planner.id = :plannerId and t.dateDeparture between :from and :to order by t.dateDeparture asc")
     List<Trip> findByPlannerIdAndDateDepartureBetween(Long plannerId, LocalDate from, LocalDate to);
 
-    // Trova tutti i viaggi con data di ritorno uguale a una data specificata.
-    List<Trip> findByDateReturnEquals(LocalDate date);
+    // ------ CURSORI DEI JOB A BLOCCHI (BatchJob) ------
+    // Solo gli id, a blocchi con un cursore keyset (id > afterId): i viaggi vengono caricati blocco per blocco
+
+    // Id dei viaggi con data di ritorno uguale a una data specificata.
+    @Query("select t.id from Trip t where t.dateReturn = :date and t.id > :afterId order by t.id")
+    List<Long> findIdsByDateReturnAfter(LocalDate date, Long afterId, Limit limit);
+
+    // Id dei viaggi con data di partenza uguale a una data specificata.
+    @Query("select t.id from Trip t where t.dateDeparture = :date and t.id > :afterId order by t.id")
+    List<Long> findIdsByDateDepartureAfter(LocalDate date, Long afterId, Limit limit);
 
-    // Trova tutti i viaggi con data di partenza uguale a una data specificata.
-    List<Trip> findByDateDepartureEquals(LocalDate date);
+    // Id dei viaggi ancora aperti per le prenotazioni (stati ToBeConfirmed e ConfirmedOpen)
+    @Query("""
+           select t.id from Trip t
+           where type(t.state) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.id > :afterId
+           order by t.id
+           """)
+    List<Long> findOpenForBookingIdsAfter(Long afterId, Limit limit);
+
+    // Trip con lock in scrittura sulla riga: serializza le transizioni dello stesso viaggio eseguite da nodi diversi
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Trip t where t.id = :id")
+    Optional<Trip> findByIdForUpdate(Long id);
+
+    // Scadenze di chiusura delle prenotazioni dei viaggi aperti con partenza da oggi in poi (TripDeadlineScheduler)
+    @Query("""
+           select new com.lucamoretti.adventure_together.dto.trip.TripDeadlineDTO(t.id, t.dateEndBookings)
+           from Trip t
+           where type(t.state) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.dateDeparture >= :today
+           and t.id > :afterId
+           order by t.id
+           """)
+    List<TripDeadlineDTO> findDeadlinesAfter(LocalDate today, Long afterId, Limit limit);
 
     // Trova tutti i viaggi con data di partenza compresa tra due date specificate non cancellati.
     @Query("""
@@ -114,5 +168,128 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
            """)
     List<Trip> findUpcomingBookableTrips(@Param("today") LocalDate today, @Param("todayPlus30") LocalDate todayPlus30);
 
-}
+    // Incrementa in modo atomico il contatore dei posti prenotati, solo se la capienza massima dell'itinerario non viene superata
+    // Ritorna il numero di righe aggiornate: 0 significa posti insufficienti (o Trip inesistente)
+    @Modifying
+    @Query("""
+           update Trip t set t.seatsBooked = t.seatsBooked + :seats
+           where t.id = :tripId
+           and t.seatsBooked + :seats <= (
+                         select i.maxParticipants from TripItinerary i where i.id = t.tripItinerary.id
+                     )
+           """)
+    int incrementSeatsBooked(@Param("tripId") Long tripId, @Param("seats") int seats);
+
+    // Valorizza il contatore dei posti prenotati dei Trip mai inizializzati (contatore a 0 ma con partecipanti salvati),
+    // a partire dai partecipanti effettivamente salvati; i contatori già valorizzati non vengono toccati,
+    // così che la UPDATE non possa sovrascrivere gli incrementi concorrenti di un altro nodo
+    @Modifying
+    @Query("""
+           update Trip t set t.seatsBooked = cast((
+                         select count(p) from Participant p where p.booking.trip.id = t.id
+                     ) as Integer)
+           where t.seatsBooked = 0
+           and exists (select p.id from Participant p where p.booking.trip.id = t.id)
+           """)
+    int backfillSeatsBooked();
 
+    // ------ PROJECTION PER LE LISTE (TripDTO) ------
+
+    // Tutti i viaggi
+    @Query(TRIP_DTO_PROJECTION)
+    List<TripDTO> findAllDto();
+
+    // Viaggi pianificati da uno specifico planner
+    @Query(TRIP_DTO_PROJECTION + "where t.planner.id = :plannerId")
+    List<TripDTO> findDtoByPlannerId(Long plannerId);
+
+    // Viaggi per un dato "State" specificato come parametro
+    @Query(TRIP_DTO_PROJECTION + """
+           where type(s) = :stateClass
+           order by t.dateDeparture asc
+           """)
+    List<TripDTO> findDtoByState(Class<?> stateClass);
+
+    // Viaggi ancora aperti per le prenotazioni (ToBeConfirmed e ConfirmedOpen) per uno specifico itinerario
+    @Query(TRIP_DTO_PROJECTION + """
+           where i.id = :itineraryId
+           and type(s) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           order by t.dateDeparture asc
+           """)
+    List<TripDTO> findDtoOpenForBookingByItinerary(Long itineraryId);
+
+    // Viaggi prenotabili (ToBeConfirmed e ConfirmedOpen) con partenza entro 30 giorni da oggi (homepage)
+    @Query(TRIP_DTO_PROJECTION + """
+           where type(s) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.dateDeparture between :today and :todayPlus30
+           order by t.dateDeparture asc
+           """)
+    List<TripDTO> findDtoUpcomingBookableTrips(@Param("today") LocalDate today, @Param("todayPlus30") LocalDate todayPlus30);
+
+    // ------ PAGINAZIONE KEYSET (TripDTO) ------
+    // Ordinamento stabile per (dateDeparture, id): ogni pagina parte dalla chiave dell'ultimo viaggio della precedente
+    // La condizione t.dateDeparture >= :afterDate è ridondante ma permette al database di leggere l'indice come intervallo
+    // Per la prima pagina afterDate coincide con la data di inizio del filtro e afterId vale 0
+
+    // Pagina di viaggi con data di partenza compresa tra due date specificate
+    @Query(TRIP_DTO_PROJECTION + """
+           where t.dateDeparture between :from and :to
+           and t.dateDeparture >= :afterDate
+           and (t.dateDeparture > :afterDate or t.id > :afterId)
+           order by t.dateDeparture asc, t.id asc
+           """)
+    List<TripDTO> findDtoPageByDateDepartureBetween(LocalDate from, LocalDate to,
+                                                    LocalDate afterDate, Long afterId, Limit limit);
+
+    // Pagina di viaggi di un planner con data di partenza compresa tra due date specificate
+    @Query(TRIP_DTO_PROJECTION + """
+           where t.planner.id = :plannerId
+           and t.dateDeparture between :from and :to
+           and t.dateDeparture >= :afterDate
+           and (t.dateDeparture > :afterDate or t.id > :afterId)
+           order by t.dateDeparture asc, t.id asc
+           """)
+    List<TripDTO> findDtoPageByPlannerIdAndDateDepartureBetween(Long plannerId, LocalDate from, LocalDate to,
+                                                                LocalDate afterDate, Long afterId, Limit limit);
+
+    // ------ PROJECTION PER L'INDICE DEL CATALOGO ------
+
+    // Viaggi prenotabili (ToBeConfirmed e ConfirmedOpen) con periodo di prenotazione non ancora concluso
+    @Query(TRIP_DTO_PROJECTION + """
+           where type(s) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.dateEndBookings >= :today
+           """)
+    List<TripDTO> findDtoBookable(LocalDate today);
+
+    // Come findDtoBookable, limitato ad un singolo viaggio (vuoto se il viaggio non è più prenotabile)
+    @Query(TRIP_DTO_PROJECTION + """
+           where t.id = :tripId
+           and type(s) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.dateEndBookings >= :today
+           """)
+    Optional<TripDTO> findDtoBookableById(Long tripId, LocalDate today);
+
+    // Come findDtoBookable, limitato ai viaggi di un itinerario
+    @Query(TRIP_DTO_PROJECTION + """
+           where i.id = :itineraryId
+           and type(s) in (
+                         com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed,
+                         com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen
+                     )
+           and t.dateEndBookings >= :today
+           """)
+    List<TripDTO> findDtoBookableByItinerary(Long itineraryId, LocalDate today);
+
+}
@@ -2,6 +2,7 @@ package com.lucamoretti.adventure_together.repository.user;
 
 import com.lucamoretti.adventure_together.model.user.Admin;
 import com.lucamoretti.adventure_together.model.user.Planner;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -14,5 +15,8 @@ import java.util.Optional;
 @Repository
 public interface AdminRepository extends JpaRepository<Admin, Long> {
     Optional<Admin> findByEmail(String email);
+
+    // Pagina di Admin ordinata per id, successiva all'id indicato (paginazione keyset)
+    List<Admin> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
 }
 
@@ -2,6 +2,7 @@ package com.lucamoretti.adventure_together.repository.user;
 
 import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.model.user.Planner;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -18,4 +19,8 @@ public interface PlannerRepository extends JpaRepository<Planner, Long> {
     // Recupera tutti i Planner escludendo gli Admin
     @Query("SELECT p FROM Planner p WHERE TYPE(p) <> Admin")
     List<Planner> findAllPlannersNoAdmin();
+
+    // Pagina di Planner (esclusi gli Admin) ordinata per id, successiva all'id indicato (paginazione keyset)
+    @Query("SELECT p FROM Planner p WHERE TYPE(p) <> Admin AND p.id > :afterId ORDER BY p.id ASC")
+    List<Planner> findPlannersNoAdminPage(Long afterId, Limit limit);
 }
@@ -1,9 +1,14 @@
 package com.lucamoretti.adventure_together.repository.user;
 
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO;
 import com.lucamoretti.adventure_together.model.user.Traveler;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 // Repository per l'entità Traveler
@@ -12,4 +17,41 @@ import java.util.Optional;
 public interface TravelerRepository extends JpaRepository<Traveler, Long> {
     Optional<Traveler> findByEmail(String email);
     Optional<Traveler> findById(Long id);
+
+    // Fra gli indirizzi indicati, quelli dei traveler che ricevono le notifiche nel riepilogo giornaliero
+    @Query("select t.email from Traveler t where t.notificationDigest = true and t.email in :emails")
+    List<String> findDigestSubscriberEmails(Collection<String> emails);
+
+    // ------ DESTINATARI DEGLI ANNUNCI (BroadcastService) ------
+    // Letti a blocchi con un cursore keyset sull'id (id > afterId): ogni blocco è una query indicizzata
+    // sulla chiave primaria e il numero totale di destinatari non influisce sulla memoria usata
+
+    // Traveler attivi
+    @Query("""
+           select new com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO(t.id, t.email, t.firstName)
+           from Traveler t
+           where t.active = true and t.id > :afterId
+           order by t.id
+           """)
+    List<BroadcastRecipientDTO> findBroadcastRecipientsAfter(Long afterId, Limit limit);
+
+    long countByActiveTrue();
+
+    // Traveler attivi con almeno una prenotazione su un viaggio dell'itinerario (una riga per traveler)
+    @Query("""
+           select distinct new com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO(t.id, t.email, t.firstName)
+           from Booking b
+           join b.traveler t
+           where b.trip.tripItinerary.id = :itineraryId and t.active = true and t.id > :afterId
+           order by t.id
+           """)
+    List<BroadcastRecipientDTO> findItineraryParticipantsAfter(Long itineraryId, Long afterId, Limit limit);
+
+    @Query("""
+           select count(distinct t.id)
+           from Booking b
+           join b.traveler t
+           where b.trip.tripItinerary.id = :itineraryId and t.active = true
+           """)
+    long countItineraryParticipants(Long itineraryId);
 }
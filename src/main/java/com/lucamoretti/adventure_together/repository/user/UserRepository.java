@@ -1,9 +1,11 @@
 package com.lucamoretti.adventure_together.repository.user;
 
 import com.lucamoretti.adventure_together.model.user.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 // Repository per l'entità User
@@ -12,4 +14,7 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // Pagina di User ordinata per id, successiva all'id indicato (paginazione keyset)
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
 }
@@ -0,0 +1,43 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+ Ripresa dei job a blocchi dopo un riavvio.
+ All'avvio dell'applicazione riprende dal checkpoint le esecuzioni rimaste RUNNING (applicazione arrestata durante il job)
+ o FAILED, aggiornate nelle ultime app.batch.resume-window-hours ore; la ripresa gira in background.
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BatchJobRecovery {
+
+    private final BatchJobRunner batchJobRunner;
+    private final List<BatchJob> jobs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread.ofVirtual().name("batch-recovery").start(this::resumeIncompleteJobs);
+    }
+
+    public void resumeIncompleteJobs() {
+        try {
+            List<BatchRunDTO> resumed = batchJobRunner.resumeIncomplete(jobs);
+            resumed.stream().filter(r -> !r.isSkipped()).forEach(r ->
+                    log.info("Job {} per il {} ripreso: {} ({} elementi elaborati)",
+                            r.getJobName(), r.getRunDate(), r.getStatus(), r.getProcessed()));
+        } catch (Exception e) {
+            log.error("Errore nella ripresa dei job a blocchi: {}", e.getMessage());
+        }
+    }
+}
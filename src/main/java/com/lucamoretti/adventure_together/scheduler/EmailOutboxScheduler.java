@@ -0,0 +1,64 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+ Pianificatore della coda email in uscita.
+ Gli invii partono normalmente subito dopo il commit della transazione che accoda il messaggio;
+ questo pianificatore invia i messaggi da ritentare (backoff scaduto), quelli rimasti in coda dopo un riavvio
+ e rimette in coda quelli rimasti in invio oltre il timeout.
+ Se ci sono messaggi in attesa registra nel log la profondità della coda e i tempi di attesa per priorità.
+ Periodicamente (di default ogni ora) registra anche i tempi di rendering dei template email usati.
+ Con più nodi la coda viene scorsa dal solo nodo che ottiene il lease del job (i messaggi sono comunque reclamati
+ uno ad uno con una UPDATE condizionale); le statistiche dei template sono del singolo nodo e vengono registrate da ognuno.
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxScheduler {
+
+    static final String JOB_NAME = "email-outbox";
+
+    private final EmailDispatcher emailDispatcher;
+    private final EmailService emailService;
+    private final SchedulerLeaseService leaseService;
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:30000}") // di default ogni 30 secondi
+    public void dispatchDueEmails() {
+        leaseService.runExclusively(JOB_NAME, this::dispatchAndLogQueue);
+    }
+
+    private void dispatchAndLogQueue() {
+        int dispatched = emailDispatcher.dispatchDue();
+        if (dispatched > 0) {
+            log.info("Coda email: {} messaggi inviati o ritentati", dispatched);
+        }
+        // profondità della coda e attese per priorità, solo se ci sono messaggi in attesa
+        List<EmailQueueStatsDTO> stats = emailDispatcher.getQueueStats();
+        if (stats.stream().anyMatch(s -> s.getPending() > 0)) {
+            stats.forEach(s -> log.info("Coda email {}: {} in attesa (dal {}), {} inviati, attesa media {} ms, massima {} ms",
+                    s.getPriority(), s.getPending(), s.getOldestPendingAt(), s.getSent(),
+                    s.getAverageWaitMillis(), s.getMaxWaitMillis()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.templates.stats-interval-ms:3600000}",
+            initialDelayString = "${app.mail.templates.stats-interval-ms:3600000}") // di default ogni ora
+    public void logTemplateStats() {
+        List<MailTemplateStatsDTO> stats = emailService.getTemplateStats();
+        stats.forEach(s -> log.info("Template email {}: {} rendering, medio {} us, p50 {} us, p95 {} us, p99 {} us, massimo {} us",
+                s.getTemplateName(), s.getRenders(), s.getAverageMicros(), s.getP50Micros(), s.getP95Micros(),
+                s.getP99Micros(), s.getMaxMicros()));
+    }
+}
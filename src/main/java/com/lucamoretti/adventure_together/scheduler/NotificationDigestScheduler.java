@@ -0,0 +1,34 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ Pianificatore del riepilogo giornaliero delle notifiche.
+ A fine finestra (di default ogni giorno alle 8:00, dopo i promemoria serali) accoda un messaggio per ogni traveler
+ che ha notifiche in attesa nel riepilogo. Viene utilizzato il NotificationDigestService.
+ Con più nodi il riepilogo viene inviato dal solo nodo che ottiene il lease del job.
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NotificationDigestScheduler {
+
+    static final String JOB_NAME = "notification-digest";
+
+    private final NotificationDigestService digestService;
+    private final SchedulerLeaseService leaseService;
+
+    @Scheduled(cron = "${app.mail.digest.cron:0 0 8 * * *}") // di default ogni giorno alle 8:00
+    public void flushDigests() {
+        log.info("Avvio schedulazione riepilogo notifiche...");
+        if (!leaseService.runExclusively(JOB_NAME, () -> { digestService.flush(); })) {
+            log.info("Riepilogo notifiche in esecuzione su un altro nodo");
+        }
+    }
+}
@@ -1,28 +1,67 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.dto.mail.ReminderResultDTO;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
 import com.lucamoretti.adventure_together.service.review.ReviewService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.util.List;
+
 /*
  Pianificatore per l'invio di email di promemoria per le recensioni.
  Ogni giorno alle 22:00 invia email agli utenti che devono lasciare recensioni sui viaggi completati.
  Viene utilizzato il ReviewService per gestire l'invio delle email.
  Estrae i Trip conclusi (3 giorni prima) e invia email di promemoria agli utenti partecipanti che non hanno ancora lasciato una recensione.
+ I viaggi sono elaborati a blocchi dal BatchJobRunner, con la data di ritorno come parametro dell'esecuzione,
+ su un solo nodo alla volta o suddivisi in partizioni fra i nodi (app.cluster.partitions).
+ Ogni esecuzione è registrata nello storico (SchedulerRunRecorder) con durata, viaggi esaminati, email accodate ed errori.
  */
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ReviewReminderScheduler {
+public class ReviewReminderScheduler implements BatchJob {
+
+    static final String JOB_NAME = "review-reminders";
 
     private final ReviewService reviewService;
+    private final TripRepository tripRepository;
+    private final BatchJobRunner batchJobRunner;
+    private final SchedulerRunRecorder runRecorder;
 
     @Scheduled(cron = "0 0 22 * * *") // ogni giorno alle 22:00
     public void sendReviewReminders() {
         log.info("Avvio schedulazione reminder recensioni...");
-        reviewService.sendReviewReminderEmails();
+        LocalDate runDate = LocalDate.now().minusDays(3);
+        runRecorder.record(JOB_NAME, runDate, counters -> counters.batchResults(batchJobRunner.runPartitioned(this, runDate)));
+    }
+
+    @Override
+    public String getName() {
+        return JOB_NAME;
+    }
+
+    // runDate è la data di ritorno dei viaggi conclusi
+    @Override
+    public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+        return tripRepository.findIdsByDateReturnAfter(runDate, afterId, limit);
+    }
+
+    @Override
+    public void process(LocalDate runDate, List<Long> ids) {
+        ReminderResultDTO result = reviewService.sendReviewReminderEmails(ids);
+        SchedulerRunCounters counters = runRecorder.counters(JOB_NAME);
+        counters.itemsScanned(ids.size());
+        counters.mailsQueued(result.getQueued());
+        counters.errors(result.getFailed(), "Promemoria non inviati per " + result.getFailed() + " viaggi");
     }
 }
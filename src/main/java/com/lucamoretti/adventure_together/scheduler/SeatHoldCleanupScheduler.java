@@ -0,0 +1,30 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ Pianificatore per la pulizia delle trattenute posti scadute.
+ Ogni 5 minuti rimuove dal registro in memoria e dalla tabella seat_holds le trattenute
+ dei checkout Stripe mai completati (ad es. pagina di pagamento abbandonata).
+ Viene eseguito su ogni nodo senza lease: il registro in memoria è del singolo nodo e la DELETE delle righe scadute è idempotente.
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeatHoldCleanupScheduler {
+
+    private final SeatHoldService seatHoldService;
+
+    @Scheduled(cron = "0 */5 * * * *") // ogni 5 minuti
+    public void purgeExpiredHolds() {
+        int removed = seatHoldService.purgeExpiredHolds();
+        if (removed > 0) {
+            log.info("Rimosse {} trattenute posti scadute", removed);
+        }
+    }
+}
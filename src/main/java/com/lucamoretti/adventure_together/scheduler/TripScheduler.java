@@ -1,46 +1,126 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.dto.trip.TripStateTransitionDTO;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.trip.state.TripState;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
-import jakarta.transaction.Transactional;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripStateTransitionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
 import java.util.List;
 
 /*
  Pianificatore per l'aggiornamento automatico dello stato dei viaggi.
  Ogni giorno alle 2:00 controlla i viaggi aperti per prenotazioni
  e aggiorna quelli scaduti o confermati.
+ Con app.trips.set-based-transitions = true (default) le transizioni sono applicate in blocco da TripStateTransitionService,
+ poche istruzioni SQL per tipo di transizione indipendentemente dal numero di viaggi.
+ Altrimenti i viaggi sono elaborati uno ad uno con Trip.handle(), a blocchi dal BatchJobRunner (una transazione per blocco,
+ con checkpoint): una esecuzione interrotta riprende dall'ultimo blocco confermato.
+ Con le scadenze attive (TripDeadlineScheduler) ogni viaggio cambia stato già allo scadere della sua data di fine prenotazioni:
+ questo job fa da riconciliazione e trova solo i viaggi persi.
+ Con più nodi le transizioni in blocco sono eseguite dal solo nodo che ottiene il lease del job;
+ l'elaborazione per viaggio può essere suddivisa in partizioni fra i nodi (app.cluster.partitions).
+ Ogni esecuzione è registrata nello storico (SchedulerRunRecorder) con durata, viaggi esaminati, transizioni ed errori;
+ le notifiche dei cambi di stato sono inviate dopo il commit dal listener degli eventi e non sono contate qui.
  */
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class TripScheduler {
+public class TripScheduler implements BatchJob {
+
+    static final String JOB_NAME = "trip-states";
 
     private final TripRepository tripRepository;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
+    private final BatchJobRunner batchJobRunner;
+    private final TripStateTransitionService transitionService;
+    private final SchedulerLeaseService leaseService;
+    private final SchedulerRunRecorder runRecorder;
+
+    // Transizioni in blocco (SQL) invece di Trip.handle() per ogni viaggio
+    @Value("${app.trips.set-based-transitions:true}")
+    private boolean setBasedTransitions;
 
     @Scheduled(cron = "0 0  2 * * *")
-    @Transactional
     public void updateTripStates() {
         log.info("Avvio schedulazione aggiornamento TripState...");
-        List<Trip> trips = tripRepository.findOpenForBooking();
+        LocalDate today = LocalDate.now();
+        runRecorder.record(JOB_NAME, today, counters -> {
+            if (!setBasedTransitions) {
+                counters.batchResults(batchJobRunner.runPartitioned(this, today));
+                return;
+            }
+            boolean executed = leaseService.runExclusively(JOB_NAME, () -> {
+                try {
+                    List<TripStateTransitionDTO> results = transitionService.applyTransitions(today);
+                    results.forEach(r -> {
+                        log.info("Transizione {}: {} viaggi", r.getTransition(), r.getTripIds().size());
+                        counters.itemsScanned(r.getTripIds().size());
+                        counters.transitionsApplied(r.getTripIds().size());
+                    });
+                } finally {
+                    afterRun(today);
+                }
+            });
+            if (!executed) {
+                log.info("Aggiornamento TripState in esecuzione su un altro nodo");
+                counters.skipped();
+            }
+        });
+    }
 
-        for (Trip trip : trips) {
+    @Override
+    public String getName() {
+        return JOB_NAME;
+    }
+
+    @Override
+    public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+        return tripRepository.findOpenForBookingIdsAfter(afterId, limit);
+    }
+
+    // Un blocco di viaggi: il salvataggio di un cambio di stato pubblica le notifiche dopo il commit del blocco
+    @Override
+    public void process(LocalDate runDate, List<Long> ids) {
+        SchedulerRunCounters counters = runRecorder.counters(JOB_NAME);
+        counters.itemsScanned(ids.size());
+        for (Trip trip : tripRepository.findAllById(ids)) {
             try {
                 TripState before = trip.getState();
                 trip.handle();
                 TripState after = trip.getState();
                 if (!after.getClass().equals(before.getClass())) {
                     tripRepository.save(trip);
+                    counters.transitionsApplied(1);
                 }
             } catch (Exception e) {
                 log.error("Errore aggiornando stato Trip {}: {}", trip.getId(), e.getMessage());
+                counters.error("Trip " + trip.getId() + ": " + e.getMessage());
             }
         }
     }
-}
 
+    @Override
+    public void afterRun(LocalDate runDate) {
+        // cambi di stato e periodi di prenotazione conclusi: il catalogo a faccette viene ricostruito (dopo il commit dei blocchi)
+        catalogIndex.rebuildAfterCommit();
+        // i viaggi prenotabili di più itinerari possono essere cambiati: le pagine di dettaglio vengono riassemblate
+        pageViewService.evictAllAfterCommit();
+    }
+}
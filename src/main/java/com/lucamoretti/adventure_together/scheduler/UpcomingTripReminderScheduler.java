@@ -1,13 +1,22 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
 import com.lucamoretti.adventure_together.service.mail.EmailService;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -16,38 +25,91 @@ import java.util.Map;
   Scheduler per inviare promemoria via email ai viaggiatori
   con viaggi in partenza tra 7 giorni.
   Lo scheduler viene eseguito ogni giorno alle 9:00.
+  I viaggi sono elaborati a blocchi dal BatchJobRunner, con la data di partenza come parametro dell'esecuzione,
+  su un solo nodo alla volta o suddivisi in partizioni fra i nodi (app.cluster.partitions).
+  Ogni esecuzione è registrata nello storico (SchedulerRunRecorder) con durata, viaggi esaminati, email accodate ed errori.
+  Ogni viaggio del blocco è elaborato in una transazione dedicata (REQUIRES_NEW): un errore su un viaggio
+  annulla solo i suoi promemoria, non la transazione del blocco.
  */
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public class UpcomingTripReminderScheduler {
+public class UpcomingTripReminderScheduler implements BatchJob {
+
+    static final String JOB_NAME = "upcoming-trip-reminders";
 
     private final TripRepository tripRepository;
     private final EmailService emailService;
+    private final BatchJobRunner batchJobRunner;
+    private final SchedulerRunRecorder runRecorder;
+    private final TransactionTemplate tripTransaction;
+
+    public UpcomingTripReminderScheduler(TripRepository tripRepository,
+                                         EmailService emailService,
+                                         BatchJobRunner batchJobRunner,
+                                         SchedulerRunRecorder runRecorder,
+                                         PlatformTransactionManager transactionManager) {
+        this.tripRepository = tripRepository;
+        this.emailService = emailService;
+        this.batchJobRunner = batchJobRunner;
+        this.runRecorder = runRecorder;
+        this.tripTransaction = new TransactionTemplate(transactionManager);
+        this.tripTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     @Scheduled(cron = "0 0 9 * * *") // ogni giorno alle 9:00
-    @Transactional
     public void sendUpcomingTripReminders() {
         log.info("Avvio schedulazione upcoming Trip...");
-        LocalDate targetDate = LocalDate.now().plusDays(7);
-        List<Trip> trips = tripRepository.findByDateDepartureEquals(targetDate);
-
-        for (Trip trip : trips) {
-            trip.getBookings().forEach(booking -> {
-                var traveler = booking.getTraveler();
-                try {
-                    emailService.sendHtmlMessage(
-                            traveler.getEmail(),
-                            "Il tuo viaggio è vicino!",
-                            "mail/upcoming-trip-reminder",
-                            Map.of("traveler", traveler, "trip", trip)
-                    );
-                } catch (Exception e) {
-                    log.error("Errore invio reminder partenza a {}: {}", traveler.getEmail(), e.getMessage());
-                }
-            });
+        LocalDate runDate = LocalDate.now().plusDays(7);
+        runRecorder.record(JOB_NAME, runDate, counters -> counters.batchResults(batchJobRunner.runPartitioned(this, runDate)));
+    }
+
+    @Override
+    public String getName() {
+        return JOB_NAME;
+    }
+
+    // runDate è la data di partenza dei viaggi da ricordare
+    @Override
+    public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+        return tripRepository.findIdsByDateDepartureAfter(runDate, afterId, limit);
+    }
+
+    @Override
+    public void process(LocalDate runDate, List<Long> ids) {
+        // Un invio in blocco per viaggio: il registro SentMail esclude chi ha già ricevuto il promemoria,
+        // così lo scheduler può essere rieseguito (es. dopo un errore) senza duplicati
+        SchedulerRunCounters counters = runRecorder.counters(JOB_NAME);
+        counters.itemsScanned(ids.size());
+        for (Long tripId : ids) {
+            try {
+                tripTransaction.executeWithoutResult(status -> sendReminder(tripId, counters));
+            } catch (Exception e) {
+                log.error("Errore invio reminder partenza per il viaggio {}: {}", tripId, e.getMessage());
+                counters.error("Trip " + tripId + ": " + e.getMessage());
+            }
         }
     }
-}
 
+    // Accoda il promemoria di partenza di un viaggio ai traveler che hanno prenotato
+    private void sendReminder(Long tripId, SchedulerRunCounters counters) {
+        Trip trip = tripRepository.findById(tripId).orElse(null);
+        if (trip == null) {
+            return;
+        }
+        List<MailRecipient> recipients = trip.getBookings().stream()
+                .map(Booking::getTraveler)
+                .map(traveler -> new MailRecipient(traveler.getEmail(), Map.of("traveler", traveler)))
+                .toList();
+        int queued = emailService.sendBulkHtmlMessageOnce(
+                "Il tuo viaggio è vicino!",
+                "mail/upcoming-trip-reminder",
+                Map.of("trip", trip),
+                trip.getId(),
+                recipients,
+                EmailPriority.LOW
+        );
+        counters.mailsQueued(queued);
+        log.debug("Reminder partenza viaggio {}: {} accodati su {} prenotazioni", trip.getId(), queued, recipients.size());
+    }
+}
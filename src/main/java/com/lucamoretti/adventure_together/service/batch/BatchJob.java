@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/*
+ Job a blocchi eseguito da BatchJobRunner (implementato dagli scheduler notturni).
+ readIds legge con un cursore keyset il blocco successivo di id (id > afterId, in ordine crescente):
+ una query breve che non carica entità. process elabora un blocco di id in una transazione dedicata,
+ eventualmente in parallelo con altri blocchi: deve essere idempotente (dopo un arresto i blocchi successivi
+ al checkpoint vengono rielaborati) e gestire gli errori dei singoli elementi senza far fallire il blocco.
+ afterRun viene chiamato a fine esecuzione, anche se un blocco è fallito.
+ */
+
+public interface BatchJob {
+
+    // Nome univoco del job, chiave del checkpoint
+    String getName();
+
+    List<Long> readIds(LocalDate runDate, Long afterId, Limit limit);
+
+    void process(LocalDate runDate, List<Long> ids);
+
+    default void afterRun(LocalDate runDate) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Servizio per l'esecuzione dei job a blocchi (BatchJob) con checkpoint e ripresa
+// run esegue (o riprende dal checkpoint) il job per la data indicata e ritorna l'esito
+// un'esecuzione avviene solo sul nodo che detiene il lease del job: sugli altri nodi ritorna un esito skipped
+// runPartitioned esegue il job suddiviso in app.cluster.partitions partizioni (PartitionedBatchJob), ognuna con il proprio lease,
+// così che più nodi si dividano il lavoro; con una sola partizione equivale a run
+// resumeIncomplete riprende le esecuzioni rimaste incomplete dei job indicati e delle loro partizioni (es. dopo un riavvio)
+// Implementato da BatchJobRunnerImpl
+
+public interface BatchJobRunner {
+    BatchRunDTO run(BatchJob job, LocalDate runDate);
+    List<BatchRunDTO> runPartitioned(BatchJob job, LocalDate runDate);
+    List<BatchRunDTO> resumeIncomplete(List<BatchJob> jobs);
+}
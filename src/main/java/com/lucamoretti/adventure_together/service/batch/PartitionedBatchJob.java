@@ -0,0 +1,105 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/*
+ Partizione di un job a blocchi: elabora solo gli id il cui hash cade nella partizione (partition su partitions).
+ Ha un nome proprio (es. trip-states#2/4), quindi checkpoint e lease distinti: partizioni diverse dello stesso job
+ possono essere elaborate in parallelo da nodi diversi e ognuna riprende dal proprio checkpoint.
+ readIds legge dal cursore del job e scarta gli id delle altre partizioni finché il blocco non è pieno
+ o il cursore non è esaurito (un blocco più corto del limite indica la fine, come per il job intero).
+ L'hash mescola l'id, così che le partizioni restino bilanciate anche con id consecutivi.
+ */
+
+public final class PartitionedBatchJob implements BatchJob {
+
+    private static final String SEPARATOR = "#";
+
+    private final BatchJob job;
+    private final int partition;
+    private final int partitions;
+
+    public PartitionedBatchJob(BatchJob job, int partition, int partitions) {
+        if (partitions < 1 || partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Partizione non valida: " + partition + "/" + partitions);
+        }
+        this.job = job;
+        this.partition = partition;
+        this.partitions = partitions;
+    }
+
+    // Partizione di un id
+    public static int partitionOf(Long id, int partitions) {
+        return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), partitions);
+    }
+
+    // Partizione corrispondente al nome di un checkpoint (es. trip-states#2/4), se il job è fra quelli indicati
+    public static Optional<PartitionedBatchJob> resolve(String name, Map<String, BatchJob> jobsByName) {
+        int separator = name.lastIndexOf(SEPARATOR);
+        int slash = name.lastIndexOf('/');
+        if (separator < 0 || slash < separator) {
+            return Optional.empty();
+        }
+        BatchJob job = jobsByName.get(name.substring(0, separator));
+        if (job == null) {
+            return Optional.empty();
+        }
+        try {
+            int partition = Integer.parseInt(name.substring(separator + 1, slash));
+            int partitions = Integer.parseInt(name.substring(slash + 1));
+            return Optional.of(new PartitionedBatchJob(job, partition, partitions));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public BatchJob getJob() {
+        return job;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    @Override
+    public String getName() {
+        return job.getName() + SEPARATOR + partition + "/" + partitions;
+    }
+
+    @Override
+    public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+        int size = limit.max();
+        List<Long> ids = new ArrayList<>(size);
+        Long cursor = afterId;
+        while (ids.size() < size) {
+            List<Long> read = job.readIds(runDate, cursor, Limit.of(size));
+            for (Long id : read) {
+                if (partitionOf(id, partitions) == partition && ids.size() < size) {
+                    ids.add(id);
+                }
+            }
+            if (read.size() < size) {
+                break;
+            }
+            cursor = read.get(read.size() - 1);
+        }
+        return ids;
+    }
+
+    @Override
+    public void process(LocalDate runDate, List<Long> ids) {
+        job.process(runDate, ids);
+    }
+
+    // Gli effetti di fine esecuzione (es. ricostruzione delle cache in memoria del nodo) valgono per ogni partizione
+    @Override
+    public void afterRun(LocalDate runDate) {
+        job.afterRun(runDate);
+    }
+}
@@ -0,0 +1,119 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Contatori di un'esecuzione di un job pianificato: elementi esaminati, transizioni di stato applicate, email accodate ed errori.
+ Ogni incremento aggiorna subito i contatori Micrometer del job e si accumula per la riga dello storico (SchedulerRun),
+ scritta a fine esecuzione. Thread-safe: i blocchi di un job a blocchi li incrementano da più worker insieme.
+ I contatori senza esecuzione registrata (es. un job ripreso all'avvio da BatchJobRecovery) aggiornano solo le metriche.
+ */
+
+public final class SchedulerRunCounters {
+
+    private final Counter scannedMeter;
+    private final Counter transitionsMeter;
+    private final Counter mailsMeter;
+    private final Counter errorsMeter;
+
+    private final LongAdder itemsScanned = new LongAdder();
+    private final LongAdder transitionsApplied = new LongAdder();
+    private final LongAdder mailsQueued = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private volatile boolean skipped;
+    private volatile String failure;
+    private volatile String lastError;
+
+    public SchedulerRunCounters(Counter scannedMeter, Counter transitionsMeter, Counter mailsMeter, Counter errorsMeter) {
+        this.scannedMeter = scannedMeter;
+        this.transitionsMeter = transitionsMeter;
+        this.mailsMeter = mailsMeter;
+        this.errorsMeter = errorsMeter;
+    }
+
+    public void itemsScanned(long count) {
+        add(itemsScanned, scannedMeter, count);
+    }
+
+    public void transitionsApplied(long count) {
+        add(transitionsApplied, transitionsMeter, count);
+    }
+
+    public void mailsQueued(long count) {
+        add(mailsQueued, mailsMeter, count);
+    }
+
+    // Errore su un elemento: l'esecuzione prosegue
+    public void error(String message) {
+        errors(1, message);
+    }
+
+    public void errors(long count, String message) {
+        if (count <= 0) return;
+        add(errors, errorsMeter, count);
+        lastError = message;
+    }
+
+    // Errore che interrompe l'esecuzione
+    public void failed(String message) {
+        error(message);
+        failure = message;
+    }
+
+    // Esecuzione non avvenuta su questo nodo (lease di un altro nodo)
+    public void skipped() {
+        skipped = true;
+    }
+
+    // Esito delle partizioni di un job a blocchi: fallita se una partizione è fallita, saltata se lo sono tutte
+    public void batchResults(List<BatchRunDTO> results) {
+        for (BatchRunDTO result : results) {
+            if (!result.isSkipped() && result.getStatus() == BatchRunStatus.FAILED) {
+                failed(result.getJobName() + ": " + result.getLastError());
+            }
+        }
+        if (!results.isEmpty() && results.stream().allMatch(BatchRunDTO::isSkipped)) {
+            skipped();
+        }
+    }
+
+    public long getItemsScanned() {
+        return itemsScanned.sum();
+    }
+
+    public long getTransitionsApplied() {
+        return transitionsApplied.sum();
+    }
+
+    public long getMailsQueued() {
+        return mailsQueued.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    private static void add(LongAdder adder, Counter meter, long count) {
+        if (count <= 0) return;
+        adder.add(count);
+        meter.increment(count);
+    }
+}
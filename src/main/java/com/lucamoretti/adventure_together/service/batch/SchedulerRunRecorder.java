@@ -0,0 +1,22 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.dto.batch.SchedulerRunDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+ Interfaccia per lo storico e le metriche delle esecuzioni dei job pianificati.
+ record esegue il job registrandone l'esecuzione (riga in scheduler_runs e timer Micrometer della durata);
+ durante l'esecuzione il job incrementa i contatori ricevuti, o quelli ottenuti con counters(jobName)
+ nei punti in cui non li riceve direttamente (es. l'elaborazione di un blocco su un worker).
+ */
+
+public interface SchedulerRunRecorder {
+    void record(String jobName, LocalDate runDate, Consumer<SchedulerRunCounters> run);
+    SchedulerRunCounters counters(String jobName);
+    List<SchedulerRunDTO> getRecentRuns(String jobName, int limit);
+    List<SchedulerJobStatsDTO> getJobStats();
+}
@@ -0,0 +1,327 @@
+package com.lucamoretti.adventure_together.service.batch.impl;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchCheckpoint;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import com.lucamoretti.adventure_together.repository.batch.BatchCheckpointRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.PartitionedBatchJob;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ Implementazione dell'esecutore dei job a blocchi.
+ Il thread chiamante legge gli id con il cursore keyset del job (un blocco di chunkSize id alla volta)
+ e affida ogni blocco al pool di workers thread, dove viene elaborato in una transazione dedicata:
+ i lock restano limitati alle righe di un blocco e durano quanto il blocco.
+ Al massimo workers blocchi sono in elaborazione contemporaneamente (semaforo): la lettura non corre avanti
+ e la memoria usata non dipende dal numero di elementi.
+ Il checkpoint (BatchCheckpoint) registra l'ultimo id oltre il quale tutti i blocchi sono confermati;
+ i blocchi terminati in anticipo rispetto a uno precedente attendono nella finestra finché non si chiude il buco.
+ Un errore in un blocco interrompe la lettura e lascia l'esecuzione FAILED al checkpoint; una nuova esecuzione
+ per la stessa data (o resumeIncomplete all'avvio) riparte da lì, mentre una già COMPLETED non viene rieseguita.
+ Lo stesso job non viene eseguito due volte contemporaneamente in questa istanza, né su due nodi (lease del job, SchedulerLeaseService).
+ Se il nodo perde il lease durante l'esecuzione (rinnovo non riuscito) smette di leggere ed elaborare blocchi e non scrive
+ più il checkpoint, che da quel momento appartiene al nodo che ha acquisito il lease; al più i blocchi già in transazione
+ vengono completati su entrambi i nodi, quindi process deve restare idempotente.
+ In modalità partizionata (app.cluster.partitions > 1) ogni nodo scorre le partizioni partendo da una posizione
+ che dipende dal suo identificativo ed elabora quelle di cui ottiene il lease: le partizioni già completate vengono saltate
+ grazie al checkpoint, quindi i nodi si dividono le partizioni e un nodo libero prende quelle non ancora iniziate.
+ */
+
+@Slf4j
+@Service
+public class BatchJobRunnerImpl implements BatchJobRunner {
+
+    private final BatchCheckpointRepository checkpointRepository;
+    private final SchedulerLeaseService leaseService;
+    private final TransactionTemplate chunkTransaction;
+
+    // Id letti ed elaborati per blocco (una transazione per blocco)
+    @Value("${app.batch.chunk-size:100}")
+    private int chunkSize;
+
+    // Blocchi elaborati in parallelo
+    @Value("${app.batch.workers:4}")
+    private int workers;
+
+    // Le esecuzioni incomplete più vecchie non vengono riprese all'avvio
+    @Value("${app.batch.resume-window-hours:24}")
+    private long resumeWindowHours;
+
+    // Partizioni dei job eseguiti con runPartitioned (1 = job non partizionato)
+    @Value("${app.cluster.partitions:1}")
+    private int partitions;
+
+    private ExecutorService pool;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public BatchJobRunnerImpl(BatchCheckpointRepository checkpointRepository,
+                              SchedulerLeaseService leaseService,
+                              PlatformTransactionManager transactionManager) {
+        this.checkpointRepository = checkpointRepository;
+        this.leaseService = leaseService;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        pool = Executors.newFixedThreadPool(Math.max(1, workers), Thread.ofPlatform().name("batch-worker-", 1).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public BatchRunDTO run(BatchJob job, LocalDate runDate) {
+        String name = job.getName();
+        return leaseService.runExclusively(name, () -> runLocally(job, runDate))
+                .orElseGet(() -> {
+                    log.info("Job {} per il {} in esecuzione su un altro nodo", name, runDate);
+                    return skipped(name, runDate);
+                });
+    }
+
+    @Override
+    public List<BatchRunDTO> runPartitioned(BatchJob job, LocalDate runDate) {
+        if (partitions <= 1) {
+            return List.of(run(job, runDate));
+        }
+        int first = Math.floorMod(leaseService.getNodeId().hashCode(), partitions);
+        List<BatchRunDTO> results = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            results.add(run(new PartitionedBatchJob(job, (first + i) % partitions, partitions), runDate));
+        }
+        return results;
+    }
+
+    private BatchRunDTO runLocally(BatchJob job, LocalDate runDate) {
+        String name = job.getName();
+        if (!running.add(name)) {
+            log.warn("Job {} già in esecuzione: esecuzione per il {} ignorata", name, runDate);
+            return skipped(name, runDate);
+        }
+        try {
+            BatchCheckpoint checkpoint = checkpointRepository.findByJobNameAndRunDate(name, runDate)
+                    .orElseGet(() -> BatchCheckpoint.start(name, runDate));
+            if (checkpoint.getStatus() == BatchRunStatus.COMPLETED) {
+                log.info("Job {} per il {} già completato", name, runDate);
+                return skipped(name, runDate);
+            }
+            boolean resumed = checkpoint.getId() != null;
+            if (resumed) {
+                log.info("Job {} per il {}: ripresa dal checkpoint (id > {}, {} elementi già elaborati)",
+                        name, runDate, checkpoint.getLastId(), checkpoint.getProcessed());
+            }
+            checkpoint.setStatus(BatchRunStatus.RUNNING);
+            checkpoint.setAttempts(checkpoint.getAttempts() + 1);
+            checkpoint.setLastError(null);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+
+            BatchRunDTO result = new Execution(job, runDate, checkpoint).execute();
+            result.setResumed(resumed);
+            return result;
+        } finally {
+            running.remove(name);
+        }
+    }
+
+    @Override
+    public List<BatchRunDTO> resumeIncomplete(List<BatchJob> jobs) {
+        Map<String, BatchJob> byName = jobs.stream()
+                .collect(Collectors.toMap(BatchJob::getName, Function.identity(), (a, b) -> a));
+        List<BatchRunDTO> results = new ArrayList<>();
+        for (BatchCheckpoint checkpoint : checkpointRepository.findByStatusInAndUpdatedAtAfterOrderByUpdatedAtAsc(
+                List.of(BatchRunStatus.RUNNING, BatchRunStatus.FAILED), LocalDateTime.now().minusHours(resumeWindowHours))) {
+            BatchJob job = byName.containsKey(checkpoint.getJobName())
+                    ? byName.get(checkpoint.getJobName())
+                    : PartitionedBatchJob.resolve(checkpoint.getJobName(), byName).orElse(null);
+            if (job == null) {
+                continue;
+            }
+            results.add(run(job, checkpoint.getRunDate()));
+        }
+        return results;
+    }
+
+    private BatchRunDTO skipped(String name, LocalDate runDate) {
+        BatchRunDTO result = checkpointRepository.findByJobNameAndRunDate(name, runDate)
+                .map(BatchRunDTO::fromEntity)
+                .orElseGet(() -> BatchRunDTO.builder().jobName(name).runDate(runDate).build());
+        result.setSkipped(true);
+        return result;
+    }
+
+    // Blocco affidato a un worker: ultimo id e numero di elementi
+    private static final class Chunk {
+        private final long lastId;
+        private final int size;
+        private boolean done;
+
+        private Chunk(long lastId, int size) {
+            this.lastId = lastId;
+            this.size = size;
+        }
+    }
+
+    // Stato di un'esecuzione: finestra dei blocchi in elaborazione, in ordine di id, e checkpoint da aggiornare
+    private final class Execution {
+        private final BatchJob job;
+        private final LocalDate runDate;
+        private final BatchCheckpoint checkpoint;
+        private final Deque<Chunk> window = new ArrayDeque<>();
+        private final int parallelism = Math.max(1, workers);
+        private final Semaphore permits = new Semaphore(parallelism);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Execution(BatchJob job, LocalDate runDate, BatchCheckpoint checkpoint) {
+            this.job = job;
+            this.runDate = runDate;
+            this.checkpoint = checkpoint;
+        }
+
+        private BatchRunDTO execute() {
+            long afterId = checkpoint.getLastId();
+            int size = Math.max(1, chunkSize);
+            try {
+                while (failure.get() == null) {
+                    if (leaseLost()) {
+                        break;
+                    }
+                    List<Long> ids = job.readIds(runDate, afterId, Limit.of(size));
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    permits.acquire();
+                    Chunk chunk = new Chunk(ids.get(ids.size() - 1), ids.size());
+                    synchronized (this) {
+                        window.addLast(chunk);
+                    }
+                    try {
+                        pool.execute(() -> process(chunk, ids));
+                    } catch (RuntimeException e) {
+                        permits.release();
+                        throw e;
+                    }
+                    afterId = chunk.lastId;
+                    if (ids.size() < size) {
+                        break;
+                    }
+                }
+                // attende i blocchi ancora in elaborazione
+                permits.acquire(parallelism);
+                permits.release(parallelism);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                log.error("Job {} per il {}: errore nella lettura dopo l'id {}", job.getName(), runDate, afterId, e);
+                failure.compareAndSet(null, e);
+            }
+            BatchRunDTO result = finish();
+            try {
+                job.afterRun(runDate);
+            } catch (Exception e) {
+                log.error("Job {} per il {}: errore a fine esecuzione", job.getName(), runDate, e);
+            }
+            return result;
+        }
+
+        // Elabora un blocco in una transazione dedicata; dopo un errore i blocchi rimasti non vengono elaborati
+        private void process(Chunk chunk, List<Long> ids) {
+            try {
+                if (failure.get() != null || leaseLost()) {
+                    return;
+                }
+                chunkTransaction.executeWithoutResult(status -> job.process(runDate, ids));
+                complete(chunk);
+            } catch (Throwable e) {
+                log.error("Job {} per il {}: errore nel blocco fino all'id {}", job.getName(), runDate, chunk.lastId, e);
+                failure.compareAndSet(null, e);
+            } finally {
+                permits.release();
+            }
+        }
+
+        // Avanza il checkpoint fino al primo blocco non ancora confermato
+        private synchronized void complete(Chunk chunk) {
+            chunk.done = true;
+            boolean advanced = false;
+            while (!window.isEmpty() && window.peekFirst().done) {
+                Chunk head = window.pollFirst();
+                checkpoint.setLastId(head.lastId);
+                checkpoint.setProcessed(checkpoint.getProcessed() + head.size);
+                checkpoint.setChunks(checkpoint.getChunks() + 1);
+                advanced = true;
+            }
+            if (advanced && !leaseLost()) {
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+            }
+        }
+
+        // Lease del job perso: l'esecuzione viene interrotta (la prima volta viene registrato l'errore)
+        private boolean leaseLost() {
+            if (!leaseService.isLost(job.getName())) {
+                return false;
+            }
+            failure.compareAndSet(null, new IllegalStateException("Lease del job perso dal nodo " + leaseService.getNodeId()));
+            return true;
+        }
+
+        private synchronized BatchRunDTO finish() {
+            Throwable error = failure.get();
+            LocalDateTime now = LocalDateTime.now();
+            checkpoint.setStatus(error == null ? BatchRunStatus.COMPLETED : BatchRunStatus.FAILED);
+            checkpoint.setLastError(error == null ? null : truncate(String.valueOf(error.getMessage())));
+            checkpoint.setFinishedAt(error == null ? now : null);
+            checkpoint.setUpdatedAt(now);
+            if (leaseService.isLost(job.getName())) {
+                // il checkpoint è del nodo che ha acquisito il lease: l'esito resta solo in questo risultato
+                log.warn("Job {} per il {} interrotto: lease perso, il checkpoint id {} non viene aggiornato", job.getName(), runDate,
+                        checkpoint.getLastId());
+                return BatchRunDTO.fromEntity(checkpoint);
+            }
+            checkpointRepository.save(checkpoint);
+            if (error == null) {
+                log.info("Job {} per il {} completato: {} elementi in {} blocchi", job.getName(), runDate,
+                        checkpoint.getProcessed(), checkpoint.getChunks());
+            } else {
+                log.warn("Job {} per il {} interrotto al checkpoint id {} ({} elementi elaborati)", job.getName(), runDate,
+                        checkpoint.getLastId(), checkpoint.getProcessed());
+            }
+            return BatchRunDTO.fromEntity(checkpoint);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
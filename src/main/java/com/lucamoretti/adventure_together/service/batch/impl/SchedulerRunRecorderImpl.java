@@ -0,0 +1,183 @@
+package com.lucamoretti.adventure_together.service.batch.impl;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.dto.batch.SchedulerRunDTO;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRun;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus;
+import com.lucamoretti.adventure_together.repository.batch.SchedulerRunRepository;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/*
+ Implementazione dello storico e delle metriche dei job pianificati.
+ Per ogni esecuzione viene inserita una riga RUNNING in scheduler_runs, aggiornata alla fine con stato, durata e contatori;
+ la durata è registrata anche nel timer Micrometer scheduler.run (tag job e status) e i contatori
+ scheduler.items.scanned, scheduler.transitions, scheduler.mails.queued e scheduler.errors (tag job) crescono durante l'esecuzione:
+ le metriche sono esposte da Actuator (/actuator/metrics) e lo storico nella pagina admin delle esecuzioni.
+ Un errore nella scrittura dello storico viene solo registrato nel log: non impedisce l'esecuzione del job.
+ Le esecuzioni più vecchie di app.scheduler.history.retention-days vengono eliminate all'avvio di una nuova esecuzione.
+ */
+
+@Slf4j
+@Service
+public class SchedulerRunRecorderImpl implements SchedulerRunRecorder {
+
+    static final String RUN_TIMER = "scheduler.run";
+    static final String ITEMS_SCANNED = "scheduler.items.scanned";
+    static final String TRANSITIONS = "scheduler.transitions";
+    static final String MAILS_QUEUED = "scheduler.mails.queued";
+    static final String ERRORS = "scheduler.errors";
+
+    private static final List<SchedulerRunStatus> CONCLUDED = List.of(SchedulerRunStatus.COMPLETED, SchedulerRunStatus.FAILED);
+
+    private final SchedulerRunRepository runRepository;
+    private final SchedulerLeaseService leaseService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate historyTransaction;
+
+    // Giorni di conservazione dello storico
+    @Value("${app.scheduler.history.retention-days:90}")
+    private long retentionDays;
+
+    // Periodo delle statistiche per job e periodo "recente" confrontato con esso
+    @Value("${app.scheduler.history.stats-days:30}")
+    private long statsDays;
+
+    @Value("${app.scheduler.history.recent-days:7}")
+    private long recentDays;
+
+    // Contatori delle esecuzioni in corso su questo nodo, per job
+    private final Map<String, SchedulerRunCounters> active = new ConcurrentHashMap<>();
+
+    public SchedulerRunRecorderImpl(SchedulerRunRepository runRepository,
+                                    SchedulerLeaseService leaseService,
+                                    MeterRegistry meterRegistry,
+                                    PlatformTransactionManager transactionManager) {
+        this.runRepository = runRepository;
+        this.leaseService = leaseService;
+        this.meterRegistry = meterRegistry;
+        this.historyTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void record(String jobName, LocalDate runDate, Consumer<SchedulerRunCounters> run) {
+        purgeExpired();
+        SchedulerRunCounters counters = newCounters(jobName);
+        SchedulerRun entry = save(SchedulerRun.start(jobName, runDate, leaseService.getNodeId()));
+        active.put(jobName, counters);
+        long start = System.nanoTime();
+        try {
+            run.accept(counters);
+        } catch (RuntimeException e) {
+            counters.failed(String.valueOf(e.getMessage()));
+            throw e;
+        } finally {
+            active.remove(jobName, counters);
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            SchedulerRunStatus status = counters.isFailed() ? SchedulerRunStatus.FAILED
+                    : counters.isSkipped() ? SchedulerRunStatus.SKIPPED
+                    : SchedulerRunStatus.COMPLETED;
+            Timer.builder(RUN_TIMER)
+                    .description("Durata delle esecuzioni dei job pianificati")
+                    .tag("job", jobName)
+                    .tag("status", status.name())
+                    .register(meterRegistry)
+                    .record(duration);
+            if (entry != null) {
+                finish(entry, status, duration, counters);
+            }
+            log.info("Job {} per il {}: {} in {} ms ({} esaminati, {} transizioni, {} email, {} errori)", jobName, runDate,
+                    status, duration.toMillis(), counters.getItemsScanned(), counters.getTransitionsApplied(),
+                    counters.getMailsQueued(), counters.getErrors());
+        }
+    }
+
+    // Contatori dell'esecuzione in corso; senza esecuzione registrata aggiornano solo le metriche
+    @Override
+    public SchedulerRunCounters counters(String jobName) {
+        SchedulerRunCounters counters = active.get(jobName);
+        return counters != null ? counters : newCounters(jobName);
+    }
+
+    // Ultime esecuzioni di un job (null = tutti i job), dalla più recente
+    @Override
+    public List<SchedulerRunDTO> getRecentRuns(String jobName, int limit) {
+        List<SchedulerRun> runs = jobName == null || jobName.isBlank()
+                ? runRepository.findAllByOrderByStartedAtDesc(Limit.of(limit))
+                : runRepository.findByJobNameOrderByStartedAtDesc(jobName, Limit.of(limit));
+        return runs.stream().map(SchedulerRunDTO::fromEntity).toList();
+    }
+
+    @Override
+    public List<SchedulerJobStatsDTO> getJobStats() {
+        LocalDateTime now = LocalDateTime.now();
+        return runRepository.findJobStats(now.minusDays(statsDays), now.minusDays(recentDays), CONCLUDED);
+    }
+
+    private SchedulerRunCounters newCounters(String jobName) {
+        return new SchedulerRunCounters(
+                counter(ITEMS_SCANNED, "Elementi esaminati dai job pianificati", jobName),
+                counter(TRANSITIONS, "Transizioni di stato applicate dai job pianificati", jobName),
+                counter(MAILS_QUEUED, "Email accodate dai job pianificati", jobName),
+                counter(ERRORS, "Errori dei job pianificati", jobName));
+    }
+
+    private Counter counter(String name, String description, String jobName) {
+        return Counter.builder(name).description(description).tag("job", jobName).register(meterRegistry);
+    }
+
+    private void finish(SchedulerRun entry, SchedulerRunStatus status, Duration duration, SchedulerRunCounters counters) {
+        entry.setStatus(status);
+        entry.setFinishedAt(LocalDateTime.now());
+        entry.setDurationMillis(duration.toMillis());
+        entry.setItemsScanned(counters.getItemsScanned());
+        entry.setTransitionsApplied(counters.getTransitionsApplied());
+        entry.setMailsQueued(counters.getMailsQueued());
+        entry.setErrors(counters.getErrors());
+        entry.setLastError(truncate(counters.getLastError()));
+        save(entry);
+    }
+
+    private SchedulerRun save(SchedulerRun entry) {
+        try {
+            return runRepository.save(entry);
+        } catch (Exception e) {
+            log.warn("Job {}: errore nella scrittura dello storico: {}", entry.getJobName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void purgeExpired() {
+        try {
+            Integer deleted = historyTransaction.execute(status ->
+                    runRepository.deleteStartedBefore(LocalDateTime.now().minusDays(retentionDays)));
+            if (deleted != null && deleted > 0) {
+                log.debug("Storico dei job pianificati: {} esecuzioni eliminate", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Errore nella pulizia dello storico dei job pianificati: {}", e.getMessage());
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -8,4 +8,5 @@ import com.stripe.model.PaymentIntent;
 
 public interface BookingFinalizeService {
     void finalizeBooking(PaymentIntent intent);
+    void releaseSeatHold(PaymentIntent intent);
 }
@@ -1,7 +1,7 @@
 package com.lucamoretti.adventure_together.service.booking;
 
 import com.lucamoretti.adventure_together.dto.booking.BookingDTO;
-import java.util.List;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 
 /*
     Interfaccia per il servizio visualizzazione delle prenotazioni.
@@ -11,6 +11,7 @@ import java.util.List;
 public interface BookingService {
 
     BookingDTO getBookingById(Long id);
-    List<BookingDTO> getBookingsByTravelerId(Long travelerId);
+    // prenotazioni di un traveler dalla più recente, paginate con cursore (null = prima pagina)
+    KeysetPage<BookingDTO> getBookingsByTravelerId(Long travelerId, String cursor, int size);
 }
 
@@ -0,0 +1,15 @@
+package com.lucamoretti.adventure_together.service.booking;
+
+import com.lucamoretti.adventure_together.model.trip.Trip;
+
+/*
+ Interfaccia per il servizio di trattenuta temporanea dei posti durante il checkout.
+ Definisce i metodi per trattenere, rilasciare e conteggiare i posti trattenuti di un Trip.
+ */
+
+public interface SeatHoldService {
+    String holdSeats(Trip trip, int seats);
+    void releaseHold(String holdKey);
+    int getHeldSeats(Long tripId);
+    int purgeExpiredHolds();
+}
@@ -1,5 +1,6 @@
 package com.lucamoretti.adventure_together.service.booking.impl;
 
+import com.lucamoretti.adventure_together.event.BookingConfirmed;
 import com.lucamoretti.adventure_together.model.booking.Booking;
 import com.lucamoretti.adventure_together.model.booking.IBooking;
 import com.lucamoretti.adventure_together.model.booking.decorator.CancellationInsurance;
@@ -18,11 +19,15 @@ import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.booking.BookingFinalizeService;
 import com.lucamoretti.adventure_together.service.booking.BookingSerializerService;
-import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import com.lucamoretti.adventure_together.service.payment.StripeClient;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
 import com.stripe.model.PaymentIntent;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -34,9 +39,14 @@ import java.util.stream.Collectors;
 /*
  Implementazione del servizio per la finalizzazione della prenotazione.
  Si occupa di ricostruire il booking dal DTO serializzato nei metadata del PaymentIntent,
- salvare il booking nel database, aggiornare lo stato del trip e inviare l'email di conferma.
+ salvare il booking nel database, aggiornare lo stato del trip e pubblicare l'evento BookingConfirmed
+ (l'email di conferma parte dopo il commit).
+ Se al momento della finalizzazione i posti sono terminati (il pagamento è già avvenuto su Stripe)
+ la prenotazione non viene salvata e il PaymentIntent viene rimborsato per intero;
+ un rimborso fallito viene registrato come errore per la gestione manuale.
  */
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
@@ -47,11 +57,12 @@ public class BookingFinalizeServiceImpl implements BookingFinalizeService {
     private final TripRepository tripRepository;
     private final DepartureAirportRepository departureAirportRepository;
     private final BookingSerializerService bookingSerializerService;
-    private final EmailService emailService;
     private final TemporaryParticipantListRepository temporaryParticipantListRepository;
-
-    @Value("${app.base-url}")
-    private String baseUrl;
+    private final SeatHoldService seatHoldService;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StripeClient stripeClient;
 
     // Mappa delle decorazioni disponibili per i booking
     private final Map<String, Function<IBooking, IBooking>> decorations = Map.of(
@@ -154,10 +165,26 @@ public class BookingFinalizeServiceImpl implements BookingFinalizeService {
 
             booking.setPayment(payment);
 
+            // riserva i posti sul Trip con un incremento atomico condizionato alla capienza
+            // se nel frattempo i posti sono terminati la booking non viene salvata e il pagamento viene rimborsato
+            // la trattenuta del checkout viene rilasciata in ogni caso: i posti passano nel contatore del Trip
+            int seats = participants.size();
+            boolean reserved = tripRepository.incrementSeatsBooked(tripId, seats) > 0;
+            seatHoldService.releaseHold(seatHoldKeyOf(data));
+            if (!reserved) {
+                refundRejectedBooking(intent.getId(), tripId, travelerId, seats);
+                temporaryParticipantListRepository.delete(tempList);
+                return;
+            }
+            // allineo il contatore dell'entità già caricata, usato subito dopo da trip.handle()
+            trip.setSeatsBooked(trip.getSeatsBooked() + seats);
+
             //System.out.println(">>> SALVATAGGIO BOOKING IN CORSO...");
             // salva booking (cascade salva anche participants e payment)
             bookingRepository.save(booking);
             //System.out.println(">>> BOOKING SALVATO! ID = " + booking.getId());
+            // i posti disponibili mostrati nella pagina di dettaglio dell'itinerario sono cambiati
+            pageViewService.evictAfterCommit(trip.getTripItinerary().getId());
 
             // elimino infine la lista temporanea di partecipanti
             temporaryParticipantListRepository.delete(tempList);
@@ -168,21 +195,45 @@ public class BookingFinalizeServiceImpl implements BookingFinalizeService {
             trip.handle();
             if (!before.getClass().equals(trip.getState().getClass())) {
                 tripRepository.save(trip);
+                // un viaggio al completo non è più prenotabile: esce dal catalogo a faccette
+                catalogIndex.refreshTripAfterCommit(tripId);
             }
-            // email conferma
-            emailService.sendHtmlMessage(
-                    traveler.getEmail(),
-                    "Prenotazione confermata",
-                    "/mail/booking-confirmation",
-                    Map.of("totalCost", totalCost, "booking", booking, "trip", trip, "traveler", traveler, "airport", airport, "homepage", baseUrl+"/home")
-            );
+            // email conferma: inviata da BookingConfirmationListener dopo il commit della prenotazione
+            eventPublisher.publishEvent(new BookingConfirmed(booking.getId(), totalCost));
+
+        } catch (Exception e) {
+            log.error("Errore nella finalizzazione della prenotazione per il PaymentIntent {}", intent.getId(), e);
+        }
+
+    }
 
+    // Pagamento ricevuto per posti non più disponibili: rimborso totale del PaymentIntent
+    private void refundRejectedBooking(String paymentIntentId, Long tripId, Long travelerId, int seats) {
+        log.error("Posti insufficienti per il Trip {}: prenotazione di {} posti del traveler {} rifiutata dopo il pagamento {}",
+                tripId, seats, travelerId, paymentIntentId);
+        try {
+            String refundId = stripeClient.refundPaymentIntent(paymentIntentId);
+            log.warn("PaymentIntent {} rimborsato (rimborso {})", paymentIntentId, refundId);
         } catch (Exception e) {
+            log.error("Rimborso del PaymentIntent {} fallito: rimborso manuale necessario (traveler {}, Trip {})",
+                    paymentIntentId, travelerId, tripId, e);
+        }
+    }
 
-            System.out.println("❌ ERRORE NELLA FINALIZZAZIONE DEL BOOKING:");
-            e.printStackTrace();
+    // Rilascia i posti trattenuti per un PaymentIntent il cui pagamento è fallito
+    // la lista temporanea dei partecipanti viene mantenuta: Stripe permette di ritentare il pagamento sullo stesso intent
+    @Override
+    public void releaseSeatHold(PaymentIntent intent) {
+        if (intent.getMetadata() == null || intent.getMetadata().get("booking") == null) {
+            return;
         }
+        Map<String, Object> data = bookingSerializerService.deserializeBookingAsMap(intent.getMetadata().get("booking"));
+        seatHoldService.releaseHold(seatHoldKeyOf(data));
+    }
 
+    // Chiave della trattenuta posti nei metadata (assente per i PaymentIntent creati prima delle trattenute)
+    private String seatHoldKeyOf(Map<String, Object> data) {
+        Object key = data.get("seatHoldKey");
+        return key != null ? key.toString() : null;
     }
 }
-
@@ -20,6 +20,7 @@ import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.booking.BookingPreparationService;
 import com.lucamoretti.adventure_together.service.booking.BookingSerializerService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
 import com.lucamoretti.adventure_together.service.payment.StripeClient;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import jakarta.transaction.Transactional;
@@ -47,6 +48,7 @@ public class BookingPreparationServiceImpl implements BookingPreparationService
     private final BookingSerializerService bookingSerializerService;
     private final TemporaryParticipantListRepository temporaryParticipantListRepository;
     private final TemporaryParticipantRepository temporaryParticipantRepository;
+    private final SeatHoldService seatHoldService;
 
     // Mappa decorator
     private final Map<String, Function<IBooking, IBooking>> decorations = Map.of(
@@ -72,9 +74,6 @@ public class BookingPreparationServiceImpl implements BookingPreparationService
         if (!trip.getState().canAcceptBooking()) {
             throw new IllegalStateException("Il viaggio non è prenotabile in questo stato.");
         }
-        if (!trip.hasAvailableSpots(req.getParticipants().size())) {
-            throw new IllegalArgumentException("Posti insufficienti.");
-        }
 
         // Converto i participant DTO in entity (solo per calcolo)
         List<Participant> participants = req.getParticipants().stream()
@@ -120,17 +119,29 @@ public class BookingPreparationServiceImpl implements BookingPreparationService
         metadataMap.put("participantsTempListId", tempList.getId());
         metadataMap.put("totalCost", totalCost);
 
+        // Trattengo i posti per la durata del checkout
+        // il controllo di disponibilità considera anche i posti già trattenuti da altri checkout in corso
+        // lancia IllegalArgumentException se i posti non sono sufficienti
+        String seatHoldKey = seatHoldService.holdSeats(trip, req.getParticipants().size());
+        metadataMap.put("seatHoldKey", seatHoldKey);
+
         // Serializzo tutto per Stripe metadata
         String metadataJson = bookingSerializerService.serializeBooking(metadataMap);
 
-
-
         // PaymentIntent
-        PaymentIntentDTO intent = stripeClient.createPaymentIntent(
-                totalCost,
-                "eur",
-                metadataJson  // aggiungiamo metadata
-        );
+        // se la creazione fallisce la trattenuta viene rilasciata subito
+        // (con il rollback della transazione viene comunque tolta anche dal registro in memoria)
+        PaymentIntentDTO intent;
+        try {
+            intent = stripeClient.createPaymentIntent(
+                    totalCost,
+                    "eur",
+                    metadataJson  // aggiungiamo metadata
+            );
+        } catch (RuntimeException e) {
+            seatHoldService.releaseHold(seatHoldKey);
+            throw e;
+        }
         intent.setTotal(totalCost); // aggiongo il totale al DTO per visualizzazione pre pagamento
 
         return intent;
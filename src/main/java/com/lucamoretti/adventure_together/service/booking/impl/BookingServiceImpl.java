@@ -1,11 +1,15 @@
 package com.lucamoretti.adventure_together.service.booking.impl;
 
 import com.lucamoretti.adventure_together.dto.booking.BookingDTO;
+import com.lucamoretti.adventure_together.model.booking.Booking;
 import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
 import com.lucamoretti.adventure_together.service.booking.BookingService;
+import com.lucamoretti.adventure_together.util.pagination.KeysetCursor;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.*;
@@ -31,12 +35,18 @@ public class BookingServiceImpl implements BookingService {
                 .orElseThrow(() -> new IllegalArgumentException("Booking non trovato"));
     }
 
-    // Recupera tutte le prenotazioni di un traveler
+    // Recupera una pagina delle prenotazioni di un traveler, dalla più recente
+    // paginazione keyset su (bookingDate, id) decrescenti: la pagina successiva parte dall'ultima prenotazione mostrata
     @Override
-    public List<BookingDTO> getBookingsByTravelerId(Long travelerId) {
-        return bookingRepository.findByTraveler_Id(travelerId)
-                .stream()
+    public KeysetPage<BookingDTO> getBookingsByTravelerId(Long travelerId, String cursor, int size) {
+        KeysetCursor before = KeysetCursor.decodeDated(cursor);
+        Limit limit = Limit.of(KeysetPage.fetchSize(size));
+        List<Booking> rows = before == null
+                ? bookingRepository.findByTraveler_IdOrderByBookingDateDescIdDesc(travelerId, limit)
+                : bookingRepository.findPageByTravelerIdBefore(travelerId, before.date(), before.id(), limit);
+        List<BookingDTO> bookings = rows.stream()
                 .map(BookingDTO::fromEntity)
                 .toList();
+        return KeysetPage.of(bookings, KeysetPage.clamp(size), b -> KeysetCursor.of(b.getBookingDate(), b.getId()));
     }
 }
@@ -0,0 +1,210 @@
+package com.lucamoretti.adventure_together.service.booking.impl;
+
+import com.lucamoretti.adventure_together.model.booking.SeatHold;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.repository.booking.SeatHoldRepository;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import com.lucamoretti.adventure_together.util.transaction.OnRollback;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Implementazione del servizio di trattenuta temporanea dei posti durante il checkout Stripe.
+ Il registro delle trattenute è mantenuto in memoria (per Trip) e protetto da lock a strisce:
+ ogni Trip è associato ad uno fra LOCK_STRIPES lock, così che i checkout dello stesso Trip siano serializzati
+ mentre quelli di Trip diversi procedono in parallelo.
+ Ogni trattenuta è salvata anche nella tabella seat_holds, da cui il registro viene ricostruito all'avvio.
+ Il registro è per nodo: con più nodi ciascuno conta solo le trattenute create da lui (più quelle caricate all'avvio),
+ quindi i posti trattenuti mostrati e il controllo di holdSeats non vedono i checkout in corso sugli altri nodi;
+ il limite di capienza resta garantito alla finalizzazione della prenotazione sul contatore seatsBooked.
+ I posti disponibili sono calcolati come capienza - posti prenotati (contatore del Trip) - posti trattenuti,
+ senza scorrere le Booking.
+ Una nuova trattenuta entra subito nel registro (sotto il lock del Trip), così che due checkout concorrenti
+ non possano trattenere gli stessi ultimi posti, ma resta provvisoria fino al commit: se la transazione
+ viene annullata (es. creazione del PaymentIntent fallita) la trattenuta viene tolta dal registro,
+ coerentemente con la riga di seat_holds che non viene salvata.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class SeatHoldServiceImpl implements SeatHoldService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final SeatHoldRepository seatHoldRepository;
+
+    // Durata di una trattenuta in minuti (value definito in application.properties)
+    @Value("${app.booking.seat-hold-ttl-minutes:15}")
+    private long holdTtlMinutes;
+
+    // Lock a strisce per Trip
+    private final ReentrantLock[] locks = createLocks();
+
+    // Trattenute attive per Trip (la mappa interna è modificata solo sotto il lock del Trip)
+    private final Map<Long, Map<String, Hold>> holdsByTrip = new ConcurrentHashMap<>();
+    // Indice per chiave, usato per il rilascio a partire dai metadata del PaymentIntent
+    private final Map<String, Hold> holdsByKey = new ConcurrentHashMap<>();
+
+    // Trattenuta in memoria
+    private record Hold(String key, Long tripId, int seats, LocalDateTime expiresAt) {
+        boolean isExpired(LocalDateTime now) {
+            return now.isAfter(expiresAt);
+        }
+    }
+
+    // Ricostruisce il registro in memoria dalle trattenute ancora valide salvate nel database
+    @PostConstruct
+    public void loadActiveHolds() {
+        for (SeatHold h : seatHoldRepository.findActive(LocalDateTime.now())) {
+            register(new Hold(h.getHoldKey(), h.getTrip().getId(), h.getSeats(), h.getExpiresAt()));
+        }
+        log.info("Trattenute posti ricaricate: {}", holdsByKey.size());
+    }
+
+    // Trattiene in modo atomico i posti richiesti se disponibili e ritorna la chiave della trattenuta
+    // Lancia IllegalArgumentException se i posti liberi (al netto delle trattenute attive) non sono sufficienti
+    // La trattenuta viene rimossa dal registro se la transazione del checkout va in rollback
+    @Override
+    public String holdSeats(Trip trip, int seats) {
+        Long tripId = trip.getId();
+        ReentrantLock lock = lockFor(tripId);
+        lock.lock();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            purgeExpired(tripId, now);
+
+            int available = trip.getTripItinerary().getMaxParticipants() - trip.getSeatsBooked() - heldSeats(tripId);
+            if (seats > available) {
+                throw new IllegalArgumentException("Posti insufficienti.");
+            }
+
+            Hold hold = new Hold(UUID.randomUUID().toString(), tripId, seats, now.plusMinutes(holdTtlMinutes));
+            seatHoldRepository.save(SeatHold.builder()
+                    .holdKey(hold.key())
+                    .trip(trip)
+                    .seats(seats)
+                    .expiresAt(hold.expiresAt())
+                    .build());
+            register(hold);
+            OnRollback.run(() -> unregister(hold.key()));
+            return hold.key();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Rilascia una trattenuta (pagamento confermato, fallito o annullato)
+    // Se è attiva una transazione la rimozione dal registro in memoria avviene dopo il commit,
+    // così che i posti non risultino liberi prima che l'eventuale incremento di seatsBooked sia visibile
+    @Override
+    public void releaseHold(String holdKey) {
+        if (holdKey == null) return;
+        seatHoldRepository.deleteByHoldKey(holdKey);
+        AfterCommit.run(() -> unregister(holdKey));
+    }
+
+    // Numero di posti attualmente trattenuti per un Trip (trattenute scadute escluse)
+    @Override
+    public int getHeldSeats(Long tripId) {
+        ReentrantLock lock = lockFor(tripId);
+        lock.lock();
+        try {
+            purgeExpired(tripId, LocalDateTime.now());
+            return heldSeats(tripId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Rimuove tutte le trattenute scadute, dal registro in memoria e dal database
+    @Override
+    public int purgeExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long tripId : holdsByTrip.keySet()) {
+            ReentrantLock lock = lockFor(tripId);
+            lock.lock();
+            try {
+                purgeExpired(tripId, now);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return seatHoldRepository.deleteExpired(now);
+    }
+
+    // metodi di supporto per la gestione del registro in memoria
+    // purgeExpired e heldSeats devono essere invocati con il lock del Trip acquisito
+
+    private ReentrantLock lockFor(Long tripId) {
+        return locks[Math.floorMod(tripId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void register(Hold hold) {
+        ReentrantLock lock = lockFor(hold.tripId());
+        lock.lock();
+        try {
+            holdsByTrip.computeIfAbsent(hold.tripId(), id -> new HashMap<>()).put(hold.key(), hold);
+            holdsByKey.put(hold.key(), hold);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unregister(String holdKey) {
+        Hold hold = holdsByKey.get(holdKey);
+        if (hold == null) return;
+        ReentrantLock lock = lockFor(hold.tripId());
+        lock.lock();
+        try {
+            holdsByKey.remove(holdKey);
+            Map<String, Hold> tripHolds = holdsByTrip.get(hold.tripId());
+            if (tripHolds != null) {
+                tripHolds.remove(holdKey);
+                if (tripHolds.isEmpty()) holdsByTrip.remove(hold.tripId());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void purgeExpired(Long tripId, LocalDateTime now) {
+        Map<String, Hold> tripHolds = holdsByTrip.get(tripId);
+        if (tripHolds == null) return;
+        tripHolds.values().removeIf(h -> {
+            if (h.isExpired(now)) {
+                holdsByKey.remove(h.key());
+                return true;
+            }
+            return false;
+        });
+        if (tripHolds.isEmpty()) holdsByTrip.remove(tripId);
+    }
+
+    private int heldSeats(Long tripId) {
+        Map<String, Hold> tripHolds = holdsByTrip.get(tripId);
+        if (tripHolds == null) return 0;
+        int total = 0;
+        for (Hold h : tripHolds.values()) total += h.seats();
+        return total;
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) stripes[i] = new ReentrantLock();
+        return stripes;
+    }
+}
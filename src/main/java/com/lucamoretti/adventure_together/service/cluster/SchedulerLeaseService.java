@@ -0,0 +1,21 @@
+package com.lucamoretti.adventure_together.service.cluster;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Servizio per l'esecuzione dei job pianificati su un solo nodo alla volta, tramite lease su tabella (SchedulerLease)
+// runExclusively esegue il task solo se questo nodo acquisisce il lease del nome indicato: ritorna il risultato del task,
+// oppure empty (false) se il lease è detenuto da un altro nodo; il lease viene rinnovato durante il task e rilasciato alla fine
+// isLost, chiamato dal task in esecuzione, ritorna true se questo nodo non detiene più il lease (rinnovo non riuscito):
+// il task deve fermarsi, perché un altro nodo può averlo acquisito. I task che non lo controllano possono sovrapporsi
+// all'esecuzione dell'altro nodo fino al loro termine: le loro scritture devono restare idempotenti (es. presa in carico
+// dei messaggi della coda email con UPDATE condizionale, notifiche del riepilogo eliminate nella transazione del blocco)
+// getNodeId ritorna l'identificativo di questo nodo (app.cluster.node-id)
+// Implementato da SchedulerLeaseServiceImpl
+
+public interface SchedulerLeaseService {
+    <T> Optional<T> runExclusively(String name, Supplier<T> task);
+    boolean runExclusively(String name, Runnable task);
+    boolean isLost(String name);
+    String getNodeId();
+}
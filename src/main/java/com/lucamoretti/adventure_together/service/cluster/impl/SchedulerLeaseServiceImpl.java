@@ -0,0 +1,187 @@
+package com.lucamoretti.adventure_together.service.cluster.impl;
+
+import com.lucamoretti.adventure_together.repository.cluster.SchedulerLeaseRepository;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ Implementazione dei lease dei job pianificati su tabella (scheduler_leases), senza coordinatori esterni.
+ Il lease dura app.cluster.lease-ttl e durante il task viene rinnovato ogni terzo di durata, così che un job lungo
+ (es. un job notturno a blocchi) non lo perda; se il nodo si arresta il lease scade e il job può ripartire su un altro nodo.
+ La riga di un job viene creata (già scaduta) al primo utilizzo: se due nodi la creano insieme uno dei due
+ riceve la violazione di chiave primaria e prosegue con l'acquisizione.
+ Gli istanti sono quelli del nodo: gli orologi dei nodi devono essere sincronizzati (NTP) con scarti molto minori della durata.
+ Le UPDATE girano in transazioni dedicate, indipendenti da quella eventualmente attiva nel chiamante.
+ Il nodo ricorda la scadenza dei lease che detiene, aggiornata ad ogni rinnovo: se un rinnovo non trova più il lease
+ (o non riesce prima della scadenza) isLost ritorna true e il task si deve fermare (BatchJobRunnerImpl smette di leggere
+ ed elaborare blocchi), perché un altro nodo può aver già acquisito il lease e avviato lo stesso job.
+ Con app.cluster.leases-enabled = false (un solo nodo) i task vengono eseguiti senza lease.
+ */
+
+@Slf4j
+@Service
+public class SchedulerLeaseServiceImpl implements SchedulerLeaseService {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final TransactionTemplate leaseTransaction;
+
+    @Value("${app.cluster.leases-enabled:true}")
+    private boolean enabled;
+
+    // Identificativo del nodo; vuoto = nome host più un suffisso casuale (diverso ad ogni avvio)
+    @Value("${app.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.cluster.lease-ttl:2m}")
+    private Duration leaseTtl;
+
+    private String nodeId;
+    private ScheduledExecutorService renewals;
+
+    // Scadenza dei lease detenuti da questo nodo per i task in esecuzione
+    private final Map<String, LocalDateTime> heldUntil = new ConcurrentHashMap<>();
+
+    public SchedulerLeaseServiceImpl(SchedulerLeaseRepository leaseRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.leaseRepository = leaseRepository;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+        renewals = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("lease-renewal").factory());
+        log.info("Nodo {}: lease dei job pianificati {}", nodeId, enabled ? "attivi" : "disattivati");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewals.shutdownNow();
+    }
+
+    @Override
+    public <T> Optional<T> runExclusively(String name, Supplier<T> task) {
+        if (!enabled) {
+            return Optional.ofNullable(task.get());
+        }
+        if (!tryAcquire(name)) {
+            log.debug("Job {}: lease detenuto da un altro nodo, esecuzione saltata", name);
+            return Optional.empty();
+        }
+        long period = Math.max(1, leaseTtl.toMillis() / 3);
+        ScheduledFuture<?> renewal = renewals.scheduleAtFixedRate(() -> renew(name), period, period, TimeUnit.MILLISECONDS);
+        try {
+            return Optional.ofNullable(task.get());
+        } finally {
+            renewal.cancel(false);
+            heldUntil.remove(name);
+            release(name);
+        }
+    }
+
+    @Override
+    public boolean runExclusively(String name, Runnable task) {
+        return runExclusively(name, () -> {
+            task.run();
+            return Boolean.TRUE;
+        }).isPresent();
+    }
+
+    @Override
+    public boolean isLost(String name) {
+        if (!enabled) {
+            return false;
+        }
+        LocalDateTime until = heldUntil.get(name);
+        return until == null || !LocalDateTime.now().isBefore(until);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // Acquisizione: UPDATE condizionale sulla riga del job, creata al primo utilizzo
+    boolean tryAcquire(String name) {
+        if (acquire(name)) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(leaseTransaction.execute(status -> leaseRepository.existsById(name)))) {
+            return false;
+        }
+        try {
+            leaseTransaction.executeWithoutResult(status -> leaseRepository.create(name, LocalDateTime.now().minusSeconds(1)));
+        } catch (DataIntegrityViolationException e) {
+            // riga creata nello stesso momento da un altro nodo
+        }
+        return acquire(name);
+    }
+
+    private boolean acquire(String name) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = leaseTransaction.execute(status -> leaseRepository.acquire(name, nodeId, now, now.plus(leaseTtl)));
+        if (updated != null && updated == 1) {
+            heldUntil.put(name, now.plus(leaseTtl));
+            return true;
+        }
+        return false;
+    }
+
+    private void renew(String name) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Integer updated = leaseTransaction.execute(status -> leaseRepository.renew(name, nodeId, now, now.plus(leaseTtl)));
+            if (updated == null || updated == 0) {
+                // il task lo scopre con isLost e si ferma
+                heldUntil.remove(name);
+                log.warn("Job {}: lease perso dal nodo {} (scaduto prima del rinnovo), il task viene interrotto", name, nodeId);
+            } else {
+                heldUntil.computeIfPresent(name, (n, until) -> now.plus(leaseTtl));
+            }
+        } catch (Exception e) {
+            // se i rinnovi continuano a fallire il lease scade e isLost ritorna true
+            log.warn("Job {}: errore nel rinnovo del lease: {}", name, e.getMessage());
+        }
+    }
+
+    private void release(String name) {
+        try {
+            leaseTransaction.executeWithoutResult(status -> leaseRepository.release(name, nodeId, LocalDateTime.now()));
+        } catch (Exception e) {
+            // il lease scadrà da solo
+            log.warn("Job {}: errore nel rilascio del lease: {}", name, e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
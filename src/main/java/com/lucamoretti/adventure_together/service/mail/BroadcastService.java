@@ -0,0 +1,17 @@
+package com.lucamoretti.adventure_together.service.mail;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastProgressDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRequestDTO;
+
+import java.util.Optional;
+
+// Service per gli annunci inviati da un admin a tutti i traveler o ai partecipanti di un itinerario
+// start avvia l'invio in background e ritorna subito; è ammesso un solo invio in corso alla volta
+// getProgress ritorna l'avanzamento dell'invio in corso o dell'ultimo concluso; cancel interrompe quello in corso
+// Implementato da BroadcastServiceImpl
+
+public interface BroadcastService {
+    BroadcastProgressDTO start(BroadcastRequestDTO request);
+    Optional<BroadcastProgressDTO> getProgress();
+    boolean cancel();
+}
@@ -0,0 +1,17 @@
+package com.lucamoretti.adventure_together.service.mail;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+
+import java.util.List;
+
+// Service che invia i messaggi della coda email in uscita (email_outbox) al server SMTP
+// dispatchAfterCommit: avvia in background l'invio dei messaggi accodati, dopo il commit della transazione corrente
+// dispatchDue: invia i messaggi scaduti (nuovi o da ritentare) e ritorna quanti ne ha presi in carico; usato dal pianificatore
+// getQueueStats: profondità della coda e tempi di attesa per priorità
+// Implementato da EmailDispatcherImpl
+
+public interface EmailDispatcher {
+    void dispatchAfterCommit();
+    int dispatchDue();
+    List<EmailQueueStatsDTO> getQueueStats();
+}
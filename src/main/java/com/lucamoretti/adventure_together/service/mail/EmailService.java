@@ -1,13 +1,29 @@
 package com.lucamoretti.adventure_together.service.mail;
 
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+
+import java.util.List;
 import java.util.Map;
 
 // Service per l'invio di email HTML utilizzando template
 // Fornisce un metodo per inviare email specificando destinatario, oggetto, nome del template e variabili da sostituire nel template
+// e un metodo per inviare lo stesso template a più destinatari renderizzandolo una sola volta
+// sendBulkHtmlMessageOnce accoda il template di un viaggio solo ai destinatari che non l'hanno già ricevuto (vedi SentMail)
+// e ritorna quanti messaggi ha accodato: usato da promemoria e notifiche, che possono essere rieseguiti senza duplicati
+// getTemplateStats fornisce i tempi di rendering di ogni template (istogramma per template, vedi MailTemplateEngine)
+// La priorità (default NORMAL) decide l'ordine di invio quando la coda è limitata dalle quote SMTP
 // Implementato da EmailServiceImpl
 
 public interface EmailService {
     void sendHtmlMessage(String to, String subject, String templateName, Map<String, Object> variables);
+    void sendHtmlMessage(String to, String subject, String templateName, Map<String, Object> variables, EmailPriority priority);
+    void sendBulkHtmlMessage(String subject, String templateName, Map<String, Object> sharedVariables, List<MailRecipient> recipients);
+    void sendBulkHtmlMessage(String subject, String templateName, Map<String, Object> sharedVariables, List<MailRecipient> recipients,
+                             EmailPriority priority);
+    int sendBulkHtmlMessageOnce(String subject, String templateName, Map<String, Object> sharedVariables, Long tripId,
+                                List<MailRecipient> recipients, EmailPriority priority);
     public void sendTestMail(String emailTo);
+    List<MailTemplateStatsDTO> getTemplateStats();
 }
 
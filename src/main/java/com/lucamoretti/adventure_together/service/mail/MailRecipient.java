@@ -0,0 +1,11 @@
+package com.lucamoretti.adventure_together.service.mail;
+
+import java.util.Map;
+
+/*
+ Destinatario di un invio in blocco (EmailService.sendBulkHtmlMessage): indirizzo email e variabili del template
+ proprie del destinatario (es. "traveler"), che si aggiungono alle variabili condivise da tutti i destinatari
+ */
+
+public record MailRecipient(String to, Map<String, Object> variables) {
+}
@@ -0,0 +1,20 @@
+package com.lucamoretti.adventure_together.service.mail;
+
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Service per il riepilogo (digest) delle notifiche dei traveler che lo hanno scelto
+// subscribers indica quali destinatari ricevono una email nel riepilogo: mai per le email HIGH (reset password,
+// conferma di prenotazione e pagamento), che restano immediate
+// buffer salva le notifiche nel riepilogo al posto della coda; flush accoda un messaggio per destinatario e ritorna quanti
+// Implementato da NotificationDigestServiceImpl
+
+public interface NotificationDigestService {
+    Set<String> subscribers(Collection<String> recipients, EmailPriority priority);
+    void buffer(List<EmailOutbox> messages);
+    int flush();
+}
@@ -0,0 +1,229 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastProgressDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRequestDTO;
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import com.lucamoretti.adventure_together.model.mail.BroadcastStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
+import com.lucamoretti.adventure_together.service.mail.BroadcastService;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ Implementazione degli annunci inviati da un admin (template mail/announcement).
+ I destinatari non vengono mai caricati tutti in memoria: sono letti a blocchi di chunkSize con un cursore keyset
+ sull'id del traveler (TravelerRepository.find...After) come projection, senza entità nel contesto di persistenza.
+ Ogni blocco viene accodato con un invio in blocco (un solo rendering del template, un messaggio LOW per destinatario)
+ e poi scartato, quindi la memoria usata non dipende dal numero di destinatari.
+ Contropressione: prima di ogni blocco l'invio attende che i messaggi PENDING della coda scendano sotto maxPending;
+ la coda viene svuotata dal dispatcher al ritmo consentito dalle quote SMTP (MailRateLimiter), quindi l'annuncio
+ procede alla velocità sostenibile dal server SMTP senza riempire email_outbox con centinaia di migliaia di righe.
+ L'invio gira su un virtual thread; l'avanzamento (destinatari accodati su quelli stimati all'avvio) è letto dalla pagina admin.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BroadcastServiceImpl implements BroadcastService {
+
+    static final String TEMPLATE = "mail/announcement";
+
+    private final TravelerRepository travelerRepository;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailService emailService;
+
+    // Destinatari letti e accodati per blocco
+    @Value("${app.mail.broadcast.chunk-size:500}")
+    private int chunkSize;
+
+    // Messaggi PENDING oltre i quali l'invio attende prima di accodare un altro blocco
+    @Value("${app.mail.broadcast.max-pending:2000}")
+    private long maxPending;
+
+    // Intervallo di controllo della coda durante l'attesa
+    @Value("${app.mail.broadcast.backpressure-wait-ms:1000}")
+    private long backpressureWaitMs;
+
+    @Value("${app.base-url}")
+    private String baseUrl;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicReference<Broadcast> current = new AtomicReference<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    // Stato di un invio: aggiornato dal thread dell'invio e letto dalla pagina di avanzamento
+    private static final class Broadcast {
+        private final long id;
+        private final BroadcastRequestDTO request;
+        private final long total;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong queued = new AtomicLong();
+        private volatile int chunks;
+        private volatile BroadcastStatus status = BroadcastStatus.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private volatile boolean cancelRequested;
+
+        private Broadcast(long id, BroadcastRequestDTO request, long total) {
+            this.id = id;
+            this.request = request;
+            this.total = total;
+        }
+
+        private void finish(BroadcastStatus status, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.status = status;
+        }
+
+        private BroadcastProgressDTO snapshot() {
+            return BroadcastProgressDTO.builder()
+                    .id(id)
+                    .audience(request.getAudience())
+                    .itineraryId(request.getItineraryId())
+                    .subject(request.getSubject())
+                    .status(status)
+                    .total(total)
+                    .queued(queued.get())
+                    .chunks(chunks)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+
+    @Override
+    public BroadcastProgressDTO start(BroadcastRequestDTO request) {
+        if (request.getAudience() == BroadcastAudience.ITINERARY_PARTICIPANTS && request.getItineraryId() == null) {
+            throw new IllegalArgumentException("Seleziona l'itinerario dei partecipanti a cui inviare l'annuncio");
+        }
+        Broadcast previous = current.get();
+        if (previous != null && previous.status == BroadcastStatus.RUNNING) {
+            throw new IllegalStateException("Un annuncio è già in fase di invio: attendi che termini o interrompilo");
+        }
+        Broadcast broadcast = new Broadcast(ids.incrementAndGet(), copyOf(request), countRecipients(request));
+        if (!current.compareAndSet(previous, broadcast)) {
+            throw new IllegalStateException("Un annuncio è già in fase di invio: attendi che termini o interrompilo");
+        }
+        log.info("Annuncio {} \"{}\" avviato: {} destinatari stimati ({})", broadcast.id, request.getSubject(),
+                broadcast.total, request.getAudience());
+        executor.execute(() -> run(broadcast));
+        return broadcast.snapshot();
+    }
+
+    @Override
+    public Optional<BroadcastProgressDTO> getProgress() {
+        return Optional.ofNullable(current.get()).map(Broadcast::snapshot);
+    }
+
+    @Override
+    public boolean cancel() {
+        Broadcast broadcast = current.get();
+        if (broadcast == null || broadcast.status != BroadcastStatus.RUNNING) {
+            return false;
+        }
+        broadcast.cancelRequested = true;
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Broadcast broadcast = current.get();
+        if (broadcast != null) {
+            broadcast.cancelRequested = true;
+        }
+        executor.shutdownNow();
+    }
+
+    // Scorre i destinatari a blocchi con il cursore keyset e accoda ogni blocco
+    private void run(Broadcast broadcast) {
+        BroadcastRequestDTO request = broadcast.request;
+        Map<String, Object> shared = Map.of(
+                "subject", request.getSubject(),
+                "message", request.getMessage(),
+                "homepage", baseUrl + "/home");
+        try {
+            long afterId = 0L;
+            while (!broadcast.cancelRequested) {
+                List<BroadcastRecipientDTO> chunk = fetch(request, afterId);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                awaitQueueCapacity(broadcast);
+                if (broadcast.cancelRequested) {
+                    break;
+                }
+                emailService.sendBulkHtmlMessage(request.getSubject(), TEMPLATE, shared, recipients(chunk), EmailPriority.LOW);
+                broadcast.queued.addAndGet(chunk.size());
+                broadcast.chunks++;
+                afterId = chunk.get(chunk.size() - 1).getId();
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+            }
+            broadcast.finish(broadcast.cancelRequested ? BroadcastStatus.CANCELLED : BroadcastStatus.COMPLETED, null);
+            log.info("Annuncio {} {}: {} messaggi accodati in {} blocchi", broadcast.id,
+                    broadcast.status == BroadcastStatus.CANCELLED ? "interrotto" : "completato",
+                    broadcast.queued.get(), broadcast.chunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broadcast.finish(BroadcastStatus.CANCELLED, null);
+        } catch (Exception e) {
+            log.error("Annuncio {} interrotto dopo {} messaggi accodati", broadcast.id, broadcast.queued.get(), e);
+            broadcast.finish(BroadcastStatus.FAILED, e.getMessage());
+        }
+    }
+
+    // Contropressione: attende che il dispatcher smaltisca la coda prima di accodare un altro blocco
+    private void awaitQueueCapacity(Broadcast broadcast) throws InterruptedException {
+        while (!broadcast.cancelRequested && outboxRepository.countByStatus(EmailOutboxStatus.PENDING) >= maxPending) {
+            Thread.sleep(backpressureWaitMs);
+        }
+    }
+
+    private List<BroadcastRecipientDTO> fetch(BroadcastRequestDTO request, long afterId) {
+        Limit limit = Limit.of(Math.max(1, chunkSize));
+        return request.getAudience() == BroadcastAudience.ITINERARY_PARTICIPANTS
+                ? travelerRepository.findItineraryParticipantsAfter(request.getItineraryId(), afterId, limit)
+                : travelerRepository.findBroadcastRecipientsAfter(afterId, limit);
+    }
+
+    private long countRecipients(BroadcastRequestDTO request) {
+        return request.getAudience() == BroadcastAudience.ITINERARY_PARTICIPANTS
+                ? travelerRepository.countItineraryParticipants(request.getItineraryId())
+                : travelerRepository.countByActiveTrue();
+    }
+
+    // Il template usa solo il nome del destinatario (traveler.firstName), già presente nella projection
+    private static List<MailRecipient> recipients(List<BroadcastRecipientDTO> chunk) {
+        return chunk.stream()
+                .map(r -> new MailRecipient(r.getEmail(), Map.of("traveler", r)))
+                .toList();
+    }
+
+    // La richiesta arriva dalla form: copia per non condividere un oggetto mutabile con il thread dell'invio
+    private static BroadcastRequestDTO copyOf(BroadcastRequestDTO request) {
+        return new BroadcastRequestDTO(request.getAudience(), request.getItineraryId(),
+                request.getSubject().trim(), request.getMessage());
+    }
+}
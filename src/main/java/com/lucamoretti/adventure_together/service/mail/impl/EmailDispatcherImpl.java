@@ -0,0 +1,302 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Implementazione del dispatcher della coda email in uscita.
+ I messaggi di ogni blocco vengono divisi fra al massimo "workers" thread; ogni worker prende in prestito
+ una connessione da SmtpTransportPool e invia i suoi messaggi sulla stessa connessione SMTP.
+ I worker SMTP sono thread di piattaforma: Jakarta Mail legge dal socket dentro metodi synchronized,
+ che in Java 21 bloccano il carrier di un virtual thread (pinning) e ridurrebbero il parallelismo al numero di core.
+ Il drenaggio in background, che attende soprattutto il database, resta su virtual thread.
+ Un solo drenaggio della coda è attivo alla volta: una richiesta che arriva durante un drenaggio
+ viene ricordata e fa ripartire il ciclo al termine, così nessun messaggio accodato resta in attesa del pianificatore.
+ Ogni messaggio viene preso in carico con una UPDATE atomica (PENDING → SENDING) prima dell'invio.
+ I messaggi vengono letti per priorità (HIGH, NORMAL, LOW) e inviati solo nei limiti delle quote SMTP (MailRateLimiter),
+ condivise fra i nodi: il drenaggio dopo il commit parte sul nodo che ha accodato il messaggio, ma i gettoni sono del cluster;
+ a quota esaurita restano PENDING e il drenaggio riparte quando si ricarica, così gli invii in blocco vengono distribuiti
+ nel tempo e i messaggi urgenti accodati nel frattempo passano davanti ai promemoria.
+ Gli errori SMTP non arrivano mai al chiamante: il messaggio viene ritentato con backoff esponenziale
+ e dopo maxAttempts tentativi resta in stato DEAD.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmailDispatcherImpl implements EmailDispatcher {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final SmtpTransportPool transportPool;
+    private final MailRateLimiter rateLimiter;
+
+    // Indirizzo email del mittente, configurato in application.properties dell'applicazione
+    @Value("${spring.mail.username}")
+    private String from;
+
+    // Numero massimo di invii SMTP contemporanei (e di connessioni del pool)
+    @Value("${app.mail.outbox.workers:4}")
+    private int workers;
+
+    // Numero di tentativi prima di passare il messaggio in DEAD
+    @Value("${app.mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    // Attesa prima del primo nuovo tentativo (raddoppia ad ogni errore)
+    @Value("${app.mail.outbox.backoff-seconds:30}")
+    private long backoffSeconds;
+
+    // Messaggi presi in carico per ogni giro del drenaggio
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    // Dopo quanti minuti un messaggio rimasto in SENDING viene rimesso in coda
+    @Value("${app.mail.outbox.sending-timeout-minutes:10}")
+    private long sendingTimeoutMinutes;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+    private ExecutorService smtpWorkers;
+
+    // Tempi di attesa (accodamento → invio) dei messaggi inviati, per priorità
+    private final Map<EmailPriority, WaitStats> waitStats = newWaitStats();
+
+    private static final class WaitStats {
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+    }
+
+    @PostConstruct
+    public void init() {
+        smtpWorkers = Executors.newFixedThreadPool(Math.max(1, workers), Thread.ofPlatform().name("smtp-worker-", 1).factory());
+    }
+
+    @Override
+    public void dispatchAfterCommit() {
+        AfterCommit.run(() -> executor.execute(this::drainQuietly));
+    }
+
+    @Override
+    public int dispatchDue() {
+        int requeued = outboxRepository.requeueStuck(LocalDateTime.now().minusMinutes(sendingTimeoutMinutes));
+        if (requeued > 0) {
+            log.warn("Rimessi in coda {} messaggi email rimasti in invio oltre il timeout", requeued);
+        }
+        transportPool.evictIdle();
+        return drain();
+    }
+
+    @Override
+    public List<EmailQueueStatsDTO> getQueueStats() {
+        Map<EmailPriority, EmailQueueStatsDTO> byPriority = new EnumMap<>(EmailPriority.class);
+        outboxRepository.countPendingByPriority().forEach(row -> byPriority.put(row.getPriority(), row));
+        List<EmailQueueStatsDTO> stats = new ArrayList<>();
+        for (EmailPriority priority : EmailPriority.values()) {
+            EmailQueueStatsDTO row = byPriority.getOrDefault(priority, new EmailQueueStatsDTO(priority, 0L, null));
+            WaitStats wait = waitStats.get(priority);
+            long sent = wait.sent.sum();
+            row.setSent(sent);
+            row.setAverageWaitMillis(sent == 0 ? 0 : wait.totalMillis.sum() / sent);
+            row.setMaxWaitMillis(wait.maxMillis.get());
+            stats.add(row);
+        }
+        return stats;
+    }
+
+    // shutdownNow interrompe anche l'eventuale attesa della ricarica della quota (retryWhenAvailable)
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        smtpWorkers.shutdown();
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("Errore durante l'invio della coda email", e);
+        }
+    }
+
+    // Invia i messaggi scaduti finché la coda non è vuota o la quota SMTP non è esaurita
+    private int drain() {
+        drainRequested.set(true);
+        int dispatched = 0;
+        long start = System.nanoTime();
+        // se un altro drenaggio è in corso sarà lui a ripetere il giro (drainRequested)
+        while (drainRequested.get() && draining.compareAndSet(false, true)) {
+            try {
+                drainRequested.set(false);
+                dispatched += drainByPriority();
+            } finally {
+                draining.set(false);
+            }
+        }
+        if (dispatched > 0) {
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            SmtpTransportPool.Stats stats = transportPool.getStats();
+            log.info("Coda email: {} messaggi in {} ms ({} msg/s); connessioni SMTP aperte {}, riusate {}",
+                    dispatched, millis, String.format("%.1f", dispatched * 1000.0 / millis),
+                    stats.connectionsOpened(), stats.connectionsReused());
+        }
+        return dispatched;
+    }
+
+    // Invia i messaggi a blocchi di batchSize dalla priorità più alta, nei limiti della quota SMTP
+    // Dopo ogni blocco pieno riparte da HIGH, così i messaggi urgenti accodati nel frattempo passano avanti
+    private int drainByPriority() {
+        int dispatched = 0;
+        boolean more = true;
+        while (more) {
+            more = false;
+            for (EmailPriority priority : EmailPriority.values()) {
+                List<Long> due = outboxRepository.findDueIds(LocalDateTime.now(), priority, Limit.of(batchSize));
+                if (due.isEmpty()) {
+                    continue;
+                }
+                int granted = rateLimiter.tryAcquire(due.size(), priority);
+                dispatched += sendBatch(due.subList(0, granted));
+                if (granted < due.size()) {
+                    // le priorità più basse hanno una quota uguale o minore: si riprende alla ricarica
+                    retryWhenAvailable(priority);
+                    return dispatched;
+                }
+                if (due.size() == batchSize) {
+                    more = true;
+                    break;
+                }
+            }
+        }
+        return dispatched;
+    }
+
+    // Programma un nuovo drenaggio quando la quota SMTP si ricarica (uno solo alla volta)
+    private void retryWhenAvailable(EmailPriority priority) {
+        Duration wait = rateLimiter.timeUntilAvailable(priority);
+        if (!retryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        log.info("Quota SMTP esaurita per i messaggi {}: invio ripreso tra {} ms", priority, wait.toMillis());
+        executor.execute(() -> {
+            try {
+                Thread.sleep(wait.plusMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                retryScheduled.set(false);
+            }
+            drainQuietly();
+        });
+    }
+
+    // Prende in carico i messaggi del blocco e li invia con al massimo "workers" worker in parallelo:
+    // i messaggi sono distribuiti a turno fra i worker e ogni worker usa una sola connessione del pool
+    private int sendBatch(List<Long> ids) {
+        List<Long> claimed = new ArrayList<>();
+        for (Long id : ids) {
+            if (outboxRepository.claim(id, LocalDateTime.now()) == 1) {
+                claimed.add(id);
+            } // altrimenti già preso in carico da un altro drenaggio
+        }
+        int workerCount = Math.min(Math.max(1, workers), claimed.size());
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int w = 0; w < workerCount; w++) {
+            chunks.add(new ArrayList<>());
+        }
+        for (int i = 0; i < claimed.size(); i++) {
+            chunks.get(i % workerCount).add(claimed.get(i));
+        }
+        List<Future<?>> sending = new ArrayList<>();
+        for (List<Long> chunk : chunks) {
+            sending.add(smtpWorkers.submit(() -> {
+                try (SmtpTransportPool.Lease lease = transportPool.borrow()) {
+                    chunk.forEach(id -> deliver(id, lease));
+                }
+            }));
+        }
+        for (Future<?> f : sending) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Errore inatteso nell'invio di un messaggio email", e.getCause());
+            }
+        }
+        return claimed.size();
+    }
+
+    // Invia un messaggio sulla connessione del worker e ne registra l'esito
+    private void deliver(Long id, SmtpTransportPool.Lease lease) {
+        EmailOutbox email = outboxRepository.findById(id).orElse(null);
+        if (email == null) {
+            return;
+        }
+        try {
+            MimeMessage message = transportPool.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true);
+            helper.setFrom(from);
+            helper.setTo(email.getRecipient());
+            helper.setSubject(email.getSubject());
+            helper.setText(email.getHtmlBody(), true);
+            lease.send(message);
+            email.markSent(LocalDateTime.now());
+            recordWait(email);
+        } catch (Exception e) {
+            email.markFailed(e.getMessage(), LocalDateTime.now(), maxAttempts, Duration.ofSeconds(backoffSeconds));
+            if (email.getStatus() == EmailOutboxStatus.DEAD) {
+                log.error("Email {} a {} non inviata dopo {} tentativi: {}", id, email.getRecipient(), email.getAttempts(), e.getMessage());
+            } else {
+                log.warn("Invio email {} a {} fallito (tentativo {}), nuovo tentativo alle {}",
+                        id, email.getRecipient(), email.getAttempts(), email.getNextAttemptAt());
+            }
+        }
+        outboxRepository.save(email);
+    }
+
+    private static Map<EmailPriority, WaitStats> newWaitStats() {
+        Map<EmailPriority, WaitStats> stats = new EnumMap<>(EmailPriority.class);
+        for (EmailPriority priority : EmailPriority.values()) {
+            stats.put(priority, new WaitStats());
+        }
+        return stats;
+    }
+
+    private void recordWait(EmailOutbox email) {
+        long millis = Duration.between(email.getCreatedAt(), email.getSentAt()).toMillis();
+        WaitStats stats = waitStats.get(email.getPriority() != null ? email.getPriority() : EmailPriority.NORMAL);
+        stats.sent.increment();
+        stats.totalMillis.add(millis);
+        stats.maxMillis.accumulateAndGet(millis, Math::max);
+    }
+}
@@ -1,21 +1,43 @@
 package com.lucamoretti.adventure_together.service.mail.impl;
 
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.mail.SentMail;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.mail.SentMailRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
 import com.lucamoretti.adventure_together.service.mail.EmailService;
-import jakarta.mail.internet.MimeMessage;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.spring6.SpringTemplateEngine;
-import org.thymeleaf.context.Context;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /*
  Service per l'invio di email HTML utilizzando template Thymeleaf.
  Implementa il metodo per inviare email specificando destinatario, oggetto, nome del template e variabili da sostituire nel template.
- Utilizza JavaMailSender per l'invio delle email e SpringTemplateEngine per il rendering dei template.
+ Utilizza MailTemplateEngine (template email precaricati, nomi normalizzati) per il rendering; il messaggio renderizzato viene salvato nella coda
+ email_outbox nella transazione del chiamante e inviato dopo il commit da EmailDispatcher, così la richiesta HTTP
+ e la transazione non attendono il server SMTP.
+ Negli invii in blocco (es. le notifiche di cambio stato di un viaggio a tutti i traveler) il template viene
+ renderizzato una sola volta con le variabili condivise; per ogni destinatario vengono inseriti solo i suoi campi
+ (vedi MailMergeTemplate) e i messaggi vengono salvati con un'unica saveAll.
+ Promemoria e notifiche legati a un viaggio passano dal registro delle email inviate (SentMail): una query
+ per viaggio esclude i destinatari già serviti e le nuove righe del registro vengono salvate con i messaggi,
+ così uno scheduler interrotto o rieseguito riprende dai soli destinatari mancanti.
+ Le email non urgenti dei traveler che hanno scelto il riepilogo giornaliero vengono salvate nel riepilogo
+ (vedi NotificationDigestService) invece che nella coda.
+ JavaMailSender è usato direttamente solo dalla mail di prova.
 */
 
 @Service
@@ -23,31 +45,95 @@ import java.util.Map;
 public class EmailServiceImpl implements EmailService {
     // Dipendenze necessarie per l'invio delle email e il rendering dei template
     private final JavaMailSender mailSender;
-    private final SpringTemplateEngine templateEngine;
-
-    // Indirizzo email del mittente, configurato in application.properties dell'applicazione
-    @Value("${spring.mail.username}")
-    private String from;
+    private final MailTemplateEngine templateEngine;
+    private final EmailOutboxRepository outboxRepository;
+    private final SentMailRepository sentMailRepository;
+    private final EmailDispatcher dispatcher;
+    private final NotificationDigestService digestService;
 
     // Metodo per inviare un'email HTML utilizzando un template Thymeleaf
+    // Il template viene renderizzato subito (le variabili possono essere entità ancora collegate alla sessione),
+    // l'invio SMTP avviene in background dopo il commit
     @Override
     public void sendHtmlMessage(String to, String subject, String templateName, Map<String, Object> variables) {
+        sendHtmlMessage(to, subject, templateName, variables, EmailPriority.NORMAL);
+    }
+
+    // Come sopra, con la priorità di invio del messaggio (es. HIGH per reset password e conferme di prenotazione)
+    @Override
+    public void sendHtmlMessage(String to, String subject, String templateName, Map<String, Object> variables,
+                                EmailPriority priority) {
         try {
-            Context context = new Context(); // Contesto per il template Thymeleaf
-            context.setVariables(variables); // Imposta le variabili da sostituire nel template
-            String htmlContent = templateEngine.process(templateName, context); // Genera il contenuto HTML dell'email
-
-            MimeMessage message = mailSender.createMimeMessage(); // Crea un nuovo messaggio MIME (Multipurpose Internet Mail Extensions)
-            MimeMessageHelper helper = new MimeMessageHelper(message, true); // Helper per facilitare la creazione del messaggio
-            helper.setFrom(from); // Imposta il mittente
-            helper.setTo(to);   // Imposta il destinatario
-            helper.setSubject(subject); // Imposta l'oggetto dell'email
-            helper.setText(htmlContent, true); // Imposta il contenuto HTML dell'email
-
-            mailSender.send(message);
+            String name = MailTemplateEngine.normalize(templateName);
+            String htmlContent = templateEngine.render(name, variables); // Genera il contenuto HTML dell'email
+
+            EmailOutbox message = EmailOutbox.pending(to, subject, name, htmlContent, priority);
+            if (!digestService.subscribers(List.of(to), priority).isEmpty()) {
+                digestService.buffer(List.of(message)); // il traveler ha scelto il riepilogo giornaliero
+                return;
+            }
+            outboxRepository.save(message); // Accoda il messaggio
         } catch (Exception e) {
-            throw new RuntimeException("Failed to send email", e);
+            throw new RuntimeException("Failed to queue email", e);
         }
+        dispatcher.dispatchAfterCommit();
+    }
+
+    // Metodo per inviare lo stesso template a più destinatari: rendering unico e unione dei campi di ogni destinatario
+    // Le variabili dei destinatari vanno usate nel template solo come testo (vedi MailMergeTemplate)
+    @Override
+    public void sendBulkHtmlMessage(String subject, String templateName, Map<String, Object> sharedVariables,
+                                    List<MailRecipient> recipients) {
+        sendBulkHtmlMessage(subject, templateName, sharedVariables, recipients, EmailPriority.NORMAL);
+    }
+
+    @Override
+    public void sendBulkHtmlMessage(String subject, String templateName, Map<String, Object> sharedVariables,
+                                    List<MailRecipient> recipients, EmailPriority priority) {
+        if (recipients.isEmpty()) {
+            return;
+        }
+        try {
+            String name = MailTemplateEngine.normalize(templateName);
+            String marker = MailMergeTemplate.newMarker();
+            Map<String, Object> variables = new HashMap<>(sharedVariables);
+            Set<String> recipientVariables = new LinkedHashSet<>();
+            recipients.forEach(r -> recipientVariables.addAll(r.variables().keySet()));
+            recipientVariables.forEach(variable -> variables.put(variable, MailMergeTemplate.placeholder(marker, variable)));
+            MailMergeTemplate template = MailMergeTemplate.compile(templateEngine.render(name, variables), marker);
+
+            queue(recipients.stream()
+                    .map(r -> EmailOutbox.pending(r.to(), subject, name, template.merge(r.variables()), priority))
+                    .toList(), priority); // Accoda un messaggio per destinatario
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to queue email", e);
+        }
+    }
+
+    // Invio in blocco idempotente: accoda il template del viaggio solo ai destinatari assenti dal registro
+    // e li registra nella stessa transazione; ritorna il numero di messaggi accodati
+    @Override
+    public int sendBulkHtmlMessageOnce(String subject, String templateName, Map<String, Object> sharedVariables, Long tripId,
+                                       List<MailRecipient> recipients, EmailPriority priority) {
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+        // nome normalizzato: "/mail/x" e "mail/x" sono la stessa chiave del registro
+        String name = MailTemplateEngine.normalize(templateName);
+        Set<String> skip = new HashSet<>(sentMailRepository.findRecipients(name, tripId,
+                recipients.stream().map(MailRecipient::to).toList()));
+        // esclude i destinatari già serviti e gli indirizzi ripetuti nella stessa chiamata
+        List<MailRecipient> pending = recipients.stream()
+                .filter(r -> skip.add(r.to()))
+                .toList();
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        sendBulkHtmlMessage(subject, name, sharedVariables, pending, priority);
+        sentMailRepository.saveAll(pending.stream()
+                .map(r -> SentMail.of(name, tripId, r.to()))
+                .toList());
+        return pending.size();
     }
 
     // Metodo di test per inviare una semplice email di prova
@@ -60,6 +146,29 @@ public class EmailServiceImpl implements EmailService {
         mailSender.send(message);
     }
 
+    // Salva i messaggi nella coda, o nel riepilogo per i traveler che lo hanno scelto (una query per tutti i destinatari)
+    private void queue(List<EmailOutbox> messages, EmailPriority priority) {
+        Set<String> digest = digestService.subscribers(messages.stream().map(EmailOutbox::getRecipient).toList(), priority);
+        if (digest.isEmpty()) {
+            outboxRepository.saveAll(messages);
+            dispatcher.dispatchAfterCommit();
+            return;
+        }
+        Map<Boolean, List<EmailOutbox>> toDigest = messages.stream()
+                .collect(Collectors.partitioningBy(m -> digest.contains(m.getRecipient())));
+        digestService.buffer(toDigest.get(true));
+        if (!toDigest.get(false).isEmpty()) {
+            outboxRepository.saveAll(toDigest.get(false));
+            dispatcher.dispatchAfterCommit();
+        }
+    }
+
+    // Tempi di rendering dei template email dall'avvio
+    @Override
+    public List<MailTemplateStatsDTO> getTemplateStats() {
+        return templateEngine.getStats();
+    }
+
 
 }
 
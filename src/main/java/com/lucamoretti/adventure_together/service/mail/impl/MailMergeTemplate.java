@@ -0,0 +1,134 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import org.springframework.beans.PropertyAccessorFactory;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ Template di un invio in blocco già renderizzato, diviso in parti fisse e campi del destinatario.
+ Il template Thymeleaf viene renderizzato una sola volta con le variabili condivise (es. il viaggio)
+ e, al posto delle variabili del destinatario, dei segnaposto (placeholder) che restituiscono un marcatore
+ per ogni proprietà letta: "${traveler.firstName}" produce ad esempio "@@3f9a1c:traveler.firstName@@".
+ compile divide l'HTML sui marcatori; merge ricompone il messaggio di un destinatario inserendo i suoi valori,
+ così per ogni destinatario il costo è la sola concatenazione e non la valutazione del template.
+ I valori vengono escapati come fa th:text: le variabili del destinatario vanno quindi usate solo come testo
+ (th:text o attributi), non in condizioni (th:if), iterazioni o th:utext.
+ */
+
+final class MailMergeTemplate {
+
+    // parti fisse dell'HTML: una in più dei campi (prima, fra e dopo i campi)
+    private final List<String> literals;
+    // percorso del campo, es. "traveler.firstName" o "name"
+    private final List<String> fields;
+    private final int literalLength;
+
+    private MailMergeTemplate(List<String> literals, List<String> fields) {
+        this.literals = literals;
+        this.fields = fields;
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    // Marcatore univoco per un invio in blocco (evita collisioni con il testo del template)
+    static String newMarker() {
+        return "@@" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ":";
+    }
+
+    // Segnaposto da mettere nel contesto Thymeleaf al posto della variabile del destinatario
+    static Object placeholder(String marker, String variable) {
+        return new Placeholder(marker, variable);
+    }
+
+    // Divide l'HTML renderizzato con i segnaposto in parti fisse e campi
+    static MailMergeTemplate compile(String html, String marker) {
+        List<String> literals = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        int pos = 0;
+        int start;
+        while ((start = html.indexOf(marker, pos)) >= 0) {
+            int end = html.indexOf("@@", start + marker.length());
+            if (end < 0) {
+                break;
+            }
+            literals.add(html.substring(pos, start));
+            fields.add(html.substring(start + marker.length(), end));
+            pos = end + 2;
+        }
+        literals.add(html.substring(pos));
+        return new MailMergeTemplate(literals, fields);
+    }
+
+    int fieldCount() {
+        return fields.size();
+    }
+
+    // Compone l'HTML di un destinatario con le sue variabili
+    String merge(Map<String, Object> variables) {
+        StringBuilder html = new StringBuilder(literalLength + fields.size() * 16);
+        for (int i = 0; i < fields.size(); i++) {
+            html.append(literals.get(i));
+            Object value = resolve(fields.get(i), variables);
+            if (value != null) {
+                html.append(HtmlEscape.escapeHtml4Xml(String.valueOf(value)));
+            }
+        }
+        html.append(literals.get(fields.size()));
+        return html.toString();
+    }
+
+    // Legge il valore del campo: la variabile stessa ("name") o una sua proprietà ("traveler.firstName")
+    private static Object resolve(String field, Map<String, Object> variables) {
+        int dot = field.indexOf('.');
+        Object root = variables.get(dot < 0 ? field : field.substring(0, dot));
+        if (dot < 0 || root == null) {
+            return root;
+        }
+        String property = field.substring(dot + 1);
+        if (root instanceof Map<?, ?> map) {
+            return map.get(property);
+        }
+        return PropertyAccessorFactory.forBeanPropertyAccess(root).getPropertyValue(property);
+    }
+
+    /*
+     Segnaposto di una variabile del destinatario durante il rendering condiviso.
+     È una Map così che SpEL risolva qualsiasi proprietà ("traveler.firstName") con get(...);
+     usato direttamente ("${name}") viene stampato tramite toString.
+     */
+    private static final class Placeholder extends AbstractMap<String, Object> {
+
+        private final String marker;
+        private final String variable;
+
+        private Placeholder(String marker, String variable) {
+            this.marker = marker;
+            this.variable = variable;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return true;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return marker + variable + "." + key + "@@";
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return Set.of();
+        }
+
+        @Override
+        public String toString() {
+            return marker + variable + "@@";
+        }
+    }
+}
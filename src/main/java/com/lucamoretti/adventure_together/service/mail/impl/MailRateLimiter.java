@@ -0,0 +1,199 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.mail.MailRateBucket;
+import com.lucamoretti.adventure_together.repository.mail.MailRateBucketRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Limita gli invii del dispatcher alle quote del server SMTP configurato (spring.mail.host).
+ Due token bucket: uno per la quota al minuto e uno per la quota giornaliera (finestra mobile di 24 ore).
+ Un invio consuma un gettone da entrambi; quando un bucket è vuoto il dispatcher lascia i messaggi in coda
+ e riprende quando si ricarica, così gli invii in blocco vengono distribuiti nel tempo invece di essere rifiutati.
+ Gli ultimi highPriorityReserve gettoni della quota giornaliera sono riservati ai messaggi HIGH:
+ i promemoria non possono esaurire la quota e impedire l'invio di reset password e conferme di prenotazione.
+ Con shared = true (più nodi) lo stato dei bucket è nella tabella mail_rate_buckets (MailRateBucket):
+ ogni richiesta di gettoni blocca le due righe in una transazione dedicata, ricalcola la ricarica e salva il consumo,
+ così la quota è del cluster e non di ogni nodo (il drenaggio dopo il commit può partire su qualunque nodo).
+ Con shared = false i bucket sono in memoria (un solo nodo). Con enabled = false non c'è alcun limite.
+ */
+
+@Component
+public class MailRateLimiter {
+
+    static final String MINUTE = "minute";
+    static final String DAY = "day";
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long DAY_NANOS = TimeUnit.DAYS.toNanos(1);
+
+    private final MailRateBucketRepository bucketRepository;
+    private final TransactionTemplate quotaTransaction;
+
+    // Limitazione attiva (false = nessun limite, es. server SMTP interno)
+    @Value("${app.mail.rate.enabled:true}")
+    private boolean enabled;
+
+    // Quote condivise fra i nodi nel database (false = quote in memoria, un solo nodo)
+    @Value("${app.mail.rate.shared:true}")
+    private boolean shared;
+
+    // Messaggi al minuto consentiti dal server SMTP
+    @Value("${app.mail.rate.per-minute:20}")
+    private long perMinute;
+
+    // Messaggi al giorno consentiti dal server SMTP
+    @Value("${app.mail.rate.per-day:500}")
+    private long perDay;
+
+    // Quota giornaliera riservata ai messaggi HIGH
+    @Value("${app.mail.rate.high-priority-reserve:50}")
+    private long highPriorityReserve;
+
+    private TokenBucket minuteBucket;
+    private TokenBucket dayBucket;
+
+    // Numero di volte in cui un invio è stato rimandato per esaurimento della quota (su questo nodo)
+    private final AtomicLong throttled = new AtomicLong();
+
+    // Gettoni disponibili al momento della lettura delle statistiche
+    public record Stats(long minuteTokens, long dayTokens, long throttled) {
+    }
+
+    public MailRateLimiter(MailRateBucketRepository bucketRepository, PlatformTransactionManager transactionManager) {
+        this.bucketRepository = bucketRepository;
+        this.quotaTransaction = new TransactionTemplate(transactionManager);
+        this.quotaTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        perMinute = Math.max(1, perMinute);
+        perDay = Math.max(1, perDay);
+        long now = System.nanoTime();
+        minuteBucket = new TokenBucket(perMinute, MINUTE_NANOS, now);
+        dayBucket = new TokenBucket(perDay, DAY_NANOS, now);
+        highPriorityReserve = Math.min(highPriorityReserve, Math.max(0, perDay - 1));
+    }
+
+    // Consuma fino a "wanted" gettoni per messaggi della priorità indicata e ritorna quanti ne ha concessi (0..wanted)
+    public int tryAcquire(int wanted, EmailPriority priority) {
+        if (!enabled) {
+            return wanted;
+        }
+        long granted = shared
+                ? quotaTransaction.execute(status -> acquireShared(wanted, priority))
+                : acquireLocal(wanted, priority);
+        if (granted < wanted) {
+            throttled.incrementAndGet();
+        }
+        return (int) granted;
+    }
+
+    // Attesa prima che sia disponibile un gettone per la priorità indicata
+    public Duration timeUntilAvailable(EmailPriority priority) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+        if (shared) {
+            return quotaTransaction.execute(status -> {
+                long now = epochNanos();
+                return timeUntilAvailable(read(MINUTE, perMinute, MINUTE_NANOS, now), read(DAY, perDay, DAY_NANOS, now),
+                        priority, now);
+            });
+        }
+        synchronized (this) {
+            return timeUntilAvailable(minuteBucket, dayBucket, priority, System.nanoTime());
+        }
+    }
+
+    public Stats getStats() {
+        if (!enabled) {
+            return new Stats(-1, -1, throttled.get());
+        }
+        if (shared) {
+            return quotaTransaction.execute(status -> {
+                long now = epochNanos();
+                return new Stats(read(MINUTE, perMinute, MINUTE_NANOS, now).available(0, now),
+                        read(DAY, perDay, DAY_NANOS, now).available(0, now), throttled.get());
+            });
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            return new Stats(minuteBucket.available(0, now), dayBucket.available(0, now), throttled.get());
+        }
+    }
+
+    private synchronized long acquireLocal(int wanted, EmailPriority priority) {
+        return take(minuteBucket, dayBucket, wanted, priority, System.nanoTime());
+    }
+
+    // Righe bloccate sempre nello stesso ordine (minute, day): due nodi non possono attendersi a vicenda
+    private long acquireShared(int wanted, EmailPriority priority) {
+        long now = epochNanos();
+        MailRateBucket minuteRow = lock(MINUTE, perMinute, now);
+        MailRateBucket dayRow = lock(DAY, perDay, now);
+        TokenBucket minute = restore(minuteRow, perMinute, MINUTE_NANOS);
+        TokenBucket day = restore(dayRow, perDay, DAY_NANOS);
+        long granted = take(minute, day, wanted, priority, now);
+        store(minuteRow, minute);
+        store(dayRow, day);
+        return granted;
+    }
+
+    private long take(TokenBucket minute, TokenBucket day, int wanted, EmailPriority priority, long now) {
+        long granted = Math.min(wanted, Math.min(minute.available(0, now), day.available(reserve(priority), now)));
+        minute.take(granted);
+        day.take(granted);
+        return granted;
+    }
+
+    private Duration timeUntilAvailable(TokenBucket minute, TokenBucket day, EmailPriority priority, long now) {
+        return Duration.ofNanos(Math.max(minute.nanosUntilAvailable(0, now), day.nanosUntilAvailable(reserve(priority), now)));
+    }
+
+    // Riga della quota bloccata fino al commit; creata piena al primo utilizzo
+    private MailRateBucket lock(String name, long capacity, long now) {
+        return bucketRepository.findByIdForUpdate(name).orElseGet(() -> {
+            bucketRepository.createIfMissing(name, capacity, now);
+            return bucketRepository.findByIdForUpdate(name).orElseThrow();
+        });
+    }
+
+    // Bucket della quota senza lock (solo lettura); piena se la riga non esiste ancora
+    private TokenBucket read(String name, long capacity, long periodNanos, long now) {
+        return bucketRepository.findById(name)
+                .map(row -> restore(row, capacity, periodNanos))
+                .orElseGet(() -> new TokenBucket(capacity, periodNanos, now));
+    }
+
+    private static TokenBucket restore(MailRateBucket row, long capacity, long periodNanos) {
+        return new TokenBucket(capacity, periodNanos, row.getTokens(), row.getRefilledAtNanos());
+    }
+
+    // La riga è gestita dalla transazione: le modifiche vengono salvate al commit
+    private static void store(MailRateBucket row, TokenBucket bucket) {
+        row.setTokens(bucket.tokens());
+        row.setRefilledAtNanos(bucket.lastRefillNanos());
+    }
+
+    // Istante condiviso fra i nodi (orologio di sistema), in nanosecondi dall'epoch
+    private static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private long reserve(EmailPriority priority) {
+        return priority == EmailPriority.HIGH ? 0 : highPriorityReserve;
+    }
+}
@@ -0,0 +1,148 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateSpec;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ Motore Thymeleaf dedicato ai template email (templates/mail/*.html), separato da quello delle pagine web.
+ I nomi dei template vengono normalizzati ("/mail/cancelled", "mail/cancelled.html" → "mail/cancelled"),
+ così lo stesso file non finisce due volte nella cache dei template.
+ All'avvio tutti i template email vengono letti e analizzati (parsing) e restano in cache senza scadenza:
+ il primo invio non paga il costo del parsing e un template malformato blocca l'avvio invece del primo invio.
+ Un template sconosciuto viene rifiutato subito con IllegalArgumentException.
+ Per ogni template registra un istogramma dei tempi di rendering (vedi RenderTimeHistogram).
+ */
+
+@Slf4j
+@Component
+public class MailTemplateEngine {
+
+    static final String PREFIX = "mail/";
+    private static final String LOCATION = "templates/";
+    private static final String SUFFIX = ".html";
+
+    private final SpringTemplateEngine engine;
+    private final Set<String> templates = new TreeSet<>();
+    private final Map<String, RenderTimeHistogram> renderTimes = new ConcurrentHashMap<>();
+
+    public MailTemplateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix(LOCATION);
+        resolver.setSuffix(SUFFIX);
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setResolvablePatterns(Set.of(PREFIX + "*"));
+        resolver.setCheckExistence(true);
+        resolver.setCacheable(true);
+        resolver.setCacheTTLMs(null); // nessuna scadenza: i template sono nel jar e non cambiano
+        engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.setEnableSpringELCompiler(true);
+    }
+
+    // Carica e analizza tutti i template email; un template malformato o la cartella vuota bloccano l'avvio
+    @PostConstruct
+    public void init() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:" + LOCATION + PREFIX + "*" + SUFFIX);
+        for (Resource resource : resources) {
+            templates.add(normalize(resource.getFilename()));
+        }
+        if (templates.isEmpty()) {
+            throw new IllegalStateException("Nessun template email in classpath:" + LOCATION + PREFIX);
+        }
+        long start = System.nanoTime();
+        templates.forEach(this::preload);
+        log.info("Template email precaricati: {} in {} ms", templates.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Nome canonico di un template email: senza "/" iniziale e senza estensione, sempre sotto "mail/"
+    public static String normalize(String templateName) {
+        if (templateName == null || templateName.isBlank()) {
+            throw new IllegalArgumentException("Nome del template email mancante");
+        }
+        String name = templateName.strip();
+        while (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        if (name.endsWith(SUFFIX)) {
+            name = name.substring(0, name.length() - SUFFIX.length());
+        }
+        return name.startsWith(PREFIX) ? name : PREFIX + name;
+    }
+
+    // Renderizza un template email con le variabili indicate
+    public String render(String templateName, Map<String, Object> variables) {
+        String name = normalize(templateName);
+        if (!templates.contains(name)) {
+            throw new IllegalArgumentException("Template email sconosciuto: " + templateName);
+        }
+        Context context = new Context();
+        context.setVariables(variables);
+        long start = System.nanoTime();
+        String html = engine.process(name, context);
+        renderTimes.computeIfAbsent(name, n -> new RenderTimeHistogram()).record(System.nanoTime() - start);
+        return html;
+    }
+
+    public Set<String> getTemplateNames() {
+        return Set.copyOf(templates);
+    }
+
+    // Tempi di rendering per template, dal più renderizzato
+    public List<MailTemplateStatsDTO> getStats() {
+        return renderTimes.entrySet().stream()
+                .map(e -> MailTemplateStatsDTO.builder()
+                        .templateName(e.getKey())
+                        .renders(e.getValue().count())
+                        .averageMicros(e.getValue().averageMicros())
+                        .maxMicros(e.getValue().maxMicros())
+                        .p50Micros(e.getValue().percentileMicros(0.50))
+                        .p95Micros(e.getValue().percentileMicros(0.95))
+                        .p99Micros(e.getValue().percentileMicros(0.99))
+                        .histogram(e.getValue().buckets())
+                        .build())
+                .sorted(Comparator.comparingLong(MailTemplateStatsDTO::getRenders).reversed()
+                        .thenComparing(MailTemplateStatsDTO::getTemplateName))
+                .toList();
+    }
+
+    /*
+     Mette in cache il template analizzato.
+     Con la cache attiva Thymeleaf analizza l'intero template e lo salva in cache prima di elaborarlo:
+     basta un'elaborazione con contesto vuoto (output scartato). Gli errori di elaborazione dovuti alle variabili
+     mancanti vengono ignorati; quelli di lettura o parsing (TemplateInputException) bloccano l'avvio.
+     Si passa direttamente dal TemplateManager perché TemplateEngine.process registrerebbe ogni errore atteso nel log.
+     */
+    private void preload(String name) {
+        try {
+            engine.getConfiguration().getTemplateManager()
+                    .parseAndProcess(new TemplateSpec(name, (String) null), new Context(), Writer.nullWriter());
+        } catch (TemplateInputException e) {
+            throw new IllegalStateException("Template email non valido: " + name, e);
+        } catch (TemplateProcessingException e) {
+            log.trace("Template email {} precaricato ({})", name, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.model.mail.DigestEntry;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.DigestEntryRepository;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ Implementazione del riepilogo delle notifiche.
+ EmailServiceImpl chiede quali destinatari hanno scelto il riepilogo (una query per invio, anche in blocco)
+ e salva le loro notifiche in email_digest_entries invece che in email_outbox, nella stessa transazione.
+ A fine finestra (NotificationDigestScheduler) flush raggruppa le notifiche per destinatario:
+ una sola notifica viene accodata così com'è, più notifiche diventano un unico messaggio (template mail/digest)
+ con il contenuto di ciascuna. Il messaggio ha la priorità più alta fra quelle delle notifiche che contiene.
+ I destinatari vengono elaborati a blocchi di batchSize, ognuno in una transazione dedicata (come i blocchi di BatchJobRunnerImpl):
+ notifiche accodate e righe eliminate di un blocco sono confermate insieme, il contesto di persistenza non cresce
+ con il numero di notifiche e i messaggi di un blocco vengono inviati dopo il suo commit.
+ */
+
+@Slf4j
+@Service
+public class NotificationDigestServiceImpl implements NotificationDigestService {
+
+    private static final String TEMPLATE = "mail/digest";
+
+    private final DigestEntryRepository digestRepository;
+    private final EmailOutboxRepository outboxRepository;
+    private final TravelerRepository travelerRepository;
+    private final MailTemplateEngine templateEngine;
+    private final EmailDispatcher dispatcher;
+    private final TransactionTemplate batchTransaction;
+
+    // Riepilogo attivo (false = tutte le email vengono inviate subito)
+    @Value("${app.mail.digest.enabled:true}")
+    private boolean enabled;
+
+    // Destinatari elaborati per blocco durante il riepilogo
+    @Value("${app.mail.digest.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.base-url}")
+    private String baseUrl;
+
+    public NotificationDigestServiceImpl(DigestEntryRepository digestRepository,
+                                         EmailOutboxRepository outboxRepository,
+                                         TravelerRepository travelerRepository,
+                                         MailTemplateEngine templateEngine,
+                                         EmailDispatcher dispatcher,
+                                         PlatformTransactionManager transactionManager) {
+        this.digestRepository = digestRepository;
+        this.outboxRepository = outboxRepository;
+        this.travelerRepository = travelerRepository;
+        this.templateEngine = templateEngine;
+        this.dispatcher = dispatcher;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Set<String> subscribers(Collection<String> recipients, EmailPriority priority) {
+        if (!enabled || priority == EmailPriority.HIGH || recipients.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(travelerRepository.findDigestSubscriberEmails(Set.copyOf(recipients)));
+    }
+
+    @Override
+    public void buffer(List<EmailOutbox> messages) {
+        digestRepository.saveAll(messages.stream().map(DigestEntry::of).toList());
+    }
+
+    @Override
+    public int flush() {
+        int queued = 0;
+        int notifications = 0;
+        String after = "";
+        FlushedBatch batch;
+        do {
+            String from = after;
+            batch = batchTransaction.execute(status -> flushBatch(from));
+            if (batch == null) {
+                break;
+            }
+            queued += batch.messages();
+            notifications += batch.notifications();
+            after = batch.lastRecipient();
+        } while (batch.recipients() == batchSize);
+
+        if (queued > 0) {
+            log.info("Riepilogo notifiche: {} notifiche raccolte in {} messaggi", notifications, queued);
+        }
+        return queued;
+    }
+
+    // Un blocco di destinatari successivi ad after, nella transazione del blocco; null se non ci sono altri destinatari
+    private FlushedBatch flushBatch(String after) {
+        List<String> recipients = digestRepository.findRecipientsAfter(after, Limit.of(batchSize));
+        if (recipients.isEmpty()) {
+            return null;
+        }
+        List<DigestEntry> entries = digestRepository.findByRecipientInOrderByRecipientAscIdAsc(recipients);
+        Map<String, List<DigestEntry>> byRecipient = entries.stream()
+                .collect(Collectors.groupingBy(DigestEntry::getRecipient, LinkedHashMap::new, Collectors.toList()));
+        List<EmailOutbox> messages = new ArrayList<>(byRecipient.size());
+        byRecipient.forEach((recipient, list) -> messages.add(digestOf(recipient, list)));
+        outboxRepository.saveAll(messages);
+        digestRepository.deleteAllInBatch(entries);
+        if (!messages.isEmpty()) {
+            dispatcher.dispatchAfterCommit(); // i messaggi del blocco partono dopo il suo commit
+        }
+        return new FlushedBatch(recipients.size(), recipients.get(recipients.size() - 1), messages.size(), entries.size());
+    }
+
+    // Esito di un blocco: destinatari letti (per il cursore keyset), messaggi accodati e notifiche raccolte
+    private record FlushedBatch(int recipients, String lastRecipient, int messages, int notifications) {
+    }
+
+    // Messaggio del riepilogo di un destinatario: la notifica stessa se è una sola, altrimenti il template mail/digest
+    private EmailOutbox digestOf(String recipient, List<DigestEntry> entries) {
+        if (entries.size() == 1) {
+            DigestEntry only = entries.get(0);
+            return EmailOutbox.pending(recipient, only.getSubject(), only.getTemplateName(), only.getHtmlBody(), only.getPriority());
+        }
+        List<Map<String, Object>> items = entries.stream()
+                .map(e -> Map.<String, Object>of("subject", e.getSubject(), "createdAt", e.getCreatedAt(), "body", bodyOf(e.getHtmlBody())))
+                .toList();
+        String html = templateEngine.render(TEMPLATE, Map.of("items", items, "homepage", baseUrl + "/home"));
+        EmailPriority priority = entries.stream().map(DigestEntry::getPriority).min(Comparator.naturalOrder()).orElseThrow();
+        return EmailOutbox.pending(recipient, "Le tue notifiche di Adventure Together (" + entries.size() + ")",
+                TEMPLATE, html, priority);
+    }
+
+    // Contenuto del <body> di una email renderizzata (l'intero HTML se manca il tag)
+    static String bodyOf(String html) {
+        String lower = html.toLowerCase(Locale.ROOT);
+        int open = lower.indexOf("<body");
+        int start = open < 0 ? -1 : lower.indexOf('>', open);
+        int end = lower.lastIndexOf("</body>");
+        if (start < 0 || end < start) {
+            return html;
+        }
+        return html.substring(start + 1, end).strip();
+    }
+}
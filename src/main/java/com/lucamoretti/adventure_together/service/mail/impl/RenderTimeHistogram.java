@@ -0,0 +1,98 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Istogramma dei tempi di rendering di un template email, usato da MailTemplateEngine.
+ I tempi sono raccolti in intervalli fissi (da 50 µs a 100 ms, più un intervallo per i valori oltre);
+ i percentili sono stimati con il limite superiore dell'intervallo che li contiene.
+ Thread-safe: i contatori sono LongAdder, aggiornati senza lock dai thread che renderizzano.
+ */
+
+final class RenderTimeHistogram {
+
+    // limiti superiori degli intervalli, in microsecondi
+    static final long[] BOUNDS_MICROS = {50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    RenderTimeHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int i = 0;
+        while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long averageMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / n);
+    }
+
+    long maxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    // Limite superiore dell'intervallo che contiene il percentile (0 < percentile <= 1); per l'ultimo intervallo il massimo
+    long percentileMicros(double percentile) {
+        long[] counts = counts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BOUNDS_MICROS.length ? BOUNDS_MICROS[i] : maxMicros();
+            }
+        }
+        return maxMicros();
+    }
+
+    // Conteggi per intervallo, con etichette leggibili ("<=250us", ">100000us")
+    Map<String, Long> buckets() {
+        long[] counts = counts();
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            String label = i < BOUNDS_MICROS.length
+                    ? "<=" + BOUNDS_MICROS[i] + "us"
+                    : ">" + BOUNDS_MICROS[BOUNDS_MICROS.length - 1] + "us";
+            result.put(label, counts[i]);
+        }
+        return result;
+    }
+
+    private long[] counts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,210 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Pool di connessioni SMTP autenticate, usato dal dispatcher della coda email.
+ JavaMailSender.send(message) apre una connessione (con handshake STARTTLS e autenticazione) per ogni invio;
+ il pool invece tiene aperte fino a "size" connessioni e le riusa per più messaggi consecutivi.
+ Ogni worker prende in prestito una connessione (Lease), invia il proprio blocco di messaggi e la restituisce.
+ Le connessioni inattive da più di idleTimeoutSeconds vengono chiuse (i server SMTP chiudono comunque quelle inattive);
+ una connessione che dà errore viene scartata e riaperta al messaggio successivo.
+ Se il pool è disabilitato, o il JavaMailSender non è un JavaMailSenderImpl, ogni invio passa da JavaMailSender.send.
+ Tiene i contatori di connessioni aperte/riusate, messaggi inviati, errori e tempo di invio (getStats).
+ */
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SmtpTransportPool {
+
+    private final JavaMailSender mailSender;
+
+    // Modalità con connessioni riusate (false = una connessione per messaggio, come JavaMailSender.send)
+    @Value("${app.mail.smtp.pool.enabled:true}")
+    private boolean enabled;
+
+    // Connessioni SMTP aperte al massimo: coincide con il numero di worker della coda email
+    @Value("${app.mail.outbox.workers:4}")
+    private int size;
+
+    // Dopo quanti secondi di inattività una connessione viene chiusa
+    @Value("${app.mail.smtp.pool.idle-timeout-seconds:60}")
+    private long idleTimeoutSeconds;
+
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private Semaphore slots;
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+
+    // Connessione inattiva nel pool
+    private record PooledTransport(Transport transport, long lastUsedNanos) {
+    }
+
+    // Contatori del pool: tempo di invio totale e messaggi al secondo sul tempo di invio
+    public record Stats(long connectionsOpened, long connectionsReused, long messagesSent, long sendFailures,
+                        long sendMillis, int idleConnections) {
+        public double messagesPerSecond() {
+            return sendMillis == 0 ? 0 : messagesSent * 1000.0 / sendMillis;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(1, size));
+    }
+
+    public boolean isPooling() {
+        return enabled && mailSender instanceof JavaMailSenderImpl;
+    }
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    // Prende in prestito una connessione (attende se tutte le "size" connessioni sono in uso)
+    // La connessione viene aperta, o ripresa dal pool, al primo invio
+    public Lease borrow() {
+        slots.acquireUninterruptibly();
+        return new Lease();
+    }
+
+    // Chiude le connessioni inattive da più di idleTimeoutSeconds
+    public int evictIdle() {
+        long cutoff = System.nanoTime() - idleTimeoutSeconds * 1_000_000_000L;
+        int closed = 0;
+        for (PooledTransport pooled : idle) {
+            if (pooled.lastUsedNanos() < cutoff && idle.remove(pooled)) {
+                close(pooled.transport());
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    public Stats getStats() {
+        return new Stats(connectionsOpened.get(), connectionsReused.get(), messagesSent.get(), sendFailures.get(),
+                sendNanos.get() / 1_000_000, idle.size());
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled.transport());
+        }
+    }
+
+    /*
+     Connessione in prestito a un worker: invia più messaggi sulla stessa connessione SMTP.
+     Va chiusa (try-with-resources) per restituire la connessione al pool.
+     */
+    public class Lease implements AutoCloseable {
+
+        private Transport transport;
+        private boolean closed;
+
+        public void send(MimeMessage message) throws MessagingException {
+            long start = System.nanoTime();
+            try {
+                if (isPooling()) {
+                    if (transport == null) {
+                        transport = acquireTransport();
+                    }
+                    message.saveChanges();
+                    transport.sendMessage(message, message.getAllRecipients());
+                } else {
+                    mailSender.send(message);
+                }
+                messagesSent.incrementAndGet();
+            } catch (MessagingException | RuntimeException e) {
+                sendFailures.incrementAndGet();
+                // la connessione potrebbe essere in uno stato non valido: viene scartata e riaperta al prossimo invio
+                discard();
+                throw e;
+            } finally {
+                sendNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (transport != null) {
+                if (transport.isConnected()) {
+                    idle.offerFirst(new PooledTransport(transport, System.nanoTime()));
+                } else {
+                    SmtpTransportPool.this.close(transport);
+                }
+                transport = null;
+            }
+            slots.release();
+        }
+
+        private void discard() {
+            if (transport != null) {
+                SmtpTransportPool.this.close(transport);
+                transport = null;
+            }
+        }
+    }
+
+    // Riprende la connessione inattiva più recente ancora valida, altrimenti ne apre una nuova
+    private Transport acquireTransport() throws MessagingException {
+        long cutoff = System.nanoTime() - idleTimeoutSeconds * 1_000_000_000L;
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.lastUsedNanos() >= cutoff && pooled.transport().isConnected()) {
+                connectionsReused.incrementAndGet();
+                return pooled.transport();
+            }
+            close(pooled.transport());
+        }
+        // stessi default di JavaMailSenderImpl: protocollo "smtp" se non configurato, credenziali vuote = nessuna autenticazione
+        JavaMailSenderImpl sender = (JavaMailSenderImpl) mailSender;
+        String protocol = sender.getProtocol();
+        if (protocol == null) {
+            protocol = sender.getSession().getProperty("mail.transport.protocol");
+        }
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            password = "".equals(password) ? null : password;
+        }
+        Transport transport = sender.getSession().getTransport(protocol != null ? protocol : "smtp");
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        connectionsOpened.incrementAndGet();
+        return transport;
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Errore nella chiusura della connessione SMTP: {}", e.getMessage());
+        }
+    }
+}
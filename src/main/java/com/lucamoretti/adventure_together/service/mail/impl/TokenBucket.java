@@ -0,0 +1,68 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+/*
+ Token bucket usato da MailRateLimiter: contiene al massimo "capacity" gettoni e si ricarica in modo continuo
+ di "capacity" gettoni ogni "period" (es. 20 al minuto → un gettone ogni 3 secondi).
+ Ogni invio consuma un gettone; a bucket vuoto gli invii attendono la ricarica invece di superare la quota.
+ L'istante corrente viene passato dal chiamante (System.nanoTime) così che il bucket sia verificabile nei test.
+ Per le quote condivise fra i nodi il bucket viene ricostruito dallo stato salvato (gettoni e istante, MailRateBucket)
+ con istanti in nanosecondi dall'epoch, aggiornato e salvato di nuovo da MailRateLimiter.
+ Non è thread-safe: MailRateLimiter ne sincronizza l'accesso.
+ */
+
+final class TokenBucket {
+
+    private final long capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(long capacity, long periodNanos, long nowNanos) {
+        this(capacity, periodNanos, capacity, nowNanos);
+    }
+
+    // Bucket con i gettoni disponibili all'istante lastRefillNanos (stato salvato di una quota condivisa)
+    TokenBucket(long capacity, long periodNanos, double tokens, long lastRefillNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = (double) capacity / periodNanos;
+        this.tokens = Math.min(capacity, tokens);
+        this.lastRefillNanos = lastRefillNanos;
+    }
+
+    // Gettoni interi disponibili, esclusi i "reserved" che restano per altri usi
+    long available(long reserved, long nowNanos) {
+        refill(nowNanos);
+        return Math.max(0, (long) Math.floor(tokens) - reserved);
+    }
+
+    void take(long count) {
+        tokens -= count;
+    }
+
+    // Nanosecondi da attendere perché sia disponibile un gettone oltre i "reserved"
+    long nanosUntilAvailable(long reserved, long nowNanos) {
+        refill(nowNanos);
+        double missing = reserved + 1 - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    double tokens() {
+        return tokens;
+    }
+
+    long lastRefillNanos() {
+        return lastRefillNanos;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.lucamoretti.adventure_together.dto.payment.PaymentIntentDTO;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,7 +15,7 @@ import java.util.Map;
 
 /*
     Implementazione del client per l'integrazione con l'API di Stripe.
-    Fornisce metodi per creare, recuperare e confermare PaymentIntent.
+    Fornisce metodi per creare, recuperare, confermare e rimborsare PaymentIntent.
  */
 
 @Service
@@ -74,4 +76,18 @@ public class StripeClient {
             throw new RuntimeException("Errore nella conferma del pagamento", e);
         }
     }
+
+    // Rimborsa per intero un PaymentIntent già pagato e ritorna l'id del rimborso
+    // La chiave di idempotenza è legata al PaymentIntent: una nuova consegna dello stesso webhook non crea un secondo rimborso
+    public String refundPaymentIntent(String paymentIntentId) {
+        try {
+            Refund refund = Refund.create(
+                    Map.of("payment_intent", paymentIntentId),
+                    RequestOptions.builder().setIdempotencyKey("refund-" + paymentIntentId).build()
+            );
+            return refund.getId();
+        } catch (StripeException e) {
+            throw new RuntimeException("Errore nel rimborso del PaymentIntent " + paymentIntentId, e);
+        }
+    }
 }
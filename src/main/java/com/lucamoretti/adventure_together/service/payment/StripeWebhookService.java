@@ -75,7 +75,7 @@ public class StripeWebhookService {
     }
 
     // Gestione del fallimento del PaymentIntent
-    // non salva il booking, ma potrebbe loggare o notificare
+    // non salva il booking, ma rilascia i posti trattenuti durante il checkout
     private void handlePaymentIntentFailed(Event event) {
 
         EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
@@ -89,6 +89,9 @@ public class StripeWebhookService {
 
         System.out.println("❌ PAYMENT INTENT FAILED: " + intent.getId());
 
+        // Delego il rilascio della trattenuta posti
+        bookingFinalizeService.releaseSeatHold(intent);
+
     }
 }
 
@@ -1,5 +1,7 @@
 package com.lucamoretti.adventure_together.service.review;
 
+import com.lucamoretti.adventure_together.dto.mail.ReminderResultDTO;
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
 import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
 import java.util.List;
 
@@ -13,8 +15,10 @@ public interface ReviewService {
     List<ReviewDTO> getTravelerReviews(Long travelerId);
     List<ReviewDTO> getTripReviews(Long tripId);
     List<ReviewDTO> getPendingReviews(Long travelerId);
-    void sendReviewReminderEmails();
+    ReminderResultDTO sendReviewReminderEmails(List<Long> tripIds);
     List<ReviewDTO> getAllReviewsByTripItineraryId(Long tripItineraryId);
     Float getAverageScoreForTripItinerary(Long tripItineraryId);
+    ItineraryRatingDTO getRatingForTripItinerary(Long tripItineraryId);
+    int backfillRatingAggregates();
     ReviewDTO getReviewByTripIdAndTravelerId(Long tripId, Long travelerId);
 }
@@ -1,39 +1,74 @@
 package com.lucamoretti.adventure_together.service.review.impl;
 
+import com.lucamoretti.adventure_together.dto.mail.ReminderResultDTO;
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
 import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.review.ItineraryRating;
 import com.lucamoretti.adventure_together.model.review.Review;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.review.ItineraryRatingRepository;
 import com.lucamoretti.adventure_together.repository.review.ReviewRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
 import com.lucamoretti.adventure_together.service.review.ReviewService;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /*
     Implementazione del servizio per la gestione delle recensioni
     Consente di creare recensioni, recuperare recensioni di traveler e viaggi,
     ottenere viaggi completati ma non recensiti, inviare email di promemoria
     e calcolare il punteggio medio delle recensioni per un itinerario specifico.
+    I promemoria di recensione sono accodati in una transazione dedicata per viaggio (REQUIRES_NEW):
+    un errore su un viaggio (es. violazione del vincolo unico di SentMail) annulla solo quel viaggio
+    e non la transazione del blocco, quindi gli altri viaggi del blocco restano confermati.
  */
 
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 @Transactional
 public class ReviewServiceImpl implements ReviewService {
 
     private final ReviewRepository reviewRepository;
+    private final ItineraryRatingRepository ratingRepository;
     private final TripRepository tripRepository;
     private final TravelerRepository travelerRepository;
     private final EmailService emailService;
+    private final ItineraryPageViewService pageViewService;
+    private final TransactionTemplate tripTransaction;
+
+    public ReviewServiceImpl(ReviewRepository reviewRepository,
+                             ItineraryRatingRepository ratingRepository,
+                             TripRepository tripRepository,
+                             TravelerRepository travelerRepository,
+                             EmailService emailService,
+                             ItineraryPageViewService pageViewService,
+                             PlatformTransactionManager transactionManager) {
+        this.reviewRepository = reviewRepository;
+        this.ratingRepository = ratingRepository;
+        this.tripRepository = tripRepository;
+        this.travelerRepository = travelerRepository;
+        this.emailService = emailService;
+        this.pageViewService = pageViewService;
+        this.tripTransaction = new TransactionTemplate(transactionManager);
+        this.tripTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     // Crea una nuova recensione per un viaggio da parte di un traveler
     @Override
@@ -65,7 +100,15 @@ public class ReviewServiceImpl implements ReviewService {
         reviewDTO.setTravelerId(traveler.getId());
 
         Review review = reviewDTO.toEntity(trip, traveler);
-        Review saved = reviewRepository.save(review);
+        // flush: la recensione deve essere già scritta se l'aggregato dell'itinerario viene creato dalle recensioni salvate
+        Review saved = reviewRepository.saveAndFlush(review);
+
+        // Aggiornamento dell'aggregato delle valutazioni dell'itinerario nella stessa transazione
+        Long itineraryId = trip.getTripItinerary().getId();
+        addScoreToRating(itineraryId, review.getScore());
+
+        // recensioni e media voto della pagina di dettaglio dell'itinerario vanno ricalcolate
+        pageViewService.evictAfterCommit(itineraryId);
 
         return ReviewDTO.fromEntity(saved);
     }
@@ -89,55 +132,60 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     // Ritorna i viaggi completati ma non recensiti da un traveler
-    // Scorre tutti i viaggi e filtra quelli con data di ritorno passata
-    // e senza recensione del traveler e quindi crea una ReviewDTO per ciascuno e li mette in una lista
+    // Una sola query: prenotazioni del traveler su viaggi con data di ritorno passata e senza sua recensione (anti-join)
+    // Ogni riga è già una ReviewDTO con id del viaggio, titolo dell'itinerario e id del traveler
     @Override
     public List<ReviewDTO> getPendingReviews(Long travelerId) {
-        // Recupera i viaggi completati ma non recensiti
-        LocalDate today = LocalDate.now();
-        return tripRepository.findAll().stream()
-                .filter(trip ->
-                        trip.getDateReturn().isBefore(today)
-                                && trip.getBookings().stream()
-                                .anyMatch(b -> b.getTraveler().getId().equals(travelerId))
-                                && !reviewRepository.existsByTrip_IdAndTraveler_Id(trip.getId(), travelerId)
-                )
-                .map(trip -> ReviewDTO.builder()
-                        .tripId(trip.getId())
-                        .tripTitle(trip.getTripItinerary().getTitle())
-                        .travelerId(travelerId)
-                        .build())
-                .toList();
+        return reviewRepository.findPendingByTravelerId(travelerId, LocalDate.now());
     }
 
-    // Invia email di promemoria per lasciare recensioni ai traveler che non hanno recensito
-    // i viaggi terminati da 3 giorni
+    // Invia email di promemoria per lasciare recensioni ai traveler che non hanno recensito i viaggi indicati
+    // (un blocco dei viaggi terminati da 3 giorni, letto da ReviewReminderScheduler)
     @Override
-    public void sendReviewReminderEmails() {
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(3);
-
-        // Recupera viaggi terminati esattamente tre giorni fa
-        List<Trip> recentTrips = tripRepository.findByDateReturnEquals(threeDaysAgo);
-
-        for (Trip trip : recentTrips) {
-            for (var booking : trip.getBookings()) {
-                Traveler traveler = booking.getTraveler();
-                boolean reviewed = reviewRepository.existsByTrip_IdAndTraveler_Id(trip.getId(), traveler.getId());
-                if (!reviewed) {
-                    try {
-                        emailService.sendHtmlMessage(
-                                traveler.getEmail(),
-                                "Lascia una recensione per il tuo viaggio!",
-                                "mail/review-reminder",
-                                Map.of("traveler", traveler, "trip", trip)
-                        );
-                    } catch (Exception e) {
-                        throw new RuntimeException("Errore invio email a " + traveler.getEmail(), e);
-                    }
+    public ReminderResultDTO sendReviewReminderEmails(List<Long> tripIds) {
+        // Per ogni viaggio: una query per chi ha già recensito e una (nel registro SentMail) per chi ha già ricevuto il promemoria,
+        // così una riesecuzione non invia duplicati; ogni viaggio ha la sua transazione, quindi un errore non blocca gli altri
+        ReminderResultDTO result = new ReminderResultDTO();
+        for (Long tripId : tripIds) {
+            try {
+                Integer queued = tripTransaction.execute(status -> sendReviewReminder(tripId));
+                if (queued == null) {
+                    continue; // viaggio non più presente
                 }
+                result.setTrips(result.getTrips() + 1);
+                result.setQueued(result.getQueued() + queued);
+            } catch (Exception e) {
+                log.error("Errore invio promemoria recensione per il viaggio {}: {}", tripId, e.getMessage());
+                result.setTrips(result.getTrips() + 1);
+                result.setFailed(result.getFailed() + 1);
             }
         }
+        return result;
     }
+
+    // Accoda il promemoria di un viaggio ai partecipanti che non hanno ancora recensito
+    // Ritorna il numero di messaggi accodati, null se il viaggio non esiste
+    private Integer sendReviewReminder(Long tripId) {
+        Trip trip = tripRepository.findById(tripId).orElse(null);
+        if (trip == null) {
+            return null;
+        }
+        Set<Long> reviewed = reviewRepository.findTravelerIdsByTripId(trip.getId());
+        List<MailRecipient> recipients = trip.getBookings().stream()
+                .map(Booking::getTraveler)
+                .filter(traveler -> !reviewed.contains(traveler.getId()))
+                .map(traveler -> new MailRecipient(traveler.getEmail(), Map.of("traveler", traveler)))
+                .toList();
+        return emailService.sendBulkHtmlMessageOnce(
+                "Lascia una recensione per il tuo viaggio!",
+                "mail/review-reminder",
+                Map.of("trip", trip),
+                trip.getId(),
+                recipients,
+                EmailPriority.LOW
+        );
+    }
+
     // Recupera tutte le recensioni associate ai viaggi di un itinerario specifico
     @Override
     public List<ReviewDTO> getAllReviewsByTripItineraryId(Long tripItineraryId) {
@@ -148,20 +196,40 @@ public class ReviewServiceImpl implements ReviewService {
                 .toList();
     }
 
-    // Calcola il punteggio medio delle recensioni per un itinerario specifico
+    // Punteggio medio delle recensioni per un itinerario specifico
+    // Letto dall'aggregato dell'itinerario, senza caricare le recensioni; null se non ci sono recensioni
     @Override
     public Float getAverageScoreForTripItinerary(Long tripItineraryId) {
-        List<Review> reviews = reviewRepository.findAllByTripItinerary_Id(tripItineraryId);
-        if (reviews.isEmpty()) {
-            return null; // Nessuna recensione disponibile
-
-        } else {
-            // Calcola la somma dei punteggi
-            int totalScore = reviews.stream()
-                    .mapToInt(Review::getScore)
-                    .sum();
-            // Calcola e ritorna la media
-            return (float) totalScore / reviews.size();
+        return ratingRepository.findById(tripItineraryId)
+                .map(ItineraryRating::getAverage)
+                .orElse(null);
+    }
+
+    // Valutazione aggregata (numero, media e distribuzione delle stelle) di un itinerario specifico
+    @Override
+    public ItineraryRatingDTO getRatingForTripItinerary(Long tripItineraryId) {
+        return ratingRepository.findById(tripItineraryId)
+                .map(ItineraryRatingDTO::fromEntity)
+                .orElseGet(ItineraryRatingDTO::empty);
+    }
+
+    // Crea gli aggregati delle valutazioni degli itinerari che non ne hanno ancora uno, a partire dalle recensioni salvate
+    // Usato all'avvio per il backfill delle recensioni già presenti; le righe esistenti non vengono cancellate né riscritte,
+    // così le recensioni salvate in contemporanea su altri nodi non vanno perse e la valutazione resta sempre leggibile
+    // Ritorna il numero di aggregati creati
+    @Override
+    public int backfillRatingAggregates() {
+        return ratingRepository.backfillMissing();
+    }
+
+    // Aggiunge il punteggio all'aggregato dell'itinerario con una UPDATE atomica
+    // Se l'aggregato non esiste ancora la riga viene creata con INSERT IGNORE dalle recensioni salvate, compresa questa,
+    // e la UPDATE è ripetuta solo se la riga l'ha creata una transazione concorrente (che non vede questa recensione):
+    // il punteggio non viene contato due volte e due prime recensioni concorrenti non violano la chiave primaria
+    private void addScoreToRating(Long tripItineraryId, int score) {
+        if (ratingRepository.addScore(tripItineraryId, score) == 0
+                && ratingRepository.createFromReviews(tripItineraryId) == 0) {
+            ratingRepository.addScore(tripItineraryId, score);
         }
     }
 
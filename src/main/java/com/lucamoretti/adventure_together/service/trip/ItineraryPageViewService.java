@@ -0,0 +1,23 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import com.lucamoretti.adventure_together.dto.trip.ItineraryPageViewDTO;
+
+/*
+ Interfaccia del servizio che fornisce il read model della pagina di dettaglio di un itinerario
+ Il read model viene assemblato con poche query in un'unica transazione di sola lettura e tenuto in cache
+ per itinerario per un tempo limitato; i servizi che modificano viaggi, prenotazioni, recensioni o giorni invalidano
+ la voce interessata sul nodo che esegue la modifica
+ */
+
+public interface ItineraryPageViewService {
+
+    // Ritorna il read model dell'itinerario, dalla cache se presente
+    // Lancia ResourceNotFoundException se l'itinerario non esiste
+    ItineraryPageViewDTO getPageView(Long itineraryId);
+
+    // Invalida la voce dell'itinerario dopo il commit della transazione corrente (subito se non c'è una transazione attiva)
+    void evictAfterCommit(Long itineraryId);
+
+    // Invalida tutte le voci dopo il commit (es. cambi di stato massivi dello scheduler)
+    void evictAllAfterCommit();
+}
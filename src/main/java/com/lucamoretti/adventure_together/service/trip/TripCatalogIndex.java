@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import com.lucamoretti.adventure_together.dto.trip.CatalogFilterDTO;
+import com.lucamoretti.adventure_together.dto.trip.CatalogResultDTO;
+
+/*
+ Interfaccia per l'indice in memoria del catalogo viaggi usato dalla ricerca a faccette
+ L'indice contiene i viaggi prenotabili con gli attributi del relativo itinerario (categorie, nazioni, aree geografiche,
+ aeroporti, durata) e del viaggio (fascia di prezzo, mese di partenza); i filtri sono applicati senza accessi al database
+ */
+
+public interface TripCatalogIndex {
+
+    // Applica i filtri (in AND) e ritorna gli itinerari corrispondenti con i conteggi aggiornati di ogni faccetta
+    CatalogResultDTO search(CatalogFilterDTO filter);
+
+    // Aggiorna i dati di un viaggio dopo il commit della transazione corrente (creazione, cambio di stato, cancellazione)
+    void refreshTripAfterCommit(Long tripId);
+
+    // Aggiorna i dati di un itinerario e dei suoi viaggi dopo il commit della transazione corrente
+    void refreshItineraryAfterCommit(Long itineraryId);
+
+    // Ricostruisce l'intero indice dopo il commit della transazione corrente
+    void rebuildAfterCommit();
+
+    // Ricostruisce subito l'intero indice leggendo viaggi e itinerari dal database
+    void rebuild();
+}
@@ -0,0 +1,15 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import java.time.LocalDate;
+
+// Servizio per le scadenze dei viaggi: la chiusura delle prenotazioni di ogni viaggio aperto viene eseguita allo scadere
+// della sua data di fine prenotazioni invece che dal job notturno
+// scheduleAfterCommit e cancelAfterCommit aggiornano le scadenze dopo il commit della transazione corrente
+// Implementato da TripDeadlineSchedulerImpl
+
+public interface TripDeadlineScheduler {
+    void scheduleAfterCommit(Long tripId, LocalDate dateEndBookings);
+    void cancelAfterCommit(Long tripId);
+    int loadUpcoming();
+    int getPendingCount();
+}
@@ -0,0 +1,25 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+
+import java.util.List;
+
+/*
+ Interfaccia per il motore di ricerca in memoria degli itinerari
+ Indicizza titolo, descrizione, nomi delle nazioni e delle categorie di ogni itinerario
+ e fornisce suggerimenti per prefisso e tolleranti agli errori di battitura, senza accessi al database
+ */
+
+public interface TripItinerarySearchIndex {
+
+    // Ritorna al massimo limit itinerari (id, titolo) che corrispondono al testo cercato, dal più rilevante
+    List<TripItineraryTitleDTO> suggest(String query, int limit);
+
+    // Aggiorna l'indice con i dati dell'itinerario dopo il commit della transazione corrente
+    // I dati vengono letti subito dall'entità (ancora gestita), l'indice viene modificato solo a commit avvenuto
+    void indexAfterCommit(TripItinerary itinerary);
+
+    // Ricostruisce l'intero indice leggendo gli itinerari dal database
+    void rebuild();
+}
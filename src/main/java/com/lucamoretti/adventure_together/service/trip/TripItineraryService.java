@@ -1,6 +1,7 @@
 package com.lucamoretti.adventure_together.service.trip;
 
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import java.util.List;
 
 /*
@@ -17,11 +18,12 @@ public interface TripItineraryService {
 
     TripItineraryDTO getById(Long id);
     TripItineraryDTO getByTitle(String title);
-    List<TripItineraryDTO> getAll();
-    List<TripItineraryDTO> getByPlannerId(Long id);
+    // liste paginate con cursore (keyset), ordinate per id: cursor null indica la prima pagina
+    KeysetPage<TripItineraryDTO> getAll(String cursor, int size);
+    KeysetPage<TripItineraryDTO> getByPlannerId(Long id, String cursor, int size);
 
     List<TripItineraryDTO> getAllByCountryId(Long countryId);
     List<TripItineraryDTO> getAllByGeoAreaId(Long geoAreaId);
     List<TripItineraryDTO> getAllByCategoryId(Long categoryId);
-    List<TripItineraryDTO> getAllByCategoryIds(List<Long> categoryIds);
+    KeysetPage<TripItineraryDTO> getAllByCategoryIds(List<Long> categoryIds, String cursor, int size);
 }
@@ -0,0 +1,26 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+
+import java.util.List;
+
+/*
+ Interfaccia per l'indice in memoria dei titoli degli itinerari (coppie id, titolo)
+ L'indice è una fotografia immutabile e versionata, ricostruita solo quando un itinerario viene creato o modificato,
+ così che la barra di ricerca presente in ogni pagina non richieda accessi al database
+ */
+
+public interface TripItineraryTitleIndex {
+
+    // Ritorna la fotografia corrente delle coppie (id, titolo), ordinata per titolo
+    List<TripItineraryTitleDTO> getTitles();
+
+    // Versione della fotografia corrente, incrementata ad ogni ricostruzione
+    long getVersion();
+
+    // Ricostruisce subito la fotografia leggendo i titoli dal database
+    void refresh();
+
+    // Ricostruisce la fotografia dopo il commit della transazione corrente (subito se non c'è una transazione attiva)
+    void refreshAfterCommit();
+}
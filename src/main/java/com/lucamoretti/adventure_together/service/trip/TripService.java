@@ -2,6 +2,7 @@ package com.lucamoretti.adventure_together.service.trip;
 
 import com.lucamoretti.adventure_together.dto.participant.ParticipantDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import java.time.LocalDate;
 import java.util.List;
 /*
@@ -53,14 +54,14 @@ public interface TripService {
     // Conta il numero di partecipanti a un trip
     int countParticipants(Long tripId);
 
-    // Recupera tutti i trip in un range di date di partenza
-    List<TripDTO> getTripsBetweenDates(LocalDate startDate, LocalDate endDate);
+    // Recupera una pagina dei trip in un range di date di partenza, a partire dal cursore indicato (null = prima pagina)
+    KeysetPage<TripDTO> getTripsBetweenDates(LocalDate startDate, LocalDate endDate, String cursor, int size);
 
     // Recupera tutti i participanti di un trip
     List<ParticipantDTO> getParticipantsByTripId(Long tripId);
 
-    // Recupera tutti i trip di un planner in un range di date di partenza
-    List<TripDTO> getTripsByPlannerBetweenDates(Long plannerId, LocalDate from, LocalDate to);
+    // Recupera una pagina dei trip di un planner in un range di date di partenza, a partire dal cursore indicato
+    KeysetPage<TripDTO> getTripsByPlannerBetweenDates(Long plannerId, LocalDate from, LocalDate to, String cursor, int size);
 
 }
 
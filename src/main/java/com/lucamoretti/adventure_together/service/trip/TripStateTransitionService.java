@@ -0,0 +1,14 @@
+package com.lucamoretti.adventure_together.service.trip;
+
+import com.lucamoretti.adventure_together.dto.trip.TripStateTransitionDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Servizio per l'aggiornamento in blocco degli stati dei viaggi (TripStateTransition), alternativo a Trip.handle() per ogni viaggio
+// applyTransitions esegue tutte le transizioni alla data indicata e ritorna, per ognuna, i viaggi che hanno cambiato stato
+// Implementato da TripStateTransitionServiceImpl
+
+public interface TripStateTransitionService {
+    List<TripStateTransitionDTO> applyTransitions(LocalDate today);
+}
@@ -0,0 +1,180 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.details.CountryDTO;
+import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
+import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
+import com.lucamoretti.adventure_together.dto.trip.ItineraryPageViewDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryDayDTO;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.review.ItineraryRatingRepository;
+import com.lucamoretti.adventure_together.repository.review.ReviewRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryDayRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Implementazione del servizio per il read model della pagina di dettaglio degli itinerari.
+ Con la cache calda la pagina viene servita da una sola lettura della mappa, senza aprire transazioni.
+ In caso di miss il read model viene assemblato in un'unica transazione di sola lettura con cinque query:
+ - itinerario con nazioni (e aree geografiche), categorie e aeroporti di partenza in fetch join
+ - giorni dell'itinerario ordinati per numero
+ - viaggi prenotabili (projection TripDTO)
+ - recensioni con viaggio e itinerario in fetch join
+ - aggregato delle valutazioni (media e distribuzione delle stelle) per chiave primaria
+ Un contatore delle invalidazioni evita di mettere in cache un read model letto prima di un'invalidazione concorrente.
+ Le invalidazioni riguardano solo la cache del nodo che le esegue: con più nodi le voci scadono dopo app.trips.page-view.ttl,
+ che limita il tempo per cui un nodo mostra viaggi e posti disponibili non aggiornati da un altro nodo (o dal job notturno).
+ La cache contiene al più app.trips.page-view.max-size itinerari: quando è piena la voce letta da più tempo viene rimossa.
+ */
+
+@Slf4j
+@Service
+public class ItineraryPageViewServiceImpl implements ItineraryPageViewService {
+
+    private final TripItineraryRepository itineraryRepository;
+    private final TripItineraryDayRepository dayRepository;
+    private final TripRepository tripRepository;
+    private final ReviewRepository reviewRepository;
+    private final ItineraryRatingRepository ratingRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Map<Long, CachedView> cache = new ConcurrentHashMap<>();
+    // incrementato ad ogni invalidazione
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Durata di una voce della cache e numero massimo di itinerari in cache
+    @Value("${app.trips.page-view.ttl:30s}")
+    private Duration ttl;
+
+    @Value("${app.trips.page-view.max-size:1000}")
+    private int maxSize;
+
+    // Read model con l'istante (System.nanoTime) in cui è stato letto
+    private record CachedView(ItineraryPageViewDTO view, long loadedAtNanos) {
+    }
+
+    public ItineraryPageViewServiceImpl(TripItineraryRepository itineraryRepository,
+                                        TripItineraryDayRepository dayRepository,
+                                        TripRepository tripRepository,
+                                        ReviewRepository reviewRepository,
+                                        ItineraryRatingRepository ratingRepository,
+                                        PlatformTransactionManager transactionManager) {
+        this.itineraryRepository = itineraryRepository;
+        this.dayRepository = dayRepository;
+        this.tripRepository = tripRepository;
+        this.reviewRepository = reviewRepository;
+        this.ratingRepository = ratingRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public ItineraryPageViewDTO getPageView(Long itineraryId) {
+        CachedView cached = cache.get(itineraryId);
+        if (cached != null) {
+            if (!isExpired(cached, System.nanoTime())) {
+                return cached.view();
+            }
+            cache.remove(itineraryId, cached);
+        }
+        long stamp = evictions.get();
+        ItineraryPageViewDTO view = readOnlyTransaction.execute(status -> load(itineraryId));
+        CachedView entry = new CachedView(view, System.nanoTime());
+        makeRoom();
+        cache.put(itineraryId, entry);
+        // se nel frattempo c'è stata un'invalidazione il read model potrebbe essere già vecchio: non resta in cache
+        if (evictions.get() != stamp) {
+            cache.remove(itineraryId, entry);
+        }
+        return view;
+    }
+
+    private boolean isExpired(CachedView cached, long now) {
+        return now - cached.loadedAtNanos() >= ttl.toNanos();
+    }
+
+    // Con la cache piena rimuove le voci scadute e, se non basta, quella letta da più tempo
+    // Eseguito solo sui miss a cache piena: la scansione è limitata a max-size voci
+    private void makeRoom() {
+        if (cache.size() < maxSize) {
+            return;
+        }
+        long now = System.nanoTime();
+        cache.entrySet().removeIf(e -> isExpired(e.getValue(), now));
+        while (cache.size() >= maxSize && !cache.isEmpty()) {
+            cache.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().loadedAtNanos()))
+                    .ifPresent(oldest -> cache.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    @Override
+    public void evictAfterCommit(Long itineraryId) {
+        AfterCommit.run(() -> {
+            evictions.incrementAndGet();
+            cache.remove(itineraryId);
+        });
+    }
+
+    @Override
+    public void evictAllAfterCommit() {
+        AfterCommit.run(() -> {
+            evictions.incrementAndGet();
+            cache.clear();
+        });
+    }
+
+    // Assembla il read model dell'itinerario
+    private ItineraryPageViewDTO load(Long itineraryId) {
+        TripItinerary itinerary = itineraryRepository.findWithDetailsById(itineraryId)
+                .orElseThrow(() -> new ResourceNotFoundException("TripItinerary", "id", itineraryId));
+
+        List<CountryDTO> countries = itinerary.getCountries().stream()
+                .map(CountryDTO::fromEntity)
+                .sorted(Comparator.comparing(CountryDTO::getId))
+                .toList();
+        List<DepartureAirportDTO> airports = itinerary.getDepartureAirports().stream()
+                .map(DepartureAirportDTO::fromEntity)
+                .sorted(Comparator.comparing(DepartureAirportDTO::getId))
+                .toList();
+        List<TripItineraryDayDTO> days = dayRepository.findByTripItinerary_IdOrderByDayNumberAsc(itineraryId).stream()
+                .map(TripItineraryDayDTO::fromEntity)
+                .toList();
+        List<TripDTO> trips = List.copyOf(tripRepository.findDtoOpenForBookingByItinerary(itineraryId));
+        List<ReviewDTO> reviews = reviewRepository.findAllWithTripByTripItineraryId(itineraryId).stream()
+                .map(ReviewDTO::fromEntity)
+                .toList();
+        ItineraryRatingDTO rating = ratingRepository.findById(itineraryId)
+                .map(ItineraryRatingDTO::fromEntity)
+                .orElseGet(ItineraryRatingDTO::empty);
+
+        log.debug("Read model itinerario {} assemblato: {} viaggi, {} recensioni", itineraryId, trips.size(), reviews.size());
+        return ItineraryPageViewDTO.builder()
+                .tripItinerary(TripItineraryDTO.fromEntity(itinerary))
+                .countries(countries)
+                .departureAirports(airports)
+                .itineraryDays(days)
+                .trips(trips)
+                .reviews(reviews)
+                .rating(rating)
+                .build();
+    }
+}
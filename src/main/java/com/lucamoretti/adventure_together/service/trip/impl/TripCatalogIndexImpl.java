@@ -0,0 +1,362 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.*;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ Implementazione dell'indice a bitmap del catalogo viaggi.
+ Ogni viaggio prenotabile occupa una riga; per ogni valore di ogni faccetta (es. categoria 3, mese 2026-11)
+ si conserva un BitSet con le righe dei viaggi che lo possiedono. Un filtro è quindi l'AND dei BitSet selezionati
+ e il conteggio di un valore è la cardinalità dell'AND fra risultato e BitSet del valore.
+ - faccette multiple (categorie, nazioni, aree geografiche, aeroporti): i conteggi sono calcolati sul risultato corrente
+ - faccette a valore singolo (prezzo, durata, mese): i conteggi ignorano la selezione della faccetta stessa,
+   così da mostrare quanti viaggi si otterrebbero cambiando valore
+ Le righe dei viaggi rimossi vengono riutilizzate. I dati sono letti dal database fuori dal lock
+ e applicati sotto il lock in scrittura; le ricerche usano il lock in lettura.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TripCatalogIndexImpl implements TripCatalogIndex {
+
+    // nomi delle faccette, usati come chiavi nel risultato
+    static final String CATEGORY = "category";
+    static final String COUNTRY = "country";
+    static final String GEO_AREA = "geoArea";
+    static final String AIRPORT = "departureAirport";
+    static final String PRICE = "price";
+    static final String DURATION = "duration";
+    static final String MONTH = "departureMonth";
+
+    private static final List<String> FACETS = List.of(CATEGORY, COUNTRY, GEO_AREA, AIRPORT, PRICE, DURATION, MONTH);
+    private static final Set<String> SINGLE_VALUE_FACETS = Set.of(PRICE, DURATION, MONTH);
+
+    // fasce di prezzo (euro) e di durata (giorni): chiave "min-max" con max escluso, "min-" senza limite superiore
+    private static final int[] PRICE_BOUNDS = {0, 1000, 2000, 3000};
+    private static final int[] DURATION_BOUNDS = {1, 8, 15};
+
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ITALIAN);
+
+    private final TripRepository tripRepository;
+    private final TripItineraryRepository itineraryRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // faccetta -> valore -> righe
+    private final Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+    // faccetta -> valore -> etichetta da mostrare
+    private final Map<String, Map<String, String>> labels = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final List<Row> rows = new ArrayList<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private final Map<Long, Integer> rowByTrip = new HashMap<>();
+    private final Map<Long, ItineraryFacets> itineraries = new HashMap<>();
+    private volatile boolean loaded;
+
+    // Valore di una faccetta con la relativa etichetta
+    private record FacetValue(String facet, String value, String label) {}
+
+    // Attributi dell'itinerario condivisi da tutti i suoi viaggi
+    private record ItineraryFacets(Long id, String title, String picturePath, int durationInDays, List<FacetValue> values) {}
+
+    // Riga dell'indice: un viaggio prenotabile
+    private record Row(Long tripId, Long itineraryId, double price, LocalDate departure, List<FacetValue> values) {}
+
+    @Override
+    public CatalogResultDTO search(CatalogFilterDTO filter) {
+        ensureLoaded();
+        Map<String, Set<String>> selection = selectionOf(filter);
+
+        lock.readLock().lock();
+        try {
+            BitSet result = matching(selection, null);
+
+            Map<String, List<FacetValueDTO>> facets = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                BitSet base = SINGLE_VALUE_FACETS.contains(facet) ? matching(selection, facet) : result;
+                facets.put(facet, facetValues(facet, base, selection.getOrDefault(facet, Set.of())));
+            }
+
+            return CatalogResultDTO.builder()
+                    .items(items(result))
+                    .matchingTrips(result.cardinality())
+                    .facets(facets)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void refreshTripAfterCommit(Long tripId) {
+        AfterCommit.run(() -> refreshTrip(tripId));
+    }
+
+    @Override
+    public void refreshItineraryAfterCommit(Long itineraryId) {
+        AfterCommit.run(() -> refreshItinerary(itineraryId));
+    }
+
+    @Override
+    public void rebuildAfterCommit() {
+        AfterCommit.run(this::rebuild);
+    }
+
+    @Override
+    public void rebuild() {
+        LocalDate today = LocalDate.now();
+        List<TripItinerary> allItineraries = itineraryRepository.findAllForCatalogIndex();
+        List<TripDTO> trips = tripRepository.findDtoBookable(today);
+
+        lock.writeLock().lock();
+        try {
+            bitmaps.clear();
+            labels.clear();
+            live.clear();
+            rows.clear();
+            freeRows.clear();
+            rowByTrip.clear();
+            itineraries.clear();
+            allItineraries.forEach(i -> itineraries.put(i.getId(), toFacets(i)));
+            trips.forEach(this::addRow);
+            loaded = true;
+            log.info("Indice catalogo viaggi costruito: {} viaggi prenotabili, {} itinerari", rowByTrip.size(), itineraries.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------ aggiornamenti incrementali ------
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) rebuild();
+            }
+        }
+    }
+
+    private void refreshTrip(Long tripId) {
+        if (!loaded) return; // la prima ricerca leggerà i dati già salvati
+        Optional<TripDTO> trip = tripRepository.findDtoBookableById(tripId, LocalDate.now());
+        Optional<TripItinerary> itinerary = trip.flatMap(t -> itineraryRepository.findWithDetailsById(t.getTripItineraryId()));
+
+        lock.writeLock().lock();
+        try {
+            itinerary.ifPresent(i -> itineraries.put(i.getId(), toFacets(i)));
+            removeRow(tripId);
+            trip.ifPresent(this::addRow);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void refreshItinerary(Long itineraryId) {
+        if (!loaded) return;
+        Optional<TripItinerary> itinerary = itineraryRepository.findWithDetailsById(itineraryId);
+        List<TripDTO> trips = tripRepository.findDtoBookableByItinerary(itineraryId, LocalDate.now());
+
+        lock.writeLock().lock();
+        try {
+            itinerary.ifPresentOrElse(i -> itineraries.put(i.getId(), toFacets(i)), () -> itineraries.remove(itineraryId));
+            rows.stream()
+                    .filter(r -> r != null && r.itineraryId().equals(itineraryId))
+                    .map(Row::tripId)
+                    .toList()
+                    .forEach(this::removeRow);
+            trips.forEach(this::addRow);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // metodi da invocare con il lock in scrittura acquisito
+
+    private void addRow(TripDTO trip) {
+        ItineraryFacets itinerary = itineraries.get(trip.getTripItineraryId());
+        if (itinerary == null) return;
+
+        List<FacetValue> values = new ArrayList<>(itinerary.values());
+        values.add(priceValue(trip.getTripIndividualCost()));
+        YearMonth month = YearMonth.from(trip.getDateDeparture());
+        values.add(new FacetValue(MONTH, month.toString(), MONTH_LABEL.format(month)));
+
+        int row = freeRows.isEmpty() ? rows.size() : freeRows.pop();
+        Row entry = new Row(trip.getId(), itinerary.id(), trip.getTripIndividualCost(), trip.getDateDeparture(), values);
+        if (row == rows.size()) rows.add(entry); else rows.set(row, entry);
+        rowByTrip.put(trip.getId(), row);
+        live.set(row);
+        for (FacetValue v : values) {
+            bitmaps.computeIfAbsent(v.facet(), f -> new HashMap<>()).computeIfAbsent(v.value(), k -> new BitSet()).set(row);
+            labels.computeIfAbsent(v.facet(), f -> new HashMap<>()).put(v.value(), v.label());
+        }
+    }
+
+    private void removeRow(Long tripId) {
+        Integer row = rowByTrip.remove(tripId);
+        if (row == null) return;
+        for (FacetValue v : rows.get(row).values()) {
+            Map<String, BitSet> facet = bitmaps.get(v.facet());
+            BitSet bits = facet.get(v.value());
+            bits.clear(row);
+            if (bits.isEmpty()) {
+                facet.remove(v.value());
+                labels.get(v.facet()).remove(v.value());
+            }
+        }
+        rows.set(row, null);
+        live.clear(row);
+        freeRows.push(row);
+    }
+
+    // ------ ricerca (con il lock in lettura acquisito) ------
+
+    // AND di tutte le selezioni, esclusa eventualmente quella di una faccetta
+    private BitSet matching(Map<String, Set<String>> selection, String excludedFacet) {
+        BitSet result = (BitSet) live.clone();
+        for (Map.Entry<String, Set<String>> e : selection.entrySet()) {
+            if (e.getKey().equals(excludedFacet)) continue;
+            Map<String, BitSet> facet = bitmaps.getOrDefault(e.getKey(), Map.of());
+            for (String value : e.getValue()) {
+                BitSet bits = facet.get(value);
+                if (bits == null) {
+                    result.clear();
+                    return result;
+                }
+                result.and(bits);
+            }
+        }
+        return result;
+    }
+
+    private List<FacetValueDTO> facetValues(String facet, BitSet base, Set<String> selected) {
+        List<FacetValueDTO> values = new ArrayList<>();
+        Map<String, String> facetLabels = labels.getOrDefault(facet, Map.of());
+        bitmaps.getOrDefault(facet, Map.of()).forEach((value, bits) -> {
+            BitSet intersection = (BitSet) base.clone();
+            intersection.and(bits);
+            int count = intersection.cardinality();
+            boolean isSelected = selected.contains(value);
+            if (count > 0 || isSelected) {
+                values.add(new FacetValueDTO(value, facetLabels.get(value), count, isSelected));
+            }
+        });
+        // le fasce seguono il valore minimo, i mesi l'ordine cronologico, gli altri valori l'ordine alfabetico dell'etichetta
+        Comparator<FacetValueDTO> order = switch (facet) {
+            case PRICE, DURATION -> Comparator.comparingInt(v -> bucketMin(v.getValue()));
+            case MONTH -> Comparator.comparing(FacetValueDTO::getValue);
+            default -> Comparator.comparing(FacetValueDTO::getLabel);
+        };
+        values.sort(order);
+        return values;
+    }
+
+    private List<CatalogItemDTO> items(BitSet result) {
+        Map<Long, CatalogItemDTO> items = new HashMap<>();
+        for (int row = result.nextSetBit(0); row >= 0; row = result.nextSetBit(row + 1)) {
+            Row r = rows.get(row);
+            ItineraryFacets it = itineraries.get(r.itineraryId());
+            CatalogItemDTO item = items.computeIfAbsent(it.id(), id -> CatalogItemDTO.builder()
+                    .itineraryId(id)
+                    .title(it.title())
+                    .picturePath(it.picturePath())
+                    .durationInDays(it.durationInDays())
+                    .minPrice(Double.MAX_VALUE)
+                    .build());
+            item.setMatchingTrips(item.getMatchingTrips() + 1);
+            item.setMinPrice(Math.min(item.getMinPrice(), r.price()));
+            if (item.getNextDeparture() == null || r.departure().isBefore(item.getNextDeparture())) {
+                item.setNextDeparture(r.departure());
+            }
+        }
+        return items.values().stream()
+                .sorted(Comparator.comparing(CatalogItemDTO::getTitle))
+                .toList();
+    }
+
+    // ------ metodi di supporto ------
+
+    private static Map<String, Set<String>> selectionOf(CatalogFilterDTO filter) {
+        Map<String, Set<String>> selection = new HashMap<>();
+        if (filter == null) return selection;
+        addIds(selection, CATEGORY, filter.getCategoryIds());
+        addIds(selection, COUNTRY, filter.getCountryIds());
+        addIds(selection, GEO_AREA, filter.getGeoAreaIds());
+        addIds(selection, AIRPORT, filter.getDepartureAirportIds());
+        addValue(selection, PRICE, filter.getPriceRange());
+        addValue(selection, DURATION, filter.getDurationRange());
+        addValue(selection, MONTH, filter.getDepartureMonth());
+        return selection;
+    }
+
+    private static void addIds(Map<String, Set<String>> selection, String facet, List<Long> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        Set<String> values = new HashSet<>();
+        ids.stream().filter(Objects::nonNull).forEach(id -> values.add(id.toString()));
+        if (!values.isEmpty()) selection.put(facet, values);
+    }
+
+    private static void addValue(Map<String, Set<String>> selection, String facet, String value) {
+        if (value != null && !value.isBlank()) selection.put(facet, Set.of(value.trim()));
+    }
+
+    private static ItineraryFacets toFacets(TripItinerary itinerary) {
+        List<FacetValue> values = new ArrayList<>();
+        if (itinerary.getCategories() != null) {
+            itinerary.getCategories().forEach(c -> values.add(new FacetValue(CATEGORY, c.getId().toString(), c.getName())));
+        }
+        if (itinerary.getCountries() != null) {
+            Set<Long> geoAreas = new HashSet<>();
+            itinerary.getCountries().forEach(c -> {
+                values.add(new FacetValue(COUNTRY, c.getId().toString(), c.getCountry()));
+                if (c.getGeoArea() != null && geoAreas.add(c.getGeoArea().getId())) {
+                    values.add(new FacetValue(GEO_AREA, c.getGeoArea().getId().toString(), c.getGeoArea().getGeoArea()));
+                }
+            });
+        }
+        if (itinerary.getDepartureAirports() != null) {
+            itinerary.getDepartureAirports().forEach(a -> values.add(
+                    new FacetValue(AIRPORT, a.getId().toString(), a.getName() + " (" + a.getCode() + ")")));
+        }
+        values.add(bucketValue(DURATION, DURATION_BOUNDS, itinerary.getDurationInDays(), " giorni"));
+        return new ItineraryFacets(itinerary.getId(), itinerary.getTitle(), itinerary.getPicturePath(),
+                itinerary.getDurationInDays(), List.copyOf(values));
+    }
+
+    private static FacetValue priceValue(double price) {
+        return bucketValue(PRICE, PRICE_BOUNDS, price, " €");
+    }
+
+    // Fascia che contiene il valore: chiave "min-max" (max escluso) o "min-" per l'ultima fascia
+    private static FacetValue bucketValue(String facet, int[] bounds, double value, String unit) {
+        for (int i = bounds.length - 1; i >= 0; i--) {
+            if (value >= bounds[i] || i == 0) {
+                if (i == bounds.length - 1) {
+                    return new FacetValue(facet, bounds[i] + "-", "Da " + bounds[i] + unit);
+                }
+                int max = bounds[i + 1];
+                return new FacetValue(facet, bounds[i] + "-" + max, bounds[i] + " - " + (max - 1) + unit);
+            }
+        }
+        throw new IllegalStateException("Fasce non configurate");
+    }
+
+    // Valore minimo di una fascia a partire dalla chiave ("1000-2000" -> 1000)
+    private static int bucketMin(String key) {
+        return Integer.parseInt(key.substring(0, key.indexOf('-')));
+    }
+}
@@ -0,0 +1,191 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripDeadlineDTO;
+import com.lucamoretti.adventure_together.model.trip.state.TripState;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripDeadlineScheduler;
+import com.lucamoretti.adventure_together.util.timer.HashedTimerWheel;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ Implementazione dello scheduler delle scadenze dei viaggi basato su una ruota temporale a hash (HashedTimerWheel).
+ Ogni viaggio aperto per le prenotazioni ha un timer che scade all'inizio del giorno successivo alla data di fine prenotazioni,
+ il primo momento in cui Trip.handle() vede la data superata, senza attendere il job notturno delle 2:00
+ (con le relative notifiche): un viaggio ToBeConfirmed passa a ExpiredClosed se il minimo non è raggiunto,
+ oppure a ConfirmedClosed se lo hanno raggiunto le prenotazioni dell'ultimo giorno; un viaggio ConfirmedOpen passa a ConfirmedClosed.
+ Le scadenze dello stesso giorno sono distribuite nei primi app.trips.deadlines.spread-minutes minuti
+ con uno scostamento fisso per viaggio, ed elaborate una alla volta da un solo worker (una transazione per viaggio):
+ il carico non si concentra in un picco.
+ I timer vengono caricati all'avvio dai viaggi aperti con partenza da oggi in poi (quelli già scaduti durante un fermo
+ scadono al primo tick) e aggiornati alla creazione e alla cancellazione dei viaggi.
+ Il job notturno di TripScheduler resta come riconciliazione per i casi persi (es. errore durante l'elaborazione).
+ Con più nodi ogni nodo ha gli stessi timer: il viaggio viene letto con lock in scrittura, quindi il primo nodo
+ esegue la transizione e gli altri trovano il viaggio già chiuso e non fanno nulla (nessuna notifica doppia).
+ */
+
+@Slf4j
+@Service
+public class TripDeadlineSchedulerImpl implements TripDeadlineScheduler {
+
+    private static final int LOAD_CHUNK = 500;
+
+    private final TripRepository tripRepository;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
+    private final TransactionTemplate tripTransaction;
+
+    // Scadenze gestite dalla ruota (false = solo job notturno)
+    @Value("${app.trips.deadlines.enabled:true}")
+    private boolean enabled;
+
+    // Durata di un tick e numero di caselle della ruota (una rotazione = tick * wheel-size)
+    @Value("${app.trips.deadlines.tick:1s}")
+    private Duration tick;
+
+    @Value("${app.trips.deadlines.wheel-size:3600}")
+    private int wheelSize;
+
+    // Minuti dopo la mezzanotte entro cui sono distribuite le scadenze dello stesso giorno
+    @Value("${app.trips.deadlines.spread-minutes:30}")
+    private long spreadMinutes;
+
+    private ExecutorService worker;
+    private HashedTimerWheel<Long> wheel;
+
+    public TripDeadlineSchedulerImpl(TripRepository tripRepository,
+                                     TripCatalogIndex catalogIndex,
+                                     ItineraryPageViewService pageViewService,
+                                     PlatformTransactionManager transactionManager) {
+        this.tripRepository = tripRepository;
+        this.catalogIndex = catalogIndex;
+        this.pageViewService = pageViewService;
+        this.tripTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        worker = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("trip-deadline-worker").factory());
+        wheel = new HashedTimerWheel<>("trip-deadline-wheel", tick, wheelSize, worker);
+        if (enabled) {
+            wheel.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.close();
+        worker.shutdownNow();
+    }
+
+    // Il caricamento gira in background per non ritardare l'avvio
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) return;
+        Thread.ofVirtual().name("trip-deadline-loader").start(() -> {
+            try {
+                log.info("Scadenze dei viaggi caricate: {}", loadUpcoming());
+            } catch (Exception e) {
+                log.error("Errore nel caricamento delle scadenze dei viaggi: {}", e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void scheduleAfterCommit(Long tripId, LocalDate dateEndBookings) {
+        if (!enabled) return;
+        AfterCommit.run(() -> schedule(tripId, dateEndBookings, ZonedDateTime.now()));
+    }
+
+    @Override
+    public void cancelAfterCommit(Long tripId) {
+        if (!enabled) return;
+        AfterCommit.run(() -> wheel.cancel(tripId));
+    }
+
+    // Legge le scadenze a blocchi con un cursore keyset sull'id e le inserisce nella ruota
+    @Override
+    public int loadUpcoming() {
+        LocalDate today = LocalDate.now();
+        ZonedDateTime now = ZonedDateTime.now();
+        int loaded = 0;
+        Long afterId = 0L;
+        List<TripDeadlineDTO> chunk;
+        do {
+            chunk = tripRepository.findDeadlinesAfter(today, afterId, Limit.of(LOAD_CHUNK));
+            for (TripDeadlineDTO d : chunk) {
+                schedule(d.getTripId(), d.getDateEndBookings(), now);
+                afterId = d.getTripId();
+            }
+            loaded += chunk.size();
+        } while (chunk.size() == LOAD_CHUNK);
+        return loaded;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    // Attesa fino alla scadenza: inizio del giorno dopo la fine prenotazioni più lo scostamento del viaggio
+    Duration delayUntilDeadline(Long tripId, LocalDate dateEndBookings, ZonedDateTime now) {
+        ZonedDateTime deadline = dateEndBookings.plusDays(1).atStartOfDay(now.getZone()).plus(spreadOffset(tripId));
+        return Duration.between(now, deadline);
+    }
+
+    // Scostamento fisso per viaggio in [0, spread-minutes): l'id viene mescolato così che id consecutivi non si raggruppino
+    Duration spreadOffset(Long tripId) {
+        long spreadSeconds = spreadMinutes * 60;
+        if (spreadSeconds <= 0) return Duration.ZERO;
+        return Duration.ofSeconds(Math.floorMod(Long.hashCode(tripId * 0x9E3779B97F4A7C15L), spreadSeconds));
+    }
+
+    // Allo scadere: Trip.handle() in una transazione dedicata, se il viaggio è ancora aperto per le prenotazioni
+    // Il salvataggio pubblica TripStateChanged (notifiche dopo il commit); catalogo e pagina dell'itinerario vengono aggiornati
+    void fire(Long tripId) {
+        try {
+            String newState = tripTransaction.execute(status -> tripRepository.findByIdForUpdate(tripId)
+                    .filter(trip -> trip.getState() != null && trip.getState().canAcceptBooking())
+                    .map(trip -> {
+                        TripState before = trip.getState();
+                        trip.handle();
+                        if (trip.getState().getClass().equals(before.getClass())) {
+                            return null;
+                        }
+                        tripRepository.save(trip);
+                        catalogIndex.refreshTripAfterCommit(tripId);
+                        pageViewService.evictAfterCommit(trip.getTripItinerary().getId());
+                        return trip.getState().getClass().getSimpleName();
+                    })
+                    .orElse(null));
+            if (newState != null) {
+                log.info("Scadenza del Trip {}: nuovo stato {}", tripId, newState);
+            }
+        } catch (Exception e) {
+            // il viaggio verrà riconciliato dal job notturno
+            log.error("Errore alla scadenza del Trip {}: {}", tripId, e.getMessage());
+        }
+    }
+
+    private void schedule(Long tripId, LocalDate dateEndBookings, ZonedDateTime now) {
+        wheel.schedule(tripId, delayUntilDeadline(tripId, dateEndBookings, now), () -> fire(tripId));
+    }
+}
@@ -5,6 +5,7 @@ import com.lucamoretti.adventure_together.model.trip.TripItinerary;
 import com.lucamoretti.adventure_together.model.trip.TripItineraryDay;
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryDayRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryDayService;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +27,7 @@ public class TripItineraryDayServiceImpl implements TripItineraryDayService {
 
     private final TripItineraryDayRepository dayRepository;
     private final TripItineraryRepository itineraryRepository;
+    private final ItineraryPageViewService pageViewService;
 
     /*
      Metodo per creare un nuovo giorno nell'itinerario
@@ -48,6 +50,7 @@ public class TripItineraryDayServiceImpl implements TripItineraryDayService {
         TripItineraryDay entity = dto.toEntity();
         entity.setTripItinerary(itinerary);
         TripItineraryDay saved = dayRepository.save(entity);
+        pageViewService.evictAfterCommit(itineraryId);
 
         return TripItineraryDayDTO.fromEntity(saved);
     }
@@ -64,7 +67,9 @@ public class TripItineraryDayServiceImpl implements TripItineraryDayService {
         entity.setDescription(dto.getDescription());
         entity.setDayNumber(dto.getDayNumber());
 
-        return TripItineraryDayDTO.fromEntity(dayRepository.save(entity));
+        TripItineraryDayDTO updated = TripItineraryDayDTO.fromEntity(dayRepository.save(entity));
+        pageViewService.evictAfterCommit(entity.getTripItinerary().getId());
+        return updated;
     }
     // Metodo per eliminare un giorno dall'itinerario
     // Se il giorno non esiste, lancia una ResourceNotFoundException
@@ -74,6 +79,7 @@ public class TripItineraryDayServiceImpl implements TripItineraryDayService {
         TripItineraryDay entity = dayRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("TripItineraryDay", "id", id));
         dayRepository.delete(entity);
+        pageViewService.evictAfterCommit(entity.getTripItinerary().getId());
     }
     // Metodo per ottenere tutti i giorni di un itinerario specifico
     // Restituisce una lista di DTO ordinati per numero del giorno
@@ -0,0 +1,211 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
+import com.lucamoretti.adventure_together.util.search.PrefixTrie;
+import com.lucamoretti.adventure_together.util.search.SearchTokenizer;
+import com.lucamoretti.adventure_together.util.search.TrigramIndex;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ Implementazione del motore di ricerca in memoria degli itinerari.
+ Strutture dati (protette da un ReadWriteLock: letture concorrenti, aggiornamenti esclusivi):
+ - postings: termine -> (id itinerario -> peso del campo più importante in cui compare il termine)
+ - PrefixTrie dei termini, per il completamento del testo mentre l'utente digita
+ - TrigramIndex dei termini, per trovare termini simili a quelli digitati con errori di battitura
+ Il punteggio di un itinerario è la somma, per ogni parola cercata, del miglior peso campo * peso corrispondenza;
+ un itinerario è suggerito solo se corrisponde a tutte le parole cercate.
+ L'indice viene costruito alla prima ricerca e poi aggiornato in modo incrementale ad ogni create/update.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TripItinerarySearchIndexImpl implements TripItinerarySearchIndex {
+
+    // Peso dei campi in cui compare un termine
+    private static final double TITLE_WEIGHT = 3.0;
+    private static final double TAG_WEIGHT = 2.0;          // nazioni e categorie
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+
+    // Peso del tipo di corrispondenza fra parola cercata e termine indicizzato
+    private static final double EXACT_MATCH = 1.0;
+    private static final double PREFIX_MATCH = 0.8;
+    private static final double FUZZY_MATCH = 0.6;         // moltiplicato per la similarità a trigrammi
+
+    private static final double MIN_SIMILARITY = 0.4;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    private final TripItineraryRepository itineraryRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private PrefixTrie trie = new PrefixTrie();
+    private TrigramIndex trigrams = new TrigramIndex();
+    private final Map<String, Map<Long, Double>> postings = new HashMap<>();
+    // termini indicizzati per ogni itinerario, usati per rimuovere i vecchi termini in caso di aggiornamento
+    private final Map<Long, Map<String, Double>> termsByItinerary = new HashMap<>();
+    private final Map<Long, String> titles = new HashMap<>();
+    private volatile boolean loaded;
+
+    // Dati di un itinerario da indicizzare, estratti dall'entità
+    private record Document(Long id, String title, Map<String, Double> terms) {}
+
+    @Override
+    public List<TripItineraryTitleDTO> suggest(String query, int limit) {
+        Set<String> queryTokens = SearchTokenizer.tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) return List.of();
+        ensureLoaded();
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String token : queryTokens) {
+                Map<Long, Double> tokenScores = scoreToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // tutte le parole cercate devono corrispondere
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) return List.of();
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(e -> titles.get(e.getKey())))
+                    .limit(limit)
+                    .map(e -> new TripItineraryTitleDTO(e.getKey(), titles.get(e.getKey())))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void indexAfterCommit(TripItinerary itinerary) {
+        Document document = toDocument(itinerary);
+        AfterCommit.run(() -> apply(document));
+    }
+
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            List<Document> documents = itineraryRepository.findAllForSearchIndex().stream()
+                    .map(TripItinerarySearchIndexImpl::toDocument)
+                    .toList();
+            postings.clear();
+            termsByItinerary.clear();
+            titles.clear();
+            trie = new PrefixTrie();
+            trigrams = new TrigramIndex();
+            documents.forEach(this::add);
+            loaded = true;
+            log.info("Indice di ricerca itinerari costruito: {} itinerari, {} termini", titles.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // metodi di supporto
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                if (!loaded) rebuild();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Itinerari che corrispondono ad una parola cercata, con il relativo punteggio
+    // (termine esatto, termini che iniziano con la parola, termini simili)
+    private Map<Long, Double> scoreToken(String token) {
+        Map<String, Double> matches = new HashMap<>();
+        for (String term : trie.complete(token, MAX_PREFIX_EXPANSIONS)) {
+            matches.put(term, term.equals(token) ? EXACT_MATCH : PREFIX_MATCH);
+        }
+        if (token.length() >= MIN_FUZZY_LENGTH) {
+            trigrams.similar(token, MIN_SIMILARITY)
+                    .forEach((term, similarity) -> matches.merge(term, FUZZY_MATCH * similarity, Math::max));
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        matches.forEach((term, matchWeight) ->
+                postings.getOrDefault(term, Map.of())
+                        .forEach((id, fieldWeight) -> scores.merge(id, matchWeight * fieldWeight, Math::max)));
+        return scores;
+    }
+
+    // Applica un documento all'indice, sostituendo l'eventuale versione precedente dello stesso itinerario
+    // Se l'indice non è ancora stato costruito non serve fare nulla: la prima ricerca leggerà i dati già salvati
+    private void apply(Document document) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) return;
+            remove(document.id());
+            add(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Document document) {
+        titles.put(document.id(), document.title());
+        termsByItinerary.put(document.id(), document.terms());
+        document.terms().forEach((term, weight) -> {
+            Map<Long, Double> docs = postings.computeIfAbsent(term, t -> new HashMap<>());
+            if (docs.isEmpty()) {
+                trie.add(term);
+                trigrams.add(term);
+            }
+            docs.put(document.id(), weight);
+        });
+    }
+
+    private void remove(Long id) {
+        titles.remove(id);
+        Map<String, Double> terms = termsByItinerary.remove(id);
+        if (terms == null) return;
+        for (String term : terms.keySet()) {
+            Map<Long, Double> docs = postings.get(term);
+            if (docs == null) continue;
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+                trie.remove(term);
+                trigrams.remove(term);
+            }
+        }
+    }
+
+    // Estrae dall'entità i termini da indicizzare con il peso del campo più importante in cui compaiono
+    private static Document toDocument(TripItinerary itinerary) {
+        Map<String, Double> terms = new HashMap<>();
+        SearchTokenizer.tokenize(itinerary.getDescription())
+                .forEach(t -> terms.merge(t, DESCRIPTION_WEIGHT, Math::max));
+        if (itinerary.getCountries() != null) {
+            itinerary.getCountries().forEach(c -> SearchTokenizer.tokenize(c.getCountry())
+                    .forEach(t -> terms.merge(t, TAG_WEIGHT, Math::max)));
+        }
+        if (itinerary.getCategories() != null) {
+            itinerary.getCategories().forEach(c -> SearchTokenizer.tokenize(c.getName())
+                    .forEach(t -> terms.merge(t, TAG_WEIGHT, Math::max)));
+        }
+        SearchTokenizer.tokenize(itinerary.getTitle())
+                .forEach(t -> terms.merge(t, TITLE_WEIGHT, Math::max));
+        return new Document(itinerary.getId(), itinerary.getTitle(), terms);
+    }
+}
@@ -13,16 +13,23 @@ import com.lucamoretti.adventure_together.repository.details.CountryRepository;
 import com.lucamoretti.adventure_together.repository.details.DepartureAirportRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
 import com.lucamoretti.adventure_together.repository.user.PlannerRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 import com.lucamoretti.adventure_together.util.exception.FileStorageException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetCursor;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -54,6 +61,10 @@ public class TripItineraryServiceImpl implements TripItineraryService {
     private final CategoryRepository categoryRepository;
     private final DepartureAirportRepository airportRepository;
     private final UserService userService;
+    private final TripItineraryTitleIndex titleIndex;
+    private final TripItinerarySearchIndex searchIndex;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -185,6 +196,9 @@ public class TripItineraryServiceImpl implements TripItineraryService {
 
         // Salvataggio dell'entità e ritorno del DTO corrispondente
         TripItinerary saved = itineraryRepository.save(entity);
+        // aggiorna l'indice dei titoli e il motore di ricerca della barra di ricerca dopo il commit
+        titleIndex.refreshAfterCommit();
+        searchIndex.indexAfterCommit(saved);
         return TripItineraryDTO.fromEntity(saved);
     }
 
@@ -306,7 +320,14 @@ public class TripItineraryServiceImpl implements TripItineraryService {
         }
 
         // Salvataggio dell'entità aggiornata e ritorno del DTO corrispondente
-        return TripItineraryDTO.fromEntity(itineraryRepository.save(itinerary));
+        TripItinerary saved = itineraryRepository.save(itinerary);
+        // aggiorna l'indice dei titoli e il motore di ricerca della barra di ricerca dopo il commit
+        // (titolo, descrizione, nazioni e categorie potrebbero essere cambiati) e le faccette dei suoi viaggi nel catalogo
+        titleIndex.refreshAfterCommit();
+        searchIndex.indexAfterCommit(saved);
+        catalogIndex.refreshItineraryAfterCommit(saved.getId());
+        pageViewService.evictAfterCommit(saved.getId());
+        return TripItineraryDTO.fromEntity(saved);
     }
 
     /*
@@ -337,55 +358,52 @@ public class TripItineraryServiceImpl implements TripItineraryService {
                 .orElseThrow(() -> new ResourceNotFoundException("TripItinerary", "title", title));
     }
 
-    // metodo per recuperare tutti gli itinerari di viaggio
+    // metodo per recuperare una pagina di tutti gli itinerari di viaggio (paginazione keyset per id)
     @Override
     @Transactional(readOnly = true)
-    public List<TripItineraryDTO> getAll() {
-        return itineraryRepository.findAll().stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+    public KeysetPage<TripItineraryDTO> getAll(String cursor, int size) {
+        List<TripItineraryDTO> rows = itineraryRepository.findDtoPage(afterId(cursor), Limit.of(KeysetPage.fetchSize(size)));
+        return KeysetPage.of(rows, KeysetPage.clamp(size), it -> KeysetCursor.of(it.getId()));
     }
 
-    // metodo per recuperare tutti gli itinerari di viaggio creati da uno specifico planner
+    // metodo per recuperare una pagina degli itinerari di viaggio creati da uno specifico planner
     @Override
     @Transactional(readOnly = true)
-    public List<TripItineraryDTO> getByPlannerId(Long id) {
-        return itineraryRepository.findByPlannerId(id).stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+    public KeysetPage<TripItineraryDTO> getByPlannerId(Long id, String cursor, int size) {
+        List<TripItineraryDTO> rows = itineraryRepository.findDtoPageByPlannerId(id, afterId(cursor), Limit.of(KeysetPage.fetchSize(size)));
+        return KeysetPage.of(rows, KeysetPage.clamp(size), it -> KeysetCursor.of(it.getId()));
     }
 
     // metodo per cercare itinerari di viaggio in base al paese
     @Override
     @Transactional(readOnly = true)
     public List<TripItineraryDTO> getAllByCountryId(Long countryId) {
-        return itineraryRepository.findByCountry(countryId).stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+        return itineraryRepository.findDtoByCountry(countryId);
     }
     // metodo per cercare itinerari di viaggio in base all'area geografica
     @Override
     @Transactional(readOnly = true)
     public List<TripItineraryDTO> getAllByGeoAreaId(Long geoAreaId) {
-        return itineraryRepository.findByGeoArea(geoAreaId).stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+        return itineraryRepository.findDtoByGeoArea(geoAreaId);
     }
     // metodo per cercare itinerari di viaggio in base alla categoria
     @Override
     @Transactional(readOnly = true)
     public List<TripItineraryDTO> getAllByCategoryId(Long categoryId) {
-        return itineraryRepository.findByCategory(categoryId).stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+        return itineraryRepository.findDtoByCategory(categoryId);
     }
-    // metodo per cercare itinerari di viaggio in base a più categorie
+    // metodo per cercare itinerari di viaggio in base a più categorie, una pagina alla volta
     @Override
     @Transactional(readOnly = true)
-    public List<TripItineraryDTO> getAllByCategoryIds(List<Long> categoryIds) {
-        return itineraryRepository.findByCategories(categoryIds).stream()
-                .map(TripItineraryDTO::fromEntity)
-                .toList();
+    public KeysetPage<TripItineraryDTO> getAllByCategoryIds(List<Long> categoryIds, String cursor, int size) {
+        List<TripItineraryDTO> rows = itineraryRepository.findDtoPageByCategories(categoryIds, afterId(cursor), Limit.of(KeysetPage.fetchSize(size)));
+        return KeysetPage.of(rows, KeysetPage.clamp(size), it -> KeysetCursor.of(it.getId()));
+    }
+
+    // id dell'ultimo itinerario della pagina precedente (0 per la prima pagina)
+    private static long afterId(String cursor) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        return after == null ? 0L : after.id();
     }
 
     // metodi di supporto per la validazione e risoluzione delle relazioni con Country, Category, DepartureAirport
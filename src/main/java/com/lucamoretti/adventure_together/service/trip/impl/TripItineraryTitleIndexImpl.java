@@ -0,0 +1,68 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
+import com.lucamoretti.adventure_together.util.transaction.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/*
+ Implementazione dell'indice in memoria dei titoli degli itinerari.
+ La fotografia (versione + lista immutabile) è pubblicata tramite un riferimento volatile:
+ le letture non acquisiscono lock e vedono sempre una fotografia completa.
+ La prima lettura costruisce la fotografia; le successive ricostruzioni avvengono solo dopo il commit
+ di createItinerary / updateItinerary, così che l'indice non contenga mai titoli non ancora salvati.
+ */
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TripItineraryTitleIndexImpl implements TripItineraryTitleIndex {
+
+    private final TripItineraryRepository itineraryRepository;
+
+    // Fotografia immutabile dei titoli con la relativa versione
+    private record Snapshot(long version, List<TripItineraryTitleDTO> titles) {}
+
+    private volatile Snapshot snapshot;
+
+    @Override
+    public List<TripItineraryTitleDTO> getTitles() {
+        return currentSnapshot().titles();
+    }
+
+    @Override
+    public long getVersion() {
+        return currentSnapshot().version();
+    }
+
+    // La ricostruzione è serializzata per non pubblicare una fotografia più vecchia sopra una più recente
+    @Override
+    public synchronized void refresh() {
+        long nextVersion = snapshot != null ? snapshot.version() + 1 : 1;
+        List<TripItineraryTitleDTO> titles = List.copyOf(itineraryRepository.findAllTitles());
+        snapshot = new Snapshot(nextVersion, titles);
+        log.debug("Indice titoli itinerari ricostruito: versione {}, {} titoli", nextVersion, titles.size());
+    }
+
+    @Override
+    public void refreshAfterCommit() {
+        AfterCommit.run(this::refresh);
+    }
+
+    // Costruisce la fotografia alla prima lettura
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) refresh();
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+}
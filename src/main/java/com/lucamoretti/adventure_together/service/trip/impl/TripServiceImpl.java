@@ -10,13 +10,19 @@ import com.lucamoretti.adventure_together.repository.participant.ParticipantRepo
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
 import com.lucamoretti.adventure_together.repository.user.PlannerRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripDeadlineScheduler;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.validation.DataValidationService;
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetCursor;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.util.List;
@@ -37,6 +43,9 @@ public class TripServiceImpl implements TripService {
     private final DataValidationService dataValidationService;
     private final TripItineraryService tripItineraryService;
     private final ParticipantRepository participantRepository;
+    private final TripCatalogIndex catalogIndex;
+    private final ItineraryPageViewService pageViewService;
+    private final TripDeadlineScheduler deadlineScheduler;
 
     // Creazione di un nuovo Trip (planner)
     @Override
@@ -76,6 +85,12 @@ public class TripServiceImpl implements TripService {
         trip.open(); // setta stato ToBeConfirmed
 
         Trip saved = tripRepository.save(trip);
+        // il nuovo viaggio entra nel catalogo a faccette dopo il commit
+        catalogIndex.refreshTripAfterCommit(saved.getId());
+        // e nella pagina di dettaglio del suo itinerario
+        pageViewService.evictAfterCommit(itinerary.getId());
+        // la chiusura delle prenotazioni viene eseguita allo scadere della data di fine prenotazioni
+        deadlineScheduler.scheduleAfterCommit(saved.getId(), saved.getDateEndBookings());
         return TripDTO.fromEntity(saved);
     }
 
@@ -88,6 +103,8 @@ public class TripServiceImpl implements TripService {
         trip.handle();
         // Salvataggio delle modifiche allo stato
         tripRepository.save(trip);
+        catalogIndex.refreshTripAfterCommit(tripId);
+        pageViewService.evictAfterCommit(trip.getTripItinerary().getId());
 
         return TripDTO.fromEntity(trip);
     }
@@ -107,18 +124,22 @@ public class TripServiceImpl implements TripService {
 
         trip.cancel(); // lo stato eseguirà effettivamente la cancellazione
         tripRepository.save(trip);
+        // il viaggio cancellato esce dal catalogo a faccette e dalla pagina di dettaglio dell'itinerario dopo il commit
+        catalogIndex.refreshTripAfterCommit(tripId);
+        pageViewService.evictAfterCommit(trip.getTripItinerary().getId());
+        // il viaggio cancellato non ha più scadenze
+        deadlineScheduler.cancelAfterCommit(tripId);
 
         return TripDTO.fromEntity(trip);
     }
 
 
     // Query generiche
+    // Le liste sono lette tramite projection JPQL (una sola SELECT) senza materializzare le entità Trip
 
     @Override
     public List<TripDTO> getAll() {
-        return tripRepository.findAll().stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findAllDto();
     }
 
     @Override
@@ -130,9 +151,7 @@ public class TripServiceImpl implements TripService {
 
     @Override
     public List<TripDTO> getTripsByPlanner(Long plannerId) {
-        return tripRepository.findByPlanner_Id(plannerId).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findDtoByPlannerId(plannerId);
     }
 
 
@@ -150,17 +169,13 @@ public class TripServiceImpl implements TripService {
     // Recupera tutti i Trip ancora in stato ToBeConfirmed
     @Override
     public List<TripDTO> getToBeConfirmedTrips() {
-        return tripRepository.findByState(com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed.class).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findDtoByState(com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed.class);
     }
 
     // Recupera tutti i trip ancora prenotabili (ToBeConfirmed + ConfirmedOpen) per un TripItinerary specifico
     @Override
     public List<TripDTO> getBookableTripsByItinerary(Long itineraryId) {
-        return tripRepository.findOpenForBookingByItinerary(itineraryId).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findDtoOpenForBookingByItinerary(itineraryId);
     }
 
     // Recupera tutti i trip prenotabili con partenza entro 30 giorni (per homepage)
@@ -168,9 +183,7 @@ public class TripServiceImpl implements TripService {
     public List<TripDTO> getUpcomingBookableTrips() {
         LocalDate today = LocalDate.now();
         LocalDate todayPlus30 = today.plusDays(30);
-        return tripRepository.findUpcomingBookableTrips(today, todayPlus30).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findDtoUpcomingBookableTrips(today, todayPlus30);
     }
     // Recupera tutti i trip futuri
     @Override
@@ -182,9 +195,7 @@ public class TripServiceImpl implements TripService {
     // Recupera tutti i trip in uno stato specifico
     @Override
     public List<TripDTO> getTripsByState(Class<?> stateClass) {
-        return tripRepository.findByState(stateClass).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        return tripRepository.findDtoByState(stateClass);
     }
     // Recupera tutti i trip futuri non cancellati tra due date
     @Override
@@ -211,9 +222,10 @@ public class TripServiceImpl implements TripService {
         return trip.getCurrentParticipantsCount();
     }
 
-    // Recupera tutti i trip in un range di date di partenza
+    // Recupera una pagina dei trip in un range di date di partenza
+    // paginazione keyset su (dateDeparture, id): la pagina successiva parte dalla chiave dell'ultimo trip mostrato
     @Override
-    public List<TripDTO> getTripsBetweenDates(LocalDate from, LocalDate to) {
+    public KeysetPage<TripDTO> getTripsBetweenDates(LocalDate from, LocalDate to, String cursor, int size) {
         if (from == null) {
             from = LocalDate.now();
         }
@@ -223,9 +235,11 @@ public class TripServiceImpl implements TripService {
         if (from.isAfter(to)) {
             throw new DataIntegrityException("La data di inizio non può essere successiva alla data di fine");
         }
-        return tripRepository.findByDateDepartureBetween(from, to).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        KeysetCursor after = KeysetCursor.decodeDated(cursor);
+        List<TripDTO> rows = tripRepository.findDtoPageByDateDepartureBetween(from, to,
+                after == null ? from : after.date(), after == null ? 0L : after.id(),
+                Limit.of(KeysetPage.fetchSize(size)));
+        return KeysetPage.of(rows, KeysetPage.clamp(size), t -> KeysetCursor.of(t.getDateDeparture(), t.getId()));
     }
 
     // Recupera tutti i participanti di un trip
@@ -237,9 +251,9 @@ public class TripServiceImpl implements TripService {
                 .toList();
     }
 
-    // Recupera tutti i trip di un planner in un range di date di partenza
+    // Recupera una pagina dei trip di un planner in un range di date di partenza (paginazione keyset su (dateDeparture, id))
     @Override
-    public List<TripDTO> getTripsByPlannerBetweenDates(Long plannerId, LocalDate from, LocalDate to) {
+    public KeysetPage<TripDTO> getTripsByPlannerBetweenDates(Long plannerId, LocalDate from, LocalDate to, String cursor, int size) {
         if (from == null) {
             from = LocalDate.now();
         }
@@ -249,9 +263,11 @@ public class TripServiceImpl implements TripService {
         if (from.isAfter(to)) {
             throw new DataIntegrityException("La data di inizio non può essere successiva alla data di fine");
         }
-        return tripRepository.findByPlannerIdAndDateDepartureBetween(plannerId, from, to).stream()
-                .map(TripDTO::fromEntity)
-                .toList();
+        KeysetCursor after = KeysetCursor.decodeDated(cursor);
+        List<TripDTO> rows = tripRepository.findDtoPageByPlannerIdAndDateDepartureBetween(plannerId, from, to,
+                after == null ? from : after.date(), after == null ? 0L : after.id(),
+                Limit.of(KeysetPage.fetchSize(size)));
+        return KeysetPage.of(rows, KeysetPage.clamp(size), t -> KeysetCursor.of(t.getDateDeparture(), t.getId()));
     }
 
 
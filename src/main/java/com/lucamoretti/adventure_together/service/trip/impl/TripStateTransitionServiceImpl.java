@@ -0,0 +1,98 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripStateTransitionDTO;
+import com.lucamoretti.adventure_together.event.TripStateChanged;
+import com.lucamoretti.adventure_together.model.trip.state.TripStateTransition;
+import com.lucamoretti.adventure_together.service.trip.TripStateTransitionService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ Implementazione dell'aggiornamento in blocco degli stati dei viaggi.
+ Ogni transizione (TripStateTransition) è eseguita in una transazione dedicata con tre istruzioni SQL native:
+ - lettura con lock (FOR UPDATE) degli id dei viaggi nello stato di partenza che soddisfano il predicato:
+   fino al commit le prenotazioni concorrenti (incrementSeatsBooked) su quei viaggi attendono e il predicato non cambia;
+ - UPDATE di trips (template email dello stato) e UPDATE di trip_states (tipo di stato) con lo stesso predicato.
+ Le SQL sono native perché lo stato è mappato con Single Table Inheritance: il cambio di stato è un cambio
+ della colonna discriminatore state_type, che JPQL non può aggiornare.
+ Per ogni viaggio viene pubblicato l'evento TripStateChanged, consegnato dopo il commit a TripStateNotificationListener
+ come per le transizioni di Trip.handle(); le entità già caricate nel contesto di persistenza vengono scartate.
+ */
+
+@Slf4j
+@Service
+public class TripStateTransitionServiceImpl implements TripStateTransitionService {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transitionTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TripStateTransitionServiceImpl(ApplicationEventPublisher eventPublisher,
+                                          PlatformTransactionManager transactionManager) {
+        this.eventPublisher = eventPublisher;
+        this.transitionTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public List<TripStateTransitionDTO> applyTransitions(LocalDate today) {
+        List<TripStateTransitionDTO> results = new ArrayList<>();
+        for (TripStateTransition transition : TripStateTransition.values()) {
+            results.add(transitionTransaction.execute(status -> apply(transition, today)));
+        }
+        return results;
+    }
+
+    private TripStateTransitionDTO apply(TripStateTransition transition, LocalDate today) {
+        String where = "t.state_id in (select s.id from trip_states s where s.state_type = :fromType) and "
+                + transition.getPredicate();
+
+        @SuppressWarnings("unchecked")
+        List<Number> rows = entityManager.createNativeQuery(
+                        "select t.id from trips t where " + where + " order by t.id for update")
+                .setParameter("fromType", transition.getFromType())
+                .setParameter("today", today)
+                .getResultList();
+        List<Long> tripIds = rows.stream().map(Number::longValue).toList();
+        if (tripIds.isEmpty()) {
+            return new TripStateTransitionDTO(transition, tripIds);
+        }
+
+        String template = transition.getTemplateMailPath();
+        int trips = entityManager.createNativeQuery(
+                        "update trips t set template_mail_path = :template where " + where)
+                .setParameter("template", template)
+                .setParameter("fromType", transition.getFromType())
+                .setParameter("today", today)
+                .executeUpdate();
+        int states = entityManager.createNativeQuery(
+                        "update trip_states set state_type = :toType, template_mail_path = :template"
+                                + " where state_type = :fromType"
+                                + " and id in (select t.state_id from trips t where " + transition.getPredicate() + ")")
+                .setParameter("toType", transition.getToType())
+                .setParameter("template", template)
+                .setParameter("fromType", transition.getFromType())
+                .setParameter("today", today)
+                .executeUpdate();
+        if (trips != tripIds.size() || states != tripIds.size()) {
+            log.warn("Transizione {}: {} viaggi letti ma {} viaggi e {} stati aggiornati",
+                    transition, tripIds.size(), trips, states);
+        }
+        entityManager.clear();
+
+        String stateName = transition.getTo().getSimpleName();
+        tripIds.forEach(id -> eventPublisher.publishEvent(new TripStateChanged(id, stateName, template)));
+        log.info("Transizione {}: {} viaggi passati a {}", transition, tripIds.size(), stateName);
+        return new TripStateTransitionDTO(transition, tripIds);
+    }
+}
@@ -4,6 +4,7 @@ import com.lucamoretti.adventure_together.dto.user.AdminDTO;
 import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.dto.user.TravelerDTO;
 import com.lucamoretti.adventure_together.dto.user.UserDTO;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,9 +15,10 @@ import java.util.Optional;
 // Implementato da UserServiceImpl
 
 public interface UserService {
-    List<UserDTO> getAllUsers();
-    List<PlannerDTO> getAllPlanners();
-    List<AdminDTO> getAllAdmins();
+    // liste paginate con cursore (keyset), ordinate per id: cursor null indica la prima pagina
+    KeysetPage<UserDTO> getAllUsers(String cursor, int size);
+    KeysetPage<PlannerDTO> getAllPlanners(String cursor, int size);
+    KeysetPage<AdminDTO> getAllAdmins(String cursor, int size);
     Optional<TravelerDTO> getTravelerById(Long id);
     Optional<UserDTO> getByEmail(String email);
 
@@ -30,6 +32,9 @@ public interface UserService {
     void deactivateUser(Long id);
     void activateUser(Long id);
 
+    // riepilogo giornaliero delle notifiche email (opt-in del traveler)
+    void setNotificationDigest(Long travelerId, boolean enabled);
+
     Long getCurrentUserId();
 
 
@@ -5,6 +5,7 @@ import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.dto.user.TravelerDTO;
 import com.lucamoretti.adventure_together.dto.user.UserDTO;
 import com.lucamoretti.adventure_together.model.auth.PasswordResetToken;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
 import com.lucamoretti.adventure_together.model.user.*;
 import com.lucamoretti.adventure_together.repository.auth.PasswordResetTokenRepository;
 import com.lucamoretti.adventure_together.repository.user.AdminRepository;
@@ -16,8 +17,11 @@ import com.lucamoretti.adventure_together.service.validation.DataValidationServi
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetCursor;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -52,28 +56,40 @@ public class UserServiceImpl implements UserService {
     private String baseUrl;
 
 
-    // restituisce tutti gli user come lista di UserDTO
+    // restituisce una pagina degli user come UserDTO (paginazione keyset per id)
     @Override
-    public List<UserDTO> getAllUsers() {
-        return userRepository.findAll().stream()
+    public KeysetPage<UserDTO> getAllUsers(String cursor, int size) {
+        List<UserDTO> rows = userRepository.findByIdGreaterThanOrderByIdAsc(afterId(cursor), Limit.of(KeysetPage.fetchSize(size)))
+                .stream()
                 .map(UserDTO::fromEntity)
                 .toList();
+        return KeysetPage.of(rows, KeysetPage.clamp(size), u -> KeysetCursor.of(u.getId()));
     }
 
-    // restituisce tutti i planner come lista di PlannerDTO
+    // restituisce una pagina dei planner come PlannerDTO (paginazione keyset per id)
     @Override
-    public List<PlannerDTO> getAllPlanners() {
-        return plannerRepository.findAllPlannersNoAdmin().stream()
+    public KeysetPage<PlannerDTO> getAllPlanners(String cursor, int size) {
+        List<PlannerDTO> rows = plannerRepository.findPlannersNoAdminPage(afterId(cursor), Limit.of(KeysetPage.fetchSize(size)))
+                .stream()
                 .map(PlannerDTO::fromEntity)
                 .toList();
+        return KeysetPage.of(rows, KeysetPage.clamp(size), p -> KeysetCursor.of(p.getId()));
     }
 
-    // restituisce tutti gli admin come lista di AdminDTO
+    // restituisce una pagina degli admin come AdminDTO (paginazione keyset per id)
     @Override
-    public List<AdminDTO> getAllAdmins() {
-        return adminRepository.findAll().stream()
+    public KeysetPage<AdminDTO> getAllAdmins(String cursor, int size) {
+        List<AdminDTO> rows = adminRepository.findByIdGreaterThanOrderByIdAsc(afterId(cursor), Limit.of(KeysetPage.fetchSize(size)))
+                .stream()
                 .map(AdminDTO::fromEntity)
                 .toList();
+        return KeysetPage.of(rows, KeysetPage.clamp(size), a -> KeysetCursor.of(a.getId()));
+    }
+
+    // id dell'ultimo utente della pagina precedente (0 per la prima pagina)
+    private static long afterId(String cursor) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        return after == null ? 0L : after.id();
     }
 
     // restituisce tutti i traveler come lista di TravelerDTO
@@ -212,7 +228,8 @@ public class UserServiceImpl implements UserService {
                 user.getEmail(),  // destinatario
                 "Reset Password - AdventureTogether",  // oggetto
                 "mail/reset-password", // path al template Thymeleaf
-                Map.of("name", user.getFirstName(), "resetLink", resetLink)  // variabili per il template inserite in una Map
+                Map.of("name", user.getFirstName(), "resetLink", resetLink),  // variabili per il template inserite in una Map
+                EmailPriority.HIGH  // inviata prima dei promemoria anche a quota SMTP esaurita
         );
         return token;
     }
@@ -259,6 +276,16 @@ public class UserServiceImpl implements UserService {
         });
     }
 
+    // attiva o disattiva il riepilogo giornaliero delle notifiche di un traveler
+    // le email urgenti (reset password, conferma prenotazione) restano comunque immediate
+    @Override
+    public void setNotificationDigest(Long travelerId, boolean enabled) {
+        Traveler traveler = travelerRepository.findById(travelerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Traveler", "id", travelerId));
+        traveler.setNotificationDigest(enabled);
+        travelerRepository.save(traveler);
+    }
+
     // metodo per ottenere l'id dell'utente attualmente autenticato
     @Override
     public Long getCurrentUserId() {
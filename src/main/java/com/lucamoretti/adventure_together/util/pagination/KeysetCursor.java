@@ -0,0 +1,52 @@
+package com.lucamoretti.adventure_together.util.pagination;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/*
+ Cursore della paginazione keyset: chiave di ordinamento dell'ultimo elemento della pagina precedente
+ È formato da una data opzionale e dall'id (spareggio che rende l'ordinamento stabile anche a parità di data)
+ Nella query string viene rappresentato come "2026-10-18_42" oppure, per le liste ordinate solo per id, "42"
+ */
+
+public record KeysetCursor(LocalDate date, Long id) {
+
+    private static final String SEPARATOR = "_";
+
+    public static KeysetCursor of(Long id) {
+        return new KeysetCursor(null, id);
+    }
+
+    public static KeysetCursor of(LocalDate date, Long id) {
+        return new KeysetCursor(date, id);
+    }
+
+    // decodifica il cursore ricevuto in query string; null o vuoto indica la prima pagina
+    public static KeysetCursor decode(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            int sep = value.indexOf(SEPARATOR);
+            if (sep < 0) {
+                return of(Long.parseLong(value));
+            }
+            return of(LocalDate.parse(value.substring(0, sep)), Long.parseLong(value.substring(sep + 1)));
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursore di paginazione non valido: " + value);
+        }
+    }
+
+    // come decode, ma per le liste ordinate per (data, id): un cursore senza data non è valido
+    public static KeysetCursor decodeDated(String value) {
+        KeysetCursor cursor = decode(value);
+        if (cursor != null && cursor.date() == null) {
+            throw new IllegalArgumentException("Cursore di paginazione non valido: " + value);
+        }
+        return cursor;
+    }
+
+    public String encode() {
+        return date == null ? String.valueOf(id) : date + SEPARATOR + id;
+    }
+}
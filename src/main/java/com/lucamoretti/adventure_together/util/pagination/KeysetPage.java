@@ -0,0 +1,54 @@
+package com.lucamoretti.adventure_together.util.pagination;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ Pagina di risultati ottenuta con paginazione a cursore (keyset)
+ Le query leggono una riga in più della dimensione richiesta: se presente esiste una pagina successiva
+ e il cursore viene costruito a partire dall'ultimo elemento mostrato
+ */
+
+@Getter
+public class KeysetPage<T> {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // costruisce la pagina dalle righe lette (fino a size + 1) e dalla funzione che ricava il cursore da un elemento
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(List.copyOf(items), cursorOf.apply(items.get(size - 1)).encode());
+    }
+
+    // numero di righe da leggere per una pagina di dimensione size (una in più per sapere se esiste la successiva)
+    public static int fetchSize(int size) {
+        return clamp(size) + 1;
+    }
+
+    // dimensione effettiva della pagina, limitata tra 1 e MAX_SIZE
+    public static int clamp(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ Trie dei termini indicizzati, usato per il completamento per prefisso
+ Ogni nodo conserva i figli per carattere (ordinati, così i completamenti escono in ordine alfabetico)
+ e un flag che indica se il percorso fino al nodo forma un termine presente.
+ Non è thread-safe: la sincronizzazione è a carico di chi lo usa.
+ */
+
+public class PrefixTrie {
+
+    private static class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private boolean terminal;
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    // Aggiunge un termine; ritorna false se era già presente
+    public boolean add(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.children.computeIfAbsent(term.charAt(i), c -> new Node());
+        }
+        if (node.terminal) return false;
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    // Rimuove un termine e i nodi rimasti senza figli; ritorna false se il termine non era presente
+    public boolean remove(String term) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        for (int i = 0; i < term.length(); i++) {
+            path.push(node);
+            node = node.children.get(term.charAt(i));
+            if (node == null) return false;
+        }
+        if (!node.terminal) return false;
+        node.terminal = false;
+        size--;
+        // potatura dei nodi non più utilizzati, risalendo dal fondo
+        for (int i = term.length() - 1; i >= 0 && !node.terminal && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(term.charAt(i));
+            node = parent;
+        }
+        return true;
+    }
+
+    public boolean contains(String term) {
+        Node node = find(term);
+        return node != null && node.terminal;
+    }
+
+    // Ritorna al massimo limit termini che iniziano con il prefisso, in ordine alfabetico
+    public List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null && limit > 0) {
+            collect(node, new StringBuilder(prefix), result, limit);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private void collect(Node node, StringBuilder current, List<String> result, int limit) {
+        if (node.terminal) result.add(current.toString());
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            if (result.size() >= limit) return;
+            current.append(child.getKey());
+            collect(child.getValue(), current, result, limit);
+            current.setLength(current.length() - 1);
+        }
+    }
+}
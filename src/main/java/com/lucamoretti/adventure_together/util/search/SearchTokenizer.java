@@ -0,0 +1,44 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ Utility per la normalizzazione e la suddivisione in token dei testi indicizzati dal motore di ricerca
+ - minuscolo, rimozione di accenti e tag HTML (le descrizioni degli itinerari sono salvate come HTML)
+ - suddivisione su tutto ciò che non è lettera o cifra
+ - scarto dei token di un solo carattere e delle parole italiane più comuni
+ */
+
+public final class SearchTokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "il", "lo", "la", "le", "gli", "un", "una", "uno", "di", "da", "in", "con", "su", "per", "tra", "fra",
+            "del", "della", "dello", "dei", "delle", "degli", "al", "alla", "allo", "ai", "alle", "agli",
+            "nel", "nella", "nello", "nei", "nelle", "negli", "dal", "dalla", "dai", "dalle", "sul", "sulla",
+            "che", "ed", "non", "si", "ci", "come", "anche", "piu", "sono", "nbsp");
+
+    private SearchTokenizer() {
+    }
+
+    // Normalizza un testo: rimuove i tag HTML e gli accenti e lo porta in minuscolo
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String noHtml = text.replaceAll("<[^>]*>", " ");
+        String decomposed = Normalizer.normalize(noHtml, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    // Ritorna i token distinti del testo, nell'ordine in cui compaiono
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,62 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ Indice a trigrammi dei termini, usato per la ricerca tollerante agli errori di battitura
+ Ogni termine viene scomposto nei trigrammi della forma "  termine " (con padding) e per ogni trigramma
+ si conservano i termini che lo contengono. La similarità fra due termini è il coefficiente di Dice
+ sui rispettivi insiemi di trigrammi (2 * comuni / (totale a + totale b)).
+ Non è thread-safe: la sincronizzazione è a carico di chi lo usa.
+ */
+
+public class TrigramIndex {
+
+    private final Map<String, Set<String>> termsByGram = new HashMap<>();
+
+    public void add(String term) {
+        for (String gram : grams(term)) {
+            termsByGram.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+        }
+    }
+
+    public void remove(String term) {
+        for (String gram : grams(term)) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms == null) continue;
+            terms.remove(term);
+            if (terms.isEmpty()) termsByGram.remove(gram);
+        }
+    }
+
+    // Ritorna i termini con similarità almeno pari a minSimilarity, con il relativo punteggio (0..1]
+    public Map<String, Double> similar(String query, double minSimilarity) {
+        Set<String> queryGrams = grams(query);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms == null) continue;
+            for (String term : terms) shared.merge(term, 1, Integer::sum);
+        }
+        Map<String, Double> result = new HashMap<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            double similarity = 2.0 * e.getValue() / (queryGrams.size() + grams(e.getKey()).size());
+            if (similarity >= minSimilarity) result.put(e.getKey(), similarity);
+        }
+        return result;
+    }
+
+    // Trigrammi distinti di un termine, con due spazi iniziali e uno finale per pesare l'inizio della parola
+    static Set<String> grams(String term) {
+        String padded = "  " + term + " ";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,165 @@
+package com.lucamoretti.adventure_together.util.timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Ruota temporale a hash (hashed timer wheel) per timer identificati da una chiave.
+ La ruota ha wheelSize caselle, una per tick: un timer che scade fra n tick finisce nella casella (tick corrente + n) % wheelSize
+ con n / wheelSize giri da attendere. A ogni tick il thread della ruota scorre solo la casella corrente:
+ i timer con zero giri residui scadono, gli altri scalano di un giro.
+ Inserimento, sostituzione e cancellazione costano O(1) indipendentemente dal numero di timer;
+ la precisione è di un tick (un timer non scade mai in anticipo, al più un tick in ritardo).
+ Un timer per chiave: schedulare di nuovo la stessa chiave sostituisce il timer precedente.
+ I task scaduti vengono eseguiti sull'executor indicato, fuori dal lock, così che un task lento non ritardi i tick.
+ */
+
+public class HashedTimerWheel<K> implements AutoCloseable {
+
+    // Timer in attesa in una casella della ruota
+    private static final class Timeout<K> {
+        private final K key;
+        private final Runnable task;
+        private final int bucket;
+        private long remainingRounds;
+
+        private Timeout(K key, Runnable task, int bucket, long remainingRounds) {
+            this.key = key;
+            this.task = task;
+            this.bucket = bucket;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+
+    private final String name;
+    private final long tickNanos;
+    private final List<Set<Timeout<K>>> wheel;
+    private final Map<K, Timeout<K>> byKey = new HashMap<>();
+    private final Executor executor;
+
+    // indice del prossimo tick da elaborare (protetto da this)
+    private long tick;
+    private Thread worker;
+    private volatile boolean closed;
+
+    public HashedTimerWheel(String name, Duration tickDuration, int wheelSize, Executor executor) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("La durata del tick deve essere positiva");
+        }
+        if (wheelSize < 1) {
+            throw new IllegalArgumentException("La ruota deve avere almeno una casella");
+        }
+        this.name = name;
+        this.tickNanos = tickDuration.toNanos();
+        this.executor = executor;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new LinkedHashSet<>());
+        }
+    }
+
+    // Avvia il thread che fa avanzare la ruota di un tick ogni tickDuration
+    public synchronized void start() {
+        if (worker != null || closed) return;
+        worker = Thread.ofPlatform().daemon().name(name).start(this::run);
+    }
+
+    // Schedula (o ri-schedula) il task della chiave fra "delay"; un ritardo nullo o negativo scade al prossimo tick
+    public synchronized void schedule(K key, Duration delay, Runnable task) {
+        remove(key);
+        long ticks = delay.isNegative() ? 0 : ceilDiv(delay.toNanos(), tickNanos);
+        long deadline = tick + ticks;
+        int bucket = (int) (deadline % wheel.size());
+        Timeout<K> timeout = new Timeout<>(key, task, bucket, ticks / wheel.size());
+        wheel.get(bucket).add(timeout);
+        byKey.put(key, timeout);
+    }
+
+    // Cancella il timer della chiave; ritorna false se non era schedulato
+    public synchronized boolean cancel(K key) {
+        return remove(key) != null;
+    }
+
+    public synchronized boolean isScheduled(K key) {
+        return byKey.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread current;
+        synchronized (this) {
+            current = worker;
+            byKey.clear();
+            wheel.forEach(Set::clear);
+        }
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    // Elabora la casella del tick corrente e passa al successivo; ritorna il numero di timer scaduti
+    // Chiamato dal thread della ruota (package-private per i test, che fanno avanzare la ruota senza attendere)
+    int advance() {
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Timeout<K>> it = wheel.get((int) (tick % wheel.size())).iterator();
+            while (it.hasNext()) {
+                Timeout<K> timeout = it.next();
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                    continue;
+                }
+                it.remove();
+                byKey.remove(timeout.key);
+                expired.add(timeout.task);
+            }
+            tick++;
+        }
+        expired.forEach(executor::execute);
+        return expired.size();
+    }
+
+    // Ciclo del thread: il tick n viene elaborato allo scadere di start + (n + 1) * tickNanos,
+    // quindi un ritardo nell'elaborazione non fa accumulare deriva
+    private void run() {
+        long start = System.nanoTime();
+        long processed = 0;
+        while (!closed) {
+            long sleep = start + (processed + 1) * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            advance();
+            processed++;
+        }
+    }
+
+    private Timeout<K> remove(K key) {
+        Timeout<K> timeout = byKey.remove(key);
+        if (timeout != null) {
+            wheel.get(timeout.bucket).remove(timeout);
+        }
+        return timeout;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
@@ -0,0 +1,29 @@
+package com.lucamoretti.adventure_together.util.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ Utility per eseguire un'azione solo dopo il commit della transazione corrente
+ Usata dalle strutture in memoria (indici, trattenute posti) che non devono mai riflettere dati non ancora salvati:
+ se la transazione fallisce l'azione non viene eseguita; se non c'è una transazione attiva viene eseguita subito
+ */
+
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
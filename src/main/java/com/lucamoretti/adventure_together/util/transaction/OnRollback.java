@@ -0,0 +1,30 @@
+package com.lucamoretti.adventure_together.util.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ Utility per annullare un'azione in memoria se la transazione corrente non va a buon fine
+ Complementare di AfterCommit: le strutture in memoria aggiornate subito (es. una trattenuta posti, che deve contare
+ per i checkout concorrenti prima del commit) vengono riportate allo stato precedente dopo un rollback;
+ se non c'è una transazione attiva l'azione non viene mai eseguita
+ */
+
+public final class OnRollback {
+
+    private OnRollback() {
+    }
+
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// Autocompletamento della barra di ricerca
+// Mentre l'utente digita, aggiorna il datalist con i suggerimenti dell'endpoint /search/suggest
+// (ricerca per prefisso e tollerante agli errori su titolo, descrizione, nazioni e categorie)
+document.addEventListener("DOMContentLoaded", () => {
+    const input = document.querySelector("input[list='itineraryList']");
+    const datalist = document.getElementById("itineraryList");
+    if (!input || !datalist) return;
+
+    // opzioni iniziali (tutti i titoli) ripristinate quando il campo viene svuotato
+    const initialOptions = datalist.innerHTML;
+    let timer = null;
+
+    input.addEventListener("input", () => {
+        clearTimeout(timer);
+        const query = input.value.trim();
+        if (query.length < 2) {
+            datalist.innerHTML = initialOptions;
+            return;
+        }
+        timer = setTimeout(() => {
+            fetch("/search/suggest?q=" + encodeURIComponent(query))
+                .then(response => response.ok ? response.json() : [])
+                .then(suggestions => {
+                    datalist.innerHTML = "";
+                    suggestions.forEach(s => {
+                        const option = document.createElement("option");
+                        option.value = s.title;
+                        datalist.appendChild(option);
+                    });
+                })
+                .catch(() => datalist.innerHTML = initialOptions);
+        }, 150);
+    });
+});
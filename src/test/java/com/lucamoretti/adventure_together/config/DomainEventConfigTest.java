@@ -0,0 +1,77 @@
+package com.lucamoretti.adventure_together.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainEventConfigTest {
+
+    private ThreadPoolTaskExecutor executor(int core, int max, int queue) {
+        DomainEventConfig config = new DomainEventConfig();
+        ReflectionTestUtils.setField(config, "coreSize", core);
+        ReflectionTestUtils.setField(config, "maxSize", max);
+        ReflectionTestUtils.setField(config, "queueCapacity", queue);
+        ThreadPoolTaskExecutor executor = config.domainEventExecutor();
+        executor.initialize();
+        return executor;
+    }
+
+    // ------ EXECUTOR LIMITATO ------
+
+    @Test
+    void domainEventExecutor_isBounded() {
+        ThreadPoolTaskExecutor executor = executor(2, 4, 500);
+        try {
+            assertEquals(2, executor.getCorePoolSize());
+            assertEquals(4, executor.getMaxPoolSize());
+            assertEquals(500, executor.getQueueCapacity());
+            assertInstanceOf(ThreadPoolExecutor.CallerRunsPolicy.class,
+                    executor.getThreadPoolExecutor().getRejectedExecutionHandler());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void domainEventExecutor_fullQueue_runsOnCallerThread() throws Exception {
+        ThreadPoolTaskExecutor executor = executor(1, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(release)); // occupa l'unico thread
+            executor.execute(() -> awaitQuietly(release)); // riempie la coda
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+
+            executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+            assertSame(Thread.currentThread(), ranOn.get());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void domainEventExecutor_maxBelowCore_usesCore() {
+        ThreadPoolTaskExecutor executor = executor(3, 1, 10);
+        try {
+            assertEquals(3, executor.getMaxPoolSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.lucamoretti.adventure_together.config;
+
+import com.lucamoretti.adventure_together.service.review.ReviewService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingAggregateInitializerTest {
+
+    @Mock
+    private ReviewService reviewService;
+
+    @InjectMocks
+    private RatingAggregateInitializer ratingAggregateInitializer;
+
+    // -------------------------------------------------------------------------
+    // CREA ALL'AVVIO SOLO GLI AGGREGATI MANCANTI
+    // -------------------------------------------------------------------------
+    @Test
+    void run_backfillsMissingRatingAggregates() {
+        when(reviewService.backfillRatingAggregates()).thenReturn(4);
+
+        ratingAggregateInitializer.run();
+
+        verify(reviewService).backfillRatingAggregates();
+        verifyNoMoreInteractions(reviewService);
+    }
+}
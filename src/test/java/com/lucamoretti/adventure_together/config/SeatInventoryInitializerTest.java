@@ -0,0 +1,44 @@
+package com.lucamoretti.adventure_together.config;
+
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SeatInventoryInitializerTest {
+
+    @Mock
+    private TripRepository tripRepository;
+
+    @InjectMocks
+    private SeatInventoryInitializer seatInventoryInitializer;
+
+    // -------------------------------------------------------------------------
+    // INIZIALIZZA I CONTATORI NON ANCORA VALORIZZATI ALL'AVVIO
+    // -------------------------------------------------------------------------
+    @Test
+    void run_backfillsUninitialisedCounters() {
+        ReflectionTestUtils.setField(seatInventoryInitializer, "enabled", true);
+        when(tripRepository.backfillSeatsBooked()).thenReturn(6);
+
+        seatInventoryInitializer.run();
+
+        verify(tripRepository).backfillSeatsBooked();
+        verifyNoMoreInteractions(tripRepository);
+    }
+
+    @Test
+    void run_disabled_doesNothing() {
+        ReflectionTestUtils.setField(seatInventoryInitializer, "enabled", false);
+
+        seatInventoryInitializer.run();
+
+        verifyNoInteractions(tripRepository);
+    }
+}
@@ -0,0 +1,136 @@
+package com.lucamoretti.adventure_together.controller.admin;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastProgressDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRequestDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import com.lucamoretti.adventure_together.model.mail.BroadcastStatus;
+import com.lucamoretti.adventure_together.service.mail.BroadcastService;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ui.ConcurrentModel;
+import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminBroadcastControllerTest {
+
+    @Mock private BroadcastService broadcastService;
+    @Mock private TripItineraryTitleIndex titleIndex;
+    @Mock private BindingResult bindingResult;
+
+    @InjectMocks
+    private AdminBroadcastController controller;
+
+    private static BroadcastRequestDTO request() {
+        return new BroadcastRequestDTO(BroadcastAudience.ALL_TRAVELERS, null, "Novità", "Nuovi itinerari");
+    }
+
+    // --------------------------------------------------------------
+    // GET /admin/broadcast
+    // --------------------------------------------------------------
+    @Test
+    void showBroadcast_addsFormItinerariesAndProgress() {
+        Model model = new ConcurrentModel();
+        BroadcastProgressDTO progress = BroadcastProgressDTO.builder().id(1L).status(BroadcastStatus.RUNNING).build();
+        List<TripItineraryTitleDTO> titles = List.of(new TripItineraryTitleDTO(3L, "Islanda"));
+        when(titleIndex.getTitles()).thenReturn(titles);
+        when(broadcastService.getProgress()).thenReturn(Optional.of(progress));
+
+        String view = controller.showBroadcast(model);
+
+        assertEquals("admin/broadcast", view);
+        assertTrue(model.getAttribute("broadcastRequestDTO") instanceof BroadcastRequestDTO);
+        assertEquals(titles, model.getAttribute("itineraries"));
+        assertSame(progress, model.getAttribute("progress"));
+        assertArrayEquals(BroadcastAudience.values(), (BroadcastAudience[]) model.getAttribute("audiences"));
+    }
+
+    @Test
+    void showBroadcast_keepsFlashDtoAndHandlesNoProgress() {
+        Model model = new ConcurrentModel();
+        BroadcastRequestDTO dto = request();
+        model.addAttribute("broadcastRequestDTO", dto);
+        when(broadcastService.getProgress()).thenReturn(Optional.empty());
+
+        controller.showBroadcast(model);
+
+        assertSame(dto, model.getAttribute("broadcastRequestDTO"));
+        assertNull(model.getAttribute("progress"));
+    }
+
+    // --------------------------------------------------------------
+    // POST /admin/broadcast
+    // --------------------------------------------------------------
+    @Test
+    void startBroadcast_validationErrors_returnsForm() {
+        Model model = new ConcurrentModel();
+        when(bindingResult.hasErrors()).thenReturn(true);
+        when(broadcastService.getProgress()).thenReturn(Optional.empty());
+
+        String view = controller.startBroadcast(request(), bindingResult, model, new RedirectAttributesModelMap());
+
+        assertEquals("admin/broadcast", view);
+        assertTrue(model.containsAttribute("itineraries"));
+        verify(broadcastService, never()).start(any());
+    }
+
+    @Test
+    void startBroadcast_success_redirectsWithMessage() {
+        BroadcastRequestDTO dto = request();
+        RedirectAttributesModelMap attrs = new RedirectAttributesModelMap();
+        when(bindingResult.hasErrors()).thenReturn(false);
+
+        String view = controller.startBroadcast(dto, bindingResult, new ConcurrentModel(), attrs);
+
+        assertEquals("redirect:/admin/broadcast", view);
+        assertTrue(attrs.getFlashAttributes().containsKey("successMessage"));
+        verify(broadcastService).start(dto);
+    }
+
+    @Test
+    void startBroadcast_alreadyRunning_redirectsWithError() {
+        BroadcastRequestDTO dto = request();
+        RedirectAttributesModelMap attrs = new RedirectAttributesModelMap();
+        when(bindingResult.hasErrors()).thenReturn(false);
+        when(broadcastService.start(dto)).thenThrow(new IllegalStateException("Un annuncio è già in fase di invio"));
+
+        String view = controller.startBroadcast(dto, bindingResult, new ConcurrentModel(), attrs);
+
+        assertEquals("redirect:/admin/broadcast", view);
+        assertEquals("Un annuncio è già in fase di invio", attrs.getFlashAttributes().get("errorMessage"));
+        assertSame(dto, attrs.getFlashAttributes().get("broadcastRequestDTO"));
+    }
+
+    // --------------------------------------------------------------
+    // POST /admin/broadcast/cancel
+    // --------------------------------------------------------------
+    @Test
+    void cancelBroadcast_running_redirectsWithSuccess() {
+        RedirectAttributesModelMap attrs = new RedirectAttributesModelMap();
+        when(broadcastService.cancel()).thenReturn(true);
+
+        assertEquals("redirect:/admin/broadcast", controller.cancelBroadcast(attrs));
+        assertTrue(attrs.getFlashAttributes().containsKey("successMessage"));
+    }
+
+    @Test
+    void cancelBroadcast_nothingRunning_redirectsWithError() {
+        RedirectAttributesModelMap attrs = new RedirectAttributesModelMap();
+        when(broadcastService.cancel()).thenReturn(false);
+
+        assertEquals("redirect:/admin/broadcast", controller.cancelBroadcast(attrs));
+        assertTrue(attrs.getFlashAttributes().containsKey("errorMessage"));
+    }
+}
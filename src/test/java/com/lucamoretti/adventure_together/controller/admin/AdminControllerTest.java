@@ -3,6 +3,7 @@ package com.lucamoretti.adventure_together.controller.admin;
 import com.lucamoretti.adventure_together.dto.user.AdminDTO;
 import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.service.user.UserService;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 
 import com.lucamoretti.adventure_together.util.passwordGenerator.PasswordGeneratorService;
@@ -176,9 +177,9 @@ class AdminControllerTest {
     void listPlanners_addsListToModel() {
         Model model = new ConcurrentModel();
 
-        when(userService.getAllPlanners()).thenReturn(List.of());
+        when(userService.getAllPlanners(null, KeysetPage.DEFAULT_SIZE)).thenReturn(new KeysetPage<>(List.of(), null));
 
-        String view = controller.listPlanners(model);
+        String view = controller.listPlanners(null, model);
 
         assertEquals("/admin/planner-list", view);
         assertTrue(model.containsAttribute("planners"));
@@ -191,12 +192,13 @@ class AdminControllerTest {
     void listAdmins_addsListToModel() {
         Model model = new ConcurrentModel();
 
-        when(userService.getAllAdmins()).thenReturn(List.of());
+        when(userService.getAllAdmins("4", KeysetPage.DEFAULT_SIZE)).thenReturn(new KeysetPage<>(List.of(), null));
 
-        String view = controller.listAdmins(model);
+        String view = controller.listAdmins("4", model);
 
         assertEquals("/admin/admin-list", view);
         assertTrue(model.containsAttribute("admins"));
+        assertEquals("4", model.getAttribute("cursor"));
     }
 
     // --------------------------------------------------------------
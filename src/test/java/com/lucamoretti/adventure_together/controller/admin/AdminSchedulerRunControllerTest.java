@@ -0,0 +1,66 @@
+package com.lucamoretti.adventure_together.controller.admin;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.dto.batch.SchedulerRunDTO;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ui.ConcurrentModel;
+import org.springframework.ui.Model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminSchedulerRunControllerTest {
+
+    @Mock private SchedulerRunRecorder runRecorder;
+
+    @InjectMocks
+    private AdminSchedulerRunController controller;
+
+    private static SchedulerJobStatsDTO stats(String job) {
+        return new SchedulerJobStatsDTO(job, 2L, LocalDateTime.now(), 100.0, 150L, null, 10.0, 0L, 5L, 0L, 0L);
+    }
+
+    // --------------------------------------------------------------
+    // GET /admin/scheduler-runs
+    // --------------------------------------------------------------
+    @Test
+    void showRuns_allJobs_addsStatsJobsAndRecentRuns() {
+        Model model = new ConcurrentModel();
+        List<SchedulerJobStatsDTO> stats = List.of(stats("review-reminders"), stats("trip-states"));
+        List<SchedulerRunDTO> runs = List.of(SchedulerRunDTO.builder().id(1L).jobName("trip-states")
+                .status(SchedulerRunStatus.COMPLETED).build());
+        when(runRecorder.getJobStats()).thenReturn(stats);
+        when(runRecorder.getRecentRuns(null, 50)).thenReturn(runs);
+
+        String view = controller.showRuns(null, model);
+
+        assertEquals("admin/scheduler-runs", view);
+        assertEquals(stats, model.getAttribute("stats"));
+        assertEquals(List.of("review-reminders", "trip-states"), model.getAttribute("jobs"));
+        assertEquals(runs, model.getAttribute("runs"));
+        assertNull(model.getAttribute("selectedJob"));
+    }
+
+    @Test
+    void showRuns_oneJob_filtersRecentRuns() {
+        Model model = new ConcurrentModel();
+        when(runRecorder.getJobStats()).thenReturn(List.of(stats("trip-states")));
+        when(runRecorder.getRecentRuns("trip-states", 50)).thenReturn(List.of());
+
+        controller.showRuns("trip-states", model);
+
+        assertEquals("trip-states", model.getAttribute("selectedJob"));
+        assertEquals(List.of(), model.getAttribute("runs"));
+        verify(runRecorder).getRecentRuns("trip-states", 50);
+    }
+}
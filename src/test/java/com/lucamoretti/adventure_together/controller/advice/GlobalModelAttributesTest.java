@@ -1,7 +1,7 @@
 package com.lucamoretti.adventure_together.controller.advice;
 
-import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
-import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -17,27 +17,24 @@ import static org.mockito.Mockito.*;
 class GlobalModelAttributesTest {
 
     @Mock
-    private TripItineraryService tripItineraryService;
+    private TripItineraryTitleIndex titleIndex;
 
     @InjectMocks
     private GlobalModelAttributes globalModelAttributes;
 
     @Test
-    void populateItineraries_returnsList() {
+    void populateItineraries_returnsTitleSnapshot() {
 
-        TripItineraryDTO dto = TripItineraryDTO.builder()
-                .id(1L)
-                .title("Test Itinerary")
-                .build();
+        TripItineraryTitleDTO dto = new TripItineraryTitleDTO(1L, "Test Itinerary");
 
-        when(tripItineraryService.getAll()).thenReturn(List.of(dto));
+        when(titleIndex.getTitles()).thenReturn(List.of(dto));
 
-        List<TripItineraryDTO> result = globalModelAttributes.populateItineraries();
+        List<TripItineraryTitleDTO> result = globalModelAttributes.populateItineraries();
 
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(dto, result.get(0));
 
-        verify(tripItineraryService, times(1)).getAll();
+        verify(titleIndex, times(1)).getTitles();
     }
 }
@@ -8,6 +8,7 @@ import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
 import com.lucamoretti.adventure_together.dto.participant.ParticipantDTO;
 import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import com.lucamoretti.adventure_together.service.booking.BookingPreparationService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.user.UserService;
@@ -38,6 +39,7 @@ class BookingControllerTest {
     @Mock private DepartureAirportService airportService;
     @Mock private TripItineraryService tripItineraryService;
     @Mock private UserService userService;
+    @Mock private SeatHoldService seatHoldService;
 
     @InjectMocks
     private BookingController controller;
@@ -80,7 +82,10 @@ class BookingControllerTest {
     void showBookingForm_ok() {
         Model model = new ExtendedModelMap();
 
+        trip.setMaxParticipants(10);
+        trip.setCurrentParticipantsCount(6);
         when(tripService.getById(11L)).thenReturn(trip);
+        when(seatHoldService.getHeldSeats(11L)).thenReturn(2);
         when(userService.getCurrentUserId()).thenReturn(999L);
         when(tripItineraryService.getById(3L)).thenReturn(itin);
         when(airportService.getDepartureAirportsBySetOfIds(Set.of(5L)))
@@ -90,6 +95,8 @@ class BookingControllerTest {
 
         assertEquals("booking/booking-form", view);
         assertEquals(trip, model.getAttribute("trip"));
+        // posti disponibili al netto dei posti trattenuti
+        assertEquals(2, trip.getAvailableSeats());
         assertTrue(model.containsAttribute("bookingDTO"));
         assertEquals(List.of(airport), model.getAttribute("airports"));
 
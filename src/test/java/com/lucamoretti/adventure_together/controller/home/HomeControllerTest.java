@@ -4,6 +4,8 @@ import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import com.lucamoretti.adventure_together.service.trip.TripService;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -28,6 +30,7 @@ class HomeControllerTest {
 
     @Mock private TripService tripService;
     @Mock private TripItineraryService tripItineraryService;
+    @Mock private TripItinerarySearchIndex searchIndex;
     @Mock private RedirectAttributes redirectAttributes;
 
     @InjectMocks
@@ -65,13 +68,14 @@ class HomeControllerTest {
     void home_ok() {
         Model model = new ExtendedModelMap();
 
-        when(tripItineraryService.getAll()).thenReturn(List.of(itinerary));
         when(tripService.getUpcomingBookableTrips()).thenReturn(List.of(trip));
 
         String view = controller.home(model);
 
         assertEquals("home/index", view);
-        assertEquals(List.of(itinerary), model.getAttribute("itineraries"));
+        // gli itinerari della barra di ricerca arrivano da GlobalModelAttributes
+        assertFalse(model.containsAttribute("itineraries"));
+        verifyNoInteractions(tripItineraryService);
         assertEquals(List.of(trip), model.getAttribute("trips"));
         assertEquals(true, model.getAttribute("hasTrips"));
     }
@@ -80,7 +84,6 @@ class HomeControllerTest {
     void home_noTrips_setsHasTripsFalse() {
         Model model = new ExtendedModelMap();
 
-        when(tripItineraryService.getAll()).thenReturn(List.of(itinerary));
         when(tripService.getUpcomingBookableTrips()).thenReturn(List.of());
 
         String view = controller.home(model);
@@ -117,6 +120,8 @@ class HomeControllerTest {
         doThrow(new ResourceNotFoundException("Itinerario", "title", "X"))
                 .when(tripItineraryService).getByTitle("X");
 
+        when(searchIndex.suggest("X", 1)).thenReturn(List.of());
+
         String view = controller.search("X", redirectAttributes);
 
         assertEquals("redirect:/home", view);
@@ -125,4 +130,17 @@ class HomeControllerTest {
                 "errorMessage", "Itinerario cercato non presente"
         );
     }
+
+    @Test
+    void search_nearMiss_redirectsToBestSuggestion() {
+        doThrow(new ResourceNotFoundException("Itinerario", "title", "Islnda"))
+                .when(tripItineraryService).getByTitle("Islnda");
+        when(searchIndex.suggest("Islnda", 1))
+                .thenReturn(List.of(new TripItineraryTitleDTO(7L, "Islanda")));
+
+        String view = controller.search("Islnda", redirectAttributes);
+
+        assertEquals("redirect:/trips/trip-itinerary/7", view);
+        verifyNoInteractions(redirectAttributes);
+    }
 }
@@ -0,0 +1,41 @@
+package com.lucamoretti.adventure_together.controller.home;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchSuggestionControllerTest {
+
+    @Mock
+    private TripItinerarySearchIndex searchIndex;
+
+    @InjectMocks
+    private SearchSuggestionController controller;
+
+    @Test
+    void suggest_delegatesToIndex() {
+        List<TripItineraryTitleDTO> suggestions = List.of(new TripItineraryTitleDTO(1L, "Islanda"));
+        when(searchIndex.suggest("isl", 8)).thenReturn(suggestions);
+
+        assertEquals(suggestions, controller.suggest("isl", 8));
+    }
+
+    @Test
+    void suggest_limitIsCapped() {
+        when(searchIndex.suggest("isl", 20)).thenReturn(List.of());
+
+        controller.suggest("isl", 500);
+
+        verify(searchIndex).suggest("isl", 20);
+    }
+}
@@ -3,14 +3,17 @@ package com.lucamoretti.adventure_together.controller.planner;
 import com.lucamoretti.adventure_together.dto.user.UserDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
 import com.lucamoretti.adventure_together.service.details.CategoryService;
 import com.lucamoretti.adventure_together.service.details.CountryService;
 import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import com.lucamoretti.adventure_together.service.review.ReviewService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.*;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,6 +46,7 @@ class PlannerControllerTest {
     @Mock private CategoryService categoryService;
     @Mock private DepartureAirportService departureAirportService;
     @Mock private ReviewService reviewService;
+    @Mock private TripItineraryTitleIndex titleIndex;
     @Mock private BindingResult bindingResult;
     @Mock private Authentication auth;
 
@@ -143,12 +147,14 @@ class PlannerControllerTest {
 
         Long plannerId = 33L;
         when(userService.getCurrentUserId()).thenReturn(plannerId);
-        when(itineraryService.getAll()).thenReturn(List.of());
+        List<TripItineraryTitleDTO> titles = List.of(new TripItineraryTitleDTO(1L, "Islanda"));
+        when(titleIndex.getTitles()).thenReturn(titles);
 
         String view = controller.showCreateTripForm(model, auth);
 
         assertEquals("planner/create-trip", view);
-        assertTrue(model.containsAttribute("tripItineraries"));
+        assertEquals(titles, model.getAttribute("tripItineraries"));
+        verifyNoInteractions(itineraryService);
         assertEquals(plannerId, ((TripDTO) model.getAttribute("tripDTO")).getPlannerId());
     }
 
@@ -201,9 +207,9 @@ class PlannerControllerTest {
     void showTripItineraryCreatedList_loadsData() {
         Model model = new ConcurrentModel();
         when(userService.getCurrentUserId()).thenReturn(20L);
-        when(itineraryService.getByPlannerId(20L)).thenReturn(List.of());
+        when(itineraryService.getByPlannerId(20L, null, KeysetPage.DEFAULT_SIZE)).thenReturn(new KeysetPage<>(List.of(), null));
 
-        String view = controller.showTripItineraryCreatedList(model);
+        String view = controller.showTripItineraryCreatedList(null, model);
 
         assertEquals("planner/all-trip-itineraries", view);
         assertTrue(model.containsAttribute("tripItineraries"));
@@ -216,10 +222,10 @@ class PlannerControllerTest {
     void showTripCreatedList_success() {
         Model model = new ConcurrentModel();
         when(userService.getCurrentUserId()).thenReturn(20L);
-        when(tripService.getTripsByPlannerBetweenDates(eq(20L), any(), any()))
-                .thenReturn(List.of());
+        when(tripService.getTripsByPlannerBetweenDates(eq(20L), any(), any(), any(), anyInt()))
+                .thenReturn(new KeysetPage<>(List.of(), null));
 
-        String view = controller.showTripCreatedList(null, null, model);
+        String view = controller.showTripCreatedList(null, null, null, model);
 
         assertEquals("planner/all-trips", view);
         assertTrue(model.containsAttribute("trips"));
@@ -230,9 +236,9 @@ class PlannerControllerTest {
         Model model = new ConcurrentModel();
         when(userService.getCurrentUserId()).thenReturn(20L);
         doThrow(new DataIntegrityException("ERR"))
-                .when(tripService).getTripsByPlannerBetweenDates(any(), any(), any());
+                .when(tripService).getTripsByPlannerBetweenDates(any(), any(), any(), any(), anyInt());
 
-        String view = controller.showTripCreatedList(null, null, model);
+        String view = controller.showTripCreatedList(null, null, null, model);
 
         assertEquals("planner/all-trips", view);
         assertTrue(model.containsAttribute("errorMessage"));
@@ -301,9 +307,9 @@ class PlannerControllerTest {
     @Test
     void showAllTripItineraries_loadsList() {
         Model model = new ConcurrentModel();
-        when(itineraryService.getAll()).thenReturn(List.of());
+        when(itineraryService.getAll(null, KeysetPage.DEFAULT_SIZE)).thenReturn(new KeysetPage<>(List.of(), null));
 
-        String view = controller.showAllTripItineraries(model);
+        String view = controller.showAllTripItineraries(null, model);
 
         assertEquals("planner/all-trip-itineraries", view);
         assertTrue(model.containsAttribute("tripItineraries"));
@@ -315,21 +321,24 @@ class PlannerControllerTest {
     @Test
     void showAllTrips_success() {
         Model model = new ConcurrentModel();
-        when(tripService.getTripsBetweenDates(any(), any())).thenReturn(List.of());
+        KeysetPage<TripDTO> page = new KeysetPage<>(List.of(), null);
+        when(tripService.getTripsBetweenDates(null, null, "2030-01-01_4", KeysetPage.DEFAULT_SIZE)).thenReturn(page);
 
-        String view = controller.showAllTrips(null, null, model);
+        String view = controller.showAllTrips(null, null, "2030-01-01_4", model);
 
         assertEquals("planner/all-trips", view);
         assertTrue(model.containsAttribute("trips"));
+        assertSame(page, model.getAttribute("page"));
+        assertEquals("/planner/all-trips", model.getAttribute("pageUrl"));
     }
 
     @Test
     void showAllTrips_exceptionHandled() {
         Model model = new ConcurrentModel();
         doThrow(new DataIntegrityException("ERR"))
-                .when(tripService).getTripsBetweenDates(any(), any());
+                .when(tripService).getTripsBetweenDates(any(), any(), any(), anyInt());
 
-        String view = controller.showAllTrips(null, null, model);
+        String view = controller.showAllTrips(null, null, null, model);
 
         assertEquals("planner/all-trips", view);
         assertTrue(model.containsAttribute("errorMessage"));
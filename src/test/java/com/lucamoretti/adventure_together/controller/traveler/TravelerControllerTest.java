@@ -6,6 +6,7 @@ import com.lucamoretti.adventure_together.dto.payment.PaymentDTO;
 import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
+import com.lucamoretti.adventure_together.dto.user.TravelerDTO;
 import com.lucamoretti.adventure_together.model.user.Traveler;
 import com.lucamoretti.adventure_together.model.user.User;
 import com.lucamoretti.adventure_together.service.booking.BookingService;
@@ -15,6 +16,7 @@ import com.lucamoretti.adventure_together.service.review.ReviewService;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.trip.TripService;
 import com.lucamoretti.adventure_together.service.user.UserService;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import com.lucamoretti.adventure_together.util.exception.UnauthorizedActionException;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +33,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -128,8 +131,35 @@ class TravelerControllerTest {
 
     @Test
     void dashboard_returnsView() {
-        String viewName = controller.showTravelerDashboard();
+        Model model = new ExtendedModelMap();
+        when(userService.getTravelerById(999L)).thenReturn(Optional.empty());
+
+        String viewName = controller.showTravelerDashboard(traveler, model);
         assertEquals("traveler/dashboard", viewName);
+        assertEquals(false, model.getAttribute("notificationDigest"));
+    }
+
+    @Test
+    void dashboard_showsDigestPreference() {
+        Model model = new ExtendedModelMap();
+        TravelerDTO dto = new TravelerDTO();
+        dto.setNotificationDigest(true);
+        when(userService.getTravelerById(999L)).thenReturn(Optional.of(dto));
+
+        controller.showTravelerDashboard(traveler, model);
+
+        assertEquals(true, model.getAttribute("notificationDigest"));
+    }
+
+    @Test
+    void updateNotificationDigest_savesPreferenceAndRedirects() {
+        RedirectAttributes ra = new RedirectAttributesModelMap();
+
+        String view = controller.updateNotificationDigest(traveler, true, ra);
+
+        assertEquals("redirect:/traveler/dashboard", view);
+        verify(userService).setNotificationDigest(999L, true);
+        assertNotNull(ra.getFlashAttributes().get("successMessage"));
     }
 
     /* -------------------------------------------------------
@@ -139,15 +169,17 @@ class TravelerControllerTest {
     @Test
     void viewBookings_returnsBookingsList() {
         List<BookingDTO> bookings = List.of(booking);
-        when(bookingService.getBookingsByTravelerId(999L)).thenReturn(bookings);
+        KeysetPage<BookingDTO> page = new KeysetPage<>(bookings, "2030-01-01_5");
+        when(bookingService.getBookingsByTravelerId(999L, null, KeysetPage.DEFAULT_SIZE)).thenReturn(page);
 
         Model model = new ExtendedModelMap();
 
-        String viewName = controller.viewBookings(traveler, model);
+        String viewName = controller.viewBookings(traveler, null, model);
 
         assertEquals("traveler/bookings-list", viewName);
         assertEquals(bookings, model.getAttribute("bookings"));
-        verify(bookingService).getBookingsByTravelerId(999L);
+        assertSame(page, model.getAttribute("page"));
+        verify(bookingService).getBookingsByTravelerId(999L, null, KeysetPage.DEFAULT_SIZE);
     }
 
     /* -------------------------------------------------------
@@ -1,19 +1,23 @@
 package com.lucamoretti.adventure_together.controller.trips;
 
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
+import com.lucamoretti.adventure_together.dto.trip.CatalogFilterDTO;
+import com.lucamoretti.adventure_together.dto.trip.CatalogResultDTO;
+import com.lucamoretti.adventure_together.dto.trip.ItineraryPageViewDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDayDTO;
-import com.lucamoretti.adventure_together.service.trip.TripItineraryDayService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
-import com.lucamoretti.adventure_together.service.trip.TripService;
-import com.lucamoretti.adventure_together.service.review.ReviewService;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import com.lucamoretti.adventure_together.dto.details.GeoAreaDTO;
 import com.lucamoretti.adventure_together.dto.details.CountryDTO;
 import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
 import com.lucamoretti.adventure_together.service.details.CountryService;
 import com.lucamoretti.adventure_together.service.details.GeoAreaService;
 import com.lucamoretti.adventure_together.service.details.CategoryService;
-import com.lucamoretti.adventure_together.service.details.DepartureAirportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -32,14 +36,13 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class TripControllerTest {
 
-    @Mock private TripService tripService;
     @Mock private TripItineraryService tripItineraryService;
     @Mock private CountryService countryService;
     @Mock private GeoAreaService geoAreaService;
     @Mock private CategoryService categoryService;
-    @Mock private DepartureAirportService departureAirportService;
-    @Mock private TripItineraryDayService tripItineraryDayService;
-    @Mock private ReviewService reviewService;
+    @Mock private TripCatalogIndex catalogIndex;
+    @Mock private ItineraryPageViewService pageViewService;
+    @Mock private SeatHoldService seatHoldService;
 
     @InjectMocks
     private TripController controller;
@@ -100,21 +103,23 @@ class TripControllerTest {
     @Test
     void itinerariesByCategories_empty_getAll() {
         Model model = new ExtendedModelMap();
-        when(tripItineraryService.getAll()).thenReturn(List.of(itinerary));
+        KeysetPage<TripItineraryDTO> page = new KeysetPage<>(List.of(itinerary), "3");
+        when(tripItineraryService.getAll(null, KeysetPage.DEFAULT_SIZE)).thenReturn(page);
 
-        String view = controller.itinerariesByCategories(null, model);
+        String view = controller.itinerariesByCategories(null, null, model);
 
         assertEquals("trips/itineraries-by-categories", view);
         assertEquals(List.of(itinerary), model.getAttribute("tripItineraries"));
+        assertSame(page, model.getAttribute("page"));
     }
 
     @Test
     void itinerariesByCategories_filtered() {
         Model model = new ExtendedModelMap();
-        when(tripItineraryService.getAllByCategoryIds(List.of(7L)))
-                .thenReturn(List.of(itinerary));
+        when(tripItineraryService.getAllByCategoryIds(List.of(7L), "2", KeysetPage.DEFAULT_SIZE))
+                .thenReturn(new KeysetPage<>(List.of(itinerary), null));
 
-        String view = controller.itinerariesByCategories(List.of(7L), model);
+        String view = controller.itinerariesByCategories(List.of(7L), "2", model);
 
         assertEquals("trips/itineraries-by-categories", view);
         assertEquals(List.of(itinerary), model.getAttribute("tripItineraries"));
@@ -165,19 +170,17 @@ class TripControllerTest {
     @Test
     void dashboardTripItinerary_ok() {
         Model model = new ExtendedModelMap();
-
-        when(tripItineraryService.getById(12L)).thenReturn(itinerary);
-        when(countryService.getCountryBySetOfId(Set.of(5L))).thenReturn(List.of(country));
-        when(departureAirportService.getDepartureAirportsBySetOfIds(Set.of(3L)))
-                .thenReturn(List.of(airport));
-        when(tripItineraryDayService.getDaysByItinerary(12L))
-                .thenReturn(List.of(day));
-        when(tripService.getBookableTripsByItinerary(12L))
-                .thenReturn(List.of(trip));
-        when(reviewService.getAllReviewsByTripItineraryId(12L))
-                .thenReturn(List.of());
-        when(reviewService.getAverageScoreForTripItinerary(12L))
-                .thenReturn(4.7F);
+        ItineraryRatingDTO rating = new ItineraryRatingDTO(3, 4.7F, List.of(0L, 0L, 0L, 1L, 2L));
+
+        when(pageViewService.getPageView(12L)).thenReturn(ItineraryPageViewDTO.builder()
+                .tripItinerary(itinerary)
+                .countries(List.of(country))
+                .departureAirports(List.of(airport))
+                .itineraryDays(List.of(day))
+                .trips(List.of(trip))
+                .reviews(List.of())
+                .rating(rating)
+                .build());
 
         String view = controller.dashboardTripItinerary(12L, model);
 
@@ -190,5 +193,36 @@ class TripControllerTest {
         assertEquals(List.of(trip), model.getAttribute("trips"));
         assertEquals(List.of(), model.getAttribute("reviews"));
         assertEquals(4.7F, model.getAttribute("averageRating"));
+        assertSame(rating, model.getAttribute("rating"));
+    }
+
+    @Test
+    void dashboardTripItinerary_availableSeatsExcludeHeldSeats() {
+        Model model = new ExtendedModelMap();
+        TripDTO cached = TripDTO.builder().id(44L).tripItineraryId(12L).maxParticipants(10).currentParticipantsCount(6).build();
+        when(pageViewService.getPageView(12L)).thenReturn(ItineraryPageViewDTO.builder()
+                .tripItinerary(itinerary)
+                .trips(List.of(cached))
+                .rating(ItineraryRatingDTO.empty())
+                .build());
+        when(seatHoldService.getHeldSeats(44L)).thenReturn(3);
+
+        controller.dashboardTripItinerary(12L, model);
+
+        @SuppressWarnings("unchecked")
+        List<TripDTO> trips = (List<TripDTO>) model.getAttribute("trips");
+        assertEquals(1, trips.get(0).getAvailableSeats());
+        // il TripDTO del read model in cache non viene modificato
+        assertEquals(0, cached.getHeldSeats());
+        assertEquals(4, cached.getAvailableSeats());
+    }
+
+    @Test
+    void catalogSearch_delegatesToIndex() {
+        CatalogFilterDTO filter = CatalogFilterDTO.builder().categoryIds(List.of(1L)).build();
+        CatalogResultDTO result = CatalogResultDTO.builder().matchingTrips(3).build();
+        when(catalogIndex.search(filter)).thenReturn(result);
+
+        assertSame(result, controller.catalogSearch(filter));
     }
 }
@@ -0,0 +1,71 @@
+package com.lucamoretti.adventure_together.event.listener;
+
+import com.lucamoretti.adventure_together.event.BookingConfirmed;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.details.DepartureAirport;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingConfirmationListenerTest {
+
+    @Mock private BookingRepository bookingRepository;
+    @Mock private EmailService emailService;
+
+    @InjectMocks
+    private BookingConfirmationListener listener;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(listener, "baseUrl", "http://localhost:8080");
+    }
+
+    @Test
+    void onBookingConfirmed_sendsHighPriorityConfirmation() {
+        Traveler traveler = new Traveler();
+        traveler.setEmail("mario@test.com");
+        Trip trip = new Trip();
+        DepartureAirport airport = new DepartureAirport();
+        Booking booking = new Booking();
+        booking.setId(7L);
+        booking.setTraveler(traveler);
+        booking.setTrip(trip);
+        booking.setDepartureAirport(airport);
+        when(bookingRepository.findById(7L)).thenReturn(Optional.of(booking));
+
+        listener.onBookingConfirmed(new BookingConfirmed(7L, 1650.0));
+
+        verify(emailService).sendHtmlMessage(
+                "mario@test.com",
+                "Prenotazione confermata",
+                "mail/booking-confirmation",
+                Map.of("totalCost", 1650.0, "booking", booking, "trip", trip, "traveler", traveler,
+                        "airport", airport, "homepage", "http://localhost:8080/home"),
+                EmailPriority.HIGH);
+    }
+
+    @Test
+    void onBookingConfirmed_bookingNotFound_sendsNothing() {
+        when(bookingRepository.findById(7L)).thenReturn(Optional.empty());
+
+        listener.onBookingConfirmed(new BookingConfirmed(7L, 1650.0));
+
+        verifyNoInteractions(emailService);
+    }
+}
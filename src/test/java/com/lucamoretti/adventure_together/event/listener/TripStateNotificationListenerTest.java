@@ -0,0 +1,108 @@
+package com.lucamoretti.adventure_together.event.listener;
+
+import com.lucamoretti.adventure_together.event.TripStateChanged;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripStateNotificationListenerTest {
+
+    @Mock private TripRepository tripRepository;
+    @Mock private BookingRepository bookingRepository;
+    @Mock private EmailService emailService;
+
+    @InjectMocks
+    private TripStateNotificationListener listener;
+
+    private Trip trip;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(listener, "baseUrl", "http://localhost:8080");
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setTitle("Islanda Adventure");
+        trip = new Trip();
+        trip.setId(5L);
+        trip.setTripItinerary(itinerary);
+    }
+
+    // ------ NOTIFICA IN BLOCCO ------
+
+    @Test
+    void onTripStateChanged_sendsOneBulkNotificationForAllBookings() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.of(trip));
+        when(bookingRepository.findWithTravelerByTripId(5L))
+                .thenReturn(List.of(booking("mario@test.com"), booking("anna@test.com")));
+
+        listener.onTripStateChanged(new TripStateChanged(5L, "ConfirmedOpen", "mail/confirmed-open"));
+
+        ArgumentCaptor<List<MailRecipient>> recipients = ArgumentCaptor.captor();
+        verify(emailService).sendBulkHtmlMessageOnce(
+                eq("Aggiornamento sul tuo viaggio Islanda Adventure"),
+                eq("mail/confirmed-open"),
+                eq(Map.of("trip", trip, "homepage", "http://localhost:8080/home")),
+                eq(5L),
+                recipients.capture(),
+                eq(EmailPriority.NORMAL));
+        assertEquals(List.of("mario@test.com", "anna@test.com"), recipients.getValue().stream().map(MailRecipient::to).toList());
+    }
+
+    // ------ NESSUNA NOTIFICA ------
+
+    @Test
+    void onTripStateChanged_noBookings_sendsNothing() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.of(trip));
+        when(bookingRepository.findWithTravelerByTripId(5L)).thenReturn(List.of());
+
+        listener.onTripStateChanged(new TripStateChanged(5L, "Cancelled", "mail/cancelled"));
+
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    void onTripStateChanged_tripNotFound_sendsNothing() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.empty());
+
+        listener.onTripStateChanged(new TripStateChanged(5L, "Cancelled", "mail/cancelled"));
+
+        verifyNoInteractions(bookingRepository, emailService);
+    }
+
+    @Test
+    void onTripStateChanged_stateWithoutTemplate_sendsNothing() {
+        listener.onTripStateChanged(new TripStateChanged(5L, "ToBeConfirmed", ""));
+
+        verifyNoInteractions(tripRepository, bookingRepository, emailService);
+    }
+
+    private static Booking booking(String email) {
+        Traveler traveler = new Traveler();
+        traveler.setEmail(email);
+        Booking b = new Booking();
+        b.setTraveler(traveler);
+        return b;
+    }
+}
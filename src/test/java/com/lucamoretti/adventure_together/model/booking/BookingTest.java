@@ -3,14 +3,13 @@ package com.lucamoretti.adventure_together.model.booking;
 import com.lucamoretti.adventure_together.model.details.DepartureAirport;
 import com.lucamoretti.adventure_together.model.participant.Participant;
 import com.lucamoretti.adventure_together.model.trip.Trip;
-import com.lucamoretti.adventure_together.model.trip.TripItinerary;
 import com.lucamoretti.adventure_together.model.user.Traveler;
-import com.lucamoretti.adventure_together.service.mail.EmailService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -22,8 +21,6 @@ class BookingTest {
     @Mock Traveler traveler;
     @Mock DepartureAirport departureAirport;
 
-    @Mock EmailService emailService;
-
     private Booking booking;
 
     @BeforeEach
@@ -33,8 +30,6 @@ class BookingTest {
         booking.setTraveler(traveler);
         booking.setDepartureAirport(departureAirport);
         booking.setInsuranceType("basic");
-
-        Booking.setEmailService(emailService);
     }
 
     // ----------------------------------------------------------
@@ -106,26 +101,4 @@ class BookingTest {
         // 1000 + 100
         assertEquals(1100.0, booking.getTotalCost());
     }
-
-    // ----------------------------------------------------------
-    // update() → invia email
-    // ----------------------------------------------------------
-
-    @Test
-    void update_sendsEmailCorrectly() {
-        when(traveler.getEmail()).thenReturn("test@test.com");
-        when(trip.getTripItinerary()).thenReturn(mock(TripItinerary.class));
-
-        TripItinerary itin = trip.getTripItinerary();
-        when(itin.getTitle()).thenReturn("Viaggio Test");
-
-        booking.update("/mail/test", "http://localhost/home");
-
-        verify(emailService).sendHtmlMessage(
-                eq("test@test.com"),
-                contains("Viaggio Test"),
-                eq("/mail/test"),
-                anyMap()
-        );
-    }
 }
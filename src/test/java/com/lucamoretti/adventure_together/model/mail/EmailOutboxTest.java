@@ -0,0 +1,104 @@
+package com.lucamoretti.adventure_together.model.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailOutboxTest {
+
+    private final LocalDateTime now = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    // -------------------------------------------------------------------------
+    // PENDING()
+    // -------------------------------------------------------------------------
+
+    @Test
+    void pending_isDueImmediately() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", "mail/welcome", "<p>ciao</p>");
+
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals(0, email.getAttempts());
+        assertEquals(email.getCreatedAt(), email.getNextAttemptAt());
+        assertEquals(EmailPriority.NORMAL, email.getPriority());
+    }
+
+    @Test
+    void pending_withPriority() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Reset", "mail/reset-password", "<p>x</p>", EmailPriority.HIGH);
+
+        assertEquals(EmailPriority.HIGH, email.getPriority());
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+    }
+
+    // -------------------------------------------------------------------------
+    // MARKFAILED()
+    // -------------------------------------------------------------------------
+
+    @Test
+    void markFailed_exponentialBackoff() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", null, "x");
+        Duration base = Duration.ofSeconds(30);
+
+        email.markFailed("timeout", now, 5, base);
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals(now.plusSeconds(30), email.getNextAttemptAt());
+
+        email.markFailed("timeout", now, 5, base);
+        assertEquals(now.plusSeconds(60), email.getNextAttemptAt());
+
+        email.markFailed("timeout", now, 5, base);
+        assertEquals(now.plusSeconds(120), email.getNextAttemptAt());
+        assertEquals(3, email.getAttempts());
+        assertEquals("timeout", email.getLastError());
+    }
+
+    @Test
+    void markFailed_backoffIsCapped() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", null, "x");
+
+        for (int i = 0; i < 10; i++) {
+            email.markFailed("timeout", now, 50, Duration.ofMinutes(10));
+        }
+
+        assertEquals(now.plus(EmailOutbox.MAX_BACKOFF), email.getNextAttemptAt());
+    }
+
+    @Test
+    void markFailed_lastAttempt_goesDead() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", null, "x");
+
+        email.markFailed("535 auth failed", now, 2, Duration.ofSeconds(30));
+        email.markFailed("535 auth failed", now, 2, Duration.ofSeconds(30));
+
+        assertEquals(EmailOutboxStatus.DEAD, email.getStatus());
+        assertEquals(2, email.getAttempts());
+    }
+
+    @Test
+    void markFailed_truncatesLongError() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", null, "x");
+
+        email.markFailed("e".repeat(5000), now, 5, Duration.ofSeconds(30));
+
+        assertEquals(1000, email.getLastError().length());
+    }
+
+    // -------------------------------------------------------------------------
+    // MARKSENT()
+    // -------------------------------------------------------------------------
+
+    @Test
+    void markSent_clearsError() {
+        EmailOutbox email = EmailOutbox.pending("a@b.c", "Oggetto", null, "x");
+        email.markFailed("timeout", now, 5, Duration.ofSeconds(30));
+
+        email.markSent(now.plusMinutes(1));
+
+        assertEquals(EmailOutboxStatus.SENT, email.getStatus());
+        assertEquals(now.plusMinutes(1), email.getSentAt());
+        assertNull(email.getLastError());
+    }
+}
@@ -0,0 +1,53 @@
+package com.lucamoretti.adventure_together.model.review;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItineraryRatingTest {
+
+    // -------------------------------------------------------------------------
+    // ADDSCORE()
+    // -------------------------------------------------------------------------
+
+    @Test
+    void addScore_updatesCountSumAndHistogram() {
+        ItineraryRating rating = new ItineraryRating(1L);
+
+        rating.addScore(5);
+        rating.addScore(3);
+        rating.addScore(5);
+
+        assertEquals(3, rating.getReviewCount());
+        assertEquals(13, rating.getScoreSum());
+        assertEquals(2, rating.getStars5());
+        assertEquals(1, rating.getStars3());
+        assertEquals(0, rating.getStars1());
+    }
+
+    @Test
+    void addScore_outOfRange_throws() {
+        ItineraryRating rating = new ItineraryRating(1L);
+
+        assertThrows(IllegalArgumentException.class, () -> rating.addScore(6));
+        assertEquals(0, rating.getReviewCount());
+    }
+
+    // -------------------------------------------------------------------------
+    // GETAVERAGE()
+    // -------------------------------------------------------------------------
+
+    @Test
+    void getAverage_nullWithoutReviews() {
+        assertNull(new ItineraryRating(1L).getAverage());
+    }
+
+    @Test
+    void getAverage_ok() {
+        ItineraryRating rating = new ItineraryRating(1L);
+        rating.addScore(4);
+        rating.addScore(5);
+
+        assertEquals(4.5f, rating.getAverage());
+    }
+}
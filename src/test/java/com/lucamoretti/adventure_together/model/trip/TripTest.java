@@ -1,6 +1,9 @@
 package com.lucamoretti.adventure_together.model.trip;
 
+import com.lucamoretti.adventure_together.event.TripStateChanged;
 import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.trip.state.Cancelled;
+import com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen;
 import com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed;
 import com.lucamoretti.adventure_together.model.trip.state.TripState;
 import com.lucamoretti.adventure_together.model.user.Planner;
@@ -10,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -145,6 +149,28 @@ class TripTest {
         assertEquals(0, trip.getCurrentParticipantsCount());
     }
 
+    @Test
+    void getCurrentParticipantsCount_readsSeatsBookedCounter() {
+        trip.setSeatsBooked(7);
+
+        assertEquals(7, trip.getCurrentParticipantsCount());
+        assertTrue(trip.getBookings().isEmpty());
+    }
+
+    @Test
+    void removeBooking_decrementsSeatsBooked() {
+        Booking b1 = mock(Booking.class);
+        Booking b2 = mock(Booking.class);
+        when(b1.getNumParticipants()).thenReturn(2);
+        when(b2.getNumParticipants()).thenReturn(3);
+        trip.addBooking(b1);
+        trip.addBooking(b2);
+
+        trip.removeBooking(b1);
+
+        assertEquals(3, trip.getCurrentParticipantsCount());
+    }
+
     // -------------------------------------------------------------------------
     // hasAvailableSpots
     // -------------------------------------------------------------------------
@@ -159,6 +185,13 @@ class TripTest {
         assertTrue(trip.hasAvailableSpots(3)); // 5/10 → 3 posti disponibili
     }
 
+    @Test
+    void hasAvailableSpots_usesCounterWithoutBookings() {
+        trip.setSeatsBooked(10);
+
+        assertFalse(trip.hasAvailableSpots(1)); // trip pieno
+    }
+
     @Test
     void hasAvailableSpots_falseWhenTooMany() {
         Booking b = mock(Booking.class);
@@ -173,18 +206,44 @@ class TripTest {
     // -------------------------------------------------------------------------
 
     @Test
-    void notifyAllListeners_callsUpdateOnEachBooking() {
-        Booking b1 = mock(Booking.class);
-        Booking b2 = mock(Booking.class);
+    void notifyAllListeners_registersStateChangedEvent() {
+        trip.setState(new ConfirmedOpen());
 
-        trip.setBaseUrl("http://localhost:8080");
+        trip.notifyAllListeners("mail/confirmed-open");
 
-        trip.addBooking(b1);
-        trip.addBooking(b2);
+        assertEquals(List.of(new TripStateChanged(1L, "ConfirmedOpen", "mail/confirmed-open")), List.copyOf(trip.domainEvents()));
+    }
+
+    @Test
+    void notifyAllListeners_doesNotTouchBookings() {
+        Booking b = mock(Booking.class);
+        trip.addBooking(b);
+        clearInvocations(b);
+        trip.setState(new Cancelled());
+
+        trip.notifyAllListeners("mail/cancelled");
+
+        verifyNoInteractions(b);
+        assertEquals(1, trip.domainEvents().size());
+    }
+
+    @Test
+    void clearDomainEvents_afterPublication_removesEvents() {
+        trip.notifyAllListeners("mail/cancelled");
+
+        trip.clearDomainEvents();
+
+        assertTrue(trip.domainEvents().isEmpty());
+    }
 
-        trip.notifyAllListeners("/mail/template");
+    @Test
+    void handle_transition_registersOneEvent() {
+        trip.open();
+        trip.setSeatsBooked(5); // min 3, max 10 → ConfirmedOpen
+
+        trip.handle();
 
-        verify(b1).update(eq("/mail/template"), eq("http://localhost:8080/home"));
-        verify(b2).update(eq("/mail/template"), eq("http://localhost:8080/home"));
+        assertTrue(trip.getState() instanceof ConfirmedOpen);
+        assertEquals(List.of(new TripStateChanged(1L, "ConfirmedOpen", trip.getTemplateMailPath())), List.copyOf(trip.domainEvents()));
     }
 }
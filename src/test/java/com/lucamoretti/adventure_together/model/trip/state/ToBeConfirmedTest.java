@@ -9,6 +9,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDate;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.*;
@@ -43,4 +44,54 @@ class ToBeConfirmedTest extends TripStateBaseTest {
         verify(trip).setState(isA(ConfirmedOpen.class));
     }
 
+    @Test
+    void handle_lastBookingDayBelowMinimum_staysToBeConfirmed() {
+        when(trip.getCurrentParticipantsCount()).thenReturn(1);
+        when(trip.getDateEndBookings()).thenReturn(LocalDate.now());
+
+        state.handle(trip);
+
+        verify(trip, never()).setState(any());
+    }
+
+    @Test
+    void handle_lastBookingDayMinimumReached_movesToConfirmedOpen() {
+        when(trip.getCurrentParticipantsCount()).thenReturn(3);
+        when(trip.getDateEndBookings()).thenReturn(LocalDate.now());
+
+        state.handle(trip);
+
+        verify(trip).setState(isA(ConfirmedOpen.class));
+    }
+
+    @Test
+    void handle_maxParticipantsReached_movesToConfirmedClosed() {
+        when(trip.getCurrentParticipantsCount()).thenReturn(10);
+        when(trip.getDateEndBookings()).thenReturn(LocalDate.now().plusDays(1));
+
+        state.handle(trip);
+
+        verify(trip).setState(isA(ConfirmedClosed.class));
+    }
+
+    @Test
+    void handle_minimumReachedOnLastDay_evaluatedTheDayAfter_movesToConfirmedClosed() {
+        // ancora ToBeConfirmed dopo l'aggiornamento notturno dell'ultimo giorno, poi prenotazioni fino al minimo
+        when(trip.getCurrentParticipantsCount()).thenReturn(3);
+        when(trip.getDateEndBookings()).thenReturn(LocalDate.now().minusDays(1));
+
+        state.handle(trip);
+
+        verify(trip).setState(isA(ConfirmedClosed.class));
+        verify(trip).notifyAllListeners("mail/confirmed-closed");
+    }
+
+    @Test
+    void handle_bookingsClosedBelowMinimum_movesToExpiredClosed() {
+        when(trip.getCurrentParticipantsCount()).thenReturn(2);
+
+        state.handle(trip);
+
+        verify(trip).setState(isA(ExpiredClosed.class));
+    }
 }
@@ -0,0 +1,50 @@
+package com.lucamoretti.adventure_together.model.trip.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripStateTransitionTest {
+
+    @Test
+    void discriminatorsAndTemplates_matchStateClasses() {
+        assertEquals("CONFIRMED_OPEN", TripStateTransition.CONFIRMED_OPEN_TO_CLOSED.getFromType());
+        assertEquals("CONFIRMED_CLOSED", TripStateTransition.CONFIRMED_OPEN_TO_CLOSED.getToType());
+        assertEquals("TO_BE_CONFIRMED", TripStateTransition.TO_BE_CONFIRMED_TO_EXPIRED.getFromType());
+        assertEquals("EXPIRED_CLOSED", TripStateTransition.TO_BE_CONFIRMED_TO_EXPIRED.getToType());
+        assertEquals("mail/expired-closed", TripStateTransition.TO_BE_CONFIRMED_TO_EXPIRED.getTemplateMailPath());
+        assertEquals("mail/confirmed-open", TripStateTransition.TO_BE_CONFIRMED_TO_OPEN.getTemplateMailPath());
+        assertEquals("mail/confirmed-closed", TripStateTransition.TO_BE_CONFIRMED_TO_CLOSED.getTemplateMailPath());
+        assertEquals("TO_BE_CONFIRMED", TripStateTransition.TO_BE_CONFIRMED_ENDED_TO_CLOSED.getFromType());
+        assertEquals("CONFIRMED_CLOSED", TripStateTransition.TO_BE_CONFIRMED_ENDED_TO_CLOSED.getToType());
+    }
+
+    @Test
+    void values_closeConfirmedOpenTripsFirst() {
+        // un viaggio confermato in questa esecuzione non viene chiuso nella stessa
+        assertEquals(TripStateTransition.CONFIRMED_OPEN_TO_CLOSED, TripStateTransition.values()[0]);
+        assertTrue(List.of(TripStateTransition.values()).stream()
+                .skip(1)
+                .allMatch(t -> t.getFrom() == ToBeConfirmed.class));
+    }
+
+    @Test
+    void toBeConfirmedPredicates_coverEveryDateAndCounterCase() {
+        // a iscrizioni chiuse un viaggio ToBeConfirmed scade o viene confermato, non resta mai nello stato
+        String expired = TripStateTransition.TO_BE_CONFIRMED_TO_EXPIRED.getPredicate();
+        String ended = TripStateTransition.TO_BE_CONFIRMED_ENDED_TO_CLOSED.getPredicate();
+        assertTrue(expired.startsWith("t.date_end_bookings < :today and t.seats_booked < "));
+        assertTrue(ended.startsWith("t.date_end_bookings < :today and t.seats_booked >= "));
+        assertEquals(expired.substring(expired.indexOf("(select")), ended.substring(ended.indexOf("(select")));
+    }
+
+    @Test
+    void predicates_useTodayAndSeatCounter() {
+        for (TripStateTransition transition : TripStateTransition.values()) {
+            assertTrue(transition.getPredicate().contains(":today"), transition.name());
+            assertTrue(transition.getPredicate().contains("t.seats_booked"), transition.name());
+        }
+    }
+}
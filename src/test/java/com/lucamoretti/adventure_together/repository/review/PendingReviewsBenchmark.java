@@ -0,0 +1,188 @@
+package com.lucamoretti.adventure_together.repository.review;
+
+import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.details.DepartureAirport;
+import com.lucamoretti.adventure_together.model.review.Review;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.user.Planner;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ Benchmark della ricerca delle recensioni da lasciare (ReviewService.getPendingReviews) su H2 in memoria in modalità MySQL.
+ Carica "trips" viaggi con una prenotazione ciascuno distribuiti su "travelers" viaggiatori; il viaggiatore misurato
+ ha una prenotazione ogni 2000 viaggi e ha recensito metà dei suoi viaggi conclusi.
+ Confronta:
+ - scansione: il vecchio getPendingReviews (findAll di tutti i viaggi, prenotazioni caricate per viaggio
+   e una existsByTrip_IdAndTraveler_Id per ogni viaggio candidato);
+ - anti-join: ReviewRepository.findPendingByTravelerId, una sola query.
+ Per ogni esecuzione riporta righe trovate, tempo e istruzioni SQL preparate; le due versioni devono trovare gli stessi viaggi.
+ Non fa parte della suite ordinaria (il nome non termina in Test); si esegue con il profilo pending-reviews-benchmark:
+   mvn -Ppending-reviews-benchmark test -Dreview.benchmark.trips=100000
+ Con -Dreview.benchmark.scan=false si salta la scansione, che su 100k viaggi richiede decine di secondi per esecuzione.
+ */
+
+@DataJpaTest(properties = {
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:pending_reviews;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+class PendingReviewsBenchmark {
+
+    private static final int TRIPS = Integer.getInteger("review.benchmark.trips", 100_000);
+    private static final int TRAVELERS = Integer.getInteger("review.benchmark.travelers", 1000);
+    private static final int RUNS = Integer.getInteger("review.benchmark.runs", 3);
+    private static final boolean SCAN = Boolean.parseBoolean(System.getProperty("review.benchmark.scan", "true"));
+    // ogni quanti viaggi uno è prenotato dal viaggiatore misurato, e ogni quanti viaggi si svuota il contesto di persistenza
+    private static final int TARGET_EVERY = 2000;
+    private static final int FLUSH_EVERY = 2000;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+    @Autowired
+    private TripRepository tripRepository;
+    @Autowired
+    private EntityManager em;
+
+    // recensioni ancora da lasciare dal viaggiatore misurato nel dataset caricato
+    private int expectedPending;
+
+    @Test
+    void pendingReviews() {
+        LocalDate today = LocalDate.now();
+        Long travelerId = seed(today);
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        List<Long> expected = null;
+        for (int run = 0; run < RUNS; run++) {
+            List<Long> found = measure("anti-join", run, statistics, () ->
+                    reviewRepository.findPendingByTravelerId(travelerId, today).stream().map(ReviewDTO::getTripId).toList());
+            assertEquals(expectedPending, found.size());
+            expected = found;
+        }
+        if (!SCAN) {
+            return;
+        }
+        for (int run = 0; run < RUNS; run++) {
+            // vecchio getPendingReviews: tutti i viaggi, poi prenotazioni e recensione controllate viaggio per viaggio
+            List<Long> found = measure("scansione", run, statistics, () -> tripRepository.findAll().stream()
+                    .filter(trip -> trip.getDateReturn().isBefore(today)
+                            && trip.getBookings().stream().anyMatch(b -> b.getTraveler().getId().equals(travelerId))
+                            && !reviewRepository.existsByTrip_IdAndTraveler_Id(trip.getId(), travelerId))
+                    .map(Trip::getId)
+                    .sorted()
+                    .toList());
+            assertEquals(expected, found);
+        }
+    }
+
+    // Esegue la ricerca con un contesto di persistenza vuoto e stampa righe, tempo e istruzioni SQL
+    private List<Long> measure(String label, int run, Statistics statistics, Supplier<List<Long>> search) {
+        em.clear();
+        statistics.clear();
+        long start = System.nanoTime();
+        List<Long> found = search.get();
+        long micros = (System.nanoTime() - start) / 1_000;
+        System.out.printf("%-10s run %d: %d righe in %,d us, %,d istruzioni SQL%n",
+                label, run, found.size(), micros, statistics.getPrepareStatementCount());
+        return found;
+    }
+
+    // Carica il dataset e restituisce l'id del viaggiatore misurato
+    private Long seed(LocalDate today) {
+        long start = System.nanoTime();
+        Planner planner = new Planner("planner@benchmark.test", "x", "Planner", "Benchmark", true, "E1");
+        em.persist(planner);
+        DepartureAirport airport = new DepartureAirport();
+        airport.setCode("MXP");
+        airport.setName("Malpensa");
+        airport.setCity("Milano");
+        em.persist(airport);
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setTitle("Itinerario");
+        itinerary.setDescription("Descrizione");
+        itinerary.setPicturePath("p");
+        itinerary.setDurationInDays(2);
+        itinerary.setMinParticipants(1);
+        itinerary.setMaxParticipants(5);
+        itinerary.setPlanner(planner);
+        em.persist(itinerary);
+
+        List<Long> travelers = new ArrayList<>(TRAVELERS);
+        for (int i = 0; i < TRAVELERS; i++) {
+            Traveler traveler = new Traveler("t" + i + "@benchmark.test", "x", "Traveler", "Benchmark", true,
+                    LocalDate.of(1990, 1, 1), "1");
+            em.persist(traveler);
+            travelers.add(traveler.getId());
+        }
+        Long target = travelers.get(0);
+        em.flush();
+
+        // partenze distribuite fra tre anni fa e tre anni da oggi: circa metà dei viaggi è già rientrata
+        Random random = new Random(7);
+        LocalDate base = today.minusYears(3);
+        int pending = 0;
+        int reviewed = 0;
+        for (int i = 0; i < TRIPS; i++) {
+            LocalDate departure = base.plusDays(random.nextInt(6 * 365));
+            Trip trip = new Trip();
+            trip.setDateStartBookings(departure.minusDays(60));
+            trip.setDateEndBookings(departure.minusDays(10));
+            trip.setDateDeparture(departure);
+            trip.setDateReturn(departure.plusDays(2));
+            trip.setTripIndividualCost(10);
+            trip.setTripItinerary(em.getReference(TripItinerary.class, itinerary.getId()));
+            trip.setPlanner(em.getReference(Planner.class, planner.getId()));
+            trip.open();
+            em.persist(trip);
+
+            boolean mine = i % TARGET_EVERY == 0;
+            Booking booking = new Booking();
+            booking.setTrip(trip);
+            booking.setInsuranceType("basic");
+            booking.setDepartureAirport(em.getReference(DepartureAirport.class, airport.getId()));
+            booking.setTraveler(em.getReference(Traveler.class,
+                    mine ? target : travelers.get(1 + random.nextInt(TRAVELERS - 1))));
+            em.persist(booking);
+
+            if (mine && trip.getDateReturn().isBefore(today)) {
+                if (reviewed++ % 2 == 0) {
+                    em.persist(new Review(null, "Recensione del benchmark", 4, trip, em.getReference(Traveler.class, target)));
+                } else {
+                    pending++;
+                }
+            }
+            if (i % FLUSH_EVERY == FLUSH_EVERY - 1) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        expectedPending = pending;
+        System.out.printf("dataset: %,d viaggi e %,d viaggiatori caricati in %,d ms, %d recensioni da lasciare attese%n",
+                TRIPS, TRAVELERS, (System.nanoTime() - start) / 1_000_000, pending);
+        return target;
+    }
+}
@@ -0,0 +1,43 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchJobRecoveryTest {
+
+    @Mock
+    private BatchJobRunner batchJobRunner;
+    @Mock
+    private BatchJob job;
+
+    @Test
+    void resumeIncompleteJobs_resumesRegisteredJobs() {
+        BatchJobRecovery recovery = new BatchJobRecovery(batchJobRunner, List.of(job));
+        when(batchJobRunner.resumeIncomplete(List.of(job))).thenReturn(List.of(
+                BatchRunDTO.builder().jobName("trip-states").runDate(LocalDate.now()).build()));
+
+        recovery.resumeIncompleteJobs();
+
+        verify(batchJobRunner).resumeIncomplete(List.of(job));
+    }
+
+    @Test
+    void resumeIncompleteJobs_errorIsCaught() {
+        BatchJobRecovery recovery = new BatchJobRecovery(batchJobRunner, List.of(job));
+        when(batchJobRunner.resumeIncomplete(any())).thenThrow(new RuntimeException("database non disponibile"));
+
+        assertDoesNotThrow(recovery::resumeIncompleteJobs);
+    }
+}
@@ -0,0 +1,98 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxSchedulerTest {
+
+    @Mock
+    private EmailDispatcher emailDispatcher;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private SchedulerLeaseService leaseService;
+
+    @InjectMocks
+    private EmailOutboxScheduler scheduler;
+
+    @Test
+    void dispatchDueEmails_delegatesToDispatcher() {
+        leaseAcquired();
+        when(emailDispatcher.dispatchDue()).thenReturn(3);
+
+        assertDoesNotThrow(() -> scheduler.dispatchDueEmails());
+
+        verify(emailDispatcher).dispatchDue();
+    }
+
+    @Test
+    void dispatchDueEmails_emptyQueue() {
+        leaseAcquired();
+        when(emailDispatcher.dispatchDue()).thenReturn(0);
+
+        scheduler.dispatchDueEmails();
+
+        verify(emailDispatcher).dispatchDue();
+    }
+
+    @Test
+    void dispatchDueEmails_readsQueueStats() {
+        leaseAcquired();
+        when(emailDispatcher.dispatchDue()).thenReturn(0);
+        when(emailDispatcher.getQueueStats()).thenReturn(List.of(
+                new EmailQueueStatsDTO(EmailPriority.LOW, 120L, LocalDateTime.now().minusMinutes(30))));
+
+        assertDoesNotThrow(() -> scheduler.dispatchDueEmails());
+
+        verify(emailDispatcher).getQueueStats();
+    }
+
+    @Test
+    void logTemplateStats_readsRenderTimes() {
+        when(emailService.getTemplateStats()).thenReturn(List.of(MailTemplateStatsDTO.builder()
+                .templateName("mail/cancelled").renders(10).averageMicros(40).maxMicros(900).build()));
+
+        assertDoesNotThrow(() -> scheduler.logTemplateStats());
+
+        verify(emailService).getTemplateStats();
+        verifyNoInteractions(emailDispatcher);
+    }
+
+    @Test
+    void dispatchDueEmails_leaseHeldByAnotherNode_skips() {
+        when(leaseService.runExclusively(eq(EmailOutboxScheduler.JOB_NAME), any(Runnable.class))).thenReturn(false);
+
+        scheduler.dispatchDueEmails();
+
+        verifyNoInteractions(emailDispatcher);
+    }
+
+    // il lease viene acquisito: il task viene eseguito
+    private void leaseAcquired() {
+        when(leaseService.runExclusively(anyString(), any(Runnable.class))).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return true;
+        });
+    }
+}
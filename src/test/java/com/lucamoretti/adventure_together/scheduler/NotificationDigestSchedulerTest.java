@@ -0,0 +1,56 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDigestSchedulerTest {
+
+    @Mock
+    private NotificationDigestService digestService;
+
+    @Mock
+    private SchedulerLeaseService leaseService;
+
+    @InjectMocks
+    private NotificationDigestScheduler scheduler;
+
+    @Test
+    void flushDigests_callsDigestService() {
+        leaseAcquired();
+
+        assertDoesNotThrow(() -> scheduler.flushDigests());
+
+        verify(leaseService).runExclusively(eq(NotificationDigestScheduler.JOB_NAME), any(Runnable.class));
+        verify(digestService).flush();
+    }
+
+    @Test
+    void flushDigests_leaseHeldByAnotherNode_skips() {
+        when(leaseService.runExclusively(anyString(), any(Runnable.class))).thenReturn(false);
+
+        scheduler.flushDigests();
+
+        verifyNoInteractions(digestService);
+    }
+
+    // il lease viene acquisito: il task viene eseguito
+    private void leaseAcquired() {
+        when(leaseService.runExclusively(anyString(), any(Runnable.class))).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return true;
+        });
+    }
+
+}
@@ -1,14 +1,37 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.dto.mail.ReminderResultDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
 import com.lucamoretti.adventure_together.service.review.ReviewService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 class ReviewReminderSchedulerTest {
@@ -16,14 +39,79 @@ class ReviewReminderSchedulerTest {
     @Mock
     private ReviewService reviewService;
 
+    @Mock
+    private TripRepository tripRepository;
+
+    @Mock
+    private BatchJobRunner batchJobRunner;
+
+    @Mock
+    private SchedulerRunRecorder runRecorder;
+
     @InjectMocks
     private ReviewReminderScheduler scheduler;
 
+    private static final LocalDate RETURN_DATE = LocalDate.now().minusDays(3);
+
+    private SchedulerRunCounters counters;
+
+    @BeforeEach
+    void setup() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        counters = new SchedulerRunCounters(registry.counter("scanned"), registry.counter("transitions"),
+                registry.counter("mails"), registry.counter("errors"));
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<SchedulerRunCounters>>getArgument(2).accept(counters);
+            return null;
+        }).when(runRecorder).record(anyString(), any(), any());
+        lenient().when(runRecorder.counters(ReviewReminderScheduler.JOB_NAME)).thenReturn(counters);
+    }
+
     @Test
-    void sendReviewReminders_callsReviewService() {
+    void sendReviewReminders_runsBatchJobForTripsEndedThreeDaysAgo() {
         assertDoesNotThrow(() -> scheduler.sendReviewReminders());
-        verify(reviewService).sendReviewReminderEmails();
+        verify(runRecorder).record(eq(ReviewReminderScheduler.JOB_NAME), eq(RETURN_DATE), any());
+        verify(batchJobRunner).runPartitioned(scheduler, RETURN_DATE);
+        assertEquals(ReviewReminderScheduler.JOB_NAME, scheduler.getName());
     }
-}
 
+    @Test
+    void sendReviewReminders_completedPartitions_runIsNotFailed() {
+        when(batchJobRunner.runPartitioned(scheduler, RETURN_DATE)).thenReturn(List.of(
+                BatchRunDTO.builder().jobName(ReviewReminderScheduler.JOB_NAME).status(BatchRunStatus.COMPLETED).build()));
+
+        scheduler.sendReviewReminders();
+
+        assertFalse(counters.isFailed());
+        assertFalse(counters.isSkipped());
+    }
+
+    @Test
+    void readIds_usesReturnDateCursor() {
+        when(tripRepository.findIdsByDateReturnAfter(RETURN_DATE, 7L, Limit.of(100))).thenReturn(List.of(8L, 9L));
+
+        assertEquals(List.of(8L, 9L), scheduler.readIds(RETURN_DATE, 7L, Limit.of(100)));
+    }
+
+    @Test
+    void process_callsReviewServiceWithChunk() {
+        when(reviewService.sendReviewReminderEmails(List.of(8L, 9L))).thenReturn(new ReminderResultDTO(2, 5, 0));
+
+        scheduler.process(RETURN_DATE, List.of(8L, 9L));
 
+        verify(reviewService).sendReviewReminderEmails(List.of(8L, 9L));
+        assertEquals(2, counters.getItemsScanned());
+        assertEquals(5, counters.getMailsQueued());
+        assertEquals(0, counters.getErrors());
+    }
+
+    @Test
+    void process_failedTrips_areCountedAsErrors() {
+        when(reviewService.sendReviewReminderEmails(List.of(8L, 9L))).thenReturn(new ReminderResultDTO(2, 1, 1));
+
+        assertDoesNotThrow(() -> scheduler.process(RETURN_DATE, List.of(8L, 9L)));
+
+        assertEquals(1, counters.getErrors());
+        assertTrue(counters.getLastError().contains("1 viaggi"));
+    }
+}
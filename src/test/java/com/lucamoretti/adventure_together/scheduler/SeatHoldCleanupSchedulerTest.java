@@ -0,0 +1,30 @@
+package com.lucamoretti.adventure_together.scheduler;
+
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SeatHoldCleanupSchedulerTest {
+
+    @Mock
+    private SeatHoldService seatHoldService;
+
+    @InjectMocks
+    private SeatHoldCleanupScheduler scheduler;
+
+    @Test
+    void purgeExpiredHolds_delegatesToService() {
+        when(seatHoldService.purgeExpiredHolds()).thenReturn(3);
+
+        assertDoesNotThrow(() -> scheduler.purgeExpiredHolds());
+
+        verify(seatHoldService).purgeExpiredHolds();
+    }
+}
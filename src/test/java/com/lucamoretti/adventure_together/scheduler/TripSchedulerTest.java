@@ -1,18 +1,40 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripStateTransitionDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.trip.state.TripState;
+import com.lucamoretti.adventure_together.model.trip.state.TripStateTransition;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
-
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripStateTransitionService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,9 +43,39 @@ class TripSchedulerTest {
     @Mock
     private TripRepository tripRepository;
 
+    @Mock
+    private TripCatalogIndex catalogIndex;
+    @Mock
+    private ItineraryPageViewService pageViewService;
+    @Mock
+    private BatchJobRunner batchJobRunner;
+    @Mock
+    private TripStateTransitionService transitionService;
+    @Mock
+    private SchedulerLeaseService leaseService;
+    @Mock
+    private SchedulerRunRecorder runRecorder;
+
     @InjectMocks
     private TripScheduler scheduler;
 
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SchedulerRunCounters counters;
+
+    // lo storico esegue il job con contatori reali, restituiti anche a process()
+    @BeforeEach
+    void setup() {
+        counters = new SchedulerRunCounters(meterRegistry.counter("scanned"), meterRegistry.counter("transitions"),
+                meterRegistry.counter("mails"), meterRegistry.counter("errors"));
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<SchedulerRunCounters>>getArgument(2).accept(counters);
+            return null;
+        }).when(runRecorder).record(anyString(), any(), any());
+        lenient().when(runRecorder.counters(TripScheduler.JOB_NAME)).thenReturn(counters);
+    }
+
     // Dummy TripState implementations
     static class StateA extends TripState {
         @Override
@@ -49,24 +101,105 @@ class TripSchedulerTest {
         }
     }
 
+    // ------------------------------------------------------------
+    // 0) La schedulazione esegue il job a blocchi per la data odierna
+    // ------------------------------------------------------------
+
+    @Test
+    void updateTripStates_perTripMode_runsBatchJobForToday() {
+        ReflectionTestUtils.setField(scheduler, "setBasedTransitions", false);
+
+        scheduler.updateTripStates();
+
+        verify(runRecorder).record(eq(TripScheduler.JOB_NAME), eq(LocalDate.now()), any());
+        verify(batchJobRunner).runPartitioned(scheduler, LocalDate.now());
+        verifyNoInteractions(transitionService);
+        assertEquals(TripScheduler.JOB_NAME, scheduler.getName());
+    }
+
+    @Test
+    void updateTripStates_perTripModePartitionFails_runIsFailed() {
+        ReflectionTestUtils.setField(scheduler, "setBasedTransitions", false);
+        when(batchJobRunner.runPartitioned(scheduler, LocalDate.now())).thenReturn(List.of(
+                BatchRunDTO.builder().jobName("trip-states#0/2").status(BatchRunStatus.COMPLETED).build(),
+                BatchRunDTO.builder().jobName("trip-states#1/2").status(BatchRunStatus.FAILED).lastError("deadlock").build()));
+
+        scheduler.updateTripStates();
+
+        assertTrue(counters.isFailed());
+        assertEquals(1, counters.getErrors());
+        assertEquals("trip-states#1/2: deadlock", counters.getLastError());
+    }
+
+    @Test
+    void updateTripStates_setBasedMode_appliesTransitionsAndRebuildsCatalog() {
+        ReflectionTestUtils.setField(scheduler, "setBasedTransitions", true);
+        leaseAcquired();
+        when(transitionService.applyTransitions(LocalDate.now())).thenReturn(List.of(
+                new TripStateTransitionDTO(TripStateTransition.TO_BE_CONFIRMED_TO_EXPIRED, List.of(1L, 2L))));
+
+        scheduler.updateTripStates();
+
+        verify(transitionService).applyTransitions(LocalDate.now());
+        verifyNoInteractions(batchJobRunner);
+        verify(catalogIndex).rebuildAfterCommit();
+        verify(pageViewService).evictAllAfterCommit();
+        // i viaggi aggiornati sono contati come esaminati e come transizioni
+        assertEquals(2, counters.getItemsScanned());
+        assertEquals(2, counters.getTransitionsApplied());
+        assertEquals(2, meterRegistry.counter("transitions").count());
+        assertFalse(counters.isSkipped());
+    }
+
+    @Test
+    void updateTripStates_setBasedModeFails_stillRebuildsCatalog() {
+        ReflectionTestUtils.setField(scheduler, "setBasedTransitions", true);
+        leaseAcquired();
+        when(transitionService.applyTransitions(any())).thenThrow(new IllegalStateException("lock wait timeout"));
+
+        assertThrows(IllegalStateException.class, () -> scheduler.updateTripStates());
+
+        verify(catalogIndex).rebuildAfterCommit();
+    }
+
+    @Test
+    void updateTripStates_setBasedModeLeaseHeldByAnotherNode_skips() {
+        ReflectionTestUtils.setField(scheduler, "setBasedTransitions", true);
+        when(leaseService.runExclusively(eq(TripScheduler.JOB_NAME), any(Runnable.class))).thenReturn(false);
+
+        scheduler.updateTripStates();
+
+        verifyNoInteractions(transitionService, catalogIndex, batchJobRunner);
+        assertTrue(counters.isSkipped());
+    }
+
+    @Test
+    void readIds_usesOpenForBookingCursor() {
+        when(tripRepository.findOpenForBookingIdsAfter(10L, Limit.of(100))).thenReturn(List.of(11L, 12L));
+
+        assertEquals(List.of(11L, 12L), scheduler.readIds(TODAY, 10L, Limit.of(100)));
+    }
+
     // ------------------------------------------------------------
     // 1) Stato cambia → save() deve essere chiamato
     // ------------------------------------------------------------
 
     @Test
-    void updateTripStates_stateChanges_tripIsSaved() {
+    void process_stateChanges_tripIsSaved() {
         Trip trip = mock(Trip.class);
 
         TripState before = new StateA();
         TripState after  = new StateB();
 
         when(trip.getState()).thenReturn(before, after);
-        when(tripRepository.findOpenForBooking()).thenReturn(List.of(trip));
+        when(tripRepository.findAllById(List.of(1L))).thenReturn(List.of(trip));
 
-        scheduler.updateTripStates();
+        scheduler.process(TODAY, List.of(1L));
 
         verify(trip).handle();
         verify(tripRepository).save(trip);
+        assertEquals(1, counters.getItemsScanned());
+        assertEquals(1, counters.getTransitionsApplied());
     }
 
     // ------------------------------------------------------------
@@ -74,45 +207,61 @@ class TripSchedulerTest {
     // ------------------------------------------------------------
 
     @Test
-    void updateTripStates_stateDoesNotChange_tripNotSaved() {
+    void process_stateDoesNotChange_tripNotSaved() {
         Trip trip = mock(Trip.class);
 
         TripState same = new StateA();
 
         when(trip.getState()).thenReturn(same, same);
-        when(tripRepository.findOpenForBooking()).thenReturn(List.of(trip));
+        when(tripRepository.findAllById(List.of(1L))).thenReturn(List.of(trip));
 
-        scheduler.updateTripStates();
+        scheduler.process(TODAY, List.of(1L));
 
         verify(trip).handle();
         verify(tripRepository, never()).save(any());
+        assertEquals(1, counters.getItemsScanned());
+        assertEquals(0, counters.getTransitionsApplied());
     }
 
     // ------------------------------------------------------------
-    // 3) Eccezione in handle() → catturata, nessun errore nel test
+    // 3) Eccezione in handle() → catturata, il blocco prosegue
     // ------------------------------------------------------------
 
     @Test
-    void updateTripStates_errorDuringHandle_isCaught() {
-        Trip trip = mock(Trip.class);
-
-        when(tripRepository.findOpenForBooking()).thenReturn(List.of(trip));
-        when(trip.getState()).thenReturn(new StateA());
-        doThrow(new RuntimeException("boom")).when(trip).handle();
-
-        assertDoesNotThrow(() -> scheduler.updateTripStates());
+    void process_errorDuringHandle_isCaught() {
+        Trip failing = mock(Trip.class);
+        Trip ok = mock(Trip.class);
+
+        when(tripRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(failing, ok));
+        when(failing.getState()).thenReturn(new StateA());
+        doThrow(new RuntimeException("boom")).when(failing).handle();
+        when(ok.getState()).thenReturn(new StateA(), new StateB());
+
+        assertDoesNotThrow(() -> scheduler.process(TODAY, List.of(1L, 2L)));
+        verify(tripRepository).save(ok);
+        // l'errore è contato, ma non interrompe l'esecuzione
+        assertEquals(1, counters.getErrors());
+        assertFalse(counters.isFailed());
     }
 
     // ------------------------------------------------------------
-    // 4) Nessun trip → nessun salvataggio
+    // 4) Fine esecuzione → catalogo e pagine ricostruiti
     // ------------------------------------------------------------
 
     @Test
-    void updateTripStates_noTrips_noAction() {
-        when(tripRepository.findOpenForBooking()).thenReturn(List.of());
-
-        scheduler.updateTripStates();
+    void afterRun_rebuildsCatalogAndEvictsPages() {
+        scheduler.afterRun(TODAY);
 
+        verify(catalogIndex).rebuildAfterCommit();
+        verify(pageViewService).evictAllAfterCommit();
         verify(tripRepository, never()).save(any());
     }
+
+    // il lease viene acquisito: il task viene eseguito
+    private void leaseAcquired() {
+        when(leaseService.runExclusively(anyString(), any(Runnable.class))).thenAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return true;
+        });
+    }
 }
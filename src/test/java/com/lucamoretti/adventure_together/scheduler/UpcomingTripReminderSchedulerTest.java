@@ -1,23 +1,37 @@
 package com.lucamoretti.adventure_together.scheduler;
 
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
 import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.user.Traveler;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJobRunner;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunRecorder;
 import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -30,64 +44,124 @@ class UpcomingTripReminderSchedulerTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private BatchJobRunner batchJobRunner;
+
+    @Mock
+    private SchedulerRunRecorder runRecorder;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private UpcomingTripReminderScheduler scheduler;
 
+    private static final LocalDate DEPARTURE = LocalDate.now().plusDays(7);
+
     private Trip tripWithOneBooking;
+    private Traveler traveler;
+    private SchedulerRunCounters counters;
 
     @BeforeEach
     void initData() {
-        Traveler traveler = new Traveler();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        counters = new SchedulerRunCounters(registry.counter("scanned"), registry.counter("transitions"),
+                registry.counter("mails"), registry.counter("errors"));
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<SchedulerRunCounters>>getArgument(2).accept(counters);
+            return null;
+        }).when(runRecorder).record(anyString(), any(), any());
+        lenient().when(runRecorder.counters(UpcomingTripReminderScheduler.JOB_NAME)).thenReturn(counters);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        traveler = new Traveler();
         traveler.setEmail("test@travel.com");
 
         Booking booking = new Booking();
         booking.setTraveler(traveler);
 
         tripWithOneBooking = new Trip();
+        tripWithOneBooking.setId(5L);
         tripWithOneBooking.setBookings(Set.of(booking));
     }
 
     @Test
-    void sendUpcomingTripReminders_tripsFound_sendsEmails() {
-        when(tripRepository.findByDateDepartureEquals(any(LocalDate.class)))
-                .thenReturn(List.of(tripWithOneBooking));
-
-        assertDoesNotThrow(() -> scheduler.sendUpcomingTripReminders());
+    void sendUpcomingTripReminders_runsBatchJobForDepartureInSevenDays() {
+        scheduler.sendUpcomingTripReminders();
 
-        verify(emailService).sendHtmlMessage(
-                eq("test@travel.com"),
-                eq("Il tuo viaggio è vicino!"),
-                eq("mail/upcoming-trip-reminder"),
-                anyMap()
-        );
+        verify(runRecorder).record(eq(UpcomingTripReminderScheduler.JOB_NAME), eq(DEPARTURE), any());
+        verify(batchJobRunner).runPartitioned(scheduler, DEPARTURE);
+        assertEquals(UpcomingTripReminderScheduler.JOB_NAME, scheduler.getName());
     }
 
     @Test
-    void sendUpcomingTripReminders_noTrips_noEmailsSent() {
-        when(tripRepository.findByDateDepartureEquals(any(LocalDate.class)))
-                .thenReturn(List.of());
+    void sendUpcomingTripReminders_allPartitionsOnOtherNodes_runIsSkipped() {
+        when(batchJobRunner.runPartitioned(scheduler, DEPARTURE)).thenReturn(List.of(
+                BatchRunDTO.builder().jobName(UpcomingTripReminderScheduler.JOB_NAME).skipped(true).build()));
 
         scheduler.sendUpcomingTripReminders();
 
-        verifyNoInteractions(emailService);
+        assertTrue(counters.isSkipped());
     }
 
     @Test
-    void sendUpcomingTripReminders_emailError_isCaughtAndDoesNotPropagate() {
-        when(tripRepository.findByDateDepartureEquals(any(LocalDate.class)))
-                .thenReturn(List.of(tripWithOneBooking));
+    void readIds_usesDepartureDateCursor() {
+        when(tripRepository.findIdsByDateDepartureAfter(DEPARTURE, 0L, Limit.of(100))).thenReturn(List.of(5L));
 
-        doThrow(new RuntimeException("mail error"))
-                .when(emailService)
-                .sendHtmlMessage(anyString(), anyString(), anyString(), any(Map.class));
+        assertEquals(List.of(5L), scheduler.readIds(DEPARTURE, 0L, Limit.of(100)));
+    }
 
-        assertDoesNotThrow(() -> scheduler.sendUpcomingTripReminders());
+    @Test
+    void process_tripsFound_sendsEmails() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.of(tripWithOneBooking));
+        when(emailService.sendBulkHtmlMessageOnce(anyString(), anyString(), anyMap(), eq(5L), anyList(), any(EmailPriority.class)))
+                .thenReturn(1);
+
+        assertDoesNotThrow(() -> scheduler.process(DEPARTURE, List.of(5L)));
 
-        verify(emailService).sendHtmlMessage(
-                anyString(),
-                anyString(),
-                anyString(),
-                anyMap()
+        // un invio in blocco per viaggio, filtrato dal registro delle email inviate
+        verify(emailService).sendBulkHtmlMessageOnce(
+                eq("Il tuo viaggio è vicino!"),
+                eq("mail/upcoming-trip-reminder"),
+                eq(Map.of("trip", tripWithOneBooking)),
+                eq(5L),
+                eq(List.of(new MailRecipient("test@travel.com", Map.of("traveler", traveler)))),
+                eq(EmailPriority.LOW)
         );
+        assertEquals(1, counters.getItemsScanned());
+        assertEquals(1, counters.getMailsQueued());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void process_noTrips_noEmailsSent() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.empty());
+
+        scheduler.process(DEPARTURE, List.of(5L));
+
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    void process_emailError_isCaughtAndDoesNotPropagate() {
+        Trip other = new Trip();
+        other.setId(6L);
+        other.setBookings(Set.of());
+        when(tripRepository.findById(5L)).thenReturn(Optional.of(tripWithOneBooking));
+        when(tripRepository.findById(6L)).thenReturn(Optional.of(other));
+
+        when(emailService.sendBulkHtmlMessageOnce(anyString(), anyString(), anyMap(), eq(5L), anyList(), any(EmailPriority.class)))
+                .thenThrow(new RuntimeException("mail error"));
+
+        assertDoesNotThrow(() -> scheduler.process(DEPARTURE, List.of(5L, 6L)));
+
+        // l'errore su un viaggio non blocca gli altri
+        verify(emailService).sendBulkHtmlMessageOnce(anyString(), anyString(), anyMap(), eq(6L), anyList(), any(EmailPriority.class));
+        assertEquals(2, counters.getItemsScanned());
+        assertEquals(1, counters.getErrors());
+        assertEquals("Trip 5: mail error", counters.getLastError());
+        // ogni viaggio ha la sua transazione: solo quella del viaggio in errore viene annullata
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
     }
 }
@@ -0,0 +1,130 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedBatchJobTest {
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2026, 7, 1);
+
+    // Job con id 1..count letti con cursore keyset
+    private static final class IdsJob implements BatchJob {
+        private final List<Long> ids;
+        private final List<Long> processed = new ArrayList<>();
+        private int afterRuns;
+
+        private IdsJob(long count) {
+            this.ids = LongStream.rangeClosed(1, count).boxed().toList();
+        }
+
+        @Override
+        public String getName() {
+            return "job";
+        }
+
+        @Override
+        public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+            return ids.stream().filter(id -> id > afterId).limit(limit.max()).toList();
+        }
+
+        @Override
+        public void process(LocalDate runDate, List<Long> chunk) {
+            processed.addAll(chunk);
+        }
+
+        @Override
+        public void afterRun(LocalDate runDate) {
+            afterRuns++;
+        }
+    }
+
+    // Legge tutti gli id della partizione come farebbe BatchJobRunner (blocchi da size, fine al primo blocco corto)
+    private static List<Long> readAll(BatchJob job, int size) {
+        List<Long> all = new ArrayList<>();
+        Long afterId = 0L;
+        while (true) {
+            List<Long> ids = job.readIds(RUN_DATE, afterId, Limit.of(size));
+            all.addAll(ids);
+            if (ids.size() < size) return all;
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    @Test
+    void readIds_partitionsCoverEveryIdExactlyOnce() {
+        IdsJob job = new IdsJob(1000);
+
+        List<Long> union = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            List<Long> ids = readAll(new PartitionedBatchJob(job, p, 4), 25);
+            int partition = p;
+            assertTrue(ids.stream().allMatch(id -> PartitionedBatchJob.partitionOf(id, 4) == partition));
+            union.addAll(ids);
+        }
+
+        assertEquals(LongStream.rangeClosed(1, 1000).boxed().toList(), union.stream().sorted().toList());
+    }
+
+    @Test
+    void readIds_fullChunksAndAscendingOrder() {
+        PartitionedBatchJob partition = new PartitionedBatchJob(new IdsJob(1000), 2, 4);
+
+        List<Long> chunk = partition.readIds(RUN_DATE, 0L, Limit.of(10));
+
+        assertEquals(10, chunk.size());
+        assertEquals(chunk.stream().sorted().toList(), chunk);
+    }
+
+    @Test
+    void partitionOf_consecutiveIdsAreBalanced() {
+        int[] counts = new int[4];
+        LongStream.rangeClosed(1, 4000).forEach(id -> counts[PartitionedBatchJob.partitionOf(id, 4)]++);
+
+        assertTrue(IntStream.of(counts).allMatch(c -> c > 800 && c < 1200));
+    }
+
+    @Test
+    void nameAndResolve_roundTrip() {
+        IdsJob job = new IdsJob(10);
+        PartitionedBatchJob partition = new PartitionedBatchJob(job, 2, 4);
+
+        assertEquals("job#2/4", partition.getName());
+        PartitionedBatchJob resolved = PartitionedBatchJob.resolve("job#2/4", Map.of("job", job)).orElseThrow();
+        assertSame(job, resolved.getJob());
+        assertEquals(2, resolved.getPartition());
+        assertTrue(PartitionedBatchJob.resolve("job", Map.of("job", job)).isEmpty());
+        assertTrue(PartitionedBatchJob.resolve("other#1/4", Map.of("job", job)).isEmpty());
+        assertTrue(PartitionedBatchJob.resolve("job#x/4", Map.of("job", job)).isEmpty());
+        assertTrue(PartitionedBatchJob.resolve("job#5/4", Map.of("job", job)).isEmpty());
+    }
+
+    @Test
+    void processAndAfterRun_delegateToJob() {
+        IdsJob job = new IdsJob(10);
+        PartitionedBatchJob partition = new PartitionedBatchJob(job, 0, 2);
+
+        partition.process(RUN_DATE, List.of(3L, 7L));
+        partition.afterRun(RUN_DATE);
+
+        assertEquals(List.of(3L, 7L), job.processed);
+        assertEquals(1, job.afterRuns);
+    }
+
+    @Test
+    void constructor_invalidPartition_throws() {
+        IdsJob job = new IdsJob(1);
+
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedBatchJob(job, 4, 4));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedBatchJob(job, -1, 4));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedBatchJob(job, 0, 0));
+    }
+}
@@ -0,0 +1,119 @@
+package com.lucamoretti.adventure_together.service.batch;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulerRunCountersTest {
+
+    private SimpleMeterRegistry registry;
+    private SchedulerRunCounters counters;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        counters = new SchedulerRunCounters(registry.counter("scanned"), registry.counter("transitions"),
+                registry.counter("mails"), registry.counter("errors"));
+    }
+
+    @Test
+    void increments_updateRunAndMeters() {
+        counters.itemsScanned(10);
+        counters.transitionsApplied(2);
+        counters.mailsQueued(7);
+        counters.errors(3, "3 viaggi");
+
+        assertEquals(10, counters.getItemsScanned());
+        assertEquals(2, counters.getTransitionsApplied());
+        assertEquals(7, counters.getMailsQueued());
+        assertEquals(3, counters.getErrors());
+        assertEquals("3 viaggi", counters.getLastError());
+        assertEquals(10, registry.counter("scanned").count());
+        assertEquals(7, registry.counter("mails").count());
+        assertEquals(3, registry.counter("errors").count());
+        assertFalse(counters.isFailed());
+    }
+
+    @Test
+    void zeroOrNegativeCounts_areIgnored() {
+        counters.mailsQueued(0);
+        counters.errors(0, "nessun errore");
+        counters.itemsScanned(-1);
+
+        assertEquals(0, counters.getMailsQueued());
+        assertEquals(0, counters.getErrors());
+        assertNull(counters.getLastError());
+        assertEquals(0, registry.counter("scanned").count());
+    }
+
+    @Test
+    void failed_countsErrorAndMarksRun() {
+        counters.failed("boom");
+
+        assertTrue(counters.isFailed());
+        assertEquals(1, counters.getErrors());
+        assertEquals("boom", counters.getLastError());
+    }
+
+    @Test
+    void batchResults_failedPartition_marksRunFailed() {
+        counters.batchResults(List.of(
+                BatchRunDTO.builder().jobName("job#0/2").status(BatchRunStatus.COMPLETED).build(),
+                BatchRunDTO.builder().jobName("job#1/2").status(BatchRunStatus.FAILED).lastError("timeout").build()));
+
+        assertTrue(counters.isFailed());
+        assertFalse(counters.isSkipped());
+        assertEquals("job#1/2: timeout", counters.getLastError());
+    }
+
+    @Test
+    void batchResults_allSkipped_marksRunSkipped() {
+        counters.batchResults(List.of(
+                BatchRunDTO.builder().jobName("job#0/2").skipped(true).build(),
+                // partizione fallita su un altro nodo: non è un errore di questa esecuzione
+                BatchRunDTO.builder().jobName("job#1/2").status(BatchRunStatus.FAILED).skipped(true).build()));
+
+        assertTrue(counters.isSkipped());
+        assertFalse(counters.isFailed());
+        assertEquals(0, counters.getErrors());
+    }
+
+    @Test
+    void batchResults_someSkipped_runIsNotSkipped() {
+        counters.batchResults(List.of(
+                BatchRunDTO.builder().jobName("job#0/2").status(BatchRunStatus.COMPLETED).build(),
+                BatchRunDTO.builder().jobName("job#1/2").skipped(true).build()));
+
+        assertFalse(counters.isSkipped());
+        assertFalse(counters.isFailed());
+    }
+
+    @Test
+    void concurrentIncrements_areNotLost() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    counters.itemsScanned(1);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(4000, counters.getItemsScanned());
+        assertEquals(4000, registry.counter("scanned").count());
+    }
+}
@@ -0,0 +1,407 @@
+package com.lucamoretti.adventure_together.service.batch.impl;
+
+import com.lucamoretti.adventure_together.dto.batch.BatchRunDTO;
+import com.lucamoretti.adventure_together.model.batch.BatchCheckpoint;
+import com.lucamoretti.adventure_together.model.batch.BatchRunStatus;
+import com.lucamoretti.adventure_together.repository.batch.BatchCheckpointRepository;
+import com.lucamoretti.adventure_together.service.batch.BatchJob;
+import com.lucamoretti.adventure_together.service.batch.PartitionedBatchJob;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchJobRunnerImplTest {
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2026, 7, 1);
+
+    @Mock private BatchCheckpointRepository checkpointRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private SchedulerLeaseService leaseService;
+
+    private BatchJobRunnerImpl runner;
+
+    // lastId del checkpoint ad ogni salvataggio
+    private final List<Long> savedLastIds = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        runner = new BatchJobRunnerImpl(checkpointRepository, leaseService, transactionManager);
+        ReflectionTestUtils.setField(runner, "chunkSize", 2);
+        ReflectionTestUtils.setField(runner, "workers", 2);
+        ReflectionTestUtils.setField(runner, "resumeWindowHours", 24L);
+        ReflectionTestUtils.setField(runner, "partitions", 1);
+        runner.init();
+        // questo nodo ottiene sempre il lease, salvo diversa indicazione del test
+        lenient().when(leaseService.runExclusively(anyString(), any(Supplier.class)))
+                .thenAnswer(inv -> Optional.ofNullable(inv.<Supplier<?>>getArgument(1).get()));
+        lenient().when(leaseService.getNodeId()).thenReturn("node-a");
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(checkpointRepository.save(any(BatchCheckpoint.class))).thenAnswer(inv -> {
+            BatchCheckpoint checkpoint = inv.getArgument(0);
+            savedLastIds.add(checkpoint.getLastId());
+            return checkpoint;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    // Job di prova sugli id indicati; onProcess viene chiamato per ogni blocco
+    private static final class FakeJob implements BatchJob {
+        private final String name;
+        private final List<Long> ids;
+        private final Consumer<List<Long>> onProcess;
+        private final List<Long> processed = new CopyOnWriteArrayList<>();
+        private final List<Long> readAfter = new CopyOnWriteArrayList<>();
+        private volatile int afterRuns;
+
+        private FakeJob(String name, long count, Consumer<List<Long>> onProcess) {
+            this.name = name;
+            this.ids = LongStream.rangeClosed(1, count).boxed().toList();
+            this.onProcess = onProcess;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<Long> readIds(LocalDate runDate, Long afterId, Limit limit) {
+            readAfter.add(afterId);
+            return ids.stream().filter(id -> id > afterId).limit(limit.max()).toList();
+        }
+
+        @Override
+        public void process(LocalDate runDate, List<Long> chunk) {
+            onProcess.accept(chunk);
+            processed.addAll(chunk);
+        }
+
+        @Override
+        public void afterRun(LocalDate runDate) {
+            afterRuns++;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ------ ESECUZIONE ------
+
+    @Test
+    void run_newJob_processesEveryChunkInItsOwnTransaction() {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertEquals(BatchRunStatus.COMPLETED, result.getStatus());
+        assertEquals(5, result.getProcessed());
+        assertEquals(3, result.getChunks());
+        assertEquals(5, result.getLastId());
+        assertEquals(1, result.getAttempts());
+        assertFalse(result.isResumed());
+        assertNotNull(result.getFinishedAt());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), job.processed.stream().sorted().toList());
+        // l'ultimo blocco è incompleto: nessuna lettura in più
+        assertEquals(List.of(0L, 2L, 4L), job.readAfter);
+        verify(transactionManager, times(3)).commit(any());
+        assertEquals(1, job.afterRuns);
+    }
+
+    @Test
+    void run_noItems_completesWithoutTransactions() {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 0, chunk -> { });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertEquals(BatchRunStatus.COMPLETED, result.getStatus());
+        assertEquals(0, result.getProcessed());
+        verifyNoInteractions(transactionManager);
+        assertEquals(1, job.afterRuns);
+    }
+
+    @Test
+    void run_alreadyCompleted_isSkipped() {
+        BatchCheckpoint done = BatchCheckpoint.start("job", RUN_DATE);
+        done.setId(1L);
+        done.setStatus(BatchRunStatus.COMPLETED);
+        done.setProcessed(5);
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.of(done));
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertTrue(result.isSkipped());
+        assertEquals(5, result.getProcessed());
+        assertTrue(job.readAfter.isEmpty());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    // ------ RIPRESA ------
+
+    @Test
+    void run_interruptedCheckpoint_resumesAfterLastConfirmedId() {
+        BatchCheckpoint interrupted = BatchCheckpoint.start("job", RUN_DATE);
+        interrupted.setId(1L);
+        interrupted.setLastId(2);
+        interrupted.setProcessed(2);
+        interrupted.setChunks(1);
+        interrupted.setAttempts(1);
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.of(interrupted));
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertTrue(result.isResumed());
+        assertEquals(BatchRunStatus.COMPLETED, result.getStatus());
+        assertEquals(List.of(3L, 4L, 5L), job.processed.stream().sorted().toList());
+        assertEquals(5, result.getProcessed());
+        assertEquals(3, result.getChunks());
+        assertEquals(2, result.getAttempts());
+    }
+
+    @Test
+    void resumeIncomplete_runsOnlyKnownJobs() {
+        BatchCheckpoint known = BatchCheckpoint.start("job", RUN_DATE);
+        known.setId(1L);
+        known.setLastId(4);
+        BatchCheckpoint unknown = BatchCheckpoint.start("removed-job", RUN_DATE);
+        unknown.setId(2L);
+        when(checkpointRepository.findByStatusInAndUpdatedAtAfterOrderByUpdatedAtAsc(
+                eq(List.of(BatchRunStatus.RUNNING, BatchRunStatus.FAILED)), any(LocalDateTime.class)))
+                .thenReturn(List.of(known, unknown));
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.of(known));
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        List<BatchRunDTO> results = runner.resumeIncomplete(List.of(job));
+
+        assertEquals(1, results.size());
+        assertEquals("job", results.get(0).getJobName());
+        assertTrue(results.get(0).isResumed());
+        assertEquals(List.of(5L), job.processed);
+    }
+
+    @Test
+    void resumeIncomplete_resolvesPartitionCheckpoints() {
+        BatchCheckpoint partition = BatchCheckpoint.start("job#1/3", RUN_DATE);
+        partition.setId(3L);
+        when(checkpointRepository.findByStatusInAndUpdatedAtAfterOrderByUpdatedAtAsc(any(), any(LocalDateTime.class)))
+                .thenReturn(List.of(partition));
+        when(checkpointRepository.findByJobNameAndRunDate("job#1/3", RUN_DATE)).thenReturn(Optional.of(partition));
+        FakeJob job = new FakeJob("job", 30, chunk -> { });
+
+        List<BatchRunDTO> results = runner.resumeIncomplete(List.of(job));
+
+        assertEquals(List.of("job#1/3"), results.stream().map(BatchRunDTO::getJobName).toList());
+        assertFalse(job.processed.isEmpty());
+        assertTrue(job.processed.stream().allMatch(id -> PartitionedBatchJob.partitionOf(id, 3) == 1));
+    }
+
+    // ------ PIÙ NODI ------
+
+    @Test
+    void run_leaseHeldByAnotherNode_isSkippedWithoutCheckpoint() {
+        when(leaseService.runExclusively(eq("job"), any(Supplier.class))).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertTrue(result.isSkipped());
+        assertTrue(job.processed.isEmpty());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    @Test
+    void runPartitioned_singlePartition_runsWholeJob() {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 5, chunk -> { });
+
+        List<BatchRunDTO> results = runner.runPartitioned(job, RUN_DATE);
+
+        assertEquals(List.of("job"), results.stream().map(BatchRunDTO::getJobName).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), job.processed.stream().sorted().toList());
+    }
+
+    @Test
+    void runPartitioned_processesEveryPartitionOnceUnderItsOwnLease() {
+        ReflectionTestUtils.setField(runner, "partitions", 3);
+        when(checkpointRepository.findByJobNameAndRunDate(anyString(), eq(RUN_DATE))).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 40, chunk -> { });
+
+        List<BatchRunDTO> results = runner.runPartitioned(job, RUN_DATE);
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(r -> r.getStatus() == BatchRunStatus.COMPLETED));
+        assertEquals(LongStream.rangeClosed(1, 40).boxed().toList(), job.processed.stream().sorted().toList());
+        verify(leaseService).runExclusively(eq("job#0/3"), any(Supplier.class));
+        verify(leaseService).runExclusively(eq("job#1/3"), any(Supplier.class));
+        verify(leaseService).runExclusively(eq("job#2/3"), any(Supplier.class));
+        // fine esecuzione del job per ogni partizione elaborata dal nodo
+        assertEquals(3, job.afterRuns);
+    }
+
+    @Test
+    void runPartitioned_partitionTakenByAnotherNode_processesOnlyTheOthers() {
+        ReflectionTestUtils.setField(runner, "partitions", 2);
+        when(checkpointRepository.findByJobNameAndRunDate(anyString(), eq(RUN_DATE))).thenReturn(Optional.empty());
+        when(leaseService.runExclusively(eq("job#0/2"), any(Supplier.class))).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 20, chunk -> { });
+
+        List<BatchRunDTO> results = runner.runPartitioned(job, RUN_DATE);
+
+        assertEquals(1, results.stream().filter(BatchRunDTO::isSkipped).count());
+        assertFalse(job.processed.isEmpty());
+        assertTrue(job.processed.stream().allMatch(id -> PartitionedBatchJob.partitionOf(id, 2) == 1));
+    }
+
+    // ------ ERRORI ------
+
+    @Test
+    void run_chunkFails_stopsAtLastContiguousCheckpoint() {
+        ReflectionTestUtils.setField(runner, "workers", 1);
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        FakeJob job = new FakeJob("job", 6, chunk -> {
+            if (chunk.contains(3L)) {
+                throw new IllegalStateException("database non disponibile");
+            }
+        });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertEquals(BatchRunStatus.FAILED, result.getStatus());
+        assertEquals(2, result.getLastId());
+        assertEquals(2, result.getProcessed());
+        assertEquals("database non disponibile", result.getLastError());
+        assertNull(result.getFinishedAt());
+        // i blocchi successivi all'errore non vengono elaborati
+        assertEquals(List.of(1L, 2L), job.processed);
+        verify(transactionManager).rollback(any());
+        assertEquals(1, job.afterRuns);
+    }
+
+    @Test
+    void run_readFails_marksRunFailed() {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        BatchJob job = mock(BatchJob.class);
+        when(job.getName()).thenReturn("job");
+        when(job.readIds(eq(RUN_DATE), eq(0L), any())).thenThrow(new RuntimeException("timeout"));
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertEquals(BatchRunStatus.FAILED, result.getStatus());
+        assertEquals("timeout", result.getLastError());
+        verify(job, never()).process(any(), any());
+        verify(job).afterRun(RUN_DATE);
+    }
+
+    @Test
+    void run_leaseLostDuringRun_stopsWithoutWritingTheCheckpoint() {
+        ReflectionTestUtils.setField(runner, "workers", 1);
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        AtomicBoolean lost = new AtomicBoolean();
+        when(leaseService.isLost("job")).thenAnswer(inv -> lost.get());
+        // il rinnovo del lease non riesce mentre è in elaborazione il secondo blocco
+        FakeJob job = new FakeJob("job", 6, chunk -> {
+            if (chunk.contains(3L)) {
+                lost.set(true);
+            }
+        });
+
+        BatchRunDTO result = runner.run(job, RUN_DATE);
+
+        assertEquals(BatchRunStatus.FAILED, result.getStatus());
+        assertTrue(result.getLastError().contains("Lease del job perso"));
+        // nessun blocco elaborato dopo la perdita del lease (al più uno già letto viene scartato)
+        assertEquals(List.of(1L, 2L, 3L, 4L), job.processed);
+        // il checkpoint resta quello scritto mentre il lease era valido: ora appartiene all'altro nodo
+        assertEquals(List.of(0L, 2L), savedLastIds);
+    }
+
+    // ------ PARALLELISMO ------
+
+    @Test
+    void run_laterChunkCompletesFirst_checkpointWaitsForTheGap() throws Exception {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        CountDownLatch firstReleased = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        FakeJob job = new FakeJob("job", 4, chunk -> {
+            if (chunk.contains(1L)) {
+                await(firstReleased);
+            } else {
+                secondDone.countDown();
+            }
+        });
+
+        CompletableFuture<BatchRunDTO> run = CompletableFuture.supplyAsync(() -> runner.run(job, RUN_DATE));
+        await(secondDone);
+        Thread.sleep(50);
+        // il secondo blocco è confermato ma il primo no: il checkpoint non avanza
+        assertTrue(savedLastIds.stream().allMatch(id -> id == 0L));
+        firstReleased.countDown();
+
+        BatchRunDTO result = run.get(5, TimeUnit.SECONDS);
+        assertEquals(BatchRunStatus.COMPLETED, result.getStatus());
+        assertEquals(4, result.getLastId());
+        assertEquals(4, result.getProcessed());
+        List<Long> saved = new ArrayList<>(savedLastIds);
+        assertEquals(saved.stream().sorted().toList(), saved);
+    }
+
+    @Test
+    void run_sameJobAlreadyRunning_isSkipped() throws Exception {
+        when(checkpointRepository.findByJobNameAndRunDate("job", RUN_DATE)).thenReturn(Optional.empty());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FakeJob job = new FakeJob("job", 1, chunk -> {
+            started.countDown();
+            await(release);
+        });
+
+        CompletableFuture<BatchRunDTO> first = CompletableFuture.supplyAsync(() -> runner.run(job, RUN_DATE));
+        await(started);
+
+        BatchRunDTO second = runner.run(job, RUN_DATE);
+        release.countDown();
+
+        assertTrue(second.isSkipped());
+        assertEquals(BatchRunStatus.COMPLETED, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(List.of(1L), job.processed);
+    }
+}
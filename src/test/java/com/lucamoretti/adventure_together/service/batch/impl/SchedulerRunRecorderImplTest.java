@@ -0,0 +1,274 @@
+package com.lucamoretti.adventure_together.service.batch.impl;
+
+import com.lucamoretti.adventure_together.dto.batch.SchedulerJobStatsDTO;
+import com.lucamoretti.adventure_together.dto.batch.SchedulerRunDTO;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRun;
+import com.lucamoretti.adventure_together.model.batch.SchedulerRunStatus;
+import com.lucamoretti.adventure_together.repository.batch.SchedulerRunRepository;
+import com.lucamoretti.adventure_together.service.batch.SchedulerRunCounters;
+import com.lucamoretti.adventure_together.service.cluster.SchedulerLeaseService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchedulerRunRecorderImplTest {
+
+    @Mock private SchedulerRunRepository runRepository;
+    @Mock private SchedulerLeaseService leaseService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SchedulerRunRecorderImpl recorder;
+
+    // copie delle righe salvate (la stessa istanza viene aggiornata a fine esecuzione)
+    private final List<SchedulerRun> saved = new ArrayList<>();
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2026, 10, 18);
+
+    @BeforeEach
+    void setup() {
+        recorder = new SchedulerRunRecorderImpl(runRepository, leaseService, meterRegistry, transactionManager);
+        ReflectionTestUtils.setField(recorder, "retentionDays", 90L);
+        ReflectionTestUtils.setField(recorder, "statsDays", 30L);
+        ReflectionTestUtils.setField(recorder, "recentDays", 7L);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(leaseService.getNodeId()).thenReturn("node-a");
+        lenient().when(runRepository.save(any(SchedulerRun.class))).thenAnswer(inv -> {
+            SchedulerRun run = inv.getArgument(0);
+            saved.add(copy(run));
+            return run;
+        });
+    }
+
+    // ------------------------------------------------------------
+    // record
+    // ------------------------------------------------------------
+
+    @Test
+    void record_completed_savesRunningRowThenCountersAndDuration() {
+        recorder.record("trip-states", RUN_DATE, counters -> {
+            counters.itemsScanned(10);
+            counters.transitionsApplied(3);
+            counters.mailsQueued(4);
+        });
+
+        assertEquals(2, saved.size());
+        SchedulerRun started = saved.get(0);
+        assertEquals(SchedulerRunStatus.RUNNING, started.getStatus());
+        assertEquals("trip-states", started.getJobName());
+        assertEquals(RUN_DATE, started.getRunDate());
+        assertEquals("node-a", started.getNodeId());
+        assertNull(started.getDurationMillis());
+
+        SchedulerRun finished = saved.get(1);
+        assertEquals(SchedulerRunStatus.COMPLETED, finished.getStatus());
+        assertNotNull(finished.getFinishedAt());
+        assertNotNull(finished.getDurationMillis());
+        assertEquals(10, finished.getItemsScanned());
+        assertEquals(3, finished.getTransitionsApplied());
+        assertEquals(4, finished.getMailsQueued());
+        assertEquals(0, finished.getErrors());
+    }
+
+    @Test
+    void record_registersTimerAndCountersTaggedByJob() {
+        recorder.record("review-reminders", RUN_DATE, counters -> {
+            counters.itemsScanned(5);
+            counters.mailsQueued(2);
+            counters.error("Trip 3: smtp");
+        });
+
+        Timer timer = meterRegistry.find(SchedulerRunRecorderImpl.RUN_TIMER)
+                .tags("job", "review-reminders", "status", "COMPLETED").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(5, counter(SchedulerRunRecorderImpl.ITEMS_SCANNED, "review-reminders"));
+        assertEquals(2, counter(SchedulerRunRecorderImpl.MAILS_QUEUED, "review-reminders"));
+        assertEquals(1, counter(SchedulerRunRecorderImpl.ERRORS, "review-reminders"));
+        // un errore su un elemento non rende fallita l'esecuzione
+        SchedulerRun finished = saved.get(1);
+        assertEquals(SchedulerRunStatus.COMPLETED, finished.getStatus());
+        assertEquals(1, finished.getErrors());
+        assertEquals("Trip 3: smtp", finished.getLastError());
+    }
+
+    @Test
+    void record_exception_marksRunFailedAndRethrows() {
+        IllegalStateException error = new IllegalStateException("lock wait timeout");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> recorder.record("trip-states", RUN_DATE, counters -> { throw error; }));
+
+        assertSame(error, thrown);
+        SchedulerRun finished = saved.get(1);
+        assertEquals(SchedulerRunStatus.FAILED, finished.getStatus());
+        assertEquals(1, finished.getErrors());
+        assertEquals("lock wait timeout", finished.getLastError());
+        assertNotNull(meterRegistry.find(SchedulerRunRecorderImpl.RUN_TIMER).tags("status", "FAILED").timer());
+    }
+
+    @Test
+    void record_skipped_savesSkippedStatus() {
+        recorder.record("trip-states", RUN_DATE, SchedulerRunCounters::skipped);
+
+        assertEquals(SchedulerRunStatus.SKIPPED, saved.get(1).getStatus());
+    }
+
+    @Test
+    void record_failedWinsOverSkipped() {
+        recorder.record("trip-states", RUN_DATE, counters -> {
+            counters.skipped();
+            counters.failed("partizione fallita");
+        });
+
+        assertEquals(SchedulerRunStatus.FAILED, saved.get(1).getStatus());
+    }
+
+    @Test
+    void record_historyUnavailable_jobStillRuns() {
+        when(runRepository.save(any(SchedulerRun.class))).thenThrow(new RuntimeException("db down"));
+        List<String> executed = new ArrayList<>();
+
+        assertDoesNotThrow(() -> recorder.record("trip-states", RUN_DATE, counters -> executed.add("run")));
+
+        assertEquals(List.of("run"), executed);
+        // la metrica della durata viene comunque registrata
+        assertNotNull(meterRegistry.find(SchedulerRunRecorderImpl.RUN_TIMER).tags("job", "trip-states").timer());
+    }
+
+    @Test
+    void record_purgesRunsOlderThanRetention() {
+        LocalDateTime before = LocalDateTime.now();
+
+        recorder.record("trip-states", RUN_DATE, counters -> { });
+
+        ArgumentCaptor<LocalDateTime> limit = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(runRepository).deleteStartedBefore(limit.capture());
+        assertEquals(0, ChronoUnit.DAYS.between(before.minusDays(90), limit.getValue()));
+    }
+
+    @Test
+    void record_purgeError_isIgnored() {
+        when(runRepository.deleteStartedBefore(any())).thenThrow(new RuntimeException("db down"));
+
+        assertDoesNotThrow(() -> recorder.record("trip-states", RUN_DATE, counters -> { }));
+        assertEquals(SchedulerRunStatus.COMPLETED, saved.get(1).getStatus());
+    }
+
+    // ------------------------------------------------------------
+    // counters
+    // ------------------------------------------------------------
+
+    @Test
+    void counters_duringRun_returnsRunCounters() {
+        List<SchedulerRunCounters> seen = new ArrayList<>();
+
+        recorder.record("trip-states", RUN_DATE, counters -> {
+            seen.add(counters);
+            seen.add(recorder.counters("trip-states"));
+            // es. un blocco elaborato su un worker
+            recorder.counters("trip-states").transitionsApplied(2);
+        });
+
+        assertSame(seen.get(0), seen.get(1));
+        assertEquals(2, saved.get(1).getTransitionsApplied());
+    }
+
+    @Test
+    void counters_withoutRun_updateOnlyMetrics() {
+        SchedulerRunCounters counters = recorder.counters("upcoming-trip-reminders");
+        counters.mailsQueued(3);
+
+        assertEquals(3, counter(SchedulerRunRecorderImpl.MAILS_QUEUED, "upcoming-trip-reminders"));
+        verifyNoInteractions(runRepository);
+        // finita l'esecuzione i contatori non sono più quelli della riga
+        recorder.record("trip-states", RUN_DATE, c -> { });
+        assertNotSame(recorder.counters("trip-states"), recorder.counters("trip-states"));
+    }
+
+    // ------------------------------------------------------------
+    // letture per la pagina admin
+    // ------------------------------------------------------------
+
+    @Test
+    void getRecentRuns_allJobsOrOneJob() {
+        SchedulerRun run = SchedulerRun.start("trip-states", RUN_DATE, "node-a");
+        run.setId(7L);
+        when(runRepository.findAllByOrderByStartedAtDesc(Limit.of(50))).thenReturn(List.of(run));
+        when(runRepository.findByJobNameOrderByStartedAtDesc("trip-states", Limit.of(20))).thenReturn(List.of(run));
+
+        List<SchedulerRunDTO> all = recorder.getRecentRuns(null, 50);
+        List<SchedulerRunDTO> blank = recorder.getRecentRuns(" ", 50);
+        List<SchedulerRunDTO> one = recorder.getRecentRuns("trip-states", 20);
+
+        assertEquals(7L, all.get(0).getId());
+        assertEquals(SchedulerRunStatus.RUNNING, all.get(0).getStatus());
+        assertEquals(1, blank.size());
+        assertEquals("node-a", one.get(0).getNodeId());
+    }
+
+    @Test
+    void getJobStats_usesStatsAndRecentWindowsOnConcludedRuns() {
+        SchedulerJobStatsDTO stats = new SchedulerJobStatsDTO("trip-states", 3L, LocalDateTime.now(),
+                200.0, 400L, 300.0, 50.0, 10L, 0L, 1L, 0L);
+        when(runRepository.findJobStats(any(), any(), any())).thenReturn(List.of(stats));
+        LocalDateTime before = LocalDateTime.now();
+
+        assertEquals(List.of(stats), recorder.getJobStats());
+
+        ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> recent = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(runRepository).findJobStats(since.capture(), recent.capture(),
+                eq(List.of(SchedulerRunStatus.COMPLETED, SchedulerRunStatus.FAILED)));
+        assertEquals(0, ChronoUnit.DAYS.between(before.minusDays(30), since.getValue()));
+        assertEquals(0, ChronoUnit.DAYS.between(before.minusDays(7), recent.getValue()));
+    }
+
+    @Test
+    void jobStats_derivedValues() {
+        SchedulerJobStatsDTO stats = new SchedulerJobStatsDTO("trip-states", 3L, LocalDateTime.now(),
+                200.0, 400L, 300.0, 50.0, null, null, null, null);
+
+        assertEquals(4.0, stats.getMillisPerItem());
+        assertEquals(50.0, stats.getRecentDurationChangePercent());
+        assertEquals(0, stats.getErrors());
+
+        SchedulerJobStatsDTO empty = new SchedulerJobStatsDTO("review-reminders", 1L, null,
+                null, null, null, null, null, null, null, null);
+        assertNull(empty.getMillisPerItem());
+        assertNull(empty.getRecentDurationChangePercent());
+    }
+
+    private static SchedulerRun copy(SchedulerRun run) {
+        return new SchedulerRun(run.getId(), run.getJobName(), run.getRunDate(), run.getNodeId(), run.getStatus(),
+                run.getStartedAt(), run.getFinishedAt(), run.getDurationMillis(), run.getItemsScanned(),
+                run.getTransitionsApplied(), run.getMailsQueued(), run.getErrors(), run.getLastError());
+    }
+
+    private double counter(String name, String job) {
+        return meterRegistry.get(name).tag("job", job).counter().count();
+    }
+}
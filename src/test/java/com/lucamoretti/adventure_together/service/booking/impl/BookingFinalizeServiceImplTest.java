@@ -1,10 +1,14 @@
 package com.lucamoretti.adventure_together.service.booking.impl;
 
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.event.BookingConfirmed;
 import com.lucamoretti.adventure_together.model.booking.Booking;
 import com.lucamoretti.adventure_together.model.details.DepartureAirport;
 import com.lucamoretti.adventure_together.model.participant.TemporaryParticipant;
 import com.lucamoretti.adventure_together.model.participant.TemporaryParticipantList;
 import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen;
 
 import com.lucamoretti.adventure_together.model.user.Traveler;
 import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
@@ -13,7 +17,9 @@ import com.lucamoretti.adventure_together.repository.participant.TemporaryPartic
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.booking.BookingSerializerService;
-import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
+import com.lucamoretti.adventure_together.service.payment.StripeClient;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
 import com.stripe.model.PaymentIntent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,12 +31,13 @@ import java.time.LocalDate;
 import java.util.*;
 
 import org.mockito.*;
-import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 class BookingFinalizeServiceImplTest {
@@ -46,9 +53,17 @@ class BookingFinalizeServiceImplTest {
     @Mock
     private BookingSerializerService bookingSerializerService;
     @Mock
-    private EmailService emailService;
+    private ApplicationEventPublisher eventPublisher;
     @Mock
     private TemporaryParticipantListRepository temporaryParticipantListRepository;
+    @Mock
+    private SeatHoldService seatHoldService;
+    @Mock
+    private TripCatalogIndex catalogIndex;
+    @Mock
+    private ItineraryPageViewService pageViewService;
+    @Mock
+    private StripeClient stripeClient;
 
     @InjectMocks
     private BookingFinalizeServiceImpl service;
@@ -62,9 +77,6 @@ class BookingFinalizeServiceImplTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
-        // baseUrl usato in baseUrl + "/home" → se null fa NPE
-        ReflectionTestUtils.setField(service, "baseUrl", "http://localhost:8080");
-
         // Traveler
         traveler = new Traveler();
         traveler.setId(2L);
@@ -76,6 +88,11 @@ class BookingFinalizeServiceImplTest {
 
         // Trip (mock, non ci interessa lo stato qui)
         trip = mock(Trip.class);
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(8L);
+        lenient().when(trip.getTripItinerary()).thenReturn(itinerary);
+        lenient().when(trip.getState()).thenReturn(new ConfirmedOpen());
+        lenient().when(trip.getTripIndividualCost()).thenReturn(1000.0);
 
         // Temporary participants list
         tempList = new TemporaryParticipantList();
@@ -114,30 +131,38 @@ class BookingFinalizeServiceImplTest {
                         "departureAirportId", 3,
                         "insuranceType", "basic",
                         "numParticipants", 1,
-                        "participantsTempListId", 99
+                        "participantsTempListId", 99,
+                        "seatHoldKey", "hold-1"
                 ));
 
         when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
         when(travelerRepository.findById(2L)).thenReturn(Optional.of(traveler));
         when(departureAirportRepository.findById(3L)).thenReturn(Optional.of(airport));
         when(temporaryParticipantListRepository.findById(99L)).thenReturn(Optional.of(tempList));
+        when(tripRepository.incrementSeatsBooked(1L, 1)).thenReturn(1);
 
         // Esegui
         assertDoesNotThrow(() -> service.finalizeBooking(intent));
 
+        //  posti riservati con incremento atomico
+        verify(tripRepository).incrementSeatsBooked(1L, 1);
+
+        //  trattenuta del checkout rilasciata
+        verify(seatHoldService).releaseHold("hold-1");
+
         //  booking salvato
         verify(bookingRepository).save(any(Booking.class));
 
+        //  pagina di dettaglio dell'itinerario invalidata (posti disponibili cambiati)
+        verify(pageViewService).evictAfterCommit(8L);
+
         //  lista temporanea cancellata
         verify(temporaryParticipantListRepository).delete(tempList);
 
-        // L’email non è obbligatoria per far passare il test
-        verify(emailService, atMost(1)).sendHtmlMessage(
-                eq("test@test.com"),
-                anyString(),
-                anyString(),
-                anyMap()
-        );
+        //  conferma pubblicata come evento (email inviata dal listener dopo il commit)
+        ArgumentCaptor<BookingConfirmed> event = ArgumentCaptor.forClass(BookingConfirmed.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1100.0, event.getValue().totalCost());
     }
 
     // ----------------------------------------------------------
@@ -152,7 +177,7 @@ class BookingFinalizeServiceImplTest {
         assertDoesNotThrow(() -> service.finalizeBooking(intent));
 
         verifyNoInteractions(bookingRepository);
-        verifyNoInteractions(emailService);
+        verifyNoInteractions(eventPublisher);
     }
 
     // ----------------------------------------------------------
@@ -169,7 +194,7 @@ class BookingFinalizeServiceImplTest {
         assertDoesNotThrow(() -> service.finalizeBooking(intent));
 
         verifyNoInteractions(bookingRepository);
-        verifyNoInteractions(emailService);
+        verifyNoInteractions(eventPublisher);
     }
 
     // ----------------------------------------------------------
@@ -200,6 +225,90 @@ class BookingFinalizeServiceImplTest {
 
         // Non deve salvare booking
         verify(bookingRepository, never()).save(any());
-        verify(emailService, never()).sendHtmlMessage(any(), any(), any(), anyMap());
+        verify(eventPublisher, never()).publishEvent(any(BookingConfirmed.class));
+    }
+
+    // ----------------------------------------------------------
+    // POSTI ESAURITI → INCREMENTO RIFIUTATO, NESSUN SAVE
+    // ----------------------------------------------------------
+
+    @Test
+    void finalizeBooking_noSeatsLeft_bookingNotSavedAndPaymentRefunded() {
+        PaymentIntent intent = noSeatsLeftIntent();
+        when(stripeClient.refundPaymentIntent("pi_full")).thenReturn("re_1");
+
+        assertDoesNotThrow(() -> service.finalizeBooking(intent));
+
+        verify(bookingRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any(BookingConfirmed.class));
+        // il pagamento viene rimborsato, la trattenuta rilasciata e la lista temporanea eliminata
+        verify(stripeClient).refundPaymentIntent("pi_full");
+        verify(seatHoldService).releaseHold(any());
+        verify(temporaryParticipantListRepository).delete(tempList);
+    }
+
+    @Test
+    void finalizeBooking_noSeatsLeft_refundFails_handled() {
+        PaymentIntent intent = noSeatsLeftIntent();
+        when(stripeClient.refundPaymentIntent("pi_full")).thenThrow(new RuntimeException("Stripe down"));
+
+        assertDoesNotThrow(() -> service.finalizeBooking(intent));
+
+        verify(stripeClient).refundPaymentIntent("pi_full");
+        verify(bookingRepository, never()).save(any());
+    }
+
+    // PaymentIntent pagato per un Trip i cui posti sono nel frattempo terminati
+    private PaymentIntent noSeatsLeftIntent() {
+        PaymentIntent intent = mock(PaymentIntent.class);
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("booking", "{json}");
+        when(intent.getMetadata()).thenReturn(metadata);
+        when(intent.getId()).thenReturn("pi_full");
+
+        when(bookingSerializerService.deserializeBookingAsMap("{json}"))
+                .thenReturn(Map.of(
+                        "tripId", 1,
+                        "travelerId", 2,
+                        "departureAirportId", 3,
+                        "insuranceType", "basic",
+                        "numParticipants", 1,
+                        "participantsTempListId", 99
+                ));
+
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(travelerRepository.findById(2L)).thenReturn(Optional.of(traveler));
+        when(departureAirportRepository.findById(3L)).thenReturn(Optional.of(airport));
+        when(temporaryParticipantListRepository.findById(99L)).thenReturn(Optional.of(tempList));
+        // l'UPDATE condizionale non aggiorna nessuna riga: capienza superata
+        when(tripRepository.incrementSeatsBooked(1L, 1)).thenReturn(0);
+        return intent;
+    }
+
+    // ----------------------------------------------------------
+    // PAGAMENTO FALLITO → RILASCIO TRATTENUTA
+    // ----------------------------------------------------------
+
+    @Test
+    void releaseSeatHold_releasesKeyFromMetadata() {
+        PaymentIntent intent = mock(PaymentIntent.class);
+        when(intent.getMetadata()).thenReturn(Map.of("booking", "{json}"));
+        when(bookingSerializerService.deserializeBookingAsMap("{json}"))
+                .thenReturn(Map.of("tripId", 1, "seatHoldKey", "hold-1"));
+
+        service.releaseSeatHold(intent);
+
+        verify(seatHoldService).releaseHold("hold-1");
+        verifyNoInteractions(bookingRepository);
+    }
+
+    @Test
+    void releaseSeatHold_metadataMissing_noCrash() {
+        PaymentIntent intent = mock(PaymentIntent.class);
+        when(intent.getMetadata()).thenReturn(null);
+
+        assertDoesNotThrow(() -> service.releaseSeatHold(intent));
+
+        verifyNoInteractions(seatHoldService);
     }
 }
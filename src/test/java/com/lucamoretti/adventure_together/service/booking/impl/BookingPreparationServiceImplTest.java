@@ -6,19 +6,25 @@ import com.lucamoretti.adventure_together.dto.payment.PaymentIntentDTO;
 import com.lucamoretti.adventure_together.model.details.DepartureAirport;
 import com.lucamoretti.adventure_together.model.participant.TemporaryParticipantList;
 import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
 import com.lucamoretti.adventure_together.model.trip.state.TripState;
 import com.lucamoretti.adventure_together.model.user.Traveler;
 import com.lucamoretti.adventure_together.repository.details.DepartureAirportRepository;
 import com.lucamoretti.adventure_together.repository.participant.TemporaryParticipantListRepository;
+import com.lucamoretti.adventure_together.repository.booking.SeatHoldRepository;
 import com.lucamoretti.adventure_together.repository.participant.TemporaryParticipantRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.booking.BookingSerializerService;
+import com.lucamoretti.adventure_together.service.booking.SeatHoldService;
 import com.lucamoretti.adventure_together.service.payment.StripeClient;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -35,6 +41,7 @@ class BookingPreparationServiceImplTest {
     @Mock private BookingSerializerService bookingSerializerService;
     @Mock private TemporaryParticipantListRepository temporaryParticipantListRepository;
     @Mock private TemporaryParticipantRepository temporaryParticipantRepository;
+    @Mock private SeatHoldService seatHoldService;
 
     @InjectMocks
     private BookingPreparationServiceImpl service;
@@ -73,7 +80,6 @@ class BookingPreparationServiceImplTest {
 
         when(trip.getState()).thenReturn(state);
         when(state.canAcceptBooking()).thenReturn(true);
-        when(trip.hasAvailableSpots(2)).thenReturn(true);
 
         // ----- Traveler -----
         traveler = new Traveler();
@@ -102,6 +108,9 @@ class BookingPreparationServiceImplTest {
         list.setId(99L);
         when(temporaryParticipantListRepository.save(any())).thenReturn(list);
 
+        // trattenuta posti
+        when(seatHoldService.holdSeats(trip, 2)).thenReturn("hold-1");
+
         // serializer
         when(bookingSerializerService.serializeBooking(any()))
                 .thenReturn("{json}");
@@ -124,6 +133,13 @@ class BookingPreparationServiceImplTest {
         verify(stripeClient).createPaymentIntent(anyDouble(), eq("eur"), eq("{json}"));
         verify(temporaryParticipantListRepository).save(any());
         verify(temporaryParticipantRepository, times(2)).save(any());
+        verify(seatHoldService).holdSeats(trip, 2);
+        verify(seatHoldService, never()).releaseHold(any());
+
+        // la chiave della trattenuta viaggia nei metadata del PaymentIntent
+        ArgumentCaptor<Map<String, Object>> metadata = ArgumentCaptor.forClass(Map.class);
+        verify(bookingSerializerService).serializeBooking(metadata.capture());
+        assertEquals("hold-1", metadata.getValue().get("seatHoldKey"));
     }
 
 
@@ -178,10 +194,71 @@ class BookingPreparationServiceImplTest {
         when(travelerRepository.findById(2L)).thenReturn(Optional.of(traveler));
         when(departureAirportRepository.findById(3L)).thenReturn(Optional.of(airport));
 
-        when(trip.hasAvailableSpots(2)).thenReturn(false);
+        TemporaryParticipantList list = new TemporaryParticipantList();
+        list.setId(99L);
+        when(temporaryParticipantListRepository.save(any())).thenReturn(list);
+
+        when(seatHoldService.holdSeats(trip, 2)).thenThrow(new IllegalArgumentException("Posti insufficienti."));
 
         assertThrows(IllegalArgumentException.class,
                 () -> service.startBookingAndPayment(req));
+
+        verifyNoInteractions(stripeClient);
     }
-}
 
+    @Test
+    void startBookingAndPayment_stripeFailure_releasesHold() {
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(travelerRepository.findById(2L)).thenReturn(Optional.of(traveler));
+        when(departureAirportRepository.findById(3L)).thenReturn(Optional.of(airport));
+
+        TemporaryParticipantList list = new TemporaryParticipantList();
+        list.setId(99L);
+        when(temporaryParticipantListRepository.save(any())).thenReturn(list);
+        when(seatHoldService.holdSeats(trip, 2)).thenReturn("hold-1");
+        when(bookingSerializerService.serializeBooking(any())).thenReturn("{json}");
+        when(stripeClient.createPaymentIntent(anyDouble(), eq("eur"), eq("{json}")))
+                .thenThrow(new RuntimeException("Stripe down"));
+
+        assertThrows(RuntimeException.class,
+                () -> service.startBookingAndPayment(req));
+
+        verify(seatHoldService).releaseHold("hold-1");
+    }
+
+    @Test
+    void startBookingAndPayment_stripeFailure_transactionRolledBack_noSeatsHeld() {
+        // registro delle trattenute reale: la transazione del checkout viene annullata dall'eccezione di Stripe
+        SeatHoldServiceImpl seatHolds = new SeatHoldServiceImpl(mock(SeatHoldRepository.class));
+        ReflectionTestUtils.setField(seatHolds, "holdTtlMinutes", 15L);
+        ReflectionTestUtils.setField(service, "seatHoldService", seatHolds);
+
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setMaxParticipants(2);
+        when(trip.getId()).thenReturn(1L);
+        when(trip.getTripItinerary()).thenReturn(itinerary);
+        when(trip.getSeatsBooked()).thenReturn(0);
+
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(travelerRepository.findById(2L)).thenReturn(Optional.of(traveler));
+        when(departureAirportRepository.findById(3L)).thenReturn(Optional.of(airport));
+        TemporaryParticipantList list = new TemporaryParticipantList();
+        list.setId(99L);
+        when(temporaryParticipantListRepository.save(any())).thenReturn(list);
+        when(bookingSerializerService.serializeBooking(any())).thenReturn("{json}");
+        when(stripeClient.createPaymentIntent(anyDouble(), eq("eur"), eq("{json}")))
+                .thenThrow(new RuntimeException("Stripe down"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(RuntimeException.class, () -> service.startBookingAndPayment(req));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // i posti del checkout fallito non restano trattenuti per la durata della trattenuta
+        assertEquals(0, seatHolds.getHeldSeats(1L));
+    }
+}
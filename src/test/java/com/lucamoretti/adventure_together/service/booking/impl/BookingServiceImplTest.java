@@ -8,12 +8,15 @@ import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.trip.TripItinerary;
 import com.lucamoretti.adventure_together.model.user.Traveler;
 import com.lucamoretti.adventure_together.repository.booking.BookingRepository;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
+import org.springframework.data.domain.Limit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -119,26 +122,54 @@ class BookingServiceImplTest {
         Booking b1 = buildBooking(10L, 100L, 5L, 50L, 400L, 120.0);
         Booking b2 = buildBooking(20L, 200L, 5L, 60L, 500L, 220.0);
 
-        when(bookingRepository.findByTraveler_Id(5L))
+        when(bookingRepository.findByTraveler_IdOrderByBookingDateDescIdDesc(5L, Limit.of(21)))
                 .thenReturn(List.of(b1, b2));
 
-        List<BookingDTO> result = bookingService.getBookingsByTravelerId(5L);
+        KeysetPage<BookingDTO> result = bookingService.getBookingsByTravelerId(5L, null, 20);
 
-        assertEquals(2, result.size());
-        assertEquals(10L, result.get(0).getId());
-        assertEquals(20L, result.get(1).getId());
+        assertEquals(2, result.getItems().size());
+        assertEquals(10L, result.getItems().get(0).getId());
+        assertEquals(20L, result.getItems().get(1).getId());
+        assertFalse(result.hasNext());
 
-        verify(bookingRepository).findByTraveler_Id(5L);
+        verify(bookingRepository).findByTraveler_IdOrderByBookingDateDescIdDesc(5L, Limit.of(21));
+        verify(bookingRepository, never()).findPageByTravelerIdBefore(any(), any(), any(), any());
     }
 
     @Test
     void getBookingsByTravelerId_returnsEmptyList_whenNoBookings() {
-        when(bookingRepository.findByTraveler_Id(5L))
+        when(bookingRepository.findByTraveler_IdOrderByBookingDateDescIdDesc(5L, Limit.of(21)))
                 .thenReturn(List.of());
 
-        List<BookingDTO> result = bookingService.getBookingsByTravelerId(5L);
+        KeysetPage<BookingDTO> result = bookingService.getBookingsByTravelerId(5L, null, 20);
 
         assertTrue(result.isEmpty());
-        verify(bookingRepository).findByTraveler_Id(5L);
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getBookingsByTravelerId_fullPage_cursorUsesLastBookingKey() {
+        Booking b1 = buildBooking(30L, 100L, 5L, 50L, 400L, 120.0);
+        Booking b2 = buildBooking(20L, 200L, 5L, 60L, 500L, 220.0);
+        when(bookingRepository.findByTraveler_IdOrderByBookingDateDescIdDesc(5L, Limit.of(2)))
+                .thenReturn(List.of(b1, b2));
+
+        KeysetPage<BookingDTO> result = bookingService.getBookingsByTravelerId(5L, null, 1);
+
+        assertEquals(1, result.getItems().size());
+        assertEquals(b1.getBookingDate() + "_30", result.getNextCursor());
+    }
+
+    @Test
+    void getBookingsByTravelerId_withCursor_readsBeforeCursorKey() {
+        Booking b = buildBooking(20L, 200L, 5L, 60L, 500L, 220.0);
+        LocalDate date = LocalDate.of(2030, 3, 1);
+        when(bookingRepository.findPageByTravelerIdBefore(5L, date, 30L, Limit.of(21)))
+                .thenReturn(List.of(b));
+
+        KeysetPage<BookingDTO> result = bookingService.getBookingsByTravelerId(5L, "2030-03-01_30", 20);
+
+        assertEquals(1, result.getItems().size());
+        verify(bookingRepository, never()).findByTraveler_IdOrderByBookingDateDescIdDesc(any(), any());
     }
 }
@@ -0,0 +1,185 @@
+package com.lucamoretti.adventure_together.service.booking.impl;
+
+import com.lucamoretti.adventure_together.model.booking.SeatHold;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.booking.SeatHoldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SeatHoldServiceImplTest {
+
+    @Mock
+    private SeatHoldRepository seatHoldRepository;
+
+    @InjectMocks
+    private SeatHoldServiceImpl service;
+
+    private Trip trip;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(service, "holdTtlMinutes", 15L);
+
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setMaxParticipants(4);
+
+        trip = new Trip();
+        trip.setId(1L);
+        trip.setTripItinerary(itinerary);
+        trip.setSeatsBooked(1);
+    }
+
+    // ------ HOLD SEATS ------
+
+    @Test
+    void holdSeats_enoughSeats_savesHoldAndReturnsKey() {
+        String key = service.holdSeats(trip, 2);
+
+        assertNotNull(key);
+        assertEquals(2, service.getHeldSeats(1L));
+
+        ArgumentCaptor<SeatHold> captor = ArgumentCaptor.forClass(SeatHold.class);
+        verify(seatHoldRepository).save(captor.capture());
+        assertEquals(key, captor.getValue().getHoldKey());
+        assertEquals(2, captor.getValue().getSeats());
+        assertSame(trip, captor.getValue().getTrip());
+        assertTrue(captor.getValue().getExpiresAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void holdSeats_countsActiveHoldsAgainstCapacity() {
+        // capienza 4, 1 posto prenotato → 3 liberi
+        service.holdSeats(trip, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> service.holdSeats(trip, 2));
+        assertDoesNotThrow(() -> service.holdSeats(trip, 1));
+        assertEquals(3, service.getHeldSeats(1L));
+    }
+
+    @Test
+    void holdSeats_expiredHoldsDoNotCount() {
+        ReflectionTestUtils.setField(service, "holdTtlMinutes", -1L);
+        service.holdSeats(trip, 3);
+
+        assertEquals(0, service.getHeldSeats(1L));
+        assertDoesNotThrow(() -> service.holdSeats(trip, 3));
+    }
+
+    // ------ RELEASE ------
+
+    @Test
+    void releaseHold_freesSeats() {
+        String key = service.holdSeats(trip, 3);
+
+        service.releaseHold(key);
+
+        verify(seatHoldRepository).deleteByHoldKey(key);
+        assertEquals(0, service.getHeldSeats(1L));
+        assertDoesNotThrow(() -> service.holdSeats(trip, 3));
+    }
+
+    @Test
+    void holdSeats_transactionRolledBack_holdIsRemoved() {
+        String key = inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> service.holdSeats(trip, 3));
+
+        assertNotNull(key);
+        assertEquals(0, service.getHeldSeats(1L));
+        assertDoesNotThrow(() -> service.holdSeats(trip, 3));
+    }
+
+    @Test
+    void holdSeats_transactionCommitted_holdIsKept() {
+        inTransaction(TransactionSynchronization.STATUS_COMMITTED, () -> service.holdSeats(trip, 3));
+
+        assertEquals(3, service.getHeldSeats(1L));
+    }
+
+    @Test
+    void holdAndRelease_transactionRolledBack_seatsAreFree() {
+        // es. creazione del PaymentIntent fallita: trattenuta e rilascio nella stessa transazione annullata
+        inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () -> {
+            String key = service.holdSeats(trip, 3);
+            service.releaseHold(key);
+            return key;
+        });
+
+        assertEquals(0, service.getHeldSeats(1L));
+    }
+
+    @Test
+    void releaseHold_nullKey_noop() {
+        service.releaseHold(null);
+
+        verifyNoInteractions(seatHoldRepository);
+    }
+
+    @Test
+    void releaseHold_unknownKey_deletesOnlyFromDb() {
+        service.releaseHold("unknown");
+
+        verify(seatHoldRepository).deleteByHoldKey("unknown");
+        assertEquals(0, service.getHeldSeats(1L));
+    }
+
+    // ------ PURGE / RELOAD ------
+
+    @Test
+    void purgeExpiredHolds_removesFromMemoryAndDb() {
+        ReflectionTestUtils.setField(service, "holdTtlMinutes", -1L);
+        service.holdSeats(trip, 2);
+        when(seatHoldRepository.deleteExpired(any())).thenReturn(1);
+
+        assertEquals(1, service.purgeExpiredHolds());
+        assertEquals(0, service.getHeldSeats(1L));
+    }
+
+    @Test
+    void loadActiveHolds_rebuildsLedgerFromDb() {
+        SeatHold stored = SeatHold.builder()
+                .holdKey("k1")
+                .trip(trip)
+                .seats(2)
+                .expiresAt(LocalDateTime.now().plusMinutes(10))
+                .build();
+        when(seatHoldRepository.findActive(any())).thenReturn(List.of(stored));
+
+        service.loadActiveHolds();
+
+        assertEquals(2, service.getHeldSeats(1L));
+        assertThrows(IllegalArgumentException.class, () -> service.holdSeats(trip, 2));
+    }
+
+    // Esegue l'azione come in una transazione che termina con lo stato indicato
+    static <T> T inTransaction(int status, Supplier<T> action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            T result = action.get();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronizations.forEach(TransactionSynchronization::afterCommit);
+            }
+            synchronizations.forEach(s -> s.afterCompletion(status));
+            return result;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
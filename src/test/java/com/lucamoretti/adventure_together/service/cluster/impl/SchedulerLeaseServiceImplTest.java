@@ -0,0 +1,210 @@
+package com.lucamoretti.adventure_together.service.cluster.impl;
+
+import com.lucamoretti.adventure_together.repository.cluster.SchedulerLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchedulerLeaseServiceImplTest {
+
+    @Mock private SchedulerLeaseRepository leaseRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private SchedulerLeaseServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        service = new SchedulerLeaseServiceImpl(leaseRepository, transactionManager);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "configuredNodeId", "node-a");
+        ReflectionTestUtils.setField(service, "leaseTtl", Duration.ofMinutes(2));
+        service.init();
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void runExclusively_leaseAcquired_runsTaskAndReleases() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+
+        Optional<String> result = service.runExclusively("job", () -> "done");
+
+        assertEquals(Optional.of("done"), result);
+        verify(leaseRepository).release(eq("job"), eq("node-a"), any());
+    }
+
+    @Test
+    void runExclusively_leaseUntilIsNowPlusTtl() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(2);
+            LocalDateTime until = inv.getArgument(3);
+            assertEquals(Duration.ofMinutes(2), Duration.between(now, until));
+            return 1;
+        });
+
+        assertTrue(service.runExclusively("job", () -> { }));
+    }
+
+    @Test
+    void runExclusively_leaseHeldByAnotherNode_skipsTask() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(0);
+        when(leaseRepository.existsById("job")).thenReturn(true);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertFalse(service.runExclusively("job", () -> ran.set(true)));
+
+        assertFalse(ran.get());
+        verify(leaseRepository, never()).create(any(), any());
+        verify(leaseRepository, never()).release(any(), any(), any());
+    }
+
+    @Test
+    void runExclusively_firstUse_createsExpiredRowThenAcquires() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(0, 1);
+        when(leaseRepository.existsById("job")).thenReturn(false);
+
+        assertTrue(service.runExclusively("job", () -> { }));
+
+        verify(leaseRepository).create(eq("job"), argThat(until -> until.isBefore(LocalDateTime.now())));
+        verify(leaseRepository, times(2)).acquire(eq("job"), eq("node-a"), any(), any());
+    }
+
+    @Test
+    void runExclusively_rowCreatedConcurrently_competesForLease() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(0, 0);
+        when(leaseRepository.existsById("job")).thenReturn(false);
+        when(leaseRepository.create(eq("job"), any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertFalse(service.runExclusively("job", () -> { fail("il lease è dell'altro nodo"); }));
+    }
+
+    @Test
+    void runExclusively_taskFails_releasesLeaseAndPropagates() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class,
+                () -> service.runExclusively("job", () -> { throw new IllegalStateException("errore"); }));
+
+        verify(leaseRepository).release(eq("job"), eq("node-a"), any());
+    }
+
+    @Test
+    void runExclusively_longTask_renewsLease() throws InterruptedException {
+        ReflectionTestUtils.setField(service, "leaseTtl", Duration.ofMillis(60));
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+        CountDownLatch renewed = new CountDownLatch(2);
+        when(leaseRepository.renew(eq("job"), eq("node-a"), any(), any())).thenAnswer(inv -> {
+            renewed.countDown();
+            return 1;
+        });
+
+        service.runExclusively("job", () -> {
+            try {
+                assertTrue(renewed.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        verify(leaseRepository, atLeast(2)).renew(eq("job"), eq("node-a"), any(), any());
+    }
+
+    @Test
+    void isLost_falseWhileLeaseIsHeld_trueAfterTask() {
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+
+        assertEquals(Optional.of(false), service.runExclusively("job", () -> service.isLost("job")));
+
+        assertTrue(service.isLost("job"));
+    }
+
+    @Test
+    void isLost_renewalFindsLeaseTaken_taskSeesTheLoss() {
+        ReflectionTestUtils.setField(service, "leaseTtl", Duration.ofMillis(60));
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+        // il lease è scaduto ed è stato acquisito da un altro nodo prima del rinnovo
+        when(leaseRepository.renew(eq("job"), eq("node-a"), any(), any())).thenReturn(0);
+
+        Optional<Boolean> lost = service.runExclusively("job", () -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!service.isLost("job") && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return service.isLost("job");
+        });
+
+        assertEquals(Optional.of(true), lost);
+    }
+
+    @Test
+    void isLost_renewalFails_lostWhenLeaseExpires() {
+        ReflectionTestUtils.setField(service, "leaseTtl", Duration.ofMillis(60));
+        when(leaseRepository.acquire(eq("job"), eq("node-a"), any(), any())).thenReturn(1);
+        when(leaseRepository.renew(eq("job"), eq("node-a"), any(), any())).thenThrow(new IllegalStateException("db down"));
+
+        Optional<Boolean> lost = service.runExclusively("job", () -> {
+            try {
+                Thread.sleep(120);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return service.isLost("job");
+        });
+
+        assertEquals(Optional.of(true), lost);
+    }
+
+    @Test
+    void isLost_disabled_neverLost() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        assertFalse(service.isLost("job"));
+    }
+
+    @Test
+    void runExclusively_disabled_runsWithoutLease() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        assertEquals(Optional.of(42), service.runExclusively("job", () -> 42));
+
+        verifyNoInteractions(leaseRepository);
+    }
+
+    @Test
+    void getNodeId_defaultsToHostWithRandomSuffix() {
+        SchedulerLeaseServiceImpl other = new SchedulerLeaseServiceImpl(leaseRepository, transactionManager);
+        ReflectionTestUtils.setField(other, "configuredNodeId", "");
+        ReflectionTestUtils.setField(other, "leaseTtl", Duration.ofMinutes(2));
+        other.init();
+        try {
+            assertEquals("node-a", service.getNodeId());
+            assertFalse(other.getNodeId().isBlank());
+            assertNotEquals("node-a", other.getNodeId());
+        } finally {
+            other.shutdown();
+        }
+    }
+}
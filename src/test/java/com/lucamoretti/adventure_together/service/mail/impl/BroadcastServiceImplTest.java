@@ -0,0 +1,241 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastProgressDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO;
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRequestDTO;
+import com.lucamoretti.adventure_together.model.mail.BroadcastAudience;
+import com.lucamoretti.adventure_together.model.mail.BroadcastStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BroadcastServiceImplTest {
+
+    @Mock private TravelerRepository travelerRepository;
+    @Mock private EmailOutboxRepository outboxRepository;
+    @Mock private EmailService emailService;
+
+    @InjectMocks
+    private BroadcastServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "maxPending", 10L);
+        ReflectionTestUtils.setField(service, "backpressureWaitMs", 1L);
+        ReflectionTestUtils.setField(service, "baseUrl", "http://localhost:8080");
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static BroadcastRequestDTO request(BroadcastAudience audience, Long itineraryId) {
+        return new BroadcastRequestDTO(audience, itineraryId, " Novità ", "Nuovi itinerari disponibili");
+    }
+
+    private static List<BroadcastRecipientDTO> recipients(long... ids) {
+        return LongStream.of(ids).mapToObj(id -> new BroadcastRecipientDTO(id, "t" + id + "@example.com", "T" + id)).toList();
+    }
+
+    // Attende la fine dell'invio in background
+    private BroadcastProgressDTO awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            BroadcastProgressDTO progress = service.getProgress().orElseThrow();
+            if (!progress.isRunning()) {
+                return progress;
+            }
+            Thread.sleep(5);
+        }
+        fail("L'annuncio non è terminato in tempo");
+        return null;
+    }
+
+    // ------ CURSORE E BLOCCHI ------
+
+    @Test
+    void start_allTravelers_walksKeysetCursorChunkByChunk() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(5L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(recipients(1, 3));
+        when(travelerRepository.findBroadcastRecipientsAfter(3L, Limit.of(2))).thenReturn(recipients(4, 7));
+        when(travelerRepository.findBroadcastRecipientsAfter(7L, Limit.of(2))).thenReturn(recipients(9));
+
+        BroadcastProgressDTO started = service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        assertEquals(5, started.getTotal());
+        assertEquals("Novità", started.getSubject());
+
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.COMPLETED, progress.getStatus());
+        assertEquals(5, progress.getQueued());
+        assertEquals(3, progress.getChunks());
+        assertEquals(100, progress.getPercent());
+        assertNotNull(progress.getFinishedAt());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MailRecipient>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailService, times(3)).sendBulkHtmlMessage(eq("Novità"), eq(BroadcastServiceImpl.TEMPLATE),
+                argThat(shared -> "http://localhost:8080/home".equals(shared.get("homepage"))
+                        && "Nuovi itinerari disponibili".equals(shared.get("message"))),
+                captor.capture(), eq(EmailPriority.LOW));
+        assertEquals(List.of("t1@example.com", "t3@example.com", "t4@example.com", "t7@example.com", "t9@example.com"),
+                captor.getAllValues().stream().flatMap(List::stream).map(MailRecipient::to).toList());
+        Map<String, Object> variables = captor.getAllValues().get(0).get(0).variables();
+        assertEquals("T1", ((BroadcastRecipientDTO) variables.get("traveler")).getFirstName());
+        // l'ultimo blocco è incompleto: nessuna query in più
+        verify(travelerRepository, times(3)).findBroadcastRecipientsAfter(anyLong(), any());
+    }
+
+    @Test
+    void start_fullLastChunk_stopsOnEmptyChunk() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(2L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(recipients(1, 2));
+        when(travelerRepository.findBroadcastRecipientsAfter(2L, Limit.of(2))).thenReturn(List.of());
+
+        service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.COMPLETED, progress.getStatus());
+        assertEquals(2, progress.getQueued());
+        assertEquals(1, progress.getChunks());
+        verify(emailService, times(1)).sendBulkHtmlMessage(anyString(), anyString(), anyMap(), anyList(), any());
+    }
+
+    @Test
+    void start_itineraryParticipants_usesItineraryCursor() throws Exception {
+        when(travelerRepository.countItineraryParticipants(8L)).thenReturn(1L);
+        when(travelerRepository.findItineraryParticipantsAfter(8L, 0L, Limit.of(2))).thenReturn(recipients(5));
+
+        service.start(request(BroadcastAudience.ITINERARY_PARTICIPANTS, 8L));
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.COMPLETED, progress.getStatus());
+        assertEquals(8L, progress.getItineraryId());
+        assertEquals(1, progress.getQueued());
+        verify(travelerRepository, never()).findBroadcastRecipientsAfter(anyLong(), any());
+    }
+
+    @Test
+    void start_noRecipients_completesWithoutSending() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(0L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(List.of());
+
+        service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.COMPLETED, progress.getStatus());
+        assertEquals(100, progress.getPercent());
+        verifyNoInteractions(emailService);
+    }
+
+    // ------ CONTROPRESSIONE ------
+
+    @Test
+    void start_fullOutbox_waitsBeforeEnqueuing() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(1L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(recipients(1));
+        when(outboxRepository.countByStatus(EmailOutboxStatus.PENDING)).thenReturn(10L, 12L, 9L);
+
+        service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.COMPLETED, progress.getStatus());
+        verify(outboxRepository, times(3)).countByStatus(EmailOutboxStatus.PENDING);
+        verify(emailService).sendBulkHtmlMessage(anyString(), anyString(), anyMap(), anyList(), any());
+    }
+
+    // ------ VALIDAZIONE E CONCORRENZA ------
+
+    @Test
+    void start_itineraryParticipantsWithoutItinerary_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.start(request(BroadcastAudience.ITINERARY_PARTICIPANTS, null)));
+        assertTrue(service.getProgress().isEmpty());
+    }
+
+    @Test
+    void start_whileRunning_throwsAndCancelStopsBroadcast() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        when(travelerRepository.countByActiveTrue()).thenReturn(4L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(recipients(1, 2));
+        // la coda resta piena finché l'invio non viene interrotto
+        when(outboxRepository.countByStatus(EmailOutboxStatus.PENDING)).thenAnswer(inv -> {
+            blocked.countDown();
+            return 100L;
+        });
+
+        service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IllegalStateException.class, () -> service.start(request(BroadcastAudience.ALL_TRAVELERS, null)));
+        assertTrue(service.cancel());
+
+        BroadcastProgressDTO progress = awaitFinished();
+        assertEquals(BroadcastStatus.CANCELLED, progress.getStatus());
+        assertEquals(0, progress.getQueued());
+        verifyNoInteractions(emailService);
+        assertFalse(service.cancel());
+    }
+
+    @Test
+    void start_afterPreviousFinished_startsNewBroadcast() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(0L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(List.of());
+
+        long first = service.start(request(BroadcastAudience.ALL_TRAVELERS, null)).getId();
+        awaitFinished();
+        long second = service.start(request(BroadcastAudience.ALL_TRAVELERS, null)).getId();
+
+        assertNotEquals(first, second);
+        assertEquals(second, awaitFinished().getId());
+    }
+
+    @Test
+    void cancel_withoutBroadcast_returnsFalse() {
+        assertFalse(service.cancel());
+    }
+
+    // ------ ERRORI ------
+
+    @Test
+    void start_enqueueFails_marksBroadcastFailed() throws Exception {
+        when(travelerRepository.countByActiveTrue()).thenReturn(2L);
+        when(travelerRepository.findBroadcastRecipientsAfter(0L, Limit.of(2))).thenReturn(recipients(1));
+        doThrow(new RuntimeException("database non disponibile"))
+                .when(emailService).sendBulkHtmlMessage(anyString(), anyString(), anyMap(), anyList(), any());
+
+        service.start(request(BroadcastAudience.ALL_TRAVELERS, null));
+        BroadcastProgressDTO progress = awaitFinished();
+
+        assertEquals(BroadcastStatus.FAILED, progress.getStatus());
+        assertEquals("database non disponibile", progress.getError());
+        assertEquals(0, progress.getQueued());
+        assertTrue(progress.getPercent() < 100);
+    }
+}
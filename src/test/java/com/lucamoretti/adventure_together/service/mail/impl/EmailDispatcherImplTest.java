@@ -0,0 +1,307 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.mail.MailRateBucketRepository;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDispatcherImplTest {
+
+    @Mock private EmailOutboxRepository outboxRepository;
+    @Mock private JavaMailSender mailSender;
+
+    private SmtpTransportPool transportPool;
+    private MailRateLimiter rateLimiter;
+    private EmailDispatcherImpl dispatcher;
+
+    private final Map<Long, EmailOutbox> outbox = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        // pool reale sopra il JavaMailSender mock: senza JavaMailSenderImpl ogni invio passa da mailSender.send
+        transportPool = new SmtpTransportPool(mailSender);
+        ReflectionTestUtils.setField(transportPool, "enabled", true);
+        ReflectionTestUtils.setField(transportPool, "size", 2);
+        ReflectionTestUtils.setField(transportPool, "idleTimeoutSeconds", 60L);
+        transportPool.init();
+
+        // nessun limite di default; i test delle quote lo abilitano con limiter(...)
+        rateLimiter = new MailRateLimiter(mock(MailRateBucketRepository.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(rateLimiter, "enabled", false);
+        rateLimiter.init();
+
+        dispatcher = new EmailDispatcherImpl(outboxRepository, transportPool, rateLimiter);
+        ReflectionTestUtils.setField(dispatcher, "from", "noreply@adventure.it");
+        ReflectionTestUtils.setField(dispatcher, "workers", 2);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "backoffSeconds", 30L);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "sendingTimeoutMinutes", 10L);
+        dispatcher.init();
+
+        lenient().when(mailSender.createMimeMessage()).thenAnswer(i -> new MimeMessage((Session) null));
+        lenient().when(outboxRepository.findById(anyLong())).thenAnswer(i -> Optional.ofNullable(outbox.get(i.<Long>getArgument(0))));
+        // coda in memoria: findDueIds legge i PENDING scaduti della priorità, claim li passa in SENDING
+        lenient().when(outboxRepository.findDueIds(any(), any(EmailPriority.class), any(Limit.class))).thenAnswer(i -> {
+            LocalDateTime now = i.getArgument(0);
+            EmailPriority priority = i.getArgument(1);
+            Limit limit = i.getArgument(2);
+            return outbox.values().stream()
+                    .filter(e -> e.getStatus() == EmailOutboxStatus.PENDING && e.getPriority() == priority)
+                    .filter(e -> !e.getNextAttemptAt().isAfter(now))
+                    .map(EmailOutbox::getId).sorted().limit(limit.max()).toList();
+        });
+        lenient().when(outboxRepository.claim(anyLong(), any())).thenAnswer(i -> {
+            EmailOutbox e = outbox.get(i.<Long>getArgument(0));
+            if (e == null || e.getStatus() != EmailOutboxStatus.PENDING) {
+                return 0;
+            }
+            e.setStatus(EmailOutboxStatus.SENDING);
+            return 1;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    // ------ INVIO ------
+
+    @Test
+    void dispatchDue_sendsAndMarksSent() {
+        queue(1L, 2L);
+
+        int dispatched = dispatcher.dispatchDue();
+
+        assertEquals(2, dispatched);
+        verify(mailSender, times(2)).send(any(MimeMessage.class));
+        assertEquals(EmailOutboxStatus.SENT, outbox.get(1L).getStatus());
+        assertEquals(EmailOutboxStatus.SENT, outbox.get(2L).getStatus());
+        verify(outboxRepository, times(2)).save(any(EmailOutbox.class));
+    }
+
+    @Test
+    void dispatchDue_requeuesStuckMessages() {
+        dispatcher.dispatchDue();
+
+        verify(outboxRepository).requeueStuck(any(LocalDateTime.class));
+    }
+
+    @Test
+    void dispatchDue_alreadyClaimed_skipsMessage() {
+        queue(1L);
+        when(outboxRepository.claim(eq(1L), any())).thenReturn(0);
+
+        int dispatched = dispatcher.dispatchDue();
+
+        assertEquals(0, dispatched);
+        verifyNoInteractions(mailSender);
+    }
+
+    // ------ ERRORI ------
+
+    @Test
+    void dispatchDue_smtpFailure_schedulesRetry() {
+        queue(1L);
+        doThrow(new MailSendException("connection timed out")).when(mailSender).send(any(MimeMessage.class));
+
+        LocalDateTime before = LocalDateTime.now();
+        assertDoesNotThrow(() -> dispatcher.dispatchDue());
+
+        EmailOutbox email = outbox.get(1L);
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertEquals("connection timed out", email.getLastError());
+        assertFalse(email.getNextAttemptAt().isBefore(before.plusSeconds(30)));
+        verify(outboxRepository).save(email);
+    }
+
+    @Test
+    void dispatchDue_lastAttemptFails_deadLetter() {
+        queue(1L);
+        outbox.get(1L).setAttempts(2);
+        doThrow(new MailSendException("535 auth failed")).when(mailSender).send(any(MimeMessage.class));
+
+        dispatcher.dispatchDue();
+
+        assertEquals(EmailOutboxStatus.DEAD, outbox.get(1L).getStatus());
+        assertEquals(3, outbox.get(1L).getAttempts());
+    }
+
+    // ------ CONCORRENZA ------
+
+    @Test
+    void dispatchDue_respectsWorkerLimit() {
+        queue(1L, 2L, 3L, 4L, 5L, 6L);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(30);
+            inFlight.decrementAndGet();
+            return null;
+        }).when(mailSender).send(any(MimeMessage.class));
+
+        int dispatched = dispatcher.dispatchDue();
+
+        assertEquals(6, dispatched);
+        assertTrue(maxInFlight.get() <= 2, "invii contemporanei: " + maxInFlight.get());
+        outbox.values().forEach(e -> assertEquals(EmailOutboxStatus.SENT, e.getStatus()));
+    }
+
+    @Test
+    void dispatchDue_recordsPoolStats() {
+        queue(1L, 2L, 3L);
+        doThrow(new MailSendException("452 mailbox full")).doNothing().when(mailSender).send(any(MimeMessage.class));
+
+        dispatcher.dispatchDue();
+
+        SmtpTransportPool.Stats stats = transportPool.getStats();
+        assertEquals(2, stats.messagesSent());
+        assertEquals(1, stats.sendFailures());
+    }
+
+    @Test
+    void dispatchAfterCommit_withoutTransaction_drainsInBackground() {
+        queue(1L);
+
+        dispatcher.dispatchAfterCommit();
+
+        verify(mailSender, timeout(2000)).send(any(MimeMessage.class));
+    }
+
+    // ------ PRIORITÀ E QUOTE ------
+
+    @Test
+    void dispatchDue_sendsHigherPriorityFirst() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 2);
+        queue(EmailPriority.LOW, 1L, 2L, 3L);
+        queue(EmailPriority.HIGH, 4L);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(i -> {
+            order.add(i.<MimeMessage>getArgument(0).getAllRecipients()[0].toString());
+            return null;
+        }).when(mailSender).send(any(MimeMessage.class));
+
+        int dispatched = dispatcher.dispatchDue();
+
+        assertEquals(4, dispatched);
+        assertEquals("t4@b.c", order.get(0));
+        assertEquals("t3@b.c", order.get(3)); // ultimo blocco LOW
+    }
+
+    @Test
+    void dispatchDue_quotaExhausted_leavesRestPendingAndSchedulesRetry() {
+        limiter(2, 100, 0);
+        queue(EmailPriority.LOW, 1L, 2L, 3L, 4L, 5L);
+
+        int dispatched = dispatcher.dispatchDue();
+
+        assertEquals(2, dispatched);
+        verify(mailSender, times(2)).send(any(MimeMessage.class));
+        assertEquals(3, outbox.values().stream().filter(e -> e.getStatus() == EmailOutboxStatus.PENDING).count());
+        // nuovo drenaggio programmato alla ricarica della quota
+        assertTrue(((AtomicBoolean) ReflectionTestUtils.getField(dispatcher, "retryScheduled")).get());
+        assertTrue(rateLimiter.getStats().throttled() > 0);
+    }
+
+    @Test
+    void dispatchDue_quotaExhausted_highPriorityStillJumpsAhead() {
+        limiter(1, 100, 0);
+        queue(EmailPriority.LOW, 1L, 2L);
+        queue(EmailPriority.HIGH, 3L);
+
+        dispatcher.dispatchDue();
+
+        // l'unico gettone va al messaggio HIGH
+        assertEquals(EmailOutboxStatus.SENT, outbox.get(3L).getStatus());
+        assertEquals(EmailOutboxStatus.PENDING, outbox.get(1L).getStatus());
+        assertEquals(EmailOutboxStatus.PENDING, outbox.get(2L).getStatus());
+    }
+
+    @Test
+    void dispatchDue_dailyReserve_keptForHighPriority() {
+        limiter(100, 3, 2);
+        queue(EmailPriority.LOW, 1L, 2L, 3L);
+
+        dispatcher.dispatchDue();
+        assertEquals(1, outbox.values().stream().filter(e -> e.getStatus() == EmailOutboxStatus.SENT).count());
+
+        // la quota riservata resta disponibile per le email HIGH
+        queue(EmailPriority.HIGH, 10L, 11L);
+        dispatcher.dispatchDue();
+        assertEquals(EmailOutboxStatus.SENT, outbox.get(10L).getStatus());
+        assertEquals(EmailOutboxStatus.SENT, outbox.get(11L).getStatus());
+    }
+
+    // ------ STATISTICHE ------
+
+    @Test
+    void getQueueStats_mergesDepthAndWaitTimes() {
+        queue(EmailPriority.HIGH, 1L);
+        dispatcher.dispatchDue();
+        LocalDateTime oldest = LocalDateTime.now().minusMinutes(5);
+        when(outboxRepository.countPendingByPriority())
+                .thenReturn(List.of(new EmailQueueStatsDTO(EmailPriority.LOW, 3L, oldest)));
+
+        List<EmailQueueStatsDTO> stats = dispatcher.getQueueStats();
+
+        assertEquals(List.of(EmailPriority.HIGH, EmailPriority.NORMAL, EmailPriority.LOW),
+                stats.stream().map(EmailQueueStatsDTO::getPriority).toList());
+        assertEquals(1, stats.get(0).getSent());
+        assertEquals(0, stats.get(0).getPending());
+        assertTrue(stats.get(0).getMaxWaitMillis() >= 0);
+        assertEquals(3, stats.get(2).getPending());
+        assertEquals(oldest, stats.get(2).getOldestPendingAt());
+        assertEquals(0, stats.get(2).getSent());
+    }
+
+    // ------ HELPER ------
+
+    // Accoda messaggi NORMAL con gli id indicati
+    private void queue(Long... ids) {
+        queue(EmailPriority.NORMAL, ids);
+    }
+
+    private void queue(EmailPriority priority, Long... ids) {
+        for (Long id : ids) {
+            EmailOutbox e = EmailOutbox.pending("t" + id + "@b.c", "Oggetto " + id, "mail/test", "<p>" + id + "</p>", priority);
+            e.setId(id);
+            outbox.put(id, e);
+        }
+    }
+
+    private void limiter(long perMinute, long perDay, long highPriorityReserve) {
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "perMinute", perMinute);
+        ReflectionTestUtils.setField(rateLimiter, "perDay", perDay);
+        ReflectionTestUtils.setField(rateLimiter, "highPriorityReserve", highPriorityReserve);
+        rateLimiter.init();
+    }
+}
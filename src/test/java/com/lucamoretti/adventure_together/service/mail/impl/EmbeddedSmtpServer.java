@@ -0,0 +1,204 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Server SMTP minimale in memoria per i test e il benchmark della coda email (nessuna rete esterna, nessun Gmail).
+ Ascolta su una porta libera di localhost e accetta connessioni contemporanee (un virtual thread per connessione).
+ Implementa solo i comandi usati da Jakarta Mail senza autenticazione né STARTTLS:
+ EHLO/HELO, MAIL FROM, RCPT TO, DATA, RSET, NOOP e QUIT; ogni messaggio ricevuto viene accettato.
+ Conta connessioni e messaggi; con retainMessages = true conserva anche i messaggi ricevuti (mittente, destinatari, sorgente MIME).
+ Il benchmark non li conserva, così la memoria resta costante anche con molti destinatari.
+ */
+
+final class EmbeddedSmtpServer implements AutoCloseable {
+
+    // Messaggio ricevuto: mittente, destinatari e sorgente MIME (intestazioni e corpo)
+    record ReceivedMessage(String from, List<String> recipients, String data) {
+    }
+
+    private final boolean retainMessages;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread acceptor;
+
+    private final ConcurrentLinkedQueue<ReceivedMessage> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong connectionsAccepted = new AtomicLong();
+
+    private EmbeddedSmtpServer(boolean retainMessages) throws IOException {
+        this.retainMessages = retainMessages;
+        this.serverSocket = new ServerSocket(0, 100, InetAddress.getLoopbackAddress());
+        this.acceptor = Thread.ofPlatform().daemon().name("embedded-smtp-acceptor").start(this::acceptLoop);
+    }
+
+    static EmbeddedSmtpServer start(boolean retainMessages) throws IOException {
+        return new EmbeddedSmtpServer(retainMessages);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    // JavaMailSender configurato per inviare a questo server (nessuna autenticazione, nessun TLS)
+    JavaMailSenderImpl mailSender() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(port());
+        sender.setProtocol("smtp");
+        return sender;
+    }
+
+    long receivedCount() {
+        return received.get();
+    }
+
+    long connectionCount() {
+        return connectionsAccepted.get();
+    }
+
+    List<ReceivedMessage> messages() {
+        return new ArrayList<>(messages);
+    }
+
+    // Attende che il server abbia ricevuto almeno "count" messaggi; ritorna false allo scadere del timeout
+    boolean awaitReceived(long count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (received.get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        acceptor.interrupt();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionsAccepted.incrementAndGet();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return; // server chiuso
+            }
+        }
+    }
+
+    // Dialogo SMTP di una connessione
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost ESMTP embedded");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = readLine(in)) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250 8BITMIME");
+                    case "HELO" -> reply(out, "250 localhost");
+                    case "MAIL" -> {
+                        from = address(line);
+                        recipients = new ArrayList<>();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        recipients.add(address(line));
+                        reply(out, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        String data = readData(in);
+                        if (data == null) {
+                            return;
+                        }
+                        if (retainMessages) {
+                            messages.add(new ReceivedMessage(from, List.copyOf(recipients), data));
+                        }
+                        received.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "RSET" -> {
+                        from = null;
+                        recipients = new ArrayList<>();
+                        reply(out, "250 OK");
+                    }
+                    case "NOOP" -> reply(out, "250 OK");
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException ignored) {
+            // connessione chiusa dal client o server in chiusura
+        }
+    }
+
+    // Corpo del comando DATA fino alla riga con il solo punto, togliendo il punto iniziale raddoppiato (dot-stuffing)
+    private static String readData(InputStream in) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = readLine(in)) != null) {
+            if (line.equals(".")) {
+                return data.toString();
+            }
+            data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+        }
+        return null;
+    }
+
+    // Riga terminata da CRLF (o LF); null a fine stream
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    // Indirizzo fra parentesi angolari di MAIL FROM:<...> e RCPT TO:<...>
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,97 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedSmtpServerTest {
+
+    private EmbeddedSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = EmbeddedSmtpServer.start(true);
+        mailSender = server.mailSender();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    // ------ RICEZIONE ------
+
+    @Test
+    void javaMailSender_deliversHtmlMessage() throws Exception {
+        mailSender.send(message("mario@adventure.it", "Benvenuto", "<p>Ciao Mario</p>"));
+
+        assertTrue(server.awaitReceived(1, Duration.ofSeconds(5)));
+        EmbeddedSmtpServer.ReceivedMessage received = server.messages().get(0);
+        assertEquals("noreply@adventure.it", received.from());
+        assertEquals(List.of("mario@adventure.it"), received.recipients());
+        assertTrue(received.data().contains("Subject: Benvenuto"));
+        assertTrue(received.data().contains("<p>Ciao Mario</p>"));
+    }
+
+    @Test
+    void data_lineStartingWithDot_isUnstuffed() throws Exception {
+        mailSender.send(message("anna@adventure.it", "Punto", "riga\n.inizia con un punto"));
+
+        assertTrue(server.awaitReceived(1, Duration.ofSeconds(5)));
+        assertTrue(server.messages().get(0).data().contains("\r\n.inizia con un punto"));
+        assertFalse(server.messages().get(0).data().contains("..inizia"));
+    }
+
+    @Test
+    void withoutRetainMessages_countsOnly() throws Exception {
+        try (EmbeddedSmtpServer counting = EmbeddedSmtpServer.start(false)) {
+            counting.mailSender().send(message("mario@adventure.it", "Uno", "<p>1</p>"));
+
+            assertTrue(counting.awaitReceived(1, Duration.ofSeconds(5)));
+            assertTrue(counting.messages().isEmpty());
+        }
+    }
+
+    // ------ POOL DI CONNESSIONI SU SMTP REALE ------
+
+    @Test
+    void transportPool_sendsManyMessagesOverOneConnection() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(mailSender);
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "size", 2);
+        ReflectionTestUtils.setField(pool, "idleTimeoutSeconds", 60L);
+        pool.init();
+
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            for (int i = 0; i < 5; i++) {
+                lease.send(message("traveler" + i + "@adventure.it", "Messaggio " + i, "<p>" + i + "</p>"));
+            }
+        }
+        pool.closeAll();
+
+        assertTrue(server.awaitReceived(5, Duration.ofSeconds(5)));
+        assertEquals(1, server.connectionCount());
+        assertEquals(1, pool.getStats().connectionsOpened());
+        assertEquals("traveler4@adventure.it", server.messages().get(4).recipients().get(0));
+    }
+
+    private MimeMessage message(String to, String subject, String html) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setFrom("noreply@adventure.it");
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(html, true);
+        return message;
+    }
+}
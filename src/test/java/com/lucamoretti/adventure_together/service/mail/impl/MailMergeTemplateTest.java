@@ -0,0 +1,107 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailMergeTemplateTest {
+
+    private SpringTemplateEngine templateEngine;
+    private Trip trip;
+
+    @BeforeEach
+    void setup() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setTitle("Islanda & Fiordi");
+        trip = new Trip();
+        trip.setTripItinerary(itinerary);
+    }
+
+    // ------ EQUIVALENZA CON IL RENDERING SINGOLO ------
+
+    @ParameterizedTest
+    @ValueSource(strings = {"mail/confirmed-open", "mail/confirmed-closed", "mail/expired-closed", "mail/cancelled"})
+    void merge_matchesPerRecipientRendering(String template) {
+        Map<String, Object> shared = Map.of("trip", trip, "homepage", "http://localhost:8080/home");
+        MailMergeTemplate merge = compile(template, shared, "traveler");
+
+        for (Traveler traveler : new Traveler[]{traveler("Mario"), traveler("<Anna> \"O'Brien\"")}) {
+            Map<String, Object> all = new HashMap<>(shared);
+            all.put("traveler", traveler);
+            Context context = new Context();
+            context.setVariables(all);
+
+            assertEquals(templateEngine.process(template, context), merge.merge(Map.of("traveler", traveler)));
+        }
+        assertEquals(1, merge.fieldCount());
+    }
+
+    // ------ CAMPI ------
+
+    @Test
+    void merge_plainVariableAndMapVariable() {
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(new StringTemplateResolver());
+        String marker = MailMergeTemplate.newMarker();
+        Context context = new Context();
+        context.setVariable("name", MailMergeTemplate.placeholder(marker, "name"));
+        context.setVariable("info", MailMergeTemplate.placeholder(marker, "info"));
+        String html = engine.process("<p th:text=\"${name}\"></p><a th:href=\"${info.link}\">x</a>", context);
+
+        MailMergeTemplate merge = MailMergeTemplate.compile(html, marker);
+
+        assertEquals("<p>Mario &amp; Anna</p><a href=\"/u?id=1\">x</a>",
+                merge.merge(Map.of("name", "Mario & Anna", "info", Map.of("link", "/u?id=1"))));
+    }
+
+    @Test
+    void merge_missingValue_rendersEmpty() {
+        MailMergeTemplate merge = MailMergeTemplate.compile("<p>@@ab:traveler.firstName@@!</p>", "@@ab:");
+
+        assertEquals("<p>!</p>", merge.merge(Map.of("traveler", new Traveler())));
+        assertEquals("<p>!</p>", merge.merge(Map.of()));
+    }
+
+    @Test
+    void compile_noFields_returnsHtmlAsIs() {
+        MailMergeTemplate merge = MailMergeTemplate.compile("<p>ciao</p>", "@@ab:");
+
+        assertEquals(0, merge.fieldCount());
+        assertEquals("<p>ciao</p>", merge.merge(Map.of()));
+    }
+
+    // ------ HELPER ------
+
+    private MailMergeTemplate compile(String template, Map<String, Object> shared, String recipientVariable) {
+        String marker = MailMergeTemplate.newMarker();
+        Context context = new Context();
+        context.setVariables(shared);
+        context.setVariable(recipientVariable, MailMergeTemplate.placeholder(marker, recipientVariable));
+        return MailMergeTemplate.compile(templateEngine.process(template, context), marker);
+    }
+
+    private static Traveler traveler(String firstName) {
+        Traveler t = new Traveler();
+        t.setFirstName(firstName);
+        return t;
+    }
+}
@@ -0,0 +1,157 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.mail.MailRateBucket;
+import com.lucamoretti.adventure_together.repository.mail.MailRateBucketRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MailRateLimiterTest {
+
+    @Test
+    void tryAcquire_limitedByMinuteQuota() {
+        MailRateLimiter limiter = limiter(true, 5, 100, 0);
+
+        assertEquals(3, limiter.tryAcquire(3, EmailPriority.LOW));
+        assertEquals(2, limiter.tryAcquire(10, EmailPriority.LOW));
+        assertEquals(0, limiter.tryAcquire(1, EmailPriority.HIGH));
+        assertEquals(2, limiter.getStats().throttled());
+        assertFalse(limiter.timeUntilAvailable(EmailPriority.HIGH).isZero());
+    }
+
+    @Test
+    void tryAcquire_dailyReserveOnlyForHighPriority() {
+        MailRateLimiter limiter = limiter(true, 100, 10, 4);
+
+        assertEquals(6, limiter.tryAcquire(10, EmailPriority.NORMAL));
+        assertEquals(0, limiter.tryAcquire(1, EmailPriority.LOW));
+        assertEquals(4, limiter.tryAcquire(10, EmailPriority.HIGH));
+        assertEquals(0, limiter.tryAcquire(1, EmailPriority.HIGH));
+    }
+
+    @Test
+    void timeUntilAvailable_reserveMakesLowPriorityWaitLonger() {
+        MailRateLimiter limiter = limiter(true, 100, 10, 4);
+        limiter.tryAcquire(6, EmailPriority.LOW);
+
+        Duration high = limiter.timeUntilAvailable(EmailPriority.HIGH);
+        Duration low = limiter.timeUntilAvailable(EmailPriority.LOW);
+
+        assertTrue(high.isZero());
+        assertTrue(low.compareTo(Duration.ofHours(2)) > 0); // 10 al giorno → un gettone ogni 2,4 ore
+    }
+
+    @Test
+    void reserve_cappedBelowDailyQuota() {
+        MailRateLimiter limiter = limiter(true, 100, 5, 50);
+
+        assertEquals(1, limiter.tryAcquire(5, EmailPriority.LOW));
+    }
+
+    @Test
+    void disabled_grantsEverything() {
+        MailRateLimiter limiter = limiter(false, 1, 1, 0);
+
+        assertEquals(1000, limiter.tryAcquire(1000, EmailPriority.LOW));
+        assertEquals(Duration.ZERO, limiter.timeUntilAvailable(EmailPriority.LOW));
+        assertEquals(0, limiter.getStats().throttled());
+    }
+
+    // ------ QUOTE CONDIVISE FRA I NODI ------
+
+    @Test
+    void shared_twoNodesShareTheSameQuota() {
+        Map<String, MailRateBucket> table = new HashMap<>();
+        MailRateLimiter nodeA = sharedLimiter(table, 10, 100, 0);
+        MailRateLimiter nodeB = sharedLimiter(table, 10, 100, 0);
+
+        assertEquals(6, nodeA.tryAcquire(6, EmailPriority.LOW));
+        // il secondo nodo vede i gettoni consumati dal primo
+        assertEquals(4, nodeB.tryAcquire(6, EmailPriority.LOW));
+        assertEquals(0, nodeA.tryAcquire(1, EmailPriority.HIGH));
+        assertEquals(0, nodeB.getStats().minuteTokens());
+        assertFalse(nodeB.timeUntilAvailable(EmailPriority.HIGH).isZero());
+    }
+
+    @Test
+    void shared_dailyReserveOnlyForHighPriority() {
+        Map<String, MailRateBucket> table = new HashMap<>();
+        MailRateLimiter nodeA = sharedLimiter(table, 100, 10, 4);
+        MailRateLimiter nodeB = sharedLimiter(table, 100, 10, 4);
+
+        assertEquals(6, nodeA.tryAcquire(10, EmailPriority.NORMAL));
+        assertEquals(0, nodeB.tryAcquire(1, EmailPriority.LOW));
+        assertEquals(4, nodeB.tryAcquire(10, EmailPriority.HIGH));
+    }
+
+    @Test
+    void shared_rowsCreatedOnFirstUseAndLockedInOrder() {
+        Map<String, MailRateBucket> table = new HashMap<>();
+        MailRateBucketRepository repository = repository(table);
+        MailRateLimiter limiter = sharedLimiter(repository, 20, 500, 0);
+
+        limiter.tryAcquire(3, EmailPriority.NORMAL);
+
+        verify(repository).createIfMissing(eq(MailRateLimiter.MINUTE), eq(20.0), anyLong());
+        verify(repository).createIfMissing(eq(MailRateLimiter.DAY), eq(500.0), anyLong());
+        var inOrder = inOrder(repository);
+        inOrder.verify(repository, atLeastOnce()).findByIdForUpdate(MailRateLimiter.MINUTE);
+        inOrder.verify(repository, atLeastOnce()).findByIdForUpdate(MailRateLimiter.DAY);
+        assertEquals(17, table.get(MailRateLimiter.MINUTE).getTokens(), 0.01);
+        assertEquals(497, table.get(MailRateLimiter.DAY).getTokens(), 0.01);
+    }
+
+    private static MailRateLimiter sharedLimiter(Map<String, MailRateBucket> table, long perMinute, long perDay, long reserve) {
+        return sharedLimiter(repository(table), perMinute, perDay, reserve);
+    }
+
+    private static MailRateLimiter sharedLimiter(MailRateBucketRepository repository, long perMinute, long perDay, long reserve) {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        MailRateLimiter limiter = new MailRateLimiter(repository, transactionManager);
+        ReflectionTestUtils.setField(limiter, "shared", true);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "perMinute", perMinute);
+        ReflectionTestUtils.setField(limiter, "perDay", perDay);
+        ReflectionTestUtils.setField(limiter, "highPriorityReserve", reserve);
+        limiter.init();
+        return limiter;
+    }
+
+    // tabella mail_rate_buckets in memoria: le righe lette sono le stesse istanze, come le entità gestite dalla transazione
+    private static MailRateBucketRepository repository(Map<String, MailRateBucket> table) {
+        MailRateBucketRepository repository = mock(MailRateBucketRepository.class);
+        lenient().when(repository.findByIdForUpdate(anyString())).thenAnswer(inv -> Optional.ofNullable(table.get(inv.<String>getArgument(0))));
+        lenient().when(repository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(table.get(inv.<String>getArgument(0))));
+        lenient().when(repository.createIfMissing(anyString(), anyDouble(), anyLong())).thenAnswer(inv -> {
+            String name = inv.getArgument(0);
+            if (table.containsKey(name)) {
+                return 0;
+            }
+            table.put(name, new MailRateBucket(name, inv.getArgument(1), inv.getArgument(2)));
+            return 1;
+        });
+        return repository;
+    }
+
+    private static MailRateLimiter limiter(boolean enabled, long perMinute, long perDay, long reserve) {
+        MailRateLimiter limiter = new MailRateLimiter(mock(MailRateBucketRepository.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(limiter, "enabled", enabled);
+        ReflectionTestUtils.setField(limiter, "perMinute", perMinute);
+        ReflectionTestUtils.setField(limiter, "perDay", perDay);
+        ReflectionTestUtils.setField(limiter, "highPriorityReserve", reserve);
+        limiter.init();
+        return limiter;
+    }
+}
@@ -1,20 +1,26 @@
 package com.lucamoretti.adventure_together.service.mail.impl;
 
-import jakarta.mail.Session;
-import jakarta.mail.internet.MimeMessage;
-import org.junit.jupiter.api.BeforeEach;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.mail.SentMail;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.mail.SentMailRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.test.util.ReflectionTestUtils;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,22 +33,26 @@ class EmailServiceImplTest {
     private JavaMailSender mailSender;
 
     @Mock
-    private SpringTemplateEngine templateEngine;
+    private MailTemplateEngine templateEngine;
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private SentMailRepository sentMailRepository;
+
+    @Mock
+    private EmailDispatcher dispatcher;
+
+    @Mock
+    private NotificationDigestService digestService;
 
     @InjectMocks
     private EmailServiceImpl emailService;
 
-    @BeforeEach
-    void setup() {
-        ReflectionTestUtils.setField(emailService, "from", "noreply@test.com");
-    }
-
     @Test
     void sendHtmlMessage_success() throws Exception {
-        MimeMessage mimeMessage = new MimeMessage((Session) null);
-
-        when(mailSender.createMimeMessage()).thenReturn(mimeMessage);
-        when(templateEngine.process(eq("template.html"), any(Context.class)))
+        when(templateEngine.render(eq("mail/template"), anyMap()))
                 .thenReturn("<html>OK</html>");
 
         assertDoesNotThrow(() ->
@@ -54,12 +64,37 @@ class EmailServiceImplTest {
                 )
         );
 
-        verify(mailSender).send(mimeMessage);
+        // il messaggio renderizzato viene accodato nella email_outbox
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outboxRepository).save(captor.capture());
+        EmailOutbox queued = captor.getValue();
+        assertEquals("user@test.com", queued.getRecipient());
+        assertEquals("Test Subject", queued.getSubject());
+        assertEquals("<html>OK</html>", queued.getHtmlBody());
+        assertEquals("mail/template", queued.getTemplateName()); // nome normalizzato
+        assertEquals(EmailOutboxStatus.PENDING, queued.getStatus());
+
+        // l'invio SMTP avviene dopo il commit, non nel thread del chiamante
+        verify(dispatcher).dispatchAfterCommit();
+        verifyNoInteractions(mailSender);
+    }
+
+    @Test
+    void sendHtmlMessage_defaultsToNormalPriority_orUsesGivenOne() {
+        when(templateEngine.render(anyString(), anyMap())).thenReturn("<html>OK</html>");
+
+        emailService.sendHtmlMessage("a@test.com", "Benvenuto", "mail/welcome-traveler", Map.of());
+        emailService.sendHtmlMessage("b@test.com", "Reset", "mail/reset-password", Map.of(), EmailPriority.HIGH);
+
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outboxRepository, times(2)).save(captor.capture());
+        assertEquals(EmailPriority.NORMAL, captor.getAllValues().get(0).getPriority());
+        assertEquals(EmailPriority.HIGH, captor.getAllValues().get(1).getPriority());
     }
 
     @Test
     void sendHtmlMessage_templateError_throws() {
-        when(templateEngine.process(anyString(), any(Context.class)))
+        when(templateEngine.render(anyString(), anyMap()))
                 .thenThrow(new RuntimeException("template error"));
 
         assertThrows(RuntimeException.class, () ->
@@ -70,6 +105,168 @@ class EmailServiceImplTest {
                         Map.of()
                 )
         );
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    @Test
+    void sendBulkHtmlMessage_rendersOnceAndQueuesOnePerRecipient() {
+        // il template vede il segnaposto del destinatario e il viaggio condiviso
+        when(templateEngine.render(eq("mail/cancelled"), anyMap())).thenAnswer(inv -> {
+            Map<String, Object> variables = inv.getArgument(1);
+            Map<?, ?> traveler = (Map<?, ?>) variables.get("traveler");
+            return "<p>Ciao " + traveler.get("firstName") + ", " + variables.get("title") + "</p>";
+        });
+
+        emailService.sendBulkHtmlMessage("Aggiornamento", "mail/cancelled", Map.of("title", "Islanda"), List.of(
+                new MailRecipient("mario@test.com", Map.of("traveler", Map.of("firstName", "Mario"))),
+                new MailRecipient("anna@test.com", Map.of("traveler", Map.of("firstName", "Anna <3"))))
+        );
+
+        verify(templateEngine, times(1)).render(eq("mail/cancelled"), anyMap());
+        ArgumentCaptor<List<EmailOutbox>> captor = ArgumentCaptor.captor();
+        verify(outboxRepository).saveAll(captor.capture());
+        List<EmailOutbox> queued = captor.getValue();
+        assertEquals(List.of("mario@test.com", "anna@test.com"), queued.stream().map(EmailOutbox::getRecipient).toList());
+        assertEquals("<p>Ciao Mario, Islanda</p>", queued.get(0).getHtmlBody());
+        assertEquals("<p>Ciao Anna &lt;3, Islanda</p>", queued.get(1).getHtmlBody());
+        queued.forEach(e -> assertEquals("Aggiornamento", e.getSubject()));
+        verify(dispatcher).dispatchAfterCommit();
+    }
+
+    @Test
+    void sendBulkHtmlMessage_noRecipients_doesNothing() {
+        emailService.sendBulkHtmlMessage("Aggiornamento", "mail/cancelled", Map.of(), List.of());
+
+        verifyNoInteractions(templateEngine, outboxRepository, dispatcher);
+    }
+
+    @Test
+    void sendBulkHtmlMessage_templateError_throws() {
+        when(templateEngine.render(anyString(), anyMap())).thenThrow(new RuntimeException("template error"));
+
+        assertThrows(RuntimeException.class, () -> emailService.sendBulkHtmlMessage("Aggiornamento", "mail/cancelled",
+                Map.of(), List.of(new MailRecipient("mario@test.com", Map.of()))));
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    // ------ RIEPILOGO GIORNALIERO ------
+
+    @Test
+    void sendHtmlMessage_digestSubscriber_isBufferedInsteadOfQueued() {
+        when(templateEngine.render(anyString(), anyMap())).thenReturn("<html>OK</html>");
+        when(digestService.subscribers(List.of("user@test.com"), EmailPriority.LOW)).thenReturn(Set.of("user@test.com"));
+
+        emailService.sendHtmlMessage("user@test.com", "Promemoria", "mail/upcoming-trip-reminder", Map.of(), EmailPriority.LOW);
+
+        ArgumentCaptor<List<EmailOutbox>> captor = ArgumentCaptor.captor();
+        verify(digestService).buffer(captor.capture());
+        assertEquals("<html>OK</html>", captor.getValue().get(0).getHtmlBody());
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    @Test
+    void sendBulkHtmlMessage_splitsDigestSubscribersFromImmediateRecipients() {
+        when(templateEngine.render(anyString(), anyMap())).thenReturn("<p>ok</p>");
+        when(digestService.subscribers(anyList(), eq(EmailPriority.NORMAL))).thenReturn(Set.of("anna@test.com"));
+
+        emailService.sendBulkHtmlMessage("Aggiornamento", "mail/cancelled", Map.of(), List.of(
+                new MailRecipient("mario@test.com", Map.of()),
+                new MailRecipient("anna@test.com", Map.of())));
+
+        ArgumentCaptor<List<EmailOutbox>> buffered = ArgumentCaptor.captor();
+        verify(digestService).buffer(buffered.capture());
+        assertEquals(List.of("anna@test.com"), buffered.getValue().stream().map(EmailOutbox::getRecipient).toList());
+        ArgumentCaptor<List<EmailOutbox>> queued = ArgumentCaptor.captor();
+        verify(outboxRepository).saveAll(queued.capture());
+        assertEquals(List.of("mario@test.com"), queued.getValue().stream().map(EmailOutbox::getRecipient).toList());
+        verify(dispatcher).dispatchAfterCommit();
+    }
+
+    @Test
+    void sendBulkHtmlMessage_allDigestSubscribers_noDispatch() {
+        when(templateEngine.render(anyString(), anyMap())).thenReturn("<p>ok</p>");
+        when(digestService.subscribers(anyList(), any(EmailPriority.class))).thenReturn(Set.of("anna@test.com"));
+
+        emailService.sendBulkHtmlMessage("Aggiornamento", "mail/cancelled", Map.of(),
+                List.of(new MailRecipient("anna@test.com", Map.of())));
+
+        verify(digestService).buffer(anyList());
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    // ------ INVIO IDEMPOTENTE (REGISTRO SENT_MAIL) ------
+
+    @Test
+    void sendBulkHtmlMessageOnce_skipsRecipientsAlreadyInLedgerAndRecordsTheOthers() {
+        when(sentMailRepository.findRecipients(eq("mail/review-reminder"), eq(7L), anyCollection()))
+                .thenReturn(List.of("mario@test.com"));
+        when(templateEngine.render(eq("mail/review-reminder"), anyMap())).thenReturn("<p>ok</p>");
+
+        int queued = emailService.sendBulkHtmlMessageOnce("Promemoria", "mail/review-reminder", Map.of(), 7L, List.of(
+                new MailRecipient("mario@test.com", Map.of()),
+                new MailRecipient("anna@test.com", Map.of()),
+                new MailRecipient("anna@test.com", Map.of())), EmailPriority.LOW);
+
+        assertEquals(1, queued);
+        // una sola query sul registro per tutti i destinatari
+        verify(sentMailRepository, times(1)).findRecipients(eq("mail/review-reminder"), eq(7L),
+                eq(List.of("mario@test.com", "anna@test.com", "anna@test.com")));
+        ArgumentCaptor<List<EmailOutbox>> outbox = ArgumentCaptor.captor();
+        verify(outboxRepository).saveAll(outbox.capture());
+        assertEquals(List.of("anna@test.com"), outbox.getValue().stream().map(EmailOutbox::getRecipient).toList());
+        assertEquals(EmailPriority.LOW, outbox.getValue().get(0).getPriority());
+        ArgumentCaptor<List<SentMail>> ledger = ArgumentCaptor.captor();
+        verify(sentMailRepository).saveAll(ledger.capture());
+        SentMail entry = ledger.getValue().get(0);
+        assertEquals(1, ledger.getValue().size());
+        assertEquals("anna@test.com", entry.getRecipient());
+        assertEquals("mail/review-reminder", entry.getTemplateName());
+        assertEquals(7L, entry.getTripId());
+        assertNotNull(entry.getSentAt());
+    }
+
+    @Test
+    void sendBulkHtmlMessageOnce_usesNormalizedTemplateNameAsLedgerKey() {
+        when(sentMailRepository.findRecipients(anyString(), anyLong(), anyCollection())).thenReturn(List.of());
+        when(templateEngine.render(eq("mail/cancelled"), anyMap())).thenReturn("<p>ok</p>");
+
+        emailService.sendBulkHtmlMessageOnce("Aggiornamento", "/mail/cancelled", Map.of(), 7L,
+                List.of(new MailRecipient("mario@test.com", Map.of())), EmailPriority.NORMAL);
+
+        verify(sentMailRepository).findRecipients(eq("mail/cancelled"), eq(7L), anyCollection());
+        ArgumentCaptor<List<SentMail>> ledger = ArgumentCaptor.captor();
+        verify(sentMailRepository).saveAll(ledger.capture());
+        assertEquals("mail/cancelled", ledger.getValue().get(0).getTemplateName());
+    }
+
+    @Test
+    void sendBulkHtmlMessageOnce_allAlreadySent_queuesNothing() {
+        when(sentMailRepository.findRecipients(anyString(), anyLong(), anyCollection()))
+                .thenReturn(List.of("mario@test.com"));
+
+        int queued = emailService.sendBulkHtmlMessageOnce("Promemoria", "mail/review-reminder", Map.of(), 7L,
+                List.of(new MailRecipient("mario@test.com", Map.of())), EmailPriority.LOW);
+
+        assertEquals(0, queued);
+        verify(sentMailRepository, never()).saveAll(anyList());
+        verifyNoInteractions(templateEngine, outboxRepository, dispatcher);
+    }
+
+    @Test
+    void sendBulkHtmlMessageOnce_noRecipients_doesNotQueryLedger() {
+        assertEquals(0, emailService.sendBulkHtmlMessageOnce("Promemoria", "mail/review-reminder", Map.of(), 7L,
+                List.of(), EmailPriority.LOW));
+
+        verifyNoInteractions(sentMailRepository, templateEngine, outboxRepository, dispatcher);
+    }
+
+    @Test
+    void sendBulkHtmlMessageOnce_templateError_doesNotRecordLedger() {
+        when(templateEngine.render(anyString(), anyMap())).thenThrow(new RuntimeException("template error"));
+
+        assertThrows(RuntimeException.class, () -> emailService.sendBulkHtmlMessageOnce("Promemoria", "mail/review-reminder",
+                Map.of(), 7L, List.of(new MailRecipient("mario@test.com", Map.of())), EmailPriority.LOW));
+        verify(sentMailRepository, never()).saveAll(anyList());
     }
 
     @Test
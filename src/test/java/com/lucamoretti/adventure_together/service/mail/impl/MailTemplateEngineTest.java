@@ -0,0 +1,123 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.BroadcastRecipientDTO;
+import com.lucamoretti.adventure_together.dto.mail.MailTemplateStatsDTO;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailTemplateEngineTest {
+
+    private MailTemplateEngine engine;
+    private Map<String, Object> variables;
+
+    @BeforeEach
+    void setup() throws Exception {
+        engine = new MailTemplateEngine();
+        engine.init();
+
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setTitle("Islanda & Fiordi");
+        Trip trip = new Trip();
+        trip.setTripItinerary(itinerary);
+        Traveler traveler = new Traveler();
+        traveler.setFirstName("Mario");
+        variables = Map.of("trip", trip, "traveler", traveler, "homepage", "http://localhost:8080/home");
+    }
+
+    // ------ PRECARICAMENTO ------
+
+    @Test
+    void init_preloadsEveryMailTemplate() {
+        assertTrue(engine.getTemplateNames().containsAll(List.of(
+                "mail/cancelled", "mail/confirmed-open", "mail/confirmed-closed", "mail/expired-closed",
+                "mail/booking-confirmation", "mail/reset-password", "mail/review-reminder",
+                "mail/upcoming-trip-reminder", "mail/welcome-traveler", "mail/welcome-planner-admin", "mail/announcement")));
+        // il precaricamento non conta come rendering
+        assertTrue(engine.getStats().isEmpty());
+    }
+
+    // ------ NOMI ------
+
+    @ParameterizedTest
+    @ValueSource(strings = {"mail/cancelled", "/mail/cancelled", "mail/cancelled.html", "//mail/cancelled", " cancelled "})
+    void normalize_returnsCanonicalName(String name) {
+        assertEquals("mail/cancelled", MailTemplateEngine.normalize(name));
+    }
+
+    @Test
+    void normalize_blank_throws() {
+        assertThrows(IllegalArgumentException.class, () -> MailTemplateEngine.normalize(" "));
+        assertThrows(IllegalArgumentException.class, () -> MailTemplateEngine.normalize(null));
+    }
+
+    // ------ RENDERING ------
+
+    @Test
+    void render_sameTemplateWithDifferentNames_isOneTemplate() {
+        String html = engine.render("/mail/cancelled", variables);
+
+        assertEquals(html, engine.render("mail/cancelled", variables));
+        assertTrue(html.contains("Islanda &amp; Fiordi"));
+        List<MailTemplateStatsDTO> stats = engine.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("mail/cancelled", stats.get(0).getTemplateName());
+        assertEquals(2, stats.get(0).getRenders());
+    }
+
+    @Test
+    void render_unknownTemplate_failsFast() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> engine.render("/mail/does-not-exist", variables));
+        assertTrue(e.getMessage().contains("/mail/does-not-exist"));
+        assertTrue(engine.getStats().isEmpty());
+    }
+
+    @Test
+    void render_templateOutsideMailFolder_isRejected() {
+        // i template delle pagine web non sono raggiungibili dal motore delle email
+        assertThrows(IllegalArgumentException.class, () -> engine.render("../index", variables));
+    }
+
+    @Test
+    void render_announcement_escapesMessageAndUsesRecipientProjection() {
+        Map<String, Object> announcement = Map.of(
+                "subject", "Novità",
+                "message", "Nuovi itinerari <b>estivi</b>\nScoprili sul sito",
+                "homepage", "http://localhost:8080/home",
+                "traveler", new BroadcastRecipientDTO(1L, "mario@example.com", "Mario"));
+
+        String html = engine.render("mail/announcement", announcement);
+
+        assertTrue(html.contains("Mario"));
+        // il messaggio dell'admin è testo semplice: l'HTML non viene interpretato
+        assertTrue(html.contains("&lt;b&gt;estivi&lt;/b&gt;"));
+        assertTrue(html.contains("http://localhost:8080/home"));
+    }
+
+    // ------ STATISTICHE ------
+
+    @Test
+    void getStats_histogramCountsEveryRender_mostRenderedFirst() {
+        engine.render("mail/confirmed-open", variables);
+        engine.render("mail/cancelled", variables);
+        engine.render("mail/cancelled", variables);
+
+        List<MailTemplateStatsDTO> stats = engine.getStats();
+
+        assertEquals(List.of("mail/cancelled", "mail/confirmed-open"), stats.stream().map(MailTemplateStatsDTO::getTemplateName).toList());
+        MailTemplateStatsDTO cancelled = stats.get(0);
+        assertEquals(2, cancelled.getHistogram().values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(cancelled.getP50Micros() <= cancelled.getP99Micros());
+        assertTrue(cancelled.getAverageMicros() <= cancelled.getMaxMicros());
+    }
+}
@@ -0,0 +1,395 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.dto.mail.EmailQueueStatsDTO;
+import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.details.DepartureAirport;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailOutboxStatus;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.mail.MailRateBucketRepository;
+import com.lucamoretti.adventure_together.repository.mail.SentMailRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import com.lucamoretti.adventure_together.service.mail.NotificationDigestService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/*
+ Benchmark del percorso delle email: EmailServiceImpl (rendering e accodamento) → EmailDispatcherImpl → SmtpTransportPool
+ → server SMTP locale (EmbeddedSmtpServer), senza rete e senza database.
+ Per ogni template in templates/mail invia "recipients" email in due modalità:
+ SINGLE (una sendHtmlMessage per destinatario) e BULK (una sendBulkHtmlMessage con tutti i destinatari).
+ Per ogni riga riporta:
+ - msg/s: messaggi ricevuti dal server al secondo, dall'accodamento del primo all'arrivo dell'ultimo;
+ - p50/p99 invio: tempo di invio di un messaggio nel dispatcher (costruzione MIME + dialogo SMTP + esito);
+ - p99 accodamento: tempo di una sendHtmlMessage (solo SINGLE);
+ - KB/msg: memoria allocata per messaggio dal thread chiamante e dai worker SMTP (il server è escluso).
+ La coda email_outbox è in memoria e i limiti di quota sono disattivati: si misura il solo costo del percorso mail.
+ Non fa parte della suite ordinaria (il nome non termina in Test); si esegue con il profilo mail-benchmark:
+   mvn -Pmail-benchmark test -Dmail.benchmark.recipients=2000 -Dmail.benchmark.workers=4
+ Il risultato viene stampato e scritto in target/mail-benchmark.csv per confrontare due versioni.
+ */
+
+class MailThroughputBenchmark {
+
+    private static final int RECIPIENTS = Integer.getInteger("mail.benchmark.recipients", 1000);
+    private static final int WARMUP = Integer.getInteger("mail.benchmark.warmup", 200);
+    private static final int WORKERS = Integer.getInteger("mail.benchmark.workers", 4);
+
+    private enum Mode { SINGLE, BULK }
+
+    private record Result(String template, Mode mode, int messages, double messagesPerSecond,
+                          long p50SendMicros, long p99SendMicros, long p99EnqueueMicros, double kbPerMessage) {
+    }
+
+    private EmbeddedSmtpServer server;
+    private MailTemplateEngine templateEngine;
+    private InMemoryOutbox outbox;
+    private EmailServiceImpl emailService;
+    private EmailDispatcherImpl dispatcher;
+    private Map<String, Object> shared;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = EmbeddedSmtpServer.start(false);
+        templateEngine = new MailTemplateEngine();
+        templateEngine.init();
+        outbox = new InMemoryOutbox();
+        EmailOutboxRepository outboxRepository = outbox.repository();
+
+        SmtpTransportPool transportPool = new SmtpTransportPool(server.mailSender());
+        ReflectionTestUtils.setField(transportPool, "enabled", true);
+        ReflectionTestUtils.setField(transportPool, "size", WORKERS);
+        ReflectionTestUtils.setField(transportPool, "idleTimeoutSeconds", 60L);
+        transportPool.init();
+
+        MailRateLimiter rateLimiter = new MailRateLimiter(mock(MailRateBucketRepository.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(rateLimiter, "enabled", false);
+        rateLimiter.init();
+
+        dispatcher = new EmailDispatcherImpl(outboxRepository, transportPool, rateLimiter);
+        ReflectionTestUtils.setField(dispatcher, "from", "benchmark@adventure.local");
+        ReflectionTestUtils.setField(dispatcher, "workers", WORKERS);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 1);
+        ReflectionTestUtils.setField(dispatcher, "backoffSeconds", 30L);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "sendingTimeoutMinutes", 10L);
+        dispatcher.init();
+
+        // il service non avvia il drenaggio in background: il benchmark lo esegue con dispatchDue dopo l'accodamento
+        emailService = new EmailServiceImpl(server.mailSender(), templateEngine, outboxRepository,
+                mock(SentMailRepository.class), new ManualDispatch(), new NoDigest());
+        shared = sharedVariables();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        dispatcher.shutdown();
+        server.close();
+    }
+
+    @Test
+    void throughputPerTemplate() throws Exception {
+        List<String> templates = new ArrayList<>(new TreeSet<>(templateEngine.getTemplateNames()));
+        // riscaldamento del JIT e delle connessioni SMTP
+        for (String template : templates) {
+            for (Mode mode : Mode.values()) {
+                run(template, mode, WARMUP);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (String template : templates) {
+            for (Mode mode : Mode.values()) {
+                results.add(run(template, mode, RECIPIENTS));
+            }
+        }
+
+        report(results);
+        long expected = (long) templates.size() * Mode.values().length * (WARMUP + RECIPIENTS);
+        assertEquals(expected, server.receivedCount());
+    }
+
+    // ------ ESECUZIONE ------
+
+    private Result run(String template, Mode mode, int recipients) throws InterruptedException {
+        outbox.reset();
+        long receivedBefore = server.receivedCount();
+        long[] enqueueNanos = new long[mode == Mode.SINGLE ? recipients : 0];
+        List<MailRecipient> bulk = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            if (mode == Mode.BULK) {
+                bulk.add(new MailRecipient(address(i), Map.of("traveler", traveler(i))));
+            }
+        }
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+
+        long start = System.nanoTime();
+        if (mode == Mode.SINGLE) {
+            for (int i = 0; i < recipients; i++) {
+                Map<String, Object> variables = new HashMap<>(shared);
+                variables.put("traveler", traveler(i));
+                long t0 = System.nanoTime();
+                emailService.sendHtmlMessage(address(i), "Benchmark " + template, template, variables, EmailPriority.NORMAL);
+                enqueueNanos[i] = System.nanoTime() - t0;
+            }
+        } else {
+            emailService.sendBulkHtmlMessage("Benchmark " + template, template, shared, bulk, EmailPriority.NORMAL);
+        }
+        int dispatched = dispatcher.dispatchDue();
+        assertTrue(server.awaitReceived(receivedBefore + recipients, Duration.ofSeconds(60)),
+                "messaggi non ricevuti dal server SMTP per " + template);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedSince(allocatedBefore);
+
+        assertEquals(recipients, dispatched);
+        assertEquals(recipients, outbox.count(EmailOutboxStatus.SENT), "invii falliti per " + template);
+        long[] sendNanos = outbox.sendLatencies();
+        Arrays.sort(sendNanos);
+        Arrays.sort(enqueueNanos);
+        return new Result(template, mode, recipients,
+                recipients / (elapsed / 1e9),
+                percentile(sendNanos, 0.50) / 1000,
+                percentile(sendNanos, 0.99) / 1000,
+                mode == Mode.SINGLE ? percentile(enqueueNanos, 0.99) / 1000 : -1,
+                allocated / 1024.0 / recipients);
+    }
+
+    private void report(List<Result> results) throws IOException {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%nBenchmark email: %d destinatari per template, %d worker SMTP%n", RECIPIENTS, WORKERS));
+        table.append(String.format("%-30s %-6s %9s %10s %10s %11s %8s%n",
+                "template", "mode", "msg/s", "p50 invio", "p99 invio", "p99 accod.", "KB/msg"));
+        StringBuilder csv = new StringBuilder("template,mode,messages,messages_per_second,p50_send_us,p99_send_us,p99_enqueue_us,kb_per_message\n");
+        for (Result r : results) {
+            table.append(String.format(Locale.ROOT, "%-30s %-6s %9.0f %8dus %8dus %9s %8.1f%n",
+                    r.template(), r.mode(), r.messagesPerSecond(), r.p50SendMicros(), r.p99SendMicros(),
+                    r.p99EnqueueMicros() < 0 ? "-" : r.p99EnqueueMicros() + "us", r.kbPerMessage()));
+            csv.append(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%.2f%n",
+                    r.template(), r.mode(), r.messages(), r.messagesPerSecond(), r.p50SendMicros(), r.p99SendMicros(),
+                    r.p99EnqueueMicros(), r.kbPerMessage()));
+        }
+        System.out.println(table);
+        Path target = Path.of("target");
+        Files.createDirectories(target);
+        Files.writeString(target.resolve("mail-benchmark.csv"), csv);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // ------ MEMORIA ALLOCATA ------
+    // Thread del percorso mail: il chiamante (rendering, accodamento, drenaggio) e i worker SMTP del dispatcher
+
+    private static Map<Long, Long> allocatedBytes() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<Long, Long> bytes = new HashMap<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t == Thread.currentThread() || t.getName().startsWith("smtp-worker-")) {
+                bytes.put(t.threadId(), mx.getThreadAllocatedBytes(t.threadId()));
+            }
+        }
+        return bytes;
+    }
+
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> after : allocatedBytes().entrySet()) {
+            total += after.getValue() - before.getOrDefault(after.getKey(), 0L);
+        }
+        return total;
+    }
+
+    // ------ DATI ------
+
+    private static String address(int i) {
+        return "traveler" + i + "@bench.local";
+    }
+
+    private static Traveler traveler(int i) {
+        Traveler traveler = new Traveler();
+        traveler.setFirstName("Viaggiatore " + i);
+        traveler.setEmail(address(i));
+        return traveler;
+    }
+
+    // Variabili lette dai template email (quelle non usate da un template vengono ignorate)
+    private static Map<String, Object> sharedVariables() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setTitle("Islanda & Fiordi");
+        Trip trip = new Trip();
+        trip.setId(1L);
+        trip.setTripItinerary(itinerary);
+        trip.setDateDeparture(LocalDate.of(2026, 7, 1));
+        DepartureAirport airport = new DepartureAirport();
+        airport.setCode("MXP");
+        airport.setCity("Milano");
+        Booking booking = new Booking();
+        booking.setId(42L);
+        List<Map<String, Object>> items = List.of(
+                Map.of("subject", "Viaggio confermato", "createdAt", LocalDateTime.of(2026, 6, 1, 9, 0), "body", "<p>Confermato</p>"),
+                Map.of("subject", "Partenza imminente", "createdAt", LocalDateTime.of(2026, 6, 2, 9, 0), "body", "<p>Si parte</p>"));
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("trip", trip);
+        variables.put("airport", airport);
+        variables.put("booking", booking);
+        variables.put("totalCost", 1650.0);
+        variables.put("homepage", "http://localhost:8080/home");
+        variables.put("name", "Mario Rossi");
+        variables.put("resetLink", "http://localhost:8080/reset?token=abc");
+        variables.put("resetPassword", "http://localhost:8080/reset?token=abc");
+        variables.put("items", items);
+        variables.put("subject", "Novità sui viaggi");
+        variables.put("message", "Nuovi itinerari disponibili.\nScoprili sul sito.");
+        return Map.copyOf(variables);
+    }
+
+    // ------ COLLABORATORI IN MEMORIA ------
+    // Implementazioni minime invece di mock Mockito, così le allocazioni misurate sono quelle del percorso mail
+
+    private static final class ManualDispatch implements EmailDispatcher {
+        @Override
+        public void dispatchAfterCommit() {
+        }
+
+        @Override
+        public int dispatchDue() {
+            return 0;
+        }
+
+        @Override
+        public List<EmailQueueStatsDTO> getQueueStats() {
+            return List.of();
+        }
+    }
+
+    private static final class NoDigest implements NotificationDigestService {
+        @Override
+        public Set<String> subscribers(Collection<String> recipients, EmailPriority priority) {
+            return Set.of();
+        }
+
+        @Override
+        public void buffer(List<EmailOutbox> messages) {
+        }
+
+        @Override
+        public int flush() {
+            return 0;
+        }
+    }
+
+    /*
+     Coda email_outbox in memoria: implementa solo i metodi usati da EmailServiceImpl ed EmailDispatcherImpl.
+     Il tempo fra findById (inizio di deliver) e save del messaggio inviato è il tempo di invio del messaggio.
+     */
+    private static final class InMemoryOutbox {
+
+        private final ConcurrentSkipListMap<Long, EmailOutbox> messages = new ConcurrentSkipListMap<>();
+        private final Map<Long, Long> deliverStart = new ConcurrentHashMap<>();
+        private final Map<Long, Long> sendNanos = new ConcurrentHashMap<>();
+        private final AtomicLong ids = new AtomicLong();
+
+        void reset() {
+            messages.clear();
+            deliverStart.clear();
+            sendNanos.clear();
+        }
+
+        long count(EmailOutboxStatus status) {
+            return messages.values().stream().filter(e -> e.getStatus() == status).count();
+        }
+
+        long[] sendLatencies() {
+            return sendNanos.values().stream().mapToLong(Long::longValue).toArray();
+        }
+
+        EmailOutboxRepository repository() {
+            return (EmailOutboxRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{EmailOutboxRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "save" -> save((EmailOutbox) args[0]);
+                        case "saveAll" -> {
+                            List<EmailOutbox> saved = new ArrayList<>();
+                            for (Object e : (Iterable<?>) args[0]) {
+                                saved.add(save((EmailOutbox) e));
+                            }
+                            yield saved;
+                        }
+                        case "findById" -> {
+                            deliverStart.put((Long) args[0], System.nanoTime());
+                            yield Optional.ofNullable(messages.get((Long) args[0]));
+                        }
+                        case "findDueIds" -> findDueIds((LocalDateTime) args[0], (EmailPriority) args[1], (Limit) args[2]);
+                        case "claim" -> claim((Long) args[0]);
+                        case "requeueStuck" -> 0;
+                        case "toString" -> "InMemoryOutbox";
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private EmailOutbox save(EmailOutbox email) {
+            if (email.getId() == null) {
+                email.setId(ids.incrementAndGet());
+            } else {
+                Long start = deliverStart.get(email.getId());
+                if (start != null) {
+                    sendNanos.put(email.getId(), System.nanoTime() - start);
+                }
+            }
+            messages.put(email.getId(), email);
+            return email;
+        }
+
+        private List<Long> findDueIds(LocalDateTime now, EmailPriority priority, Limit limit) {
+            List<Long> due = new ArrayList<>();
+            for (EmailOutbox e : messages.values()) {
+                if (due.size() >= limit.max()) {
+                    break;
+                }
+                if (e.getStatus() == EmailOutboxStatus.PENDING && e.getPriority() == priority && !e.getNextAttemptAt().isAfter(now)) {
+                    due.add(e.getId());
+                }
+            }
+            return due;
+        }
+
+        private synchronized int claim(Long id) {
+            EmailOutbox e = messages.get(id);
+            if (e == null || e.getStatus() != EmailOutboxStatus.PENDING) {
+                return 0;
+            }
+            e.setStatus(EmailOutboxStatus.SENDING);
+            return 1;
+        }
+    }
+}
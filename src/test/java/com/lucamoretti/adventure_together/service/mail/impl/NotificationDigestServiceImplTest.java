@@ -0,0 +1,237 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import com.lucamoretti.adventure_together.model.mail.DigestEntry;
+import com.lucamoretti.adventure_together.model.mail.EmailOutbox;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.repository.mail.DigestEntryRepository;
+import com.lucamoretti.adventure_together.repository.mail.EmailOutboxRepository;
+import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
+import com.lucamoretti.adventure_together.service.mail.EmailDispatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDigestServiceImplTest {
+
+    @Mock
+    private DigestEntryRepository digestRepository;
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+    @Mock
+    private TravelerRepository travelerRepository;
+    @Mock
+    private EmailDispatcher dispatcher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private NotificationDigestServiceImpl service;
+
+    // notifiche in attesa, come nella tabella email_digest_entries
+    private final List<DigestEntry> stored = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws Exception {
+        MailTemplateEngine templateEngine = new MailTemplateEngine();
+        templateEngine.init();
+        service = new NotificationDigestServiceImpl(digestRepository, outboxRepository, travelerRepository, templateEngine, dispatcher,
+                transactionManager);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "baseUrl", "http://localhost:8080");
+    }
+
+    // ------ DESTINATARI DEL RIEPILOGO ------
+
+    @Test
+    void subscribers_returnsTravelersWhoOptedIn() {
+        when(travelerRepository.findDigestSubscriberEmails(anyCollection())).thenReturn(List.of("mario@test.com"));
+
+        assertEquals(Set.of("mario@test.com"),
+                service.subscribers(List.of("mario@test.com", "anna@test.com"), EmailPriority.NORMAL));
+        verify(travelerRepository, times(1)).findDigestSubscriberEmails(anyCollection());
+    }
+
+    @Test
+    void subscribers_highPriority_isAlwaysImmediate() {
+        assertTrue(service.subscribers(List.of("mario@test.com"), EmailPriority.HIGH).isEmpty());
+        verifyNoInteractions(travelerRepository);
+    }
+
+    @Test
+    void subscribers_disabled_noLookup() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        assertTrue(service.subscribers(List.of("mario@test.com"), EmailPriority.LOW).isEmpty());
+        verifyNoInteractions(travelerRepository);
+    }
+
+    @Test
+    void buffer_savesOneEntryPerMessage() {
+        service.buffer(List.of(EmailOutbox.pending("mario@test.com", "Aggiornamento", "mail/cancelled", "<p>x</p>", EmailPriority.LOW)));
+
+        ArgumentCaptor<List<DigestEntry>> captor = ArgumentCaptor.captor();
+        verify(digestRepository).saveAll(captor.capture());
+        DigestEntry entry = captor.getValue().get(0);
+        assertEquals("mario@test.com", entry.getRecipient());
+        assertEquals("mail/cancelled", entry.getTemplateName());
+        assertEquals(EmailPriority.LOW, entry.getPriority());
+        assertNotNull(entry.getCreatedAt());
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    // ------ FLUSH ------
+
+    @Test
+    void flush_combinesNotificationsOfARecipientIntoOneMessage() {
+        stubStore();
+        stored.add(entry("mario@test.com", "Viaggio confermato", "<html><body><p>Confermato</p></body></html>", EmailPriority.NORMAL));
+        stored.add(entry("mario@test.com", "Viaggio al completo", "<html><body><p>Al completo</p></body></html>", EmailPriority.NORMAL));
+        stored.add(entry("mario@test.com", "Lascia una recensione", "<html><body><p>Recensione</p></body></html>", EmailPriority.LOW));
+
+        int queued = service.flush();
+
+        assertEquals(1, queued);
+        List<EmailOutbox> messages = savedMessages();
+        assertEquals(1, messages.size());
+        EmailOutbox digest = messages.get(0);
+        assertEquals("mario@test.com", digest.getRecipient());
+        assertEquals("mail/digest", digest.getTemplateName());
+        assertTrue(digest.getSubject().contains("(3)"));
+        assertEquals(EmailPriority.NORMAL, digest.getPriority()); // la più alta fra le notifiche
+        assertTrue(digest.getHtmlBody().contains("<p>Confermato</p>"));
+        assertTrue(digest.getHtmlBody().contains("<p>Al completo</p>"));
+        assertTrue(digest.getHtmlBody().indexOf("Confermato") < digest.getHtmlBody().indexOf("Recensione"));
+        assertTrue(stored.isEmpty());
+        verify(dispatcher).dispatchAfterCommit();
+    }
+
+    @Test
+    void flush_singleNotification_isQueuedUnchanged() {
+        stubStore();
+        stored.add(entry("anna@test.com", "Viaggio annullato", "<html><body>annullato</body></html>", EmailPriority.LOW));
+
+        service.flush();
+
+        EmailOutbox message = savedMessages().get(0);
+        assertEquals("Viaggio annullato", message.getSubject());
+        assertEquals("mail/cancelled", message.getTemplateName());
+        assertEquals("<html><body>annullato</body></html>", message.getHtmlBody());
+        assertEquals(EmailPriority.LOW, message.getPriority());
+    }
+
+    @Test
+    void flush_processesRecipientsInBatches() {
+        stubStore();
+        for (String r : List.of("a@test.com", "b@test.com", "c@test.com", "d@test.com", "e@test.com")) {
+            stored.add(entry(r, "Uno", "<body>1</body>", EmailPriority.LOW));
+            stored.add(entry(r, "Due", "<body>2</body>", EmailPriority.LOW));
+        }
+
+        int queued = service.flush();
+
+        // 5 destinatari a blocchi di 2: 3 blocchi, 10 notifiche in 5 messaggi
+        assertEquals(5, queued);
+        verify(outboxRepository, times(3)).saveAll(anyList());
+        assertEquals(List.of("a@test.com", "b@test.com", "c@test.com", "d@test.com", "e@test.com"),
+                savedMessages().stream().map(EmailOutbox::getRecipient).toList());
+        assertTrue(stored.isEmpty());
+        // una transazione (e un invio dopo il commit) per ciascuno dei 3 blocchi
+        verify(transactionManager, times(3)).commit(any());
+        verify(dispatcher, times(3)).dispatchAfterCommit();
+    }
+
+    @Test
+    void flush_errorInABatch_previousBatchesStayCommitted() {
+        stubStore();
+        for (String r : List.of("a@test.com", "b@test.com", "c@test.com")) {
+            stored.add(entry(r, "Uno", "<body>1</body>", EmailPriority.LOW));
+        }
+        when(outboxRepository.saveAll(anyList()))
+                .thenAnswer(inv -> inv.getArgument(0))
+                .thenThrow(new RuntimeException("db error"));
+
+        assertThrows(RuntimeException.class, () -> service.flush());
+
+        // il primo blocco è confermato, solo il secondo viene annullato
+        verify(transactionManager, times(1)).commit(any());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(dispatcher, times(1)).dispatchAfterCommit();
+    }
+
+    @Test
+    void flush_nothingPending_queuesNothing() {
+        when(digestRepository.findRecipientsAfter(eq(""), any(Limit.class))).thenReturn(List.of());
+
+        assertEquals(0, service.flush());
+        verifyNoInteractions(outboxRepository, dispatcher);
+    }
+
+    // ------ CONTENUTO ------
+
+    @Test
+    void bodyOf_extractsBodyContent() {
+        assertEquals("<p>ciao</p>", NotificationDigestServiceImpl.bodyOf(
+                "<html><head><style>p{}</style></head><BODY class=\"x\">\n<p>ciao</p>\n</BODY></html>"));
+        assertEquals("<p>senza body</p>", NotificationDigestServiceImpl.bodyOf("<p>senza body</p>"));
+    }
+
+    // ------ HELPER ------
+
+    // repository in memoria: destinatari in ordine (keyset) e cancellazione delle righe elaborate
+    private void stubStore() {
+        when(digestRepository.findRecipientsAfter(anyString(), any(Limit.class))).thenAnswer(inv -> {
+            String after = inv.getArgument(0);
+            Limit limit = inv.getArgument(1);
+            return stored.stream().map(DigestEntry::getRecipient).distinct().sorted()
+                    .filter(r -> r.compareTo(after) > 0).limit(limit.max()).toList();
+        });
+        when(digestRepository.findByRecipientInOrderByRecipientAscIdAsc(anyCollection())).thenAnswer(inv -> {
+            Collection<String> recipients = inv.getArgument(0);
+            return stored.stream().filter(e -> recipients.contains(e.getRecipient()))
+                    .sorted(Comparator.comparing(DigestEntry::getRecipient).thenComparing(DigestEntry::getId)).toList();
+        });
+        doAnswer(inv -> {
+            Collection<DigestEntry> entries = inv.getArgument(0);
+            stored.removeAll(entries);
+            return null;
+        }).when(digestRepository).deleteAllInBatch(anyIterable());
+    }
+
+    private List<EmailOutbox> savedMessages() {
+        ArgumentCaptor<List<EmailOutbox>> captor = ArgumentCaptor.captor();
+        verify(outboxRepository, atLeastOnce()).saveAll(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    private DigestEntry entry(String recipient, String subject, String html, EmailPriority priority) {
+        return DigestEntry.builder()
+                .id((long) stored.size() + 1)
+                .recipient(recipient)
+                .subject(subject)
+                .templateName("mail/cancelled")
+                .htmlBody(html)
+                .priority(priority)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
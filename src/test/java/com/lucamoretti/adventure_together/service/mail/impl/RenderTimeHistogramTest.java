@@ -0,0 +1,66 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderTimeHistogramTest {
+
+    @Test
+    void empty_allZero() {
+        RenderTimeHistogram h = new RenderTimeHistogram();
+
+        assertEquals(0, h.count());
+        assertEquals(0, h.averageMicros());
+        assertEquals(0, h.percentileMicros(0.99));
+        assertEquals(RenderTimeHistogram.BOUNDS_MICROS.length + 1, h.buckets().size());
+    }
+
+    @Test
+    void record_countsInBucketAndTracksAverageAndMax() {
+        RenderTimeHistogram h = new RenderTimeHistogram();
+        h.record(micros(40));   // <=50us
+        h.record(micros(50));   // <=50us (limite incluso)
+        h.record(micros(300));  // <=500us
+        h.record(micros(2_000)); // <=2500us
+
+        Map<String, Long> buckets = h.buckets();
+        assertEquals(2, buckets.get("<=50us"));
+        assertEquals(1, buckets.get("<=500us"));
+        assertEquals(1, buckets.get("<=2500us"));
+        assertEquals(4, h.count());
+        assertEquals(597, h.averageMicros());
+        assertEquals(2_000, h.maxMicros());
+    }
+
+    @Test
+    void percentile_isUpperBoundOfBucket() {
+        RenderTimeHistogram h = new RenderTimeHistogram();
+        for (int i = 0; i < 95; i++) {
+            h.record(micros(80));
+        }
+        for (int i = 0; i < 5; i++) {
+            h.record(micros(4_000));
+        }
+
+        assertEquals(100, h.percentileMicros(0.50));
+        assertEquals(100, h.percentileMicros(0.95));
+        assertEquals(5_000, h.percentileMicros(0.99));
+    }
+
+    @Test
+    void overflowBucket_percentileIsMax() {
+        RenderTimeHistogram h = new RenderTimeHistogram();
+        h.record(TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertEquals(1, h.buckets().get(">100000us"));
+        assertEquals(250_000, h.percentileMicros(0.5));
+    }
+
+    private static long micros(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+}
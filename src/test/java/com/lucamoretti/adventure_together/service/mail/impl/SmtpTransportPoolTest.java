@@ -0,0 +1,226 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SmtpTransportPoolTest {
+
+    @Mock private JavaMailSenderImpl mailSender;
+    @Mock private Session session;
+    @Mock private Transport transport;
+
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setup() throws Exception {
+        pool = pool(mailSender, true, 2);
+
+        lenient().when(mailSender.getSession()).thenReturn(session);
+        lenient().when(mailSender.getProtocol()).thenReturn("smtp");
+        lenient().when(mailSender.getHost()).thenReturn("smtp.adventure.it");
+        lenient().when(mailSender.getPort()).thenReturn(587);
+        lenient().when(mailSender.getUsername()).thenReturn("user");
+        lenient().when(mailSender.getPassword()).thenReturn("secret");
+        lenient().when(session.getTransport("smtp")).thenReturn(transport);
+        lenient().when(transport.isConnected()).thenReturn(true);
+    }
+
+    // ------ CONNESSIONI RIUSATE ------
+
+    @Test
+    void lease_sendsManyMessagesOverOneConnection() throws Exception {
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+            lease.send(message());
+            lease.send(message());
+        }
+
+        verify(transport, times(1)).connect("smtp.adventure.it", 587, "user", "secret");
+        verify(transport, times(3)).sendMessage(any(MimeMessage.class), any(Address[].class));
+        verify(mailSender, never()).send(any(MimeMessage.class));
+        SmtpTransportPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.connectionsOpened());
+        assertEquals(3, stats.messagesSent());
+        assertEquals(1, stats.idleConnections());
+    }
+
+    @Test
+    void lease_defaultProtocolAndNoCredentials() throws Exception {
+        when(mailSender.getProtocol()).thenReturn(null);
+        when(mailSender.getUsername()).thenReturn("");
+        when(mailSender.getPassword()).thenReturn("");
+
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+
+        verify(session).getTransport("smtp");
+        verify(transport).connect("smtp.adventure.it", 587, null, null);
+    }
+
+    @Test
+    void borrow_reusesIdleConnection() throws Exception {
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+
+        verify(session, times(1)).getTransport("smtp");
+        assertEquals(1, pool.getStats().connectionsOpened());
+        assertEquals(1, pool.getStats().connectionsReused());
+    }
+
+    @Test
+    void borrow_droppedIdleConnection_opensNewOne() throws Exception {
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+        // il server ha chiuso la connessione inattiva
+        when(transport.isConnected()).thenReturn(false);
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+
+        verify(transport, times(2)).connect(anyString(), anyInt(), anyString(), anyString());
+        assertEquals(0, pool.getStats().connectionsReused());
+    }
+
+    @Test
+    void lease_withoutSends_doesNotConnect() {
+        pool.borrow().close();
+
+        verifyNoInteractions(session);
+        assertEquals(0, pool.getStats().idleConnections());
+    }
+
+    // ------ ERRORI ------
+
+    @Test
+    void send_failure_discardsConnectionAndCounts() throws Exception {
+        doThrow(new MessagingException("421 service not available")).doNothing()
+                .when(transport).sendMessage(any(MimeMessage.class), any(Address[].class));
+
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            assertThrows(MessagingException.class, () -> lease.send(message()));
+            lease.send(message());
+        }
+
+        verify(transport, atLeastOnce()).close();
+        verify(transport, times(2)).connect(anyString(), anyInt(), anyString(), anyString());
+        assertEquals(1, pool.getStats().sendFailures());
+        assertEquals(1, pool.getStats().messagesSent());
+    }
+
+    // ------ LIMITI E PULIZIA ------
+
+    @Test
+    void borrow_waitsWhenAllSlotsInUse() throws Exception {
+        SmtpTransportPool.Lease first = pool.borrow();
+        SmtpTransportPool.Lease second = pool.borrow();
+
+        CompletableFuture<SmtpTransportPool.Lease> third = CompletableFuture.supplyAsync(pool::borrow);
+        assertThrows(Exception.class, () -> third.get(100, TimeUnit.MILLISECONDS));
+
+        first.close();
+        third.get(2, TimeUnit.SECONDS).close();
+        second.close();
+    }
+
+    @Test
+    void evictIdle_closesExpiredConnections() throws Exception {
+        ReflectionTestUtils.setField(pool, "idleTimeoutSeconds", 0L);
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+
+        int closed = pool.evictIdle();
+
+        assertEquals(1, closed);
+        verify(transport).close();
+        assertEquals(0, pool.getStats().idleConnections());
+    }
+
+    @Test
+    void closeAll_closesIdleConnections() throws Exception {
+        try (SmtpTransportPool.Lease lease = pool.borrow()) {
+            lease.send(message());
+        }
+
+        pool.closeAll();
+
+        verify(transport).close();
+        assertEquals(0, pool.getStats().idleConnections());
+    }
+
+    // ------ SENZA POOL ------
+
+    @Test
+    void disabled_sendsThroughMailSender() throws Exception {
+        SmtpTransportPool direct = pool(mailSender, false, 2);
+
+        try (SmtpTransportPool.Lease lease = direct.borrow()) {
+            lease.send(message());
+        }
+
+        assertFalse(direct.isPooling());
+        verify(mailSender).send(any(MimeMessage.class));
+        verifyNoInteractions(session);
+        assertEquals(1, direct.getStats().messagesSent());
+    }
+
+    @Test
+    void genericSender_sendsThroughMailSender() throws Exception {
+        JavaMailSender generic = mock(JavaMailSender.class);
+        SmtpTransportPool direct = pool(generic, true, 2);
+
+        try (SmtpTransportPool.Lease lease = direct.borrow()) {
+            lease.send(message());
+        }
+
+        assertFalse(direct.isPooling());
+        verify(generic).send(any(MimeMessage.class));
+    }
+
+    // ------ HELPER ------
+
+    private static SmtpTransportPool pool(JavaMailSender sender, boolean enabled, int size) {
+        SmtpTransportPool p = new SmtpTransportPool(sender);
+        ReflectionTestUtils.setField(p, "enabled", enabled);
+        ReflectionTestUtils.setField(p, "size", size);
+        ReflectionTestUtils.setField(p, "idleTimeoutSeconds", 60L);
+        p.init();
+        return p;
+    }
+
+    private static MimeMessage message() throws MessagingException {
+        MimeMessage m = new MimeMessage(Session.getInstance(new Properties()));
+        m.setFrom("noreply@adventure.it");
+        m.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("mario@adventure.it"));
+        m.setSubject("Prenotazione confermata");
+        m.setText("ok");
+        return m;
+    }
+}
@@ -0,0 +1,71 @@
+package com.lucamoretti.adventure_together.service.mail.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void startsFull() {
+        TokenBucket bucket = new TokenBucket(20, MINUTE, 0);
+
+        assertEquals(20, bucket.available(0, 0));
+        assertEquals(0, bucket.nanosUntilAvailable(0, 0));
+    }
+
+    @Test
+    void take_thenRefillsContinuously() {
+        TokenBucket bucket = new TokenBucket(20, MINUTE, 0);
+        bucket.take(20);
+
+        assertEquals(0, bucket.available(0, 0));
+        // 20 al minuto → un gettone ogni 3 secondi
+        assertEquals(TimeUnit.SECONDS.toNanos(3), bucket.nanosUntilAvailable(0, 0));
+        assertEquals(1, bucket.available(0, TimeUnit.SECONDS.toNanos(3)));
+        assertEquals(10, bucket.available(0, TimeUnit.SECONDS.toNanos(30)));
+    }
+
+    @Test
+    void refill_neverExceedsCapacity() {
+        TokenBucket bucket = new TokenBucket(20, MINUTE, 0);
+        bucket.take(5);
+
+        assertEquals(20, bucket.available(0, 10 * MINUTE));
+    }
+
+    @Test
+    void reserved_excludedFromAvailable() {
+        TokenBucket bucket = new TokenBucket(10, MINUTE, 0);
+        bucket.take(7);
+
+        assertEquals(3, bucket.available(0, 0));
+        assertEquals(0, bucket.available(5, 0));
+        // servono 3 gettoni in più (6 secondi ciascuno) per superare la riserva
+        assertEquals(TimeUnit.SECONDS.toNanos(18), bucket.nanosUntilAvailable(5, 0));
+    }
+
+    @Test
+    void restoredFromSavedState_refillsFromSavedInstant() {
+        TokenBucket bucket = new TokenBucket(20, MINUTE, 0);
+        bucket.take(15);
+
+        TokenBucket restored = new TokenBucket(20, MINUTE, bucket.tokens(), bucket.lastRefillNanos());
+
+        assertEquals(5, restored.available(0, 0));
+        assertEquals(15, restored.available(0, TimeUnit.SECONDS.toNanos(30)));
+        assertEquals(TimeUnit.SECONDS.toNanos(30), restored.lastRefillNanos());
+    }
+
+    @Test
+    void restoredFromSavedState_cappedAtCapacity() {
+        // quota ridotta nella configurazione dopo il salvataggio
+        TokenBucket restored = new TokenBucket(10, MINUTE, 50, 0);
+
+        assertEquals(10, restored.available(0, 0));
+    }
+}
@@ -3,6 +3,8 @@ package com.lucamoretti.adventure_together.service.payment;
 import com.lucamoretti.adventure_together.dto.payment.PaymentIntentDTO;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,9 +15,14 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 
 @ExtendWith(MockitoExtension.class)
@@ -147,4 +154,33 @@ class StripeClientTest {
 
         staticMock.close();
     }
+
+    // ---------------------------------------------------
+    // REFUND PAYMENT INTENT
+    // ---------------------------------------------------
+
+    @Test
+    void refundPaymentIntent_success_usesIdempotencyKey() {
+        Refund refund = new Refund();
+        refund.setId("re_1");
+
+        try (MockedStatic<Refund> staticMock = Mockito.mockStatic(Refund.class)) {
+            staticMock.when(() -> Refund.create(eq(Map.<String, Object>of("payment_intent", "pi_123")),
+                            argThat((RequestOptions o) -> "refund-pi_123".equals(o.getIdempotencyKey()))))
+                    .thenReturn(refund);
+
+            assertEquals("re_1", stripeClient.refundPaymentIntent("pi_123"));
+        }
+    }
+
+    @Test
+    void refundPaymentIntent_error_throws() {
+        try (MockedStatic<Refund> staticMock = Mockito.mockStatic(Refund.class)) {
+            staticMock.when(() -> Refund.create(anyMap(), any(RequestOptions.class)))
+                    .thenThrow(new StripeException("err", null, null, 400, null) {
+                    });
+
+            assertThrows(RuntimeException.class, () -> stripeClient.refundPaymentIntent("pi_123"));
+        }
+    }
 }
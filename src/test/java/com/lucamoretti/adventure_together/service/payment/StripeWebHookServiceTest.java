@@ -83,7 +83,7 @@ class StripeWebhookServiceTest {
     }
 
     @Test
-    void processEvent_failed_doesNotThrow() {
+    void processEvent_failed_releasesSeatHold() {
 
         PaymentIntent intent = new PaymentIntent();
         intent.setId("pi_failed");
@@ -92,7 +92,8 @@ class StripeWebhookServiceTest {
 
         assertDoesNotThrow(() -> service.processEvent(event));
 
-        verifyNoInteractions(bookingFinalizeService);
+        verify(bookingFinalizeService).releaseSeatHold(intent);
+        verify(bookingFinalizeService, never()).finalizeBooking(any());
     }
 
     @Test
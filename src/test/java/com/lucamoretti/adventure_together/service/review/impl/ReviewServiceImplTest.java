@@ -1,21 +1,32 @@
 package com.lucamoretti.adventure_together.service.review.impl;
 
+import com.lucamoretti.adventure_together.dto.mail.ReminderResultDTO;
+import com.lucamoretti.adventure_together.dto.review.ItineraryRatingDTO;
 import com.lucamoretti.adventure_together.dto.review.ReviewDTO;
 import com.lucamoretti.adventure_together.model.booking.Booking;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
+import com.lucamoretti.adventure_together.model.review.ItineraryRating;
 import com.lucamoretti.adventure_together.model.review.Review;
 import com.lucamoretti.adventure_together.model.trip.Trip;
 import com.lucamoretti.adventure_together.model.trip.TripItinerary;
 import com.lucamoretti.adventure_together.model.user.Traveler;
+import com.lucamoretti.adventure_together.repository.review.ItineraryRatingRepository;
 import com.lucamoretti.adventure_together.repository.review.ReviewRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.TravelerRepository;
 import com.lucamoretti.adventure_together.service.mail.EmailService;
+import com.lucamoretti.adventure_together.service.mail.MailRecipient;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -26,12 +37,20 @@ import static org.mockito.Mockito.*;
 class ReviewServiceImplTest {
 
     @Mock private ReviewRepository reviewRepository;
+    @Mock private ItineraryRatingRepository ratingRepository;
     @Mock private TripRepository tripRepository;
     @Mock private TravelerRepository travelerRepository;
     @Mock private EmailService emailService;
+    @Mock private ItineraryPageViewService pageViewService;
+    @Mock private PlatformTransactionManager transactionManager;
 
     @InjectMocks private ReviewServiceImpl reviewService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
     // ---------------------------------------------------------------------
     // CREATE REVIEW
     // ---------------------------------------------------------------------
@@ -43,9 +62,12 @@ class ReviewServiceImplTest {
         Long travelerId = 10L;
 
         // Trip concluso
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(3L);
         Trip trip = new Trip();
         trip.setId(tripId);
         trip.setDateReturn(LocalDate.now().minusDays(1));
+        trip.setTripItinerary(itinerary);
 
         // Traveler
         Traveler traveler = new Traveler();
@@ -67,13 +89,107 @@ class ReviewServiceImplTest {
         when(tripRepository.findById(tripId)).thenReturn(Optional.of(trip));
         when(travelerRepository.findById(travelerId)).thenReturn(Optional.of(traveler));
         when(reviewRepository.existsByTrip_IdAndTraveler_Id(tripId, travelerId)).thenReturn(false);
-        when(reviewRepository.save(any(Review.class))).thenReturn(savedEntity);
+        when(reviewRepository.saveAndFlush(any(Review.class))).thenReturn(savedEntity);
+        when(ratingRepository.addScore(3L, 5)).thenReturn(1);
 
         ReviewDTO result = reviewService.createReview(tripId, travelerId, dto);
 
         assertNotNull(result);
         assertEquals(99L, result.getId());
         assertEquals(5, result.getScore());
+        // aggregato dell'itinerario aggiornato nella stessa transazione
+        verify(ratingRepository).addScore(3L, 5);
+        verify(ratingRepository, never()).createFromReviews(any());
+        verify(pageViewService).evictAfterCommit(3L);
+    }
+
+    @Test
+    void createReview_firstReviewOfItinerary_countsExistingReviewsOnce() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(3L);
+        Trip trip = new Trip();
+        trip.setId(1L);
+        trip.setDateReturn(LocalDate.now().minusDays(1));
+        trip.setTripItinerary(itinerary);
+
+        Traveler traveler = new Traveler();
+        traveler.setId(10L);
+        Booking booking = new Booking();
+        booking.setTraveler(traveler);
+        trip.setBookings(Set.of(booking));
+
+        ReviewDTO dto = new ReviewDTO();
+        dto.setScore(4);
+        dto.setTextReview("Viaggio molto bello");
+
+        // recensioni dell'itinerario salvate prima che esistesse l'aggregato (es. prima del backfill all'avvio)
+        List<Integer> storedScores = new ArrayList<>(List.of(5, 3));
+        Map<Long, ItineraryRating> ratings = new HashMap<>();
+
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(travelerRepository.findById(10L)).thenReturn(Optional.of(traveler));
+        when(reviewRepository.saveAndFlush(any(Review.class))).thenAnswer(i -> {
+            storedScores.add(i.<Review>getArgument(0).getScore());
+            return i.getArgument(0);
+        });
+        // UPDATE atomica e INSERT IGNORE ... SELECT simulate su una mappa in memoria
+        when(ratingRepository.addScore(eq(3L), anyInt())).thenAnswer(i -> {
+            ItineraryRating rating = ratings.get(3L);
+            if (rating == null) return 0;
+            rating.addScore(i.getArgument(1));
+            return 1;
+        });
+        when(ratingRepository.createFromReviews(3L)).thenAnswer(i -> {
+            if (ratings.containsKey(3L)) return 0;
+            ItineraryRating rating = new ItineraryRating(3L);
+            storedScores.forEach(rating::addScore);
+            ratings.put(3L, rating);
+            return 1;
+        });
+
+        reviewService.createReview(1L, 10L, dto);
+
+        // recensioni esistenti e nuova recensione contate una sola volta
+        ItineraryRating rating = ratings.get(3L);
+        assertEquals(3, rating.getReviewCount());
+        assertEquals(12, rating.getScoreSum());
+        assertEquals(1, rating.getStars4());
+        verify(ratingRepository, times(1)).addScore(3L, 4);
+        verify(ratingRepository, never()).save(any());
+    }
+
+    @Test
+    void createReview_ratingCreatedConcurrently_addsScoreToThatRow() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(3L);
+        Trip trip = new Trip();
+        trip.setId(1L);
+        trip.setDateReturn(LocalDate.now().minusDays(1));
+        trip.setTripItinerary(itinerary);
+
+        Traveler traveler = new Traveler();
+        traveler.setId(10L);
+        Booking booking = new Booking();
+        booking.setTraveler(traveler);
+        trip.setBookings(Set.of(booking));
+
+        ReviewDTO dto = new ReviewDTO();
+        dto.setScore(4);
+        dto.setTextReview("Viaggio molto bello");
+
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(travelerRepository.findById(10L)).thenReturn(Optional.of(traveler));
+        when(reviewRepository.saveAndFlush(any(Review.class))).thenAnswer(i -> i.getArgument(0));
+        // la riga è stata creata da un'altra transazione, che non vede questa recensione: INSERT IGNORE senza effetto
+        when(ratingRepository.addScore(3L, 4)).thenReturn(0, 1);
+        when(ratingRepository.createFromReviews(3L)).thenReturn(0);
+
+        reviewService.createReview(1L, 10L, dto);
+
+        var inOrder = inOrder(ratingRepository);
+        inOrder.verify(ratingRepository).addScore(3L, 4);
+        inOrder.verify(ratingRepository).createFromReviews(3L);
+        inOrder.verify(ratingRepository).addScore(3L, 4);
     }
 
     @Test
@@ -181,29 +297,18 @@ class ReviewServiceImplTest {
     // ---------------------------------------------------------------------
     @Test
     void getPendingReviews_success() {
+        ReviewDTO pending = new ReviewDTO(1L, "Titolo", 10L);
 
-        Traveler t = new Traveler();
-        t.setId(10L);
-
-        Trip trip = new Trip();
-        trip.setId(1L);
-        trip.setDateReturn(LocalDate.now().minusDays(5));
-
-        Booking b = new Booking();
-        b.setTraveler(t);
-        trip.setBookings(Set.of(b));
-
-        TripItinerary ti = new TripItinerary();
-        ti.setTitle("Titolo");
-        trip.setTripItinerary(ti);
-
-        when(tripRepository.findAll()).thenReturn(List.of(trip));
-        when(reviewRepository.existsByTrip_IdAndTraveler_Id(1L, 10L)).thenReturn(false);
+        when(reviewRepository.findPendingByTravelerId(10L, LocalDate.now())).thenReturn(List.of(pending));
 
         List<ReviewDTO> result = reviewService.getPendingReviews(10L);
 
         assertEquals(1, result.size());
         assertEquals("Titolo", result.get(0).getTripTitle());
+        assertEquals(1L, result.get(0).getTripId());
+        // nessuna scansione dei viaggi né query per singolo viaggio
+        verifyNoInteractions(tripRepository);
+        verify(reviewRepository, never()).existsByTrip_IdAndTraveler_Id(any(), any());
     }
 
     // ---------------------------------------------------------------------
@@ -212,23 +317,81 @@ class ReviewServiceImplTest {
     @Test
     void sendReviewReminderEmails_success() {
 
-        Traveler t = new Traveler();
-        t.setId(10L);
-        t.setEmail("mail@test.com");
-
-        Booking b = new Booking();
-        b.setTraveler(t);
+        Traveler t = traveler(10L, "mail@test.com");
+        Traveler reviewer = traveler(11L, "reviewer@test.com");
 
         Trip trip = new Trip();
         trip.setId(99L);
         trip.setDateReturn(LocalDate.now().minusDays(3));
-        trip.setBookings(Set.of(b));
+        trip.setBookings(new LinkedHashSet<>(List.of(booking(t), booking(reviewer))));
+
+        when(tripRepository.findById(99L)).thenReturn(Optional.of(trip));
+        when(reviewRepository.findTravelerIdsByTripId(99L)).thenReturn(Set.of(11L));
+        when(emailService.sendBulkHtmlMessageOnce(any(), any(), any(), eq(99L), any(), any())).thenReturn(1);
+
+        ReminderResultDTO result = assertDoesNotThrow(() -> reviewService.sendReviewReminderEmails(List.of(99L)));
+        assertEquals(1, result.getTrips());
+        assertEquals(1, result.getQueued());
+        assertEquals(0, result.getFailed());
+        // chi ha già recensito viene escluso; il registro esclude chi ha già ricevuto il promemoria
+        verify(emailService, times(1)).sendBulkHtmlMessageOnce(
+                eq("Lascia una recensione per il tuo viaggio!"), eq("mail/review-reminder"), eq(Map.of("trip", trip)),
+                eq(99L), eq(List.of(new MailRecipient("mail@test.com", Map.of("traveler", t)))), eq(EmailPriority.LOW));
+        // il viaggio è elaborato in una transazione dedicata
+        verify(transactionManager).getTransaction(argThat(d ->
+                d.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager).commit(any());
+        verify(reviewRepository, never()).existsByTrip_IdAndTraveler_Id(any(), any());
+    }
+
+    @Test
+    void sendReviewReminderEmails_errorOnOneTrip_continuesWithTheOthers() {
+        Trip failing = new Trip();
+        failing.setId(1L);
+        failing.setBookings(Set.of(booking(traveler(10L, "a@test.com"))));
+        Trip ok = new Trip();
+        ok.setId(2L);
+        ok.setBookings(Set.of(booking(traveler(20L, "b@test.com"))));
+
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(failing));
+        when(tripRepository.findById(2L)).thenReturn(Optional.of(ok));
+        when(reviewRepository.findTravelerIdsByTripId(any())).thenReturn(Set.of());
+        when(emailService.sendBulkHtmlMessageOnce(any(), any(), any(), eq(1L), any(), any()))
+                .thenThrow(new RuntimeException("mail error"));
+        when(emailService.sendBulkHtmlMessageOnce(any(), any(), any(), eq(2L), any(), any())).thenReturn(1);
+
+        ReminderResultDTO result = assertDoesNotThrow(() -> reviewService.sendReviewReminderEmails(List.of(1L, 2L)));
+        verify(emailService).sendBulkHtmlMessageOnce(any(), any(), any(), eq(2L), any(), eq(EmailPriority.LOW));
+        assertEquals(2, result.getTrips());
+        assertEquals(1, result.getQueued());
+        assertEquals(1, result.getFailed());
+        // solo la transazione del viaggio in errore viene annullata, quella dell'altro viaggio è confermata
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void sendReviewReminderEmails_missingTrip_isSkipped() {
+        when(tripRepository.findById(5L)).thenReturn(Optional.empty());
+
+        ReminderResultDTO result = reviewService.sendReviewReminderEmails(List.of(5L));
 
-        when(tripRepository.findByDateReturnEquals(any())).thenReturn(List.of(trip));
-        when(reviewRepository.existsByTrip_IdAndTraveler_Id(99L, 10L)).thenReturn(false);
+        assertEquals(0, result.getTrips());
+        assertEquals(0, result.getFailed());
+        verifyNoInteractions(emailService);
+    }
+
+    private static Traveler traveler(Long id, String email) {
+        Traveler t = new Traveler();
+        t.setId(id);
+        t.setEmail(email);
+        return t;
+    }
 
-        assertDoesNotThrow(() -> reviewService.sendReviewReminderEmails());
-        verify(emailService, times(1)).sendHtmlMessage(any(), any(), any(), any());
+    private static Booking booking(Traveler traveler) {
+        Booking b = new Booking();
+        b.setTraveler(traveler);
+        return b;
     }
 
     // ---------------------------------------------------------------------
@@ -253,27 +416,70 @@ class ReviewServiceImplTest {
     // ---------------------------------------------------------------------
     @Test
     void getAverageScore_success() {
-        Review r1 = new Review();
-        r1.setScore(4);
-        Review r2 = new Review();
-        r2.setScore(2);
+        ItineraryRating rating = new ItineraryRating(3L);
+        rating.addScore(4);
+        rating.addScore(2);
 
-        when(reviewRepository.findAllByTripItinerary_Id(3L))
-                .thenReturn(List.of(r1, r2));
+        when(ratingRepository.findById(3L)).thenReturn(Optional.of(rating));
 
         Float avg = reviewService.getAverageScoreForTripItinerary(3L);
 
         assertEquals(3.0f, avg);
+        // la media non richiede di caricare le recensioni
+        verifyNoInteractions(reviewRepository);
     }
 
     @Test
     void getAverageScore_nullWhenEmpty() {
-        when(reviewRepository.findAllByTripItinerary_Id(3L))
-                .thenReturn(Collections.emptyList());
+        when(ratingRepository.findById(3L)).thenReturn(Optional.empty());
 
         assertNull(reviewService.getAverageScoreForTripItinerary(3L));
     }
 
+    // ---------------------------------------------------------------------
+    // RATING AGGREGATO
+    // ---------------------------------------------------------------------
+    @Test
+    void getRating_returnsDistribution() {
+        ItineraryRating rating = new ItineraryRating(3L);
+        rating.addScore(5);
+        rating.addScore(5);
+        rating.addScore(1);
+
+        when(ratingRepository.findById(3L)).thenReturn(Optional.of(rating));
+
+        ItineraryRatingDTO result = reviewService.getRatingForTripItinerary(3L);
+
+        assertEquals(3, result.getReviewCount());
+        assertEquals(11f / 3, result.getAverage());
+        assertEquals(List.of(1L, 0L, 0L, 0L, 2L), result.getStarCounts());
+        assertEquals(67, result.getPercentage(5));
+    }
+
+    @Test
+    void getRating_emptyWhenNoReviews() {
+        when(ratingRepository.findById(3L)).thenReturn(Optional.empty());
+
+        ItineraryRatingDTO result = reviewService.getRatingForTripItinerary(3L);
+
+        assertEquals(0, result.getReviewCount());
+        assertNull(result.getAverage());
+        assertEquals(0, result.getPercentage(5));
+    }
+
+    @Test
+    void backfillRatingAggregates_createsOnlyMissingRows() {
+        when(ratingRepository.backfillMissing()).thenReturn(2);
+
+        int created = reviewService.backfillRatingAggregates();
+
+        assertEquals(2, created);
+        verify(ratingRepository).backfillMissing();
+        // le righe esistenti non vengono mai cancellate o riscritte
+        verify(ratingRepository, never()).deleteAllInBatch();
+        verify(ratingRepository, never()).saveAll(any());
+    }
+
     // ---------------------------------------------------------------------
     // GET REVIEW BY TRIP + TRAVELER
     // ---------------------------------------------------------------------
@@ -0,0 +1,248 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.details.CountryDTO;
+import com.lucamoretti.adventure_together.dto.details.DepartureAirportDTO;
+import com.lucamoretti.adventure_together.dto.trip.ItineraryPageViewDTO;
+import com.lucamoretti.adventure_together.dto.trip.TripDTO;
+import com.lucamoretti.adventure_together.model.details.Country;
+import com.lucamoretti.adventure_together.model.details.DepartureAirport;
+import com.lucamoretti.adventure_together.model.review.ItineraryRating;
+import com.lucamoretti.adventure_together.model.review.Review;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.trip.TripItineraryDay;
+import com.lucamoretti.adventure_together.repository.review.ItineraryRatingRepository;
+import com.lucamoretti.adventure_together.repository.review.ReviewRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryDayRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItineraryPageViewServiceImplTest {
+
+    @Mock private TripItineraryRepository itineraryRepository;
+    @Mock private TripItineraryDayRepository dayRepository;
+    @Mock private TripRepository tripRepository;
+    @Mock private ReviewRepository reviewRepository;
+    @Mock private ItineraryRatingRepository ratingRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private ItineraryPageViewServiceImpl service;
+
+    private TripItinerary itinerary;
+    private Trip pastTrip;
+
+    @BeforeEach
+    void setup() {
+        service = new ItineraryPageViewServiceImpl(
+                itineraryRepository, dayRepository, tripRepository, reviewRepository, ratingRepository, transactionManager);
+        ReflectionTestUtils.setField(service, "ttl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "maxSize", 100);
+
+        itinerary = new TripItinerary();
+        itinerary.setId(12L);
+        itinerary.setTitle("Islanda Adventure");
+        itinerary.getCountries().add(country(6L, "Norvegia"));
+        itinerary.getCountries().add(country(5L, "Islanda"));
+        itinerary.getDepartureAirports().add(airport(3L, "MXP"));
+
+        pastTrip = new Trip();
+        pastTrip.setId(40L);
+        pastTrip.setTripItinerary(itinerary);
+    }
+
+    // ------ ASSEMBLAGGIO ------
+
+    @Test
+    void getPageView_assemblesAllSections() {
+        stubItinerary(List.of(review(1L, 4), review(2L, 5)));
+
+        ItineraryPageViewDTO view = service.getPageView(12L);
+
+        assertEquals(12L, view.getTripItinerary().getId());
+        // nazioni ordinate per id
+        assertEquals(List.of(5L, 6L), view.getCountries().stream().map(CountryDTO::getId).toList());
+        assertEquals(List.of("MXP"), view.getDepartureAirports().stream().map(DepartureAirportDTO::getCode).toList());
+        assertEquals(1, view.getItineraryDays().size());
+        assertEquals(12L, view.getItineraryDays().get(0).getTripItineraryId());
+        assertEquals(List.of(44L), view.getTrips().stream().map(TripDTO::getId).toList());
+        assertEquals(2, view.getReviews().size());
+        assertEquals("Islanda Adventure", view.getReviews().get(0).getTripTitle());
+        // media e distribuzione lette dall'aggregato
+        assertEquals(4.5F, view.getAverageRating());
+        assertEquals(List.of(0L, 0L, 0L, 1L, 1L), view.getRating().getStarCounts());
+    }
+
+    @Test
+    void getPageView_noReviews_averageIsNull() {
+        stubItinerary(List.of());
+
+        ItineraryPageViewDTO view = service.getPageView(12L);
+
+        assertTrue(view.getReviews().isEmpty());
+        assertNull(view.getAverageRating());
+        assertEquals(0, view.getRating().getReviewCount());
+    }
+
+    @Test
+    void getPageView_notFound_throws() {
+        when(itineraryRepository.findWithDetailsById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> service.getPageView(99L));
+        verifyNoInteractions(dayRepository, tripRepository, reviewRepository);
+    }
+
+    // ------ CACHE ------
+
+    @Test
+    void getPageView_cacheHit_noQueriesAndNoTransaction() {
+        stubItinerary(List.of());
+
+        ItineraryPageViewDTO first = service.getPageView(12L);
+        ItineraryPageViewDTO second = service.getPageView(12L);
+
+        assertSame(first, second);
+        verify(itineraryRepository, times(1)).findWithDetailsById(12L);
+        verify(reviewRepository, times(1)).findAllWithTripByTripItineraryId(12L);
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void evictAfterCommit_reloadsOnNextRead() {
+        stubItinerary(List.of());
+
+        ItineraryPageViewDTO first = service.getPageView(12L);
+        service.evictAfterCommit(12L);
+        ItineraryPageViewDTO second = service.getPageView(12L);
+
+        assertNotSame(first, second);
+        verify(itineraryRepository, times(2)).findWithDetailsById(12L);
+    }
+
+    @Test
+    void evictAfterCommit_otherItinerary_keepsEntry() {
+        stubItinerary(List.of());
+
+        ItineraryPageViewDTO first = service.getPageView(12L);
+        service.evictAfterCommit(13L);
+
+        assertSame(first, service.getPageView(12L));
+        verify(itineraryRepository, times(1)).findWithDetailsById(12L);
+    }
+
+    @Test
+    void evictAllAfterCommit_reloadsOnNextRead() {
+        stubItinerary(List.of());
+
+        service.getPageView(12L);
+        service.evictAllAfterCommit();
+        service.getPageView(12L);
+
+        verify(itineraryRepository, times(2)).findWithDetailsById(12L);
+    }
+
+    @Test
+    void getPageView_evictionDuringLoad_notCached() {
+        stubItinerary(List.of());
+        // invalidazione concorrente mentre il read model viene assemblato
+        when(tripRepository.findDtoOpenForBookingByItinerary(12L)).thenAnswer(inv -> {
+            service.evictAfterCommit(12L);
+            return List.of(TripDTO.builder().id(44L).tripItineraryId(12L).build());
+        });
+
+        service.getPageView(12L);
+        service.getPageView(12L);
+
+        verify(itineraryRepository, times(2)).findWithDetailsById(12L);
+    }
+
+    @Test
+    void getPageView_expiredEntry_reloads() {
+        // un altro nodo ha modificato i viaggi: senza invalidazione locale la voce scade dopo il ttl
+        ReflectionTestUtils.setField(service, "ttl", Duration.ZERO);
+        stubItinerary(List.of());
+
+        ItineraryPageViewDTO first = service.getPageView(12L);
+        ItineraryPageViewDTO second = service.getPageView(12L);
+
+        assertNotSame(first, second);
+        verify(itineraryRepository, times(2)).findWithDetailsById(12L);
+    }
+
+    @Test
+    void getPageView_cacheFull_removesOldestEntry() {
+        ReflectionTestUtils.setField(service, "maxSize", 1);
+        stubItinerary(List.of());
+        TripItinerary other = new TripItinerary();
+        other.setId(13L);
+        when(itineraryRepository.findWithDetailsById(13L)).thenReturn(Optional.of(other));
+
+        service.getPageView(12L);
+        service.getPageView(13L);
+        service.getPageView(12L);
+
+        // la voce dell'itinerario 12 è stata rimossa per far posto al 13
+        verify(itineraryRepository, times(2)).findWithDetailsById(12L);
+        verify(itineraryRepository, times(1)).findWithDetailsById(13L);
+    }
+
+    // ------ HELPER ------
+
+    private void stubItinerary(List<Review> reviews) {
+        TripItineraryDay day = new TripItineraryDay();
+        day.setId(99L);
+        day.setDayNumber(1);
+        day.setTitle("Arrivo a Reykjavik");
+        day.setTripItinerary(itinerary);
+
+        when(itineraryRepository.findWithDetailsById(12L)).thenReturn(Optional.of(itinerary));
+        when(dayRepository.findByTripItinerary_IdOrderByDayNumberAsc(12L)).thenReturn(List.of(day));
+        lenient().when(tripRepository.findDtoOpenForBookingByItinerary(12L))
+                .thenReturn(List.of(TripDTO.builder().id(44L).tripItineraryId(12L).build()));
+        when(reviewRepository.findAllWithTripByTripItineraryId(12L)).thenReturn(reviews);
+        if (reviews.isEmpty()) {
+            when(ratingRepository.findById(12L)).thenReturn(Optional.empty());
+        } else {
+            ItineraryRating rating = new ItineraryRating(12L);
+            reviews.forEach(r -> rating.addScore(r.getScore()));
+            when(ratingRepository.findById(12L)).thenReturn(Optional.of(rating));
+        }
+    }
+
+    private Review review(Long id, int score) {
+        Review r = new Review();
+        r.setId(id);
+        r.setScore(score);
+        r.setTrip(pastTrip);
+        return r;
+    }
+
+    private static Country country(Long id, String name) {
+        Country c = new Country();
+        c.setId(id);
+        c.setCountry(name);
+        return c;
+    }
+
+    private static DepartureAirport airport(Long id, String code) {
+        DepartureAirport a = new DepartureAirport();
+        a.setId(id);
+        a.setCode(code);
+        return a;
+    }
+}
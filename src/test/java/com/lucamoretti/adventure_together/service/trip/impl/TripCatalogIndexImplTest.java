@@ -0,0 +1,257 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.*;
+import com.lucamoretti.adventure_together.model.details.Category;
+import com.lucamoretti.adventure_together.model.details.Country;
+import com.lucamoretti.adventure_together.model.details.DepartureAirport;
+import com.lucamoretti.adventure_together.model.details.GeoArea;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripCatalogIndexImplTest {
+
+    @Mock
+    private TripRepository tripRepository;
+    @Mock
+    private TripItineraryRepository itineraryRepository;
+
+    @InjectMocks
+    private TripCatalogIndexImpl index;
+
+    private final GeoArea europe = geoArea(1L, "Europa");
+    private final Category nature = category(10L, "Natura");
+    private final Category sea = category(11L, "Mare");
+    private final DepartureAirport mxp = airport(20L, "Malpensa", "MXP");
+
+    private TripItinerary iceland;   // Natura + Mare, 8 giorni
+    private TripItinerary norway;    // Natura, 5 giorni
+
+    @BeforeEach
+    void setup() {
+        iceland = itinerary(1L, "Islanda", 8, Set.of(nature, sea), country(100L, "Islanda"));
+        norway = itinerary(2L, "Norvegia", 5, Set.of(nature), country(101L, "Norvegia"));
+
+        lenient().when(itineraryRepository.findAllForCatalogIndex()).thenReturn(List.of(iceland, norway));
+        lenient().when(tripRepository.findDtoBookable(any())).thenReturn(List.of(
+                trip(1000L, 1L, 1500, LocalDate.of(2030, 7, 10)),
+                trip(1001L, 1L, 2500, LocalDate.of(2030, 8, 10)),
+                trip(1002L, 2L, 900, LocalDate.of(2030, 7, 20))));
+    }
+
+    // ------ FILTRI ------
+
+    @Test
+    void search_noFilter_returnsAllItineraries() {
+        CatalogResultDTO result = index.search(new CatalogFilterDTO());
+
+        assertEquals(3, result.getMatchingTrips());
+        assertEquals(List.of("Islanda", "Norvegia"), result.getItems().stream().map(CatalogItemDTO::getTitle).toList());
+
+        CatalogItemDTO first = result.getItems().get(0);
+        assertEquals(2, first.getMatchingTrips());
+        assertEquals(1500, first.getMinPrice());
+        assertEquals(LocalDate.of(2030, 7, 10), first.getNextDeparture());
+    }
+
+    @Test
+    void search_multipleCategories_useAndSemantics() {
+        CatalogFilterDTO filter = CatalogFilterDTO.builder().categoryIds(List.of(10L, 11L)).build();
+
+        CatalogResultDTO result = index.search(filter);
+
+        assertEquals(List.of(1L), result.getItems().stream().map(CatalogItemDTO::getItineraryId).toList());
+        assertEquals(2, result.getMatchingTrips());
+    }
+
+    @Test
+    void search_combinesItineraryAndTripFacets() {
+        CatalogFilterDTO filter = CatalogFilterDTO.builder()
+                .geoAreaIds(List.of(1L))
+                .departureAirportIds(List.of(20L))
+                .departureMonth("2030-07")
+                .priceRange("1000-2000")
+                .build();
+
+        CatalogResultDTO result = index.search(filter);
+
+        assertEquals(1, result.getMatchingTrips());
+        assertEquals(1L, result.getItems().get(0).getItineraryId());
+    }
+
+    @Test
+    void search_unknownValue_returnsNothing() {
+        CatalogResultDTO result = index.search(CatalogFilterDTO.builder().countryIds(List.of(999L)).build());
+
+        assertEquals(0, result.getMatchingTrips());
+        assertTrue(result.getItems().isEmpty());
+    }
+
+    // ------ CONTEGGI DELLE FACCETTE ------
+
+    @Test
+    void search_facetCounts_followCurrentSelection() {
+        CatalogResultDTO result = index.search(CatalogFilterDTO.builder().categoryIds(List.of(11L)).build());
+
+        // faccetta multipla: conteggi calcolati sul risultato (solo viaggi Islanda)
+        Map<String, Integer> categories = counts(result, TripCatalogIndexImpl.CATEGORY);
+        assertEquals(Map.of("10", 2, "11", 2), categories);
+        assertTrue(result.getFacets().get(TripCatalogIndexImpl.CATEGORY).stream()
+                .anyMatch(v -> v.getValue().equals("11") && v.isSelected()));
+    }
+
+    @Test
+    void search_singleValueFacet_countsIgnoreOwnSelection() {
+        CatalogResultDTO result = index.search(CatalogFilterDTO.builder().priceRange("0-1000").build());
+
+        assertEquals(1, result.getMatchingTrips());
+        // tutte le fasce restano visibili con i conteggi calcolati senza il filtro di prezzo
+        assertEquals(Map.of("0-1000", 1, "1000-2000", 1, "2000-3000", 1), counts(result, TripCatalogIndexImpl.PRICE));
+        assertEquals(List.of("0-1000", "1000-2000", "2000-3000"),
+                result.getFacets().get(TripCatalogIndexImpl.PRICE).stream().map(FacetValueDTO::getValue).toList());
+    }
+
+    @Test
+    void search_durationAndMonthFacets() {
+        CatalogResultDTO result = index.search(new CatalogFilterDTO());
+
+        assertEquals(Map.of("1-8", 1, "8-15", 2), counts(result, TripCatalogIndexImpl.DURATION));
+        assertEquals(Map.of("2030-07", 2, "2030-08", 1), counts(result, TripCatalogIndexImpl.MONTH));
+        assertEquals("luglio 2030", result.getFacets().get(TripCatalogIndexImpl.MONTH).get(0).getLabel());
+    }
+
+    // ------ AGGIORNAMENTI INCREMENTALI ------
+
+    @Test
+    void refreshTrip_notBookableAnymore_removedFromIndex() {
+        index.search(new CatalogFilterDTO());
+        when(tripRepository.findDtoBookableById(eq(1002L), any())).thenReturn(Optional.empty());
+
+        index.refreshTripAfterCommit(1002L);
+
+        CatalogResultDTO result = index.search(new CatalogFilterDTO());
+        assertEquals(2, result.getMatchingTrips());
+        assertEquals(List.of(1L), result.getItems().stream().map(CatalogItemDTO::getItineraryId).toList());
+        // il valore rimasto senza viaggi sparisce dalla faccetta
+        assertFalse(counts(result, TripCatalogIndexImpl.PRICE).containsKey("0-1000"));
+    }
+
+    @Test
+    void refreshTrip_newTrip_addedAndRowReused() {
+        index.search(new CatalogFilterDTO());
+        when(tripRepository.findDtoBookableById(eq(1002L), any())).thenReturn(Optional.empty());
+        index.refreshTripAfterCommit(1002L);
+
+        when(tripRepository.findDtoBookableById(eq(1003L), any()))
+                .thenReturn(Optional.of(trip(1003L, 2L, 3500, LocalDate.of(2030, 9, 1))));
+        when(itineraryRepository.findWithDetailsById(2L)).thenReturn(Optional.of(norway));
+        index.refreshTripAfterCommit(1003L);
+
+        CatalogResultDTO result = index.search(CatalogFilterDTO.builder().priceRange("3000-").build());
+        assertEquals(1, result.getMatchingTrips());
+        assertEquals(2L, result.getItems().get(0).getItineraryId());
+    }
+
+    @Test
+    void refreshItinerary_updatesFacetsOfItsTrips() {
+        index.search(new CatalogFilterDTO());
+        norway.setCategories(new LinkedHashSet<>(Set.of(sea)));
+        when(itineraryRepository.findWithDetailsById(2L)).thenReturn(Optional.of(norway));
+        when(tripRepository.findDtoBookableByItinerary(eq(2L), any()))
+                .thenReturn(List.of(trip(1002L, 2L, 900, LocalDate.of(2030, 7, 20))));
+
+        index.refreshItineraryAfterCommit(2L);
+
+        CatalogResultDTO result = index.search(CatalogFilterDTO.builder().categoryIds(List.of(10L)).build());
+        assertEquals(List.of(1L), result.getItems().stream().map(CatalogItemDTO::getItineraryId).toList());
+        assertEquals(3, index.search(new CatalogFilterDTO()).getMatchingTrips());
+    }
+
+    @Test
+    void refresh_beforeFirstSearch_isSkipped() {
+        index.refreshTripAfterCommit(1000L);
+
+        verifyNoInteractions(tripRepository, itineraryRepository);
+    }
+
+    @Test
+    void search_buildsIndexOnlyOnce() {
+        index.search(new CatalogFilterDTO());
+        index.search(new CatalogFilterDTO());
+
+        verify(tripRepository, times(1)).findDtoBookable(any());
+    }
+
+    // metodi di supporto
+
+    private static Map<String, Integer> counts(CatalogResultDTO result, String facet) {
+        Map<String, Integer> counts = new HashMap<>();
+        result.getFacets().get(facet).forEach(v -> counts.put(v.getValue(), v.getCount()));
+        return counts;
+    }
+
+    private TripItinerary itinerary(Long id, String title, int days, Set<Category> categories, Country country) {
+        TripItinerary it = new TripItinerary();
+        it.setId(id);
+        it.setTitle(title);
+        it.setDurationInDays(days);
+        it.setCategories(new LinkedHashSet<>(categories));
+        it.setCountries(new LinkedHashSet<>(Set.of(country)));
+        it.setDepartureAirports(new LinkedHashSet<>(Set.of(mxp)));
+        return it;
+    }
+
+    private static TripDTO trip(Long id, Long itineraryId, double price, LocalDate departure) {
+        return TripDTO.builder()
+                .id(id)
+                .tripItineraryId(itineraryId)
+                .tripIndividualCost(price)
+                .dateDeparture(departure)
+                .build();
+    }
+
+    private Country country(Long id, String name) {
+        Country c = new Country();
+        c.setId(id);
+        c.setCountry(name);
+        c.setGeoArea(europe);
+        return c;
+    }
+
+    private static GeoArea geoArea(Long id, String name) {
+        GeoArea g = new GeoArea();
+        g.setId(id);
+        g.setGeoArea(name);
+        return g;
+    }
+
+    private static Category category(Long id, String name) {
+        Category c = new Category();
+        c.setId(id);
+        c.setName(name);
+        return c;
+    }
+
+    private static DepartureAirport airport(Long id, String name, String code) {
+        DepartureAirport a = new DepartureAirport();
+        a.setId(id);
+        a.setName(name);
+        a.setCode(code);
+        return a;
+    }
+}
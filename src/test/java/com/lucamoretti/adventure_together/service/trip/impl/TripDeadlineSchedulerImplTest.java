@@ -0,0 +1,209 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripDeadlineDTO;
+import com.lucamoretti.adventure_together.event.TripStateChanged;
+import com.lucamoretti.adventure_together.model.trip.Trip;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.model.trip.state.ConfirmedClosed;
+import com.lucamoretti.adventure_together.model.trip.state.ConfirmedOpen;
+import com.lucamoretti.adventure_together.model.trip.state.ExpiredClosed;
+import com.lucamoretti.adventure_together.model.trip.state.ToBeConfirmed;
+import com.lucamoretti.adventure_together.model.trip.state.TripState;
+import com.lucamoretti.adventure_together.repository.trip.TripRepository;
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripDeadlineSchedulerImplTest {
+
+    @Mock private TripRepository tripRepository;
+    @Mock private TripCatalogIndex catalogIndex;
+    @Mock private ItineraryPageViewService pageViewService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private TripDeadlineSchedulerImpl scheduler;
+
+    @BeforeEach
+    void setup() {
+        scheduler = new TripDeadlineSchedulerImpl(tripRepository, catalogIndex, pageViewService, transactionManager);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "tick", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(scheduler, "wheelSize", 60);
+        ReflectionTestUtils.setField(scheduler, "spreadMinutes", 30L);
+        scheduler.init();
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private Trip trip(long id, LocalDate dateEndBookings, int seats, TripState state) {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(7L);
+        itinerary.setMinParticipants(3);
+        itinerary.setMaxParticipants(10);
+        Trip trip = new Trip();
+        trip.setId(id);
+        trip.setTripItinerary(itinerary);
+        trip.setDateEndBookings(dateEndBookings);
+        trip.setState(state);
+        ReflectionTestUtils.setField(trip, "seatsBooked", seats);
+        return trip;
+    }
+
+    @Test
+    void delayUntilDeadline_startOfNextDayPlusTripOffset() {
+        ZoneId zone = ZoneId.of("Europe/Rome");
+        ZonedDateTime now = ZonedDateTime.of(2026, 7, 1, 22, 0, 0, 0, zone);
+
+        Duration delay = scheduler.delayUntilDeadline(5L, LocalDate.of(2026, 7, 1), now);
+
+        assertEquals(Duration.ofHours(2).plus(scheduler.spreadOffset(5L)), delay);
+    }
+
+    @Test
+    void delayUntilDeadline_pastDeadline_isNegative() {
+        ZonedDateTime now = ZonedDateTime.of(2026, 7, 10, 9, 0, 0, 0, ZoneId.of("Europe/Rome"));
+
+        assertTrue(scheduler.delayUntilDeadline(5L, LocalDate.of(2026, 7, 1), now).isNegative());
+    }
+
+    @Test
+    void spreadOffset_withinWindowAndSpreadAcrossTrips() {
+        List<Duration> offsets = LongStream.rangeClosed(1, 100).mapToObj(scheduler::spreadOffset).toList();
+
+        assertTrue(offsets.stream().allMatch(o -> !o.isNegative() && o.compareTo(Duration.ofMinutes(30)) < 0));
+        assertEquals(offsets, LongStream.rangeClosed(1, 100).mapToObj(scheduler::spreadOffset).toList());
+        // id consecutivi non finiscono nello stesso minuto
+        assertTrue(offsets.stream().map(Duration::toMinutes).distinct().count() > 20);
+    }
+
+    @Test
+    void spreadOffset_disabled_isZero() {
+        ReflectionTestUtils.setField(scheduler, "spreadMinutes", 0L);
+
+        assertEquals(Duration.ZERO, scheduler.spreadOffset(42L));
+    }
+
+    @Test
+    void loadUpcoming_readsWithKeysetCursorAndSchedulesEachTrip() {
+        List<TripDeadlineDTO> first = LongStream.rangeClosed(1, 500)
+                .mapToObj(id -> new TripDeadlineDTO(id, LocalDate.now().plusDays(3)))
+                .toList();
+        List<TripDeadlineDTO> second = List.of(new TripDeadlineDTO(501L, LocalDate.now().plusDays(4)));
+        when(tripRepository.findDeadlinesAfter(eq(LocalDate.now()), eq(0L), any(Limit.class))).thenReturn(first);
+        when(tripRepository.findDeadlinesAfter(eq(LocalDate.now()), eq(500L), any(Limit.class))).thenReturn(second);
+
+        assertEquals(501, scheduler.loadUpcoming());
+        assertEquals(501, scheduler.getPendingCount());
+    }
+
+    @Test
+    void scheduleAndCancel_withoutTransaction_applyImmediately() {
+        scheduler.scheduleAfterCommit(9L, LocalDate.now().plusDays(10));
+        assertEquals(1, scheduler.getPendingCount());
+
+        scheduler.cancelAfterCommit(9L);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void scheduleAfterCommit_disabled_doesNothing() {
+        ReflectionTestUtils.setField(scheduler, "enabled", false);
+
+        scheduler.scheduleAfterCommit(9L, LocalDate.now().plusDays(10));
+
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void fire_bookingsClosedBelowMinimum_expiresTrip() {
+        Trip trip = trip(3L, LocalDate.now().minusDays(1), 1, new ToBeConfirmed());
+        when(tripRepository.findByIdForUpdate(3L)).thenReturn(Optional.of(trip));
+
+        scheduler.fire(3L);
+
+        assertInstanceOf(ExpiredClosed.class, trip.getState());
+        verify(tripRepository).save(trip);
+        verify(catalogIndex).refreshTripAfterCommit(3L);
+        verify(pageViewService).evictAfterCommit(7L);
+        assertEquals(List.of(3L), trip.domainEvents().stream().map(TripStateChanged::tripId).toList());
+    }
+
+    @Test
+    void fire_confirmedOpenAfterDeadline_closesTrip() {
+        Trip trip = trip(4L, LocalDate.now().minusDays(1), 5, new ConfirmedOpen());
+        when(tripRepository.findByIdForUpdate(4L)).thenReturn(Optional.of(trip));
+
+        scheduler.fire(4L);
+
+        assertInstanceOf(ConfirmedClosed.class, trip.getState());
+        verify(tripRepository).save(trip);
+    }
+
+    @Test
+    void fire_tripNoLongerOpen_isNoOp() {
+        Trip trip = trip(5L, LocalDate.now().minusDays(1), 10, new ConfirmedClosed());
+        when(tripRepository.findByIdForUpdate(5L)).thenReturn(Optional.of(trip));
+
+        scheduler.fire(5L);
+
+        verify(tripRepository, never()).save(any());
+        verifyNoInteractions(catalogIndex, pageViewService);
+    }
+
+    @Test
+    void fire_deadlineNotYetReached_leavesTripUnchanged() {
+        Trip trip = trip(6L, LocalDate.now(), 1, new ToBeConfirmed());
+        when(tripRepository.findByIdForUpdate(6L)).thenReturn(Optional.of(trip));
+
+        scheduler.fire(6L);
+
+        assertInstanceOf(ToBeConfirmed.class, trip.getState());
+        verify(tripRepository, never()).save(any());
+    }
+
+    @Test
+    void fire_error_isLoggedAndRolledBack() {
+        when(tripRepository.findByIdForUpdate(8L)).thenThrow(new IllegalStateException("db down"));
+
+        assertDoesNotThrow(() -> scheduler.fire(8L));
+
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(catalogIndex);
+    }
+
+    @Test
+    void fire_missingTrip_isNoOp() {
+        when(tripRepository.findByIdForUpdate(99L)).thenReturn(Optional.empty());
+
+        scheduler.fire(99L);
+
+        verify(tripRepository, never()).save(any());
+    }
+}
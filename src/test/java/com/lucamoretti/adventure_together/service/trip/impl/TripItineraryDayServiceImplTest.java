@@ -1,5 +1,6 @@
 package com.lucamoretti.adventure_together.service.trip.impl;
 
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.model.trip.TripItineraryDay;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDayDTO;
@@ -24,6 +25,7 @@ class TripItineraryDayServiceImplTest {
 
     @Mock private TripItineraryDayRepository dayRepository;
     @Mock private TripItineraryRepository itineraryRepository;
+    @Mock private ItineraryPageViewService pageViewService;
 
     @InjectMocks
     private TripItineraryDayServiceImpl service;
@@ -64,6 +66,7 @@ class TripItineraryDayServiceImplTest {
         assertEquals(10L, result.getId());
         assertEquals(1, result.getDayNumber());
         verify(dayRepository).save(any());
+        verify(pageViewService).evictAfterCommit(itineraryId);
     }
 
     @Test
@@ -149,14 +152,18 @@ class TripItineraryDayServiceImplTest {
 
     @Test
     void deleteDay_success() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(10L);
         TripItineraryDay existing = new TripItineraryDay();
         existing.setId(50L);
+        existing.setTripItinerary(itinerary);
 
         when(dayRepository.findById(50L)).thenReturn(Optional.of(existing));
 
         service.deleteDay(50L);
 
         verify(dayRepository).delete(existing);
+        verify(pageViewService).evictAfterCommit(10L);
     }
 
     @Test
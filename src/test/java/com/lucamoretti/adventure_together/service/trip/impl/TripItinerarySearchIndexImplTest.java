@@ -0,0 +1,151 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.model.details.Category;
+import com.lucamoretti.adventure_together.model.details.Country;
+import com.lucamoretti.adventure_together.model.trip.TripItinerary;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripItinerarySearchIndexImplTest {
+
+    @Mock
+    private TripItineraryRepository itineraryRepository;
+
+    @InjectMocks
+    private TripItinerarySearchIndexImpl index;
+
+    private TripItinerary iceland;
+    private TripItinerary norway;
+
+    @BeforeEach
+    void setup() {
+        iceland = itinerary(1L, "Giro dell'Islanda", "<p>Ghiacciai, geyser e cascate</p>", "Islanda", "Natura");
+        norway = itinerary(2L, "Fiordi norvegesi", "<p>Crociera tra i fiordi</p>", "Norvegia", "Mare");
+        lenient().when(itineraryRepository.findAllForSearchIndex()).thenReturn(List.of(iceland, norway));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ------ RICERCA ------
+
+    @Test
+    void suggest_prefix_matchesTitle() {
+        List<TripItineraryTitleDTO> result = index.suggest("isl", 5);
+
+        assertEquals(1, result.size());
+        assertEquals(1L, result.get(0).getId());
+        assertEquals("Giro dell'Islanda", result.get(0).getTitle());
+    }
+
+    @Test
+    void suggest_typo_matchesFuzzy() {
+        List<TripItineraryTitleDTO> result = index.suggest("fiodri", 5);
+
+        assertEquals(List.of(2L), result.stream().map(TripItineraryTitleDTO::getId).toList());
+    }
+
+    @Test
+    void suggest_matchesDescriptionCountryAndCategory() {
+        assertEquals(1L, index.suggest("geyser", 5).get(0).getId());
+        assertEquals(2L, index.suggest("norvegia", 5).get(0).getId());
+        assertEquals(1L, index.suggest("natura", 5).get(0).getId());
+    }
+
+    @Test
+    void suggest_allWordsMustMatch() {
+        assertEquals(1, index.suggest("islanda cascate", 5).size());
+        assertTrue(index.suggest("islanda crociera", 5).isEmpty());
+    }
+
+    @Test
+    void suggest_titleRanksAboveDescription() {
+        TripItinerary other = itinerary(3L, "Capo Nord", "<p>Dopo i fiordi si sale verso nord</p>", "Norvegia", "Avventura");
+        when(itineraryRepository.findAllForSearchIndex()).thenReturn(List.of(iceland, norway, other));
+
+        List<TripItineraryTitleDTO> result = index.suggest("fiordi", 5);
+
+        assertEquals(List.of(2L, 3L), result.stream().map(TripItineraryTitleDTO::getId).toList());
+    }
+
+    @Test
+    void suggest_blankQuery_doesNotLoadIndex() {
+        assertTrue(index.suggest("  ", 5).isEmpty());
+        verifyNoInteractions(itineraryRepository);
+    }
+
+    @Test
+    void suggest_buildsIndexOnlyOnce() {
+        index.suggest("isl", 5);
+        index.suggest("fiordi", 5);
+
+        verify(itineraryRepository, times(1)).findAllForSearchIndex();
+    }
+
+    // ------ AGGIORNAMENTO INCREMENTALE ------
+
+    @Test
+    void indexAfterCommit_updateReplacesOldTerms() {
+        index.suggest("isl", 5);
+
+        iceland.setTitle("Terra dei vulcani");
+        index.indexAfterCommit(iceland);
+
+        assertEquals("Terra dei vulcani", index.suggest("vulcani", 5).get(0).getTitle());
+        // il vecchio titolo non è più indicizzato, ma la nazione sì
+        assertTrue(index.suggest("giro", 5).isEmpty());
+        assertEquals(1L, index.suggest("islanda", 5).get(0).getId());
+    }
+
+    @Test
+    void indexAfterCommit_withTransaction_appliedOnlyAfterCommit() {
+        index.suggest("isl", 5);
+        TransactionSynchronizationManager.initSynchronization();
+
+        TripItinerary peru = itinerary(4L, "Perù andino", "<p>Machu Picchu</p>", "Perù", "Cultura");
+        index.indexAfterCommit(peru);
+        assertTrue(index.suggest("machu", 5).isEmpty());
+
+        // simulazione del commit
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        assertEquals(4L, index.suggest("machu", 5).get(0).getId());
+    }
+
+    // metodo di supporto per costruire un itinerario con una nazione e una categoria
+    private static TripItinerary itinerary(Long id, String title, String description, String countryName, String categoryName) {
+        TripItinerary it = new TripItinerary();
+        it.setId(id);
+        it.setTitle(title);
+        it.setDescription(description);
+        Country country = new Country();
+        country.setCountry(countryName);
+        Category category = new Category();
+        category.setName(categoryName);
+        it.setCountries(new LinkedHashSet<>(Set.of(country)));
+        it.setCategories(new LinkedHashSet<>(Set.of(category)));
+        return it;
+    }
+}
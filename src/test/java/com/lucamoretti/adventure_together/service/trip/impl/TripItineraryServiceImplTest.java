@@ -1,5 +1,6 @@
 package com.lucamoretti.adventure_together.service.trip.impl;
 
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDayDTO;
 import com.lucamoretti.adventure_together.model.details.Category;
@@ -13,12 +14,17 @@ import com.lucamoretti.adventure_together.repository.details.CountryRepository;
 import com.lucamoretti.adventure_together.repository.details.DepartureAirportRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
 import com.lucamoretti.adventure_together.repository.user.PlannerRepository;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripItinerarySearchIndex;
+import com.lucamoretti.adventure_together.service.trip.TripItineraryTitleIndex;
 import com.lucamoretti.adventure_together.service.user.UserService;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.FileStorageException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
 import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Limit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -45,6 +51,10 @@ class TripItineraryServiceImplTest {
     @Mock private DepartureAirportRepository airportRepository;
     @Mock private UserService userService;
     @Mock private EntityManager entityManager;
+    @Mock private TripItineraryTitleIndex titleIndex;
+    @Mock private TripItinerarySearchIndex searchIndex;
+    @Mock private TripCatalogIndex catalogIndex;
+    @Mock private ItineraryPageViewService pageViewService;
 
     @InjectMocks
     private TripItineraryServiceImpl service;
@@ -110,6 +120,8 @@ class TripItineraryServiceImplTest {
         assertNotNull(result);
         assertEquals(99L, result.getId());
         verify(itineraryRepository).save(any());
+        verify(titleIndex).refreshAfterCommit();
+        verify(searchIndex).indexAfterCommit(any(TripItinerary.class));
     }
 
     @Test
@@ -119,6 +131,7 @@ class TripItineraryServiceImplTest {
 
         assertThrows(DuplicateResourceException.class,
                 () -> service.createItinerary(dto));
+        verifyNoInteractions(titleIndex, searchIndex);
     }
 
     @Test
@@ -251,6 +264,9 @@ class TripItineraryServiceImplTest {
         assertNotNull(result);
         verify(entityManager).flush();
         assertEquals(2, existing.getDays().size());
+        verify(catalogIndex).refreshItineraryAfterCommit(10L);
+        verify(titleIndex).refreshAfterCommit();
+        verify(searchIndex).indexAfterCommit(any(TripItinerary.class));
     }
 
 
@@ -274,38 +290,60 @@ class TripItineraryServiceImplTest {
 
     @Test
     void getAll_ok() {
-        when(itineraryRepository.findAll()).thenReturn(List.of(new TripItinerary()));
-        assertEquals(1, service.getAll().size());
+        when(itineraryRepository.findDtoPage(0L, Limit.of(21))).thenReturn(List.of(new TripItineraryDTO()));
+        KeysetPage<TripItineraryDTO> page = service.getAll(null, 20);
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+        verify(itineraryRepository, never()).findAll();
+    }
+
+    @Test
+    void getAll_fullPage_nextCursorIsLastId() {
+        TripItineraryDTO a = TripItineraryDTO.builder().id(4L).build();
+        TripItineraryDTO b = TripItineraryDTO.builder().id(9L).build();
+        TripItineraryDTO c = TripItineraryDTO.builder().id(12L).build();
+        when(itineraryRepository.findDtoPage(3L, Limit.of(3))).thenReturn(List.of(a, b, c));
+
+        KeysetPage<TripItineraryDTO> page = service.getAll("3", 2);
+
+        assertEquals(List.of(a, b), page.getItems());
+        assertEquals("9", page.getNextCursor());
+    }
+
+    @Test
+    void getAll_sizeIsClamped() {
+        when(itineraryRepository.findDtoPage(0L, Limit.of(KeysetPage.MAX_SIZE + 1))).thenReturn(List.of());
+        assertTrue(service.getAll(null, 10_000).isEmpty());
     }
 
     @Test
     void getByPlannerId_ok() {
-        when(itineraryRepository.findByPlannerId(1L)).thenReturn(List.of(new TripItinerary()));
-        assertEquals(1, service.getByPlannerId(1L).size());
+        when(itineraryRepository.findDtoPageByPlannerId(1L, 0L, Limit.of(21))).thenReturn(List.of(new TripItineraryDTO()));
+        assertEquals(1, service.getByPlannerId(1L, null, 20).getItems().size());
     }
 
     @Test
     void getAllByCountry_ok() {
-        when(itineraryRepository.findByCountry(10L)).thenReturn(List.of(new TripItinerary()));
+        when(itineraryRepository.findDtoByCountry(10L)).thenReturn(List.of(new TripItineraryDTO()));
         assertEquals(1, service.getAllByCountryId(10L).size());
     }
 
     @Test
     void getAllByGeoArea_ok() {
-        when(itineraryRepository.findByGeoArea(5L)).thenReturn(List.of(new TripItinerary()));
+        when(itineraryRepository.findDtoByGeoArea(5L)).thenReturn(List.of(new TripItineraryDTO()));
         assertEquals(1, service.getAllByGeoAreaId(5L).size());
     }
 
     @Test
     void getAllByCategory_ok() {
-        when(itineraryRepository.findByCategory(20L)).thenReturn(List.of(new TripItinerary()));
+        when(itineraryRepository.findDtoByCategory(20L)).thenReturn(List.of(new TripItineraryDTO()));
         assertEquals(1, service.getAllByCategoryId(20L).size());
     }
 
     @Test
     void getAllByCategoryIds_ok() {
-        when(itineraryRepository.findByCategories(List.of(1L,2L)))
-                .thenReturn(List.of(new TripItinerary()));
-        assertEquals(1, service.getAllByCategoryIds(List.of(1L,2L)).size());
+        when(itineraryRepository.findDtoPageByCategories(List.of(1L,2L), 5L, Limit.of(21)))
+                .thenReturn(List.of(new TripItineraryDTO()));
+        assertEquals(1, service.getAllByCategoryIds(List.of(1L,2L), "5", 20).getItems().size());
     }
 }
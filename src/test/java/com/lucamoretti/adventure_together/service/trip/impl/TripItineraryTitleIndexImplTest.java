@@ -0,0 +1,102 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripItineraryTitleDTO;
+import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripItineraryTitleIndexImplTest {
+
+    @Mock
+    private TripItineraryRepository itineraryRepository;
+
+    @InjectMocks
+    private TripItineraryTitleIndexImpl index;
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ------ LETTURA ------
+
+    @Test
+    void getTitles_firstReadBuildsSnapshotOnce() {
+        when(itineraryRepository.findAllTitles())
+                .thenReturn(List.of(new TripItineraryTitleDTO(1L, "Islanda")));
+
+        List<TripItineraryTitleDTO> first = index.getTitles();
+        List<TripItineraryTitleDTO> second = index.getTitles();
+
+        assertEquals(1, first.size());
+        assertSame(first, second);
+        assertEquals(1, index.getVersion());
+        verify(itineraryRepository, times(1)).findAllTitles();
+    }
+
+    @Test
+    void getTitles_snapshotIsImmutable() {
+        when(itineraryRepository.findAllTitles())
+                .thenReturn(List.of(new TripItineraryTitleDTO(1L, "Islanda")));
+
+        List<TripItineraryTitleDTO> titles = index.getTitles();
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> titles.add(new TripItineraryTitleDTO(2L, "Norvegia")));
+    }
+
+    // ------ RICOSTRUZIONE ------
+
+    @Test
+    void refresh_publishesNewVersion() {
+        when(itineraryRepository.findAllTitles())
+                .thenReturn(List.of(new TripItineraryTitleDTO(1L, "Islanda")))
+                .thenReturn(List.of(new TripItineraryTitleDTO(1L, "Islanda"),
+                        new TripItineraryTitleDTO(2L, "Norvegia")));
+
+        index.getTitles();
+        index.refresh();
+
+        assertEquals(2, index.getVersion());
+        assertEquals(2, index.getTitles().size());
+    }
+
+    @Test
+    void refreshAfterCommit_noTransaction_refreshesImmediately() {
+        when(itineraryRepository.findAllTitles()).thenReturn(List.of());
+
+        index.refreshAfterCommit();
+
+        verify(itineraryRepository).findAllTitles();
+        assertEquals(1, index.getVersion());
+    }
+
+    @Test
+    void refreshAfterCommit_withTransaction_waitsForCommit() {
+        when(itineraryRepository.findAllTitles()).thenReturn(List.of());
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.refreshAfterCommit();
+        verify(itineraryRepository, never()).findAllTitles();
+
+        // simulazione del commit
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        verify(itineraryRepository).findAllTitles();
+    }
+}
@@ -1,5 +1,6 @@
 package com.lucamoretti.adventure_together.service.trip.impl;
 
+import com.lucamoretti.adventure_together.service.trip.ItineraryPageViewService;
 import com.lucamoretti.adventure_together.dto.participant.ParticipantDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripDTO;
 import com.lucamoretti.adventure_together.dto.trip.TripItineraryDTO;
@@ -12,10 +13,14 @@ import com.lucamoretti.adventure_together.repository.participant.ParticipantRepo
 import com.lucamoretti.adventure_together.repository.trip.TripItineraryRepository;
 import com.lucamoretti.adventure_together.repository.trip.TripRepository;
 import com.lucamoretti.adventure_together.repository.user.PlannerRepository;
+import com.lucamoretti.adventure_together.service.trip.TripCatalogIndex;
+import com.lucamoretti.adventure_together.service.trip.TripDeadlineScheduler;
 import com.lucamoretti.adventure_together.service.trip.TripItineraryService;
 import com.lucamoretti.adventure_together.service.validation.DataValidationService;
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
+import org.springframework.data.domain.Limit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
@@ -44,6 +49,12 @@ class TripServiceImplTest {
     TripItineraryService tripItineraryService;
     @Mock
     ParticipantRepository participantRepository;
+    @Mock
+    TripCatalogIndex catalogIndex;
+    @Mock
+    ItineraryPageViewService pageViewService;
+    @Mock
+    TripDeadlineScheduler deadlineScheduler;
 
     @InjectMocks
     TripServiceImpl tripService;
@@ -85,6 +96,7 @@ class TripServiceImplTest {
 
         Trip saved = new Trip();
         saved.setId(100L);
+        saved.setDateEndBookings(dto.getDateEndBookings());
 
         when(tripItineraryService.getById(1L)).thenReturn(itineraryDTO);
         when(itineraryRepository.findById(1L)).thenReturn(Optional.of(itinerary));
@@ -103,6 +115,9 @@ class TripServiceImplTest {
                 itineraryDTO.getDurationInDays()
         );
         verify(tripRepository).save(any());
+        verify(catalogIndex).refreshTripAfterCommit(100L);
+        verify(pageViewService).evictAfterCommit(1L);
+        verify(deadlineScheduler).scheduleAfterCommit(100L, dto.getDateEndBookings());
     }
 
     @Test
@@ -145,8 +160,11 @@ class TripServiceImplTest {
 
     @Test
     void handleTrip_success() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(7L);
         Trip trip = new Trip();
         trip.setId(1L);
+        trip.setTripItinerary(itinerary);
 
         when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
 
@@ -154,6 +172,8 @@ class TripServiceImplTest {
         assertNotNull(result);
 
         verify(tripRepository).save(trip);
+        verify(catalogIndex).refreshTripAfterCommit(1L);
+        verify(pageViewService).evictAfterCommit(7L);
     }
 
     @Test
@@ -170,8 +190,11 @@ class TripServiceImplTest {
 
     @Test
     void cancelTrip_success() {
+        TripItinerary itinerary = new TripItinerary();
+        itinerary.setId(7L);
         Trip trip = new Trip();
         trip.setId(1L);
+        trip.setTripItinerary(itinerary);
         trip.setState(new ToBeConfirmed());
 
         when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
@@ -180,6 +203,9 @@ class TripServiceImplTest {
 
         assertNotNull(result);
         verify(tripRepository).save(trip);
+        verify(catalogIndex).refreshTripAfterCommit(1L);
+        verify(pageViewService).evictAfterCommit(7L);
+        verify(deadlineScheduler).cancelAfterCommit(1L);
     }
 
     @Test
@@ -192,6 +218,7 @@ class TripServiceImplTest {
 
         assertThrows(DataIntegrityException.class,
                 () -> tripService.cancelTrip(1L));
+        verifyNoInteractions(catalogIndex, pageViewService, deadlineScheduler);
     }
 
     // -------------------------------------------------------
@@ -200,13 +227,13 @@ class TripServiceImplTest {
 
     @Test
     void getAll_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findAll()).thenReturn(List.of(t));
+        when(tripRepository.findAllDto()).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getAll();
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findAll();
     }
 
     @Test
@@ -230,13 +257,13 @@ class TripServiceImplTest {
 
     @Test
     void getTripsByPlanner_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findByPlanner_Id(5L)).thenReturn(List.of(t));
+        when(tripRepository.findDtoByPlannerId(5L)).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getTripsByPlanner(5L);
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findByPlanner_Id(any());
     }
 
     // -------------------------------------------------------
@@ -258,35 +285,35 @@ class TripServiceImplTest {
 
     @Test
     void getToBeConfirmedTrips_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findByState(ToBeConfirmed.class)).thenReturn(List.of(t));
+        when(tripRepository.findDtoByState(ToBeConfirmed.class)).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getToBeConfirmedTrips();
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findByState(any());
     }
 
     @Test
     void getBookableTripsByItinerary_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findOpenForBookingByItinerary(10L)).thenReturn(List.of(t));
+        when(tripRepository.findDtoOpenForBookingByItinerary(10L)).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getBookableTripsByItinerary(10L);
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findOpenForBookingByItinerary(any());
     }
 
     @Test
     void getUpcomingBookableTrips_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findUpcomingBookableTrips(any(), any())).thenReturn(List.of(t));
+        when(tripRepository.findDtoUpcomingBookableTrips(any(), any())).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getUpcomingBookableTrips();
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findUpcomingBookableTrips(any(), any());
     }
 
     @Test
@@ -302,13 +329,13 @@ class TripServiceImplTest {
 
     @Test
     void getTripsByState_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
 
-        when(tripRepository.findByState(ToBeConfirmed.class)).thenReturn(List.of(t));
+        when(tripRepository.findDtoByState(ToBeConfirmed.class)).thenReturn(List.of(t));
 
         List<TripDTO> result = tripService.getTripsByState(ToBeConfirmed.class);
         assertEquals(1, result.size());
+        verify(tripRepository, never()).findByState(any());
     }
 
     // -------------------------------------------------------
@@ -338,23 +365,99 @@ class TripServiceImplTest {
 
     @Test
     void getTripsBetweenDates_success() {
-        Trip t = new Trip();
-        t.setId(1L);
+        TripDTO t = TripDTO.builder().id(1L).build();
+        LocalDate from = LocalDate.now();
 
-        when(tripRepository.findByDateDepartureBetween(any(), any()))
+        when(tripRepository.findDtoPageByDateDepartureBetween(any(), any(), any(), any(), any()))
                 .thenReturn(List.of(t));
 
-        List<TripDTO> result = tripService.getTripsBetweenDates(
-                LocalDate.now(), LocalDate.now().plusDays(3));
+        KeysetPage<TripDTO> result = tripService.getTripsBetweenDates(
+                from, from.plusDays(3), null, 20);
 
-        assertEquals(1, result.size());
+        assertEquals(1, result.getItems().size());
+        assertFalse(result.hasNext());
+        // prima pagina: la chiave di partenza è la data di inizio del filtro con id 0
+        verify(tripRepository).findDtoPageByDateDepartureBetween(from, from.plusDays(3), from, 0L, Limit.of(21));
+        verify(tripRepository, never()).findByDateDepartureBetween(any(), any());
+    }
+
+    @Test
+    void getTripsBetweenDates_fullPage_returnsCursorOfLastItem() {
+        LocalDate d = LocalDate.of(2030, 5, 1);
+        TripDTO t1 = TripDTO.builder().id(1L).dateDeparture(d).build();
+        TripDTO t2 = TripDTO.builder().id(7L).dateDeparture(d).build();
+        TripDTO t3 = TripDTO.builder().id(3L).dateDeparture(d.plusDays(1)).build();
+
+        when(tripRepository.findDtoPageByDateDepartureBetween(any(), any(), any(), any(), eq(Limit.of(3))))
+                .thenReturn(List.of(t1, t2, t3));
+
+        KeysetPage<TripDTO> result = tripService.getTripsBetweenDates(d, d.plusDays(10), null, 2);
+
+        assertEquals(List.of(t1, t2), result.getItems());
+        assertTrue(result.hasNext());
+        assertEquals("2030-05-01_7", result.getNextCursor());
+    }
+
+    @Test
+    void getTripsBetweenDates_withCursor_startsAfterCursorKey() {
+        LocalDate from = LocalDate.of(2030, 1, 1);
+        when(tripRepository.findDtoPageByDateDepartureBetween(any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+
+        tripService.getTripsBetweenDates(from, from.plusMonths(6), "2030-05-01_7", 20);
+
+        verify(tripRepository).findDtoPageByDateDepartureBetween(
+                from, from.plusMonths(6), LocalDate.of(2030, 5, 1), 7L, Limit.of(21));
+    }
+
+    @Test
+    void getTripsBetweenDates_invalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> tripService.getTripsBetweenDates(null, null, "abc", 20));
+        // un cursore senza data non è valido per le liste ordinate per data di partenza
+        assertThrows(IllegalArgumentException.class,
+                () -> tripService.getTripsBetweenDates(null, null, "42", 20));
+        verifyNoInteractions(tripRepository);
+    }
+
+    @Test
+    void getTripsByPlannerBetweenDates_success() {
+        TripDTO t = TripDTO.builder().id(1L).build();
+        LocalDate from = LocalDate.now();
+
+        when(tripRepository.findDtoPageByPlannerIdAndDateDepartureBetween(eq(5L), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(t));
+
+        KeysetPage<TripDTO> result = tripService.getTripsByPlannerBetweenDates(
+                5L, from, from.plusDays(3), "2030-05-01_7", 20);
+
+        assertEquals(1, result.getItems().size());
+        verify(tripRepository).findDtoPageByPlannerIdAndDateDepartureBetween(
+                5L, from, from.plusDays(3), LocalDate.of(2030, 5, 1), 7L, Limit.of(21));
+        verify(tripRepository, never()).findByPlannerIdAndDateDepartureBetween(any(), any(), any());
+    }
+
+    // Il costruttore usato dalla projection JPQL converte la classe di stato nel nome semplice, come fromEntity
+    @Test
+    void projectionConstructor_mapsStateClassToSimpleName() {
+        LocalDate d = LocalDate.now();
+        TripDTO dto = new TripDTO(1L, d, d, d, d, 100.0, ToBeConfirmed.class, "mail",
+                2L, 3L, "Islanda", "/img.jpg", 10, 4);
+
+        assertEquals("ToBeConfirmed", dto.getState());
+        assertEquals(10, dto.getMaxParticipants());
+        assertEquals(4, dto.getCurrentParticipantsCount());
+
+        TripDTO noState = new TripDTO(1L, d, d, d, d, 100.0, (Class<?>) null, null,
+                2L, 3L, "Islanda", "/img.jpg", 10, 0);
+        assertNull(noState.getState());
     }
 
     @Test
     void getTripsBetweenDates_invalidDates() {
         assertThrows(DataIntegrityException.class,
                 () -> tripService.getTripsBetweenDates(
-                        LocalDate.now().plusDays(5), LocalDate.now()));
+                        LocalDate.now().plusDays(5), LocalDate.now(), null, 20));
     }
 
     // -------------------------------------------------------
@@ -0,0 +1,108 @@
+package com.lucamoretti.adventure_together.service.trip.impl;
+
+import com.lucamoretti.adventure_together.dto.trip.TripStateTransitionDTO;
+import com.lucamoretti.adventure_together.event.TripStateChanged;
+import com.lucamoretti.adventure_together.model.trip.state.TripStateTransition;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripStateTransitionServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 7, 1);
+
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private EntityManager entityManager;
+    @Mock private Query selectQuery;
+    @Mock private Query updateQuery;
+
+    private TripStateTransitionServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        service = new TripStateTransitionServiceImpl(eventPublisher, transactionManager);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(entityManager.createNativeQuery(startsWith("select"))).thenReturn(selectQuery);
+        lenient().when(entityManager.createNativeQuery(startsWith("update"))).thenReturn(updateQuery);
+        lenient().when(selectQuery.setParameter(anyString(), any())).thenReturn(selectQuery);
+        lenient().when(updateQuery.setParameter(anyString(), any())).thenReturn(updateQuery);
+    }
+
+    @Test
+    void applyTransitions_noMatchingTrips_runsOnlyLockingReads() {
+        when(selectQuery.getResultList()).thenReturn(List.of());
+
+        List<TripStateTransitionDTO> results = service.applyTransitions(TODAY);
+
+        assertEquals(TripStateTransition.values().length, results.size());
+        assertTrue(results.stream().allMatch(r -> r.getTripIds().isEmpty()));
+        verify(entityManager, never()).createNativeQuery(startsWith("update"));
+        verifyNoInteractions(eventPublisher);
+        // una transazione per tipo di transizione
+        verify(transactionManager, times(TripStateTransition.values().length)).commit(any());
+    }
+
+    @Test
+    void applyTransitions_matchingTrips_updatesInBulkAndNotifiesEachTrip() {
+        // solo la prima transizione (ConfirmedOpen → ConfirmedClosed) trova viaggi
+        when(selectQuery.getResultList()).thenReturn(List.of(4L, 9L), List.of());
+        when(updateQuery.executeUpdate()).thenReturn(2);
+
+        List<TripStateTransitionDTO> results = service.applyTransitions(TODAY);
+
+        assertEquals(TripStateTransition.CONFIRMED_OPEN_TO_CLOSED, results.get(0).getTransition());
+        assertEquals(List.of(4L, 9L), results.get(0).getTripIds());
+        // due UPDATE (trips e trip_states) per l'unica transizione con viaggi
+        verify(updateQuery, times(2)).executeUpdate();
+        verify(updateQuery, times(2)).setParameter("fromType", "CONFIRMED_OPEN");
+        verify(updateQuery).setParameter("toType", "CONFIRMED_CLOSED");
+        verify(selectQuery, times(TripStateTransition.values().length)).setParameter("today", TODAY);
+        verify(entityManager).clear();
+
+        ArgumentCaptor<TripStateChanged> events = ArgumentCaptor.forClass(TripStateChanged.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(List.of(new TripStateChanged(4L, "ConfirmedClosed", "mail/confirmed-closed"),
+                new TripStateChanged(9L, "ConfirmedClosed", "mail/confirmed-closed")), events.getAllValues());
+    }
+
+    @Test
+    void applyTransitions_lockingReadIsForUpdate() {
+        when(selectQuery.getResultList()).thenReturn(List.of());
+
+        service.applyTransitions(TODAY);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(TripStateTransition.values().length)).createNativeQuery(sql.capture());
+        assertTrue(sql.getAllValues().stream().allMatch(s -> s.endsWith("for update")));
+    }
+
+    @Test
+    void applyTransitions_updateFails_rollsBackAndPropagates() {
+        when(selectQuery.getResultList()).thenReturn(List.of(4L));
+        when(updateQuery.executeUpdate()).thenThrow(new IllegalStateException("lock wait timeout"));
+
+        assertThrows(IllegalStateException.class, () -> service.applyTransitions(TODAY));
+
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(eventPublisher);
+    }
+}
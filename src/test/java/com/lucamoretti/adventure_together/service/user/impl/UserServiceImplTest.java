@@ -5,6 +5,7 @@ import com.lucamoretti.adventure_together.dto.user.PlannerDTO;
 import com.lucamoretti.adventure_together.dto.user.TravelerDTO;
 import com.lucamoretti.adventure_together.dto.user.UserDTO;
 import com.lucamoretti.adventure_together.model.auth.PasswordResetToken;
+import com.lucamoretti.adventure_together.model.mail.EmailPriority;
 import com.lucamoretti.adventure_together.model.user.Admin;
 import com.lucamoretti.adventure_together.model.user.Planner;
 import com.lucamoretti.adventure_together.model.user.Traveler;
@@ -19,6 +20,8 @@ import com.lucamoretti.adventure_together.service.validation.DataValidationServi
 import com.lucamoretti.adventure_together.util.exception.DataIntegrityException;
 import com.lucamoretti.adventure_together.util.exception.DuplicateResourceException;
 import com.lucamoretti.adventure_together.util.exception.ResourceNotFoundException;
+import com.lucamoretti.adventure_together.util.pagination.KeysetPage;
+import org.springframework.data.domain.Limit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -72,22 +75,23 @@ class UserServiceImplTest {
     void getAllUsers_success() {
         User u = new Traveler();
         u.setId(1L);
-        when(userRepository.findAll()).thenReturn(List.of(u));
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(21))).thenReturn(List.of(u));
 
-        List<UserDTO> result = userService.getAllUsers();
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).getId());
+        KeysetPage<UserDTO> result = userService.getAllUsers(null, 20);
+        assertEquals(1, result.getItems().size());
+        assertEquals(1L, result.getItems().get(0).getId());
+        assertFalse(result.hasNext());
     }
 
     @Test
     void getAllPlanners_success() {
         Planner p = new Planner();
         p.setId(2L);
-        when(plannerRepository.findAllPlannersNoAdmin()).thenReturn(List.of(p));
+        when(plannerRepository.findPlannersNoAdminPage(0L, Limit.of(21))).thenReturn(List.of(p));
 
-        List<PlannerDTO> result = userService.getAllPlanners();
-        assertEquals(1, result.size());
-        assertEquals(2L, result.get(0).getId());
+        KeysetPage<PlannerDTO> result = userService.getAllPlanners(null, 20);
+        assertEquals(1, result.getItems().size());
+        assertEquals(2L, result.getItems().get(0).getId());
     }
 
     @Test
@@ -95,11 +99,25 @@ class UserServiceImplTest {
         Admin a = new Admin();
         a.setId(3L);
 
-        when(adminRepository.findAll()).thenReturn(List.of(a));
+        when(adminRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(21))).thenReturn(List.of(a));
 
-        List<AdminDTO> result = userService.getAllAdmins();
-        assertEquals(1, result.size());
-        assertEquals(3L, result.get(0).getId());
+        KeysetPage<AdminDTO> result = userService.getAllAdmins(null, 20);
+        assertEquals(1, result.getItems().size());
+        assertEquals(3L, result.getItems().get(0).getId());
+    }
+
+    @Test
+    void getAllPlanners_nextPage_startsAfterCursorId() {
+        Planner p1 = new Planner();
+        p1.setId(11L);
+        Planner p2 = new Planner();
+        p2.setId(12L);
+        when(plannerRepository.findPlannersNoAdminPage(10L, Limit.of(2))).thenReturn(List.of(p1, p2));
+
+        KeysetPage<PlannerDTO> result = userService.getAllPlanners("10", 1);
+
+        assertEquals(1, result.getItems().size());
+        assertEquals("11", result.getNextCursor());
     }
 
     @Test
@@ -259,7 +277,7 @@ class UserServiceImplTest {
         assertNotNull(token);
         verify(passwordResetTokenRepository).deleteByUser(u);
         verify(passwordResetTokenRepository).save(any());
-        verify(emailService).sendHtmlMessage(any(), any(), any(), any());
+        verify(emailService).sendHtmlMessage(any(), any(), any(), any(), eq(EmailPriority.HIGH));
     }
 
     @Test
@@ -349,6 +367,30 @@ class UserServiceImplTest {
         verify(userRepository).save(u);
     }
 
+    // ------------------------------------------------------------
+    // NOTIFICATION DIGEST
+    // ------------------------------------------------------------
+
+    @Test
+    void setNotificationDigest_updatesTraveler() {
+        Traveler t = new Traveler();
+        t.setId(1L);
+        when(travelerRepository.findById(1L)).thenReturn(Optional.of(t));
+
+        userService.setNotificationDigest(1L, true);
+
+        assertTrue(t.isNotificationDigest());
+        verify(travelerRepository).save(t);
+    }
+
+    @Test
+    void setNotificationDigest_unknownTraveler_throws() {
+        when(travelerRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> userService.setNotificationDigest(1L, true));
+        verify(travelerRepository, never()).save(any());
+    }
+
     // ------------------------------------------------------------
     // GET CURRENT USER ID
     // ------------------------------------------------------------
@@ -0,0 +1,44 @@
+package com.lucamoretti.adventure_together.util.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeDecode_dateAndId_roundTrip() {
+        KeysetCursor cursor = KeysetCursor.of(LocalDate.of(2026, 10, 18), 42L);
+
+        assertEquals("2026-10-18_42", cursor.encode());
+        assertEquals(cursor, KeysetCursor.decode("2026-10-18_42"));
+    }
+
+    @Test
+    void encodeDecode_idOnly_roundTrip() {
+        assertEquals("7", KeysetCursor.of(7L).encode());
+        assertEquals(KeysetCursor.of(7L), KeysetCursor.decode("7"));
+    }
+
+    @Test
+    void decode_nullOrBlank_meansFirstPage() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode(" "));
+        assertNull(KeysetCursor.decodeDated(""));
+    }
+
+    @Test
+    void decode_malformed_throwsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("abc"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("2026-13-01_4"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("2026-10-18_x"));
+    }
+
+    @Test
+    void decodeDated_withoutDate_throwsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decodeDated("42"));
+        assertEquals(LocalDate.of(2026, 10, 18), KeysetCursor.decodeDated("2026-10-18_42").date());
+    }
+}
@@ -0,0 +1,43 @@
+package com.lucamoretti.adventure_together.util.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPageTest {
+
+    @Test
+    void of_fewerRowsThanSize_isLastPage() {
+        KeysetPage<Long> page = KeysetPage.of(List.of(1L, 2L), 3, KeysetCursor::of);
+
+        assertEquals(List.of(1L, 2L), page.getItems());
+        assertFalse(page.hasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void of_exactlySizeRows_isLastPage() {
+        KeysetPage<Long> page = KeysetPage.of(List.of(1L, 2L, 3L), 3, KeysetCursor::of);
+
+        assertEquals(3, page.getItems().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void of_extraRow_isTrimmedAndBecomesNextCursor() {
+        KeysetPage<Long> page = KeysetPage.of(List.of(1L, 2L, 3L, 4L), 3, KeysetCursor::of);
+
+        assertEquals(List.of(1L, 2L, 3L), page.getItems());
+        assertTrue(page.hasNext());
+        assertEquals("3", page.getNextCursor());
+    }
+
+    @Test
+    void fetchSize_isClampedSizePlusOne() {
+        assertEquals(21, KeysetPage.fetchSize(20));
+        assertEquals(2, KeysetPage.fetchSize(0));
+        assertEquals(KeysetPage.MAX_SIZE + 1, KeysetPage.fetchSize(5000));
+    }
+}
@@ -0,0 +1,57 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixTrieTest {
+
+    @Test
+    void complete_returnsTermsInAlphabeticalOrder() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("islanda");
+        trie.add("isole");
+        trie.add("irlanda");
+        trie.add("is");
+
+        assertEquals(List.of("is", "islanda", "isole"), trie.complete("is", 10));
+        assertEquals(List.of("is", "islanda"), trie.complete("is", 2));
+        assertTrue(trie.complete("norvegia", 10).isEmpty());
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void add_duplicate_returnsFalse() {
+        PrefixTrie trie = new PrefixTrie();
+
+        assertTrue(trie.add("islanda"));
+        assertFalse(trie.add("islanda"));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void remove_prunesOnlyUnusedNodes() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("islanda");
+        trie.add("isole");
+
+        assertTrue(trie.remove("islanda"));
+        assertFalse(trie.remove("islanda"));
+        assertFalse(trie.contains("islanda"));
+        assertTrue(trie.contains("isole"));
+        assertEquals(List.of("isole"), trie.complete("is", 10));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void remove_prefixOfOtherTerm_keepsLongerTerm() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.add("is");
+        trie.add("isole");
+
+        assertTrue(trie.remove("is"));
+        assertEquals(List.of("isole"), trie.complete("i", 10));
+    }
+}
@@ -0,0 +1,28 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTokenizerTest {
+
+    @Test
+    void normalize_removesHtmlAccentsAndCase() {
+        assertEquals(" citta  e peru", SearchTokenizer.normalize("<p>Città</p> e Perù"));
+    }
+
+    @Test
+    void tokenize_skipsStopWordsAndShortTokens() {
+        Set<String> tokens = SearchTokenizer.tokenize("<p>Il giro dell'Islanda in 10 giorni, a piedi</p>");
+
+        assertEquals(List.of("giro", "dell", "islanda", "10", "giorni", "piedi"), List.copyOf(tokens));
+    }
+
+    @Test
+    void tokenize_null_returnsEmpty() {
+        assertTrue(SearchTokenizer.tokenize(null).isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package com.lucamoretti.adventure_together.util.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    @Test
+    void similar_findsTermsWithTypos() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("islanda");
+        index.add("norvegia");
+
+        Map<String, Double> result = index.similar("islnda", 0.45);
+
+        assertTrue(result.containsKey("islanda"));
+        assertFalse(result.containsKey("norvegia"));
+        assertTrue(result.get("islanda") < 1.0);
+    }
+
+    @Test
+    void similar_exactTerm_hasSimilarityOne() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("islanda");
+
+        assertEquals(1.0, index.similar("islanda", 0.45).get("islanda"), 1e-9);
+    }
+
+    @Test
+    void remove_termNoLongerReturned() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("islanda");
+        index.remove("islanda");
+
+        assertTrue(index.similar("islanda", 0.1).isEmpty());
+    }
+}
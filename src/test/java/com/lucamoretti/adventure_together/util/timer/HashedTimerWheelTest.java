@@ -0,0 +1,124 @@
+package com.lucamoretti.adventure_together.util.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimerWheelTest {
+
+    private final List<String> fired = new ArrayList<>();
+
+    // ruota da 10 caselle con tick di un secondo; i task vengono eseguiti sul thread che fa avanzare la ruota
+    private final HashedTimerWheel<String> wheel = new HashedTimerWheel<>("test-wheel", Duration.ofSeconds(1), 10, Runnable::run);
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance();
+        }
+    }
+
+    @Test
+    void schedule_firesAfterDelayInTicks() {
+        wheel.schedule("a", Duration.ofSeconds(3), () -> fired.add("a"));
+
+        advance(3);
+        assertTrue(fired.isEmpty());
+
+        advance(1);
+        assertEquals(List.of("a"), fired);
+        assertFalse(wheel.isScheduled("a"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_partialTick_neverFiresEarly() {
+        wheel.schedule("a", Duration.ofMillis(1500), () -> fired.add("a"));
+
+        advance(2);
+        assertTrue(fired.isEmpty());
+
+        advance(1);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_beyondOneRotation_waitsRemainingRounds() {
+        // 25 tick su 10 caselle: due giri completi e 5 caselle
+        wheel.schedule("a", Duration.ofSeconds(25), () -> fired.add("a"));
+
+        advance(25);
+        assertTrue(fired.isEmpty());
+        advance(1);
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_pastDeadline_firesOnNextTick() {
+        wheel.schedule("a", Duration.ofHours(-2), () -> fired.add("a"));
+
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("a"), fired);
+    }
+
+    @Test
+    void schedule_sameKey_replacesPreviousTimer() {
+        wheel.schedule("a", Duration.ofSeconds(1), () -> fired.add("first"));
+        wheel.schedule("a", Duration.ofSeconds(4), () -> fired.add("second"));
+
+        assertEquals(1, wheel.size());
+        advance(5);
+        assertEquals(List.of("second"), fired);
+    }
+
+    @Test
+    void cancel_removesTimer() {
+        wheel.schedule("a", Duration.ofSeconds(2), () -> fired.add("a"));
+        wheel.schedule("b", Duration.ofSeconds(2), () -> fired.add("b"));
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        advance(3);
+
+        assertEquals(List.of("b"), fired);
+    }
+
+    @Test
+    void advance_onlyExpiredTimersOfBucketFire() {
+        // stessa casella (1 e 11 tick), giri diversi
+        wheel.schedule("near", Duration.ofSeconds(1), () -> fired.add("near"));
+        wheel.schedule("far", Duration.ofSeconds(11), () -> fired.add("far"));
+
+        advance(2);
+        assertEquals(List.of("near"), fired);
+        assertTrue(wheel.isScheduled("far"));
+
+        advance(10);
+        assertEquals(List.of("near", "far"), fired);
+    }
+
+    @Test
+    void constructor_invalidArguments_throw() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashedTimerWheel<String>("w", Duration.ZERO, 10, Runnable::run));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashedTimerWheel<String>("w", Duration.ofSeconds(1), 0, Runnable::run));
+    }
+
+    @Test
+    void start_firesOnWallClock() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (HashedTimerWheel<String> running = new HashedTimerWheel<>("test-wheel", Duration.ofMillis(10), 8, Runnable::run)) {
+            running.start();
+            running.schedule("a", Duration.ofMillis(50), latch::countDown);
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, running.size());
+        }
+    }
+}